@@ -0,0 +1,42 @@
+package com.flightstats.hub.dao;
+
+import com.flightstats.hub.model.ContentKey;
+import org.joda.time.DateTime;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Repeatable inputs shared by the benchmarks.
+ */
+public class BenchmarkData {
+
+    /**
+     * @return json like bytes, which compress about as well as typical channel payloads
+     */
+    public static byte[] json(int bytes, Random random) {
+        StringBuilder builder = new StringBuilder(bytes + 64);
+        builder.append('[');
+        while (builder.length() < bytes) {
+            builder.append("{\"id\":").append(random.nextInt(100_000))
+                    .append(",\"status\":\"").append(random.nextBoolean() ? "active" : "landed")
+                    .append("\",\"delay\":").append(random.nextDouble()).append("},");
+        }
+        builder.setLength(bytes);
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return count keys, in order, spread over the minutes after start
+     */
+    public static List<ContentKey> keys(DateTime start, int count, int minutes, Random random) {
+        List<ContentKey> keys = new ArrayList<>(count);
+        long spanMillis = minutes * 60_000L;
+        for (int i = 0; i < count; i++) {
+            keys.add(new ContentKey(start.plus(spanMillis * i / count), "k" + Integer.toString(random.nextInt(Integer.MAX_VALUE), 36)));
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,64 @@
+package com.flightstats.hub.dao;
+
+import com.flightstats.hub.model.ChannelConfig;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.DirectionQuery;
+import com.flightstats.hub.util.TimeUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class ContentKeyUtilBenchmark {
+
+    @Param({"1000", "100000"})
+    private int keyCount;
+
+    private List<ContentKey> keys;
+    private DirectionQuery next;
+    private DirectionQuery previous;
+
+    @Setup
+    public void setup() {
+        keys = BenchmarkData.keys(TimeUtil.now().minusHours(1), keyCount, 50, new Random(keyCount));
+        ChannelConfig channelConfig = ChannelConfig.builder().name("benchmark").ttlDays(1).build();
+        next = DirectionQuery.builder()
+                .channelName("benchmark")
+                .channelConfig(channelConfig)
+                .startKey(keys.get(keyCount / 2))
+                .count(100)
+                .next(true)
+                .stable(true)
+                .channelStable(TimeUtil.stable())
+                .build();
+        previous = next.withNext(false);
+    }
+
+    @Benchmark
+    public SortedSet<ContentKey> filterNext() {
+        return ContentKeyUtil.filter(keys, next);
+    }
+
+    @Benchmark
+    public SortedSet<ContentKey> filterPrevious() {
+        return ContentKeyUtil.filter(keys, previous);
+    }
+}
@@ -0,0 +1,60 @@
+package com.flightstats.hub.dao;
+
+import com.flightstats.hub.model.Content;
+import com.flightstats.hub.model.ContentKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class ContentMarshallerBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    private int payloadBytes;
+
+    private byte[] payload;
+    private byte[] marshalled;
+    private ContentKey key;
+
+    @Setup
+    public void setup() throws IOException {
+        payload = BenchmarkData.json(payloadBytes, new Random(payloadBytes));
+        key = new ContentKey();
+        marshalled = ContentMarshaller.toBytes(content());
+    }
+
+    private Content content() {
+        return Content.builder()
+                .withContentKey(key)
+                .withContentType("application/json")
+                .withData(payload)
+                .build();
+    }
+
+    @Benchmark
+    public byte[] marshal() throws IOException {
+        return ContentMarshaller.toBytes(content());
+    }
+
+    @Benchmark
+    public byte[] unmarshal() throws IOException {
+        return ContentMarshaller.toContent(marshalled, key).getData();
+    }
+}
@@ -0,0 +1,57 @@
+package com.flightstats.hub.dao;
+
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.util.TimeUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges the overlapping results of the spoke, single and batch daos, as ClusterContentService does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class QueryResultBenchmark {
+
+    @Param({"100", "10000"})
+    private int keyCount;
+
+    private List<SortedSet<ContentKey>> daoResults;
+
+    @Setup
+    public void setup() {
+        List<ContentKey> keys = BenchmarkData.keys(TimeUtil.now().minusHours(1), keyCount, 60, new Random(keyCount));
+        daoResults = new ArrayList<>();
+        daoResults.add(new TreeSet<>(keys.subList(keyCount / 2, keyCount)));
+        daoResults.add(new TreeSet<>(keys.subList(0, keyCount * 3 / 4)));
+        daoResults.add(new TreeSet<>(keys.subList(0, keyCount / 4)));
+    }
+
+    @Benchmark
+    public SortedSet<ContentKey> merge() {
+        QueryResult queryResult = new QueryResult(daoResults.size());
+        for (SortedSet<ContentKey> daoResult : daoResults) {
+            queryResult.addKeys(daoResult);
+        }
+        return queryResult.getContentKeys();
+    }
+}
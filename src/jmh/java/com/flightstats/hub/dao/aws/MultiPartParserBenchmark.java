@@ -0,0 +1,66 @@
+package com.flightstats.hub.dao.aws;
+
+import com.flightstats.hub.dao.BenchmarkData;
+import com.flightstats.hub.model.BulkContent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class MultiPartParserBenchmark {
+
+    @Param({"10", "1000"})
+    private int items;
+
+    @Param({"1000", "100000"})
+    private int itemBytes;
+
+    @Param({"false", "true"})
+    private boolean streaming;
+
+    private byte[] body;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(items);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (int i = 0; i < items; i++) {
+            output.write("--frontier\r\nContent-Type: application/json\r\n\r\n".getBytes());
+            output.write(BenchmarkData.json(itemBytes, random));
+            output.write("\r\n".getBytes());
+        }
+        output.write("--frontier--".getBytes());
+        body = output.toByteArray();
+    }
+
+    @Benchmark
+    public BulkContent parse() throws IOException {
+        BulkContent bulkContent = BulkContent.builder()
+                .channel("benchmark")
+                .stream(new ByteArrayInputStream(body))
+                .contentType("multipart/mixed; boundary=frontier")
+                .isNew(true)
+                .build();
+        new MultiPartParser(bulkContent, 100, streaming).parse();
+        return bulkContent;
+    }
+}
@@ -0,0 +1,58 @@
+package com.flightstats.hub.model;
+
+import com.flightstats.hub.util.TimeUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class ContentKeyBenchmark {
+
+    private ContentKey key;
+    private ContentKey sameTime;
+    private ContentKey later;
+    private String url;
+
+    @Setup
+    public void setup() {
+        key = new ContentKey(TimeUtil.now(), "A1b2C3");
+        sameTime = new ContentKey(key.getTime(), "A1b2C4");
+        later = new ContentKey(key.getTime().plusMillis(1), "A1b2C3");
+        url = key.toUrl();
+    }
+
+    @Benchmark
+    public Optional<ContentKey> parse() {
+        return ContentKey.fromUrl(url);
+    }
+
+    @Benchmark
+    public String format() {
+        return key.toUrl();
+    }
+
+    @Benchmark
+    public int compareSameTime() {
+        return key.compareTo(sameTime);
+    }
+
+    @Benchmark
+    public int compareTime() {
+        return key.compareTo(later);
+    }
+}
@@ -0,0 +1,91 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.dao.BenchmarkData;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.util.TimeUtil;
+import org.apache.commons.io.FileUtils;
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes and reads a temporary spoke directory, holding one minute of keys.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class FileSpokeStoreBenchmark {
+
+    private static final String CHANNEL = "benchmark";
+
+    @Param({"1000", "100000"})
+    private int payloadBytes;
+
+    @Param({"FILE", "SEGMENT"})
+    private SpokeStorageMode storageMode;
+
+    private final AtomicLong inserted = new AtomicLong();
+    private File directory;
+    private FileSpokeStore spokeStore;
+    private byte[] payload;
+    private String readPath;
+    private String minutePath;
+    private DateTime insertStart;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("spoke-benchmark").toFile();
+        spokeStore = new FileSpokeStore(directory.getPath(), 60, storageMode);
+        payload = BenchmarkData.json(payloadBytes, new Random(payloadBytes));
+        DateTime minute = TimeUtil.Unit.MINUTES.round(TimeUtil.now().minusMinutes(30));
+        List<ContentKey> keys = BenchmarkData.keys(minute, 1000, 1, new Random(1));
+        for (ContentKey key : keys) {
+            spokeStore.insert(CHANNEL + "/" + key.toUrl(), payload);
+        }
+        readPath = CHANNEL + "/" + keys.get(keys.size() / 2).toUrl();
+        minutePath = CHANNEL + "/" + TimeUtil.minutes(minute);
+        insertStart = minute.plusMinutes(1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public boolean insert() {
+        ContentKey key = new ContentKey(insertStart.plusMillis((int) (inserted.incrementAndGet() % 600_000)), "insert" + inserted.get());
+        return spokeStore.insert(CHANNEL + "/" + key.toUrl(), payload);
+    }
+
+    @Benchmark
+    public byte[] read() {
+        return spokeStore.read(readPath);
+    }
+
+    @Benchmark
+    public String readKeysInBucket() {
+        return spokeStore.readKeysInBucket(minutePath);
+    }
+}
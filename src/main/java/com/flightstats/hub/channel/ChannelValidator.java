@@ -45,6 +45,7 @@ public class ChannelValidator {
         validateDescription(config);
         validateTags(config);
         validateStorage(config);
+        validateCompression(config);
         if (config.isProtect()) {
             ensurePropertyNotBlank("Owner", config.getOwner());
         }
@@ -96,6 +97,12 @@ public class ChannelValidator {
         }
     }
 
+    private void validateCompression(ChannelConfig config) {
+        if (!config.isValidCompression()) {
+            throw new InvalidRequestException("{\"error\": \"Valid compression values are ZIP, NONE, FAST and DEFLATE\"}");
+        }
+    }
+
     private void validateTags(ChannelConfig request) {
         if (request.getTags().size() > 20) {
             throw new InvalidRequestException("{\"error\": \"Channels are limited to 20 tags\"}");
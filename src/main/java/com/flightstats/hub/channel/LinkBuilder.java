@@ -69,6 +69,7 @@ public class LinkBuilder {
         root.put("protect", config.isProtect());
         root.put("replicationSource", config.getReplicationSource());
         root.put("storage", config.getStorage());
+        root.put("compression", config.getCompression());
         ArrayNode tags = root.putArray("tags");
         config.getTags().forEach(tags::add);
         root.put("ttlDays", config.getTtlDays());
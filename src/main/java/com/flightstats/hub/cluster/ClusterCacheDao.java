@@ -1,30 +1,60 @@
 package com.flightstats.hub.cluster;
 
 import com.flightstats.hub.config.properties.AppProperties;
+import com.flightstats.hub.config.properties.ZooKeeperProperties;
 import com.flightstats.hub.exception.ConflictException;
 import com.flightstats.hub.exception.ContentTooLargeException;
 import com.flightstats.hub.model.ContentPath;
 import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.state.ConnectionState;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.data.Stat;
 
 import javax.inject.Inject;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
+/**
+ * Values read from ZooKeeper are kept locally with a data watch, and dropped when the watch fires
+ * or the connection is interrupted, so repeated reads and setIfNewer comparisons don't go to ZooKeeper.
+ * Values this node writes are cached under a watch set after the write, so the write's own change event,
+ * which fires the older watch, doesn't drop them.
+ */
 @Slf4j
 public class ClusterCacheDao {
 
     private final CuratorFramework curator;
     private final AppProperties appProperties;
+    private final boolean cacheEnabled;
+    private final Map<String, VersionedKey> cache = new ConcurrentHashMap<>();
 
-    @Inject
     public ClusterCacheDao(CuratorFramework curator, AppProperties appProperties) {
+        this(curator, appProperties, true);
+    }
+
+    @Inject
+    public ClusterCacheDao(CuratorFramework curator, AppProperties appProperties, ZooKeeperProperties zooKeeperProperties) {
+        this(curator, appProperties, zooKeeperProperties.isClusterCacheEnabled());
+    }
+
+    private ClusterCacheDao(CuratorFramework curator, AppProperties appProperties, boolean cacheEnabled) {
         this.curator = curator;
         this.appProperties = appProperties;
+        this.cacheEnabled = cacheEnabled;
+        if (cacheEnabled) {
+            curator.getConnectionStateListenable().addListener((client, newState) -> {
+                if (newState != ConnectionState.CONNECTED) {
+                    clearCache();
+                }
+            });
+        }
     }
 
     private void trace(String nameOrPath, String text, Object... context) {
@@ -133,12 +163,17 @@ public class ClusterCacheDao {
 
     private boolean setValue(String path, ContentPath nextPath, VersionedKey existing) {
         try {
-            curator.setData()
+            Stat stat = curator.setData()
                     .withVersion(existing.getVersion())
                     .forPath(path, nextPath.toBytes());
+            cache.remove(path);
+            if (cacheEnabled) {
+                cacheWritten(path, nextPath, stat.getVersion());
+            }
             return true;
         } catch (KeeperException.BadVersionException e) {
             log.warn("bad version {} {}", path, e.getMessage());
+            cache.remove(path);
             return false;
         } catch (Exception e) {
             log.error("what happened? {}", path, e);
@@ -149,6 +184,7 @@ public class ClusterCacheDao {
     public void delete(String name, String basePath) {
         log.debug("delete {} {}", name, basePath);
         String path = basePath + name;
+        cache.remove(path);
         try {
             curator.delete().deletingChildrenIfNeeded().forPath(path);
         } catch (KeeperException.NoNodeException e) {
@@ -158,21 +194,86 @@ public class ClusterCacheDao {
         }
     }
 
+    /**
+     * Re-arms a watch after a successful write, and caches the written value if nothing has changed it since.
+     */
+    private void cacheWritten(String path, ContentPath nextPath, int version) {
+        try {
+            PathWatch watch = new PathWatch();
+            Stat stat = curator.checkExists().usingWatcher(watch).forPath(path);
+            if (stat != null && stat.getVersion() == version) {
+                cacheUnlessFired(path, new VersionedKey(nextPath, version, watch));
+            }
+        } catch (Exception e) {
+            log.warn("unable to watch {}", path, e);
+        }
+    }
+
     private VersionedKey getMostRecentKey(String path) throws Exception {
+        if (!cacheEnabled) {
+            return readKey(path, null);
+        }
+        VersionedKey cached = cache.get(path);
+        if (cached != null) {
+            return cached;
+        }
+        VersionedKey versionedKey = readKey(path, new PathWatch());
+        cacheUnlessFired(path, versionedKey);
+        return versionedKey;
+    }
+
+    private VersionedKey readKey(String path, PathWatch watch) throws Exception {
         Stat stat = new Stat();
-        byte[] bytes = curator.getData().storingStatIn(stat).forPath(path);
+        byte[] bytes;
+        if (watch != null) {
+            bytes = curator.getData().storingStatIn(stat).usingWatcher(watch).forPath(path);
+        } else {
+            bytes = curator.getData().storingStatIn(stat).forPath(path);
+        }
         Optional<ContentPath> pathOptional = ContentPath.fromUrl(new String(bytes, StandardCharsets.UTF_8));
-        return new VersionedKey(pathOptional.get(), stat.getVersion());
+        return new VersionedKey(pathOptional.get(), stat.getVersion(), watch);
+    }
+
+    private void cacheUnlessFired(String path, VersionedKey versionedKey) {
+        cache.put(path, versionedKey);
+        if (versionedKey.getWatch().fired) {
+            //the watch fired while reading or writing, so the value may already be stale
+            cache.remove(path, versionedKey);
+        }
+    }
+
+    private void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * A one time watch for a single cached value, so events from older watches on the same path leave newer values alone.
+     */
+    private class PathWatch implements Watcher {
+
+        private volatile boolean fired;
+
+        @Override
+        public void process(WatchedEvent event) {
+            fired = true;
+            if (event.getPath() == null) {
+                clearCache();
+            } else {
+                cache.computeIfPresent(event.getPath(), (path, cached) -> cached.getWatch() == this ? null : cached);
+            }
+        }
     }
 
     @Value
     private class VersionedKey {
         private final ContentPath key;
         private final int version;
+        private final PathWatch watch;
 
-        private VersionedKey(ContentPath key, int version) {
+        private VersionedKey(ContentPath key, int version, PathWatch watch) {
             this.key = key;
             this.version = version;
+            this.watch = watch;
         }
 
     }
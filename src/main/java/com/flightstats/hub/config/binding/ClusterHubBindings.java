@@ -46,6 +46,7 @@ import com.flightstats.hub.model.LargeContentUtils;
 import com.flightstats.hub.spoke.SpokeContentDao;
 import com.flightstats.hub.spoke.SpokeStore;
 import com.flightstats.hub.spoke.SpokeTtlEnforcer;
+import com.flightstats.hub.spoke.SpokeTtlWalker;
 import com.flightstats.hub.webhook.Webhook;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
@@ -89,8 +90,9 @@ public class ClusterHubBindings extends AbstractModule {
                                                         SpokeContentDao spokeContentDao,
                                                         StatsdReporter statsdReporter,
                                                         SpokeProperties spokeProperties,
-                                                        TtlEnforcer ttlEnforcer) {
-        return new SpokeTtlEnforcer(SpokeStore.READ, channelService, spokeContentDao, statsdReporter, spokeProperties, ttlEnforcer);
+                                                        TtlEnforcer ttlEnforcer,
+                                                        SpokeTtlWalker spokeTtlWalker) {
+        return new SpokeTtlEnforcer(SpokeStore.READ, channelService, spokeContentDao, statsdReporter, spokeProperties, ttlEnforcer, spokeTtlWalker);
     }
 
     @Named("WRITE")
@@ -99,8 +101,9 @@ public class ClusterHubBindings extends AbstractModule {
                                                          SpokeContentDao spokeContentDao,
                                                          StatsdReporter statsdReporter,
                                                          SpokeProperties spokeProperties,
-                                                         TtlEnforcer ttlEnforcer) {
-        return new SpokeTtlEnforcer(SpokeStore.WRITE, channelService, spokeContentDao, statsdReporter, spokeProperties, ttlEnforcer);
+                                                         TtlEnforcer ttlEnforcer,
+                                                         SpokeTtlWalker spokeTtlWalker) {
+        return new SpokeTtlEnforcer(SpokeStore.WRITE, channelService, spokeContentDao, statsdReporter, spokeProperties, ttlEnforcer, spokeTtlWalker);
     }
 
     @Singleton
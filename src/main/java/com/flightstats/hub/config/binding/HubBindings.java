@@ -29,6 +29,7 @@ import com.flightstats.hub.dao.TagService;
 import com.flightstats.hub.dao.aws.ContentRetriever;
 import com.flightstats.hub.dao.aws.s3Verifier.VerifierConfig;
 import com.flightstats.hub.dao.aws.s3Verifier.VerifierConfigProvider;
+import com.flightstats.hub.events.ChannelSubscriptions;
 import com.flightstats.hub.events.EventsService;
 import com.flightstats.hub.health.HubHealthCheck;
 import com.flightstats.hub.metrics.CustomMetricsLifecycle;
@@ -271,7 +272,8 @@ public class HubBindings extends AbstractModule {
     public FileSpokeStore fileSpokeStoreWrite(SpokeProperties spokeProperties) {
         return new FileSpokeStore(
                 spokeProperties.getPath(SpokeStore.WRITE),
-                spokeProperties.getTtlMinutes(SpokeStore.WRITE));
+                spokeProperties.getTtlMinutes(SpokeStore.WRITE),
+                spokeProperties.getStorageMode(SpokeStore.WRITE));
     }
 
     @Named(READ)
@@ -280,7 +282,8 @@ public class HubBindings extends AbstractModule {
     public FileSpokeStore fileSpokeStoreRead(SpokeProperties spokeProperties) {
         return new FileSpokeStore(
                 spokeProperties.getPath(SpokeStore.READ),
-                spokeProperties.getTtlMinutes(SpokeStore.READ));
+                spokeProperties.getTtlMinutes(SpokeStore.READ),
+                spokeProperties.getStorageMode(SpokeStore.READ));
     }
 
     @Override
@@ -316,6 +319,7 @@ public class HubBindings extends AbstractModule {
         bind(InFlightService.class).asEagerSingleton();
         bind(TagService.class).asEagerSingleton();
         bind(TimeService.class).asEagerSingleton();
+        bind(ChannelSubscriptions.class).asEagerSingleton();
         bind(EventsService.class).asEagerSingleton();
         bind(WebSocketService.class).asEagerSingleton();
 
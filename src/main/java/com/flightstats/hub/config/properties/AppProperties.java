@@ -39,6 +39,14 @@ public class AppProperties {
         return propertiesLoader.getProperty("app.remoteTimeFile", "/home/hub/remoteTime");
     }
 
+    public int getRemoteTimeRefreshSeconds() {
+        return propertiesLoader.getProperty("app.remoteTime.refreshSeconds", 10);
+    }
+
+    public int getRemoteTimeMaxAgeSeconds() {
+        return propertiesLoader.getProperty("app.remoteTime.maxAgeSeconds", 60);
+    }
+
     public String getAppBirthday() {
         return propertiesLoader.getProperty("app.birthDay", "2015/01/01");
     }
@@ -51,6 +59,14 @@ public class AppProperties {
         return propertiesLoader.getProperty("hub.read.only", false);
     }
 
+    public boolean isSubscriptionBusEnabled() {
+        return propertiesLoader.getProperty("app.subscription.bus", true);
+    }
+
+    public int getSubscriptionQueueSize() {
+        return propertiesLoader.getProperty("app.subscription.queue", 1000);
+    }
+
     public int getMinPostTimeMillis() {
         return propertiesLoader.getProperty("app.minPostTimeMillis", 5);
     }
@@ -83,6 +99,14 @@ public class AppProperties {
         return propertiesLoader.getProperty("traces.limit", 50);
     }
 
+    public double getTracesSampleRate() {
+        return propertiesLoader.getProperty("traces.sample.rate", 0.1);
+    }
+
+    public long getTracesRecordAfterMillis() {
+        return propertiesLoader.getProperty("traces.record.after.millis", 1000);
+    }
+
     public String getLastContentPathTracing() {
         return propertiesLoader.getProperty("LastContentPathTracing", "channelToTrace");
     }
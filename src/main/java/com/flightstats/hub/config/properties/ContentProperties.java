@@ -15,6 +15,10 @@ public class ContentProperties {
         return propertiesLoader.getProperty("app.maxPayloadSizeMB", 40);
     }
 
+    public boolean isBulkStreamingParser() {
+        return propertiesLoader.getProperty("app.bulk.streaming", false);
+    }
+
     public long getLargePayload() {
         return propertiesLoader.getProperty("app.large.payload.MB", 40) * 1024 * 1024;
     }
@@ -31,8 +35,16 @@ public class ContentProperties {
         return propertiesLoader.getProperty("app.stable_seconds", 5);
     }
 
+    public boolean isLatestCoalesced() {
+        return propertiesLoader.getProperty("app.latest.coalesce", false);
+    }
+
     public int getQueryMergeMaxWaitInMins() {
         return propertiesLoader.getProperty("query.merge.max.wait.minutes", 2);
     }
 
+    public int getTagQueryThreads() {
+        return propertiesLoader.getProperty("tag.query.threads", 32);
+    }
+
 }
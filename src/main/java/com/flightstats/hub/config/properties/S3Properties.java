@@ -58,10 +58,38 @@ public class S3Properties {
         return propertiesLoader.getProperty("s3.writeQueueSize", 40000);
     }
 
+    public String getWriteQueueJournalPath() {
+        return propertiesLoader.getProperty("s3.writeQueue.journal.path", "");
+    }
+
+    public boolean isWriteQueueJournalPayloads() {
+        return propertiesLoader.getProperty("s3.writeQueue.journal.payloads", true);
+    }
+
+    public long getWriteQueueJournalSegmentBytes() {
+        return propertiesLoader.getProperty("s3.writeQueue.journal.segmentMB", 64) * 1024L * 1024L;
+    }
+
     public int getWriteQueueThreadCount() {
         return propertiesLoader.getProperty("s3.writeQueueThreads", 20);
     }
 
+    public int getBatchCacheMemoryMB() {
+        return propertiesLoader.getProperty("s3.batch.cache.memoryMB", 64);
+    }
+
+    public String getBatchCachePath() {
+        return propertiesLoader.getProperty("s3.batch.cache.path", "");
+    }
+
+    public int getBatchCacheDiskMB() {
+        return propertiesLoader.getProperty("s3.batch.cache.diskMB", 1024);
+    }
+
+    public int getBatchCacheMinutes() {
+        return propertiesLoader.getProperty("s3.batch.cache.minutes", 60);
+    }
+
     public int getMaxConnections() {
         return propertiesLoader.getProperty("s3.maxConnections", 50);
     }
@@ -98,12 +126,36 @@ public class S3Properties {
         return propertiesLoader.getProperty("channel.enforceTTL", false);
     }
 
+    public int getListThreadCount() {
+        return propertiesLoader.getProperty("s3.listThreads", 20);
+    }
+
+    public int getDeleteThreadCount() {
+        return propertiesLoader.getProperty("s3.delete.threads", 4);
+    }
+
+    public double getDeletesPerSecond() {
+        return propertiesLoader.getProperty("s3.delete.maxPerSecond", 3000.0);
+    }
+
     public int getLargeThreadCount() {
         return propertiesLoader.getProperty("s3.large.threads", 3);
     }
 
+    public int getLargeChunkInMB() {
+        return Math.max(5, propertiesLoader.getProperty("s3.large.chunkMB", 8));
+    }
+
     public int getMaxChunkInMB() {
         return propertiesLoader.getProperty("s3.maxChunkMB", 40);
     }
 
+    public int getLargeUploadThreadCount() {
+        return propertiesLoader.getProperty("s3.large.uploadThreads", 20);
+    }
+
+    public int getLargeBufferCount() {
+        return propertiesLoader.getProperty("s3.large.buffers", 8);
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.flightstats.hub.config.properties;
 
+import com.flightstats.hub.spoke.SpokeStorageMode;
 import com.flightstats.hub.spoke.SpokeStore;
 import org.apache.commons.lang3.StringUtils;
 
@@ -31,6 +32,12 @@ public class SpokeProperties {
         return propertiesLoader.getProperty(property, propertiesLoader.getProperty(fallbackProperty, defaultPath));
     }
 
+    public SpokeStorageMode getStorageMode(SpokeStore spokeStore) {
+        String property = "spoke." + spokeStore + ".storageMode";
+        String fallbackProperty = "spoke.storageMode";
+        return SpokeStorageMode.from(propertiesLoader.getProperty(property, propertiesLoader.getProperty(fallbackProperty, "file")));
+    }
+
     public String getStoragePath() {
         String storagePath = propertiesLoader.getProperty("storage.path", "/file");
         return StringUtils.appendIfMissing(storagePath, "/");
@@ -44,8 +51,24 @@ public class SpokeProperties {
         return propertiesLoader.getProperty("spoke.enforceTTL", true);
     }
 
+    public double getTtlDirectoriesPerSecond() {
+        return propertiesLoader.getProperty("spoke.ttl.directoriesPerSecond", 100);
+    }
+
     public int getWriteFactor() {
         return propertiesLoader.getProperty("spoke.write.factor", 3);
     }
 
+    public boolean isAsyncWriteClient() {
+        return "async".equals(propertiesLoader.getProperty("spoke.write.client", "jersey"));
+    }
+
+    public int getAsyncWriteMaxConnections() {
+        return propertiesLoader.getProperty("spoke.write.client.maxConnections", 64);
+    }
+
+    public int getAsyncWriteMaxThreads() {
+        return propertiesLoader.getProperty("spoke.write.client.maxThreads", 32);
+    }
+
 }
@@ -47,4 +47,16 @@ public class SystemProperties {
         return propertiesLoader.getProperty(    "http.idle_timeout", 30 * 1000);
     }
 
+    public int getHttp2CleartextBindPort() {
+        return propertiesLoader.getProperty("http.h2c.bind_port", -1);
+    }
+
+    public int getHttp2BindPort() {
+        return propertiesLoader.getProperty("http.h2.bind_port", -1);
+    }
+
+    public int getHttp2MaxConcurrentStreams() {
+        return propertiesLoader.getProperty("http.h2.max_concurrent_streams", 128);
+    }
+
 }
@@ -39,4 +39,16 @@ public class WebhookProperties {
         return propertiesLoader.getProperty("webhook.shutdown.threads", 100);
     }
 
+    public boolean isCheckpointBatched() {
+        return propertiesLoader.getProperty("webhook.checkpoint.batched", false);
+    }
+
+    public int getCheckpointItems() {
+        return propertiesLoader.getProperty("webhook.checkpoint.items", 100);
+    }
+
+    public int getCheckpointMillis() {
+        return propertiesLoader.getProperty("webhook.checkpoint.millis", 1000);
+    }
+
 }
\ No newline at end of file
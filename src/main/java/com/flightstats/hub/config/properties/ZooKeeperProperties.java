@@ -31,6 +31,10 @@ public class ZooKeeperProperties {
         return propertiesLoader.getProperty("watchManager.threads", 10);
     }
 
+    public boolean isClusterCacheEnabled() {
+        return propertiesLoader.getProperty("zookeeper.cache.enabled", true);
+    }
+
     public boolean isSingleServerModeEnabled() {
         String runMode = propertiesLoader.getProperty("runSingleZookeeperInternally", "");
         if ("singleNode".equals(runMode)) {
@@ -21,6 +21,10 @@ import com.google.common.io.Resources;
 import javax.inject.Inject;
 import com.google.inject.Injector;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
 import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.HttpConfiguration;
@@ -28,6 +32,7 @@ import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.SecureRequestCustomizer;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.websocket.jsr356.server.deploy.WebSocketServerContainerInitializer;
@@ -45,6 +50,9 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 @Slf4j
 public class JettyServer {
@@ -72,18 +80,7 @@ public class JettyServer {
         log.info("Hub server starting with hub.type {}", appProperties.getHubType());
 
         Server server = new Server();
-        HttpConfiguration httpConfig = new HttpConfiguration();
-        SslContextFactory sslContextFactory = getSslContextFactory();
-        if (null != sslContextFactory) {
-            httpConfig.addCustomizer(new SecureRequestCustomizer());
-        }
-
-        ConnectionFactory connectionFactory = new HttpConnectionFactory(httpConfig);
-        ServerConnector serverConnector = new ServerConnector(server, sslContextFactory, connectionFactory);
-        serverConnector.setHost(systemProperties.getHttpBindIp());
-        serverConnector.setPort(localHostProperties.getPort());
-        serverConnector.setIdleTimeout(systemProperties.getHttpIdleTimeInMillis());
-        server.setConnectors(new Connector[]{serverConnector});
+        server.setConnectors(buildConnectors(server, getSslContextFactory(), getSslContextFactory()));
 
         // ensure HK2 (Jetty's internal DI system) can pull instances from guice
         GuiceToHK2BridgeInitializer diBridge = new GuiceToHK2BridgeInitializer(injector);
@@ -116,6 +113,69 @@ public class JettyServer {
         return server;
     }
 
+    /**
+     * The HTTP/1.1 connector on the hub's port, plus the optional HTTP/2 connectors for hub to hub traffic.
+     * The HTTP/2 TLS connector prefers HTTP/2 ciphers, so it needs its own http2SslContextFactory.
+     */
+    Connector[] buildConnectors(Server server, SslContextFactory sslContextFactory, SslContextFactory http2SslContextFactory) {
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        if (null != sslContextFactory) {
+            httpConfig.addCustomizer(new SecureRequestCustomizer());
+        }
+        HttpConnectionFactory http1 = new HttpConnectionFactory(httpConfig);
+        List<Connector> connectors = new ArrayList<>();
+        connectors.add(buildConnector(server, localHostProperties.getPort(), sslContextFactory, http1));
+
+        int cleartextPort = systemProperties.getHttp2CleartextBindPort();
+        if (cleartextPort >= 0) {
+            HTTP2CServerConnectionFactory h2c = new HTTP2CServerConnectionFactory(new HttpConfiguration());
+            h2c.setMaxConcurrentStreams(systemProperties.getHttp2MaxConcurrentStreams());
+            connectors.add(buildConnector(server, cleartextPort, null, new HttpConnectionFactory(new HttpConfiguration()), h2c));
+            log.info("accepting h2c on port {}", cleartextPort);
+        }
+
+        int tlsPort = systemProperties.getHttp2BindPort();
+        if (tlsPort >= 0) {
+            if (null == http2SslContextFactory) {
+                log.warn("ignoring http.h2.bind_port {}, HTTP/2 over TLS requires app.encrypted", tlsPort);
+            } else {
+                buildAlpn(http1).ifPresent(alpn -> {
+                    http2SslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+                    http2SslContextFactory.setUseCipherSuitesOrder(true);
+                    HTTP2ServerConnectionFactory h2 = new HTTP2ServerConnectionFactory(httpConfig);
+                    h2.setMaxConcurrentStreams(systemProperties.getHttp2MaxConcurrentStreams());
+                    SslConnectionFactory ssl = new SslConnectionFactory(http2SslContextFactory, alpn.getProtocol());
+                    connectors.add(buildConnector(server, tlsPort, null, ssl, alpn, h2, new HttpConnectionFactory(httpConfig)));
+                    log.info("accepting h2 on port {}", tlsPort);
+                });
+            }
+        }
+        return connectors.toArray(new Connector[0]);
+    }
+
+    /**
+     * On Java 8, ALPN needs the alpn-boot jar matching the JVM on the boot class path.
+     * Without it, the HTTP/2 TLS connector is skipped, and hubs can still use h2c on http.h2c.bind_port.
+     */
+    private Optional<ALPNServerConnectionFactory> buildAlpn(HttpConnectionFactory http1) {
+        try {
+            ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory();
+            alpn.setDefaultProtocol(http1.getProtocol());
+            return Optional.of(alpn);
+        } catch (IllegalStateException e) {
+            log.warn("ignoring http.h2.bind_port, ALPN is unavailable; use http.h2c.bind_port for HTTP/2 instead", e);
+            return Optional.empty();
+        }
+    }
+
+    private ServerConnector buildConnector(Server server, int port, SslContextFactory sslContextFactory, ConnectionFactory... factories) {
+        ServerConnector serverConnector = new ServerConnector(server, sslContextFactory, factories);
+        serverConnector.setHost(systemProperties.getHttpBindIp());
+        serverConnector.setPort(port);
+        serverConnector.setIdleTimeout(systemProperties.getHttpIdleTimeInMillis());
+        return serverConnector;
+    }
+
     private ResourceConfig buildResourceConfig() {
         ResourceConfig config = new ResourceConfig();
         config.register(new ObjectMapperResolver(HubBindings.objectMapper()));
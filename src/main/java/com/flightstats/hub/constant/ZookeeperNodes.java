@@ -12,4 +12,12 @@ public class ZookeeperNodes {
     public static final String WEBHOOK_LEADER = "/WebhookLeader";
     public static final String LAST_SINGLE_VERIFIED = "/S3VerifierSingleLastVerified/";
     public static final String LAST_COMMITTED_CONTENT_KEY = "/ChannelLatestUpdated/";
+    /**
+     * S3_DELETE_CHECKPOINT is the last key of an unfinished S3 deletion, everything before it has been deleted.
+     */
+    public static final String S3_DELETE_CHECKPOINT = "/S3DeleteCheckpoint/";
+    /**
+     * S3_DELETE_LIMIT is the limit key of an unfinished S3 deletion, only a deletion with the same limit resumes its checkpoint.
+     */
+    public static final String S3_DELETE_LIMIT = "/S3DeleteLimit/";
 }
@@ -140,6 +140,7 @@ public class ChannelService {
             Traces traces = ActiveTraces.getLocal();
             traces.add("ContentService.insert");
             try {
+                content.setCodec(channelConfig.getCodec());
                 content.packageStream();
                 checkZeroBytes(content, channelConfig);
                 traces.add("ContentService.insert marshalled");
@@ -179,6 +180,7 @@ public class ChannelService {
             throw new InvalidRequestException(msg);
         }
         boolean insert = inFlightService.inFlight(() -> {
+            content.setCodec(channelConfig.getCodec());
             content.packageStream();
             checkZeroBytes(content, channelConfig);
             return contentService.historicalInsert(normalizedChannelName, content);
@@ -202,8 +204,11 @@ public class ChannelService {
         }
         long start = System.currentTimeMillis();
         Collection<ContentKey> contentKeys = inFlightService.inFlight(() -> {
-            MultiPartParser multiPartParser = new MultiPartParser(bulkContent, contentProperties.getMaxPayloadSizeInMB());
+            MultiPartParser multiPartParser = new MultiPartParser(bulkContent, contentProperties.getMaxPayloadSizeInMB(),
+                    contentProperties.isBulkStreamingParser());
             multiPartParser.parse();
+            ContentCodec codec = contentRetriever.getExpectedCachedChannelConfig(channel).getCodec();
+            bulkContent.getItems().forEach(item -> item.setCodec(codec));
             return contentService.insert(bulkContent);
         });
         statsdReporter.insert(channel, start, BULK, bulkContent.getItems().size(), bulkContent.getSize());
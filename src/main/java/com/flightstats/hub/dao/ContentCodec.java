@@ -0,0 +1,110 @@
+package com.flightstats.hub.dao;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * How {@link ContentMarshaller} compresses an item's payload, chosen per channel with {@code compression}.
+ * <p>
+ * ZIP is the original format, and is still written by default.  The other codecs write a four byte marker,
+ * "HUB" and the codec id, which can never start a zip file, so items in any format can be read back
+ * without knowing which codec the channel was using when they were written.
+ */
+public enum ContentCodec {
+
+    ZIP(0, Deflater.BEST_COMPRESSION),
+    NONE(1, Deflater.NO_COMPRESSION),
+    FAST(2, Deflater.BEST_SPEED),
+    DEFLATE(3, Deflater.DEFAULT_COMPRESSION);
+
+    static final byte[] MARKER = {'H', 'U', 'B'};
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final byte id;
+    private final int level;
+
+    ContentCodec(int id, int level) {
+        this.id = (byte) id;
+        this.level = level;
+    }
+
+    public static boolean isValid(String name) {
+        return Arrays.stream(values()).anyMatch(codec -> codec.name().equalsIgnoreCase(name));
+    }
+
+    /**
+     * @return the named codec, or ZIP when the name is blank or unknown
+     */
+    public static ContentCodec fromName(String name) {
+        if (StringUtils.isBlank(name) || !isValid(name)) {
+            return ZIP;
+        }
+        return valueOf(name.toUpperCase());
+    }
+
+    /**
+     * @return the codec named by the marker at the start of bytes, or empty for the original zip format
+     */
+    static Optional<ContentCodec> fromMarker(byte[] bytes) {
+        if (bytes.length <= MARKER.length) {
+            return Optional.empty();
+        }
+        for (int i = 0; i < MARKER.length; i++) {
+            if (bytes[i] != MARKER[i]) {
+                return Optional.empty();
+            }
+        }
+        byte id = bytes[MARKER.length];
+        return Arrays.stream(values()).filter(codec -> codec.id == id).findFirst();
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    void writeMarker(OutputStream out) throws IOException {
+        out.write(MARKER);
+        out.write(id);
+    }
+
+    OutputStream encode(OutputStream out) {
+        if (this == NONE) {
+            return out;
+        }
+        return new DeflaterOutputStream(out, new Deflater(level), BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    def.end();
+                }
+            }
+        };
+    }
+
+    InputStream decode(InputStream in) {
+        if (this == NONE) {
+            return in;
+        }
+        return new InflaterInputStream(in, new Inflater(), BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inf.end();
+                }
+            }
+        };
+    }
+}
@@ -30,14 +30,18 @@ public class ContentKeyUtil {
     public static Stream<ContentKey> enforceLimits(Query query, Stream<ContentKey> stream) {
         ChannelConfig channelConfig = query.getChannelConfig();
         if (!channelConfig.isHistorical()) {
-            stream = stream.filter(key -> !key.getTime().isBefore(channelConfig.getTtlTime()));
+            long ttlMillis = channelConfig.getTtlTime().getMillis();
+            stream = stream.filter(key -> key.getMillis() >= ttlMillis);
         } else if (query.getEpoch().equals(Epoch.IMMUTABLE)) {
-            stream = stream.filter(key -> key.getTime().isAfter(channelConfig.getMutableTime()));
+            long mutableMillis = channelConfig.getMutableTime().getMillis();
+            stream = stream.filter(key -> key.getMillis() > mutableMillis);
         } else if (query.getEpoch().equals(Epoch.MUTABLE)) {
-            stream = stream.filter(key -> !key.getTime().isAfter(channelConfig.getMutableTime()));
+            long mutableMillis = channelConfig.getMutableTime().getMillis();
+            stream = stream.filter(key -> key.getMillis() <= mutableMillis);
         }
         if (query.isStable()) {
-            stream = stream.filter(key -> !key.getTime().isAfter(query.getChannelStable()));
+            long stableMillis = query.getChannelStable().getMillis();
+            stream = stream.filter(key -> key.getMillis() <= stableMillis);
         }
         return stream;
     }
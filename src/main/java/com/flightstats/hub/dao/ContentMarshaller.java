@@ -9,8 +9,12 @@ import com.google.common.io.ByteStreams;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.zip.Deflater;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Optional;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -18,11 +22,37 @@ import java.util.zip.ZipOutputStream;
 public class ContentMarshaller {
 
     private static final ObjectMapper mapper = new ObjectMapper();
+    private static final int SIZE_OFFSET = ContentCodec.MARKER.length + 1;
 
     public static byte[] toBytes(Content content) throws IOException {
+        return toBytes(content, content.getCodec());
+    }
+
+    public static byte[] toBytes(Content content, ContentCodec codec) throws IOException {
+        if (codec == null || codec == ContentCodec.ZIP) {
+            return toZipBytes(content);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        codec.writeMarker(baos);
+        DataOutputStream header = new DataOutputStream(baos);
+        header.writeLong(0);
+        byte[] meta = getMetaData(content).getBytes();
+        header.writeInt(meta.length);
+        header.write(meta);
+        header.flush();
+        OutputStream payload = codec.encode(baos);
+        long bytesCopied = ByteStreams.copy(content.getStream(), payload);
+        payload.close();
+        content.setSize(bytesCopied);
+        byte[] bytes = baos.toByteArray();
+        ByteBuffer.wrap(bytes, SIZE_OFFSET, Long.BYTES).putLong(bytesCopied);
+        return bytes;
+    }
+
+    private static byte[] toZipBytes(Content content) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         ZipOutputStream zipOut = new ZipOutputStream(baos);
-        zipOut.setLevel(Deflater.BEST_COMPRESSION);
+        zipOut.setLevel(ContentCodec.ZIP.getLevel());
         zipOut.putNextEntry(new ZipEntry("meta"));
         String meta = getMetaData(content);
         zipOut.write(meta.getBytes());
@@ -43,6 +73,25 @@ public class ContentMarshaller {
     }
 
     public static Content toContent(byte[] read, ContentKey key) throws IOException {
+        Optional<ContentCodec> codec = ContentCodec.fromMarker(read);
+        if (!codec.isPresent()) {
+            return toContentFromZip(read, key);
+        }
+        ByteArrayInputStream in = new ByteArrayInputStream(read);
+        DataInputStream header = new DataInputStream(in);
+        header.skipBytes(SIZE_OFFSET);
+        long size = header.readLong();
+        byte[] meta = new byte[header.readInt()];
+        header.readFully(meta);
+        Content.Builder builder = Content.builder()
+                .withContentKey(key)
+                .withCodec(codec.get())
+                .withSize(size);
+        setMetaData(new String(meta), builder);
+        return builder.withStream(codec.get().decode(in)).build();
+    }
+
+    private static Content toContentFromZip(byte[] read, ContentKey key) throws IOException {
         ZipInputStream zipStream = new ZipInputStream(new ByteArrayInputStream(read));
         zipStream.getNextEntry();
         byte[] bytes = ByteStreams.toByteArray(zipStream);
@@ -6,7 +6,9 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.flightstats.hub.channel.BulkBuilder;
 import com.flightstats.hub.channel.ChannelEarliestResource;
 import com.flightstats.hub.channel.LinkBuilder;
+import com.flightstats.hub.config.properties.ContentProperties;
 import com.flightstats.hub.dao.aws.ContentRetriever;
+import com.flightstats.hub.exception.FailedQueryException;
 import com.flightstats.hub.metrics.ActiveTraces;
 import com.flightstats.hub.metrics.Traces;
 import com.flightstats.hub.model.ChannelConfig;
@@ -17,7 +19,10 @@ import com.flightstats.hub.model.DirectionQuery;
 import com.flightstats.hub.model.Epoch;
 import com.flightstats.hub.model.Location;
 import com.flightstats.hub.model.TimeQuery;
+import com.flightstats.hub.util.RuntimeInterruptedException;
 import com.flightstats.hub.util.TimeUtil;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
@@ -29,11 +34,23 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 import static javax.ws.rs.core.Response.Status.NOT_FOUND;
 import static javax.ws.rs.core.Response.Status.SEE_OTHER;
@@ -47,18 +64,24 @@ public class TagService {
     private final LinkBuilder linkBuilder;
     private final BulkBuilder bulkBuilder;
     private final ObjectMapper objectMapper;
+    private final ContentProperties contentProperties;
+    private final ExecutorService executorService;
 
     @Inject
     public TagService(ChannelService channelService,
                       ContentRetriever contentRetriever,
                       LinkBuilder linkBuilder,
                       BulkBuilder bulkBuilder,
-                      ObjectMapper objectMapper) {
+                      ObjectMapper objectMapper,
+                      ContentProperties contentProperties) {
         this.channelService = channelService;
         this.contentRetriever = contentRetriever;
         this.linkBuilder = linkBuilder;
         this.bulkBuilder = bulkBuilder;
         this.objectMapper = objectMapper;
+        this.contentProperties = contentProperties;
+        this.executorService = Executors.newFixedThreadPool(contentProperties.getTagQueryThreads(),
+                new ThreadFactoryBuilder().setNameFormat("TagService-%d").setDaemon(true).build());
     }
 
     public Iterable<ChannelConfig> getChannels(String tag) {
@@ -70,70 +93,152 @@ public class TagService {
     }
 
     public SortedSet<ChannelContentKey> queryByTime(TimeQuery timeQuery) {
-        Iterable<ChannelConfig> channels = getChannels(timeQuery.getTagName());
-        SortedSet<ChannelContentKey> orderedKeys = Collections.synchronizedSortedSet(new TreeSet<>());
-        for (ChannelConfig channel : channels) {
-            final Collection<ContentKey> contentKeys = contentRetriever.queryByTime(timeQuery.withChannelName(channel.getDisplayName()));
-            for (ContentKey contentKey : contentKeys) {
-                orderedKeys.add(new ChannelContentKey(channel.getDisplayName(), contentKey));
+        Map<String, SortedSet<ContentKey>> keysByChannel = queryChannels(timeQuery.getTagName(),
+                channel -> contentRetriever.queryByTime(timeQuery.withChannelName(channel)));
+        return merge(keysByChannel, Integer.MAX_VALUE, true);
+    }
+
+    public SortedSet<ChannelContentKey> getKeys(DirectionQuery query) {
+        Traces traces = ActiveTraces.getLocal();
+        Map<String, SortedSet<ContentKey>> keysByChannel = queryChannels(query.getTagName(), channel -> {
+            traces.add("query for channel", channel);
+            SortedSet<ContentKey> contentKeys = contentRetriever.query(query.withChannelName(channel));
+            traces.add("query size for channel", channel, contentKeys.size());
+            return contentKeys;
+        });
+        return merge(keysByChannel, query.getCount(), query.isNext());
+    }
+
+    public Optional<ChannelContentKey> getLatest(DirectionQuery tagQuery) {
+        Map<String, Optional<ContentKey>> latestByChannel = queryChannels(tagQuery.getTagName(),
+                channel -> contentRetriever.getLatest(tagQuery.withChannelName(channel)));
+        ChannelContentKey latest = null;
+        for (Map.Entry<String, Optional<ContentKey>> entry : latestByChannel.entrySet()) {
+            if (entry.getValue().isPresent()) {
+                ChannelContentKey channelContentKey = new ChannelContentKey(entry.getKey(), entry.getValue().get());
+                if (latest == null || channelContentKey.compareTo(latest) > 0) {
+                    latest = channelContentKey;
+                }
             }
         }
+        return Optional.ofNullable(latest);
+    }
+
+    public SortedSet<ChannelContentKey> getEarliest(DirectionQuery tagQuery) {
+        Traces traces = ActiveTraces.getLocal();
+        traces.add("TagService.getEarliest", tagQuery.getTagName());
+        Map<String, SortedSet<ContentKey>> keysByChannel = queryChannels(tagQuery.getTagName(), channel -> {
+            DirectionQuery query = ChannelEarliestResource.getDirectionQuery(channel, tagQuery.getCount(),
+                    tagQuery.isStable(), tagQuery.getLocation().name(), tagQuery.getEpoch().name());
+            return contentRetriever.query(query);
+        });
+        SortedSet<ChannelContentKey> orderedKeys = merge(keysByChannel, tagQuery.getCount(), true);
+        traces.add("TagService.getEarliest completed", orderedKeys);
         return orderedKeys;
     }
 
-    public SortedSet<ChannelContentKey> getKeys(DirectionQuery query) {
-        Iterable<ChannelConfig> channels = getChannels(query.getTagName());
-        SortedSet<ChannelContentKey> orderedKeys = Collections.synchronizedSortedSet(new TreeSet<>());
+    /**
+     * Runs channelQuery for each of the tag's channels concurrently.
+     *
+     * @return the results in channel order
+     */
+    private <T> Map<String, T> queryChannels(String tag, Function<String, T> channelQuery) {
+        List<String> channels = new ArrayList<>();
+        for (ChannelConfig channel : getChannels(tag)) {
+            channels.add(channel.getDisplayName());
+        }
+        Map<String, T> results = new LinkedHashMap<>();
+        if (channels.size() == 1) {
+            results.put(channels.get(0), channelQuery.apply(channels.get(0)));
+            return results;
+        }
         Traces traces = ActiveTraces.getLocal();
-        for (ChannelConfig channel : channels) {
-            traces.add("query for channel", channel.getDisplayName());
-            final Collection<ContentKey> contentKeys = contentRetriever.query(query.withChannelName(channel.getDisplayName()));
-            traces.add("query size for channel", channel.getDisplayName(), contentKeys.size());
-            for (ContentKey contentKey : contentKeys) {
-                orderedKeys.add(new ChannelContentKey(channel.getDisplayName(), contentKey));
+        Map<String, Future<T>> futures = new LinkedHashMap<>();
+        for (String channel : channels) {
+            futures.put(channel, executorService.submit(() -> {
+                ActiveTraces.setLocal(traces);
+                try {
+                    return channelQuery.apply(channel);
+                } finally {
+                    ActiveTraces.clearLocal();
+                }
+            }));
+        }
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(contentProperties.getQueryMergeMaxWaitInMins());
+        try {
+            for (Map.Entry<String, Future<T>> entry : futures.entrySet()) {
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                results.put(entry.getKey(), entry.getValue().get(remaining, TimeUnit.MILLISECONDS));
             }
+            return results;
+        } catch (InterruptedException e) {
+            throw new RuntimeInterruptedException(e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new FailedQueryException("unable to query tag " + tag + " " + e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            traces.add("timed out querying tag", tag);
+            throw new FailedQueryException("timed out querying tag " + tag);
+        } finally {
+            futures.values().forEach(future -> future.cancel(true));
         }
+    }
 
-        Stream<ChannelContentKey> stream = orderedKeys.stream();
-        if (!query.isNext()) {
-            Collection<ChannelContentKey> contentKeys = new TreeSet<>(Collections.reverseOrder());
-            contentKeys.addAll(orderedKeys);
-            stream = contentKeys.stream();
+    /**
+     * Merges the sorted keys of each channel, stopping after limit keys.
+     *
+     * @param next merge from the earliest keys when true, otherwise from the latest
+     */
+    static SortedSet<ChannelContentKey> merge(Map<String, SortedSet<ContentKey>> keysByChannel, int limit, boolean next) {
+        Comparator<ChannelContentKey> order = next ? Comparator.naturalOrder() : Comparator.reverseOrder();
+        PriorityQueue<ChannelCursor> heads = new PriorityQueue<>(Math.max(1, keysByChannel.size()),
+                (cursor, other) -> order.compare(cursor.head, other.head));
+        for (Map.Entry<String, SortedSet<ContentKey>> entry : keysByChannel.entrySet()) {
+            ChannelCursor cursor = new ChannelCursor(entry.getKey(), iterator(entry.getValue(), next));
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
         }
-
-        return stream
-                .limit(query.getCount())
-                .collect(Collectors.toCollection(TreeSet::new));
+        SortedSet<ChannelContentKey> merged = new TreeSet<>();
+        while (merged.size() < limit && !heads.isEmpty()) {
+            ChannelCursor cursor = heads.poll();
+            merged.add(cursor.head);
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
     }
 
-    public Optional<ChannelContentKey> getLatest(DirectionQuery tagQuery) {
-        Iterable<ChannelConfig> channels = getChannels(tagQuery.getTagName());
-        SortedSet<ChannelContentKey> orderedKeys = Collections.synchronizedSortedSet(new TreeSet<>());
-        for (ChannelConfig channel : channels) {
-            Optional<ContentKey> contentKey = contentRetriever.getLatest(tagQuery.withChannelName(channel.getDisplayName()));
-            contentKey.ifPresent(contentKey1 -> orderedKeys.add(new ChannelContentKey(channel.getDisplayName(), contentKey1)));
+    private static Iterator<ContentKey> iterator(SortedSet<ContentKey> keys, boolean next) {
+        if (next) {
+            return keys.iterator();
         }
-        if (orderedKeys.isEmpty()) {
-            return Optional.empty();
-        } else {
-            return Optional.of(orderedKeys.last());
+        if (keys instanceof NavigableSet) {
+            return ((NavigableSet<ContentKey>) keys).descendingIterator();
         }
+        List<ContentKey> reversed = new ArrayList<>(keys);
+        Collections.reverse(reversed);
+        return reversed.iterator();
     }
 
-    public SortedSet<ChannelContentKey> getEarliest(DirectionQuery tagQuery) {
-        Iterable<ChannelConfig> channels = getChannels(tagQuery.getTagName());
-        Traces traces = ActiveTraces.getLocal();
-        traces.add("TagService.getEarliest", tagQuery.getTagName());
-        SortedSet<ChannelContentKey> orderedKeys = Collections.synchronizedSortedSet(new TreeSet<>());
-        for (ChannelConfig channel : channels) {
-            DirectionQuery query = ChannelEarliestResource.getDirectionQuery(channel.getDisplayName(), tagQuery.getCount(),
-                    tagQuery.isStable(), tagQuery.getLocation().name(), tagQuery.getEpoch().name());
-            for (ContentKey contentKey : contentRetriever.query(query)) {
-                orderedKeys.add(new ChannelContentKey(channel.getDisplayName(), contentKey));
+    private static class ChannelCursor {
+        private final String channel;
+        private final Iterator<ContentKey> iterator;
+        private ChannelContentKey head;
+
+        private ChannelCursor(String channel, Iterator<ContentKey> iterator) {
+            this.channel = channel;
+            this.iterator = iterator;
+        }
+
+        private boolean advance() {
+            if (iterator.hasNext()) {
+                head = new ChannelContentKey(channel, iterator.next());
+                return true;
             }
+            return false;
         }
-        traces.add("TagService.getEarliest completed", orderedKeys);
-        return orderedKeys;
     }
 
     public Optional<Content> getValue(ItemRequest itemRequest) {
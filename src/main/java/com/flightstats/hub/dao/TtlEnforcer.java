@@ -1,7 +1,7 @@
 package com.flightstats.hub.dao;
 
 import com.flightstats.hub.model.ChannelConfig;
-import com.flightstats.hub.util.Commander;
+import com.flightstats.hub.spoke.SpokeTtlWalker;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Inject;
@@ -17,15 +17,16 @@ import java.util.stream.Stream;
 public class TtlEnforcer {
 
     private static final String LOST_AND_FOUND_DIR = "lost+found";
-    private final Commander commander;
+    private final SpokeTtlWalker spokeTtlWalker;
 
     @Inject
-    public TtlEnforcer(Commander commander) {
-        this.commander = commander;
+    public TtlEnforcer(SpokeTtlWalker spokeTtlWalker) {
+        this.spokeTtlWalker = spokeTtlWalker;
     }
 
     public void deleteFilteredPaths(String path, ChannelService channelService,
-                                    Consumer<ChannelConfig> channelConsumer) {
+                                    Consumer<ChannelConfig> channelConsumer,
+                                    SpokeTtlWalker.Listener listener) {
         try {
             String[] pathArray = Optional.ofNullable(new File(path).list()).orElse(new String[]{});
             Collection<ChannelConfig> channels = channelService.getChannels();
@@ -37,9 +38,9 @@ public class TtlEnforcer {
                     .map(String::toLowerCase)
                     .filter(channel -> !channelSet.contains(channel.toLowerCase()) && !channel.equals(LOST_AND_FOUND_DIR))
                     .forEach(dir -> {
-                        String dirPath = path + "/" + dir;
+                        File dirPath = new File(path, dir);
                         log.info("removing dir without channel {}", dirPath);
-                        commander.runInBash("rm " + " -rf " + dirPath, 1);
+                        spokeTtlWalker.delete(dirPath, listener);
                     });
         } catch (Exception e) {
             log.error("unable to run {}", path, e);
@@ -84,6 +84,7 @@ public class ClusterContentService implements ContentService {
     private final ContentProperties contentProperties;
     private final SpokeProperties spokeProperties;
     private final ScheduledExecutorService zkCacheStateUpdateExecutor;
+    private final LatestKeyPublisher latestKeyPublisher;
 
     @Inject
     public ClusterContentService(
@@ -118,6 +119,11 @@ public class ClusterContentService implements ContentService {
         this.spokeProperties = spokeProperties;
         this.executorService = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("ClusterContentService-%d").build());
         this.zkCacheStateUpdateExecutor = Executors.newScheduledThreadPool(4, new ThreadFactoryBuilder().setNameFormat("ZK-Latest-Updater-%d").build());
+        if (contentProperties.isLatestCoalesced()) {
+            this.latestKeyPublisher = new LatestKeyPublisher(zkCacheStateUpdateExecutor, latestContentCache, contentProperties.getStableSeconds());
+        } else {
+            this.latestKeyPublisher = null;
+        }
     }
 
     private SortedSet<ContentKey> query(Function<ContentDao, SortedSet<ContentKey>> daoQuery, List<ContentDao> contentDaos) {
@@ -158,7 +164,7 @@ public class ClusterContentService implements ContentService {
                         Arrays.asList(spokeWriteContentDao.insert(channelName, spokeContent))));
 
         if (isWriteable(channelName)) {
-            s3SingleWrite(channelName, keys.first());
+            writeQueue.add(new ChannelContentKey(channelName, keys.first()), spokeContent);
         }
         return keys.first();
     }
@@ -173,6 +179,12 @@ public class ClusterContentService implements ContentService {
     }
 
     private SortedSet<ContentKey> setStableCache(String channelName, Supplier<SortedSet<ContentKey>> supplier) {
+        if (latestKeyPublisher != null) {
+            long start = System.currentTimeMillis();
+            SortedSet<ContentKey> keys = supplier.get();
+            latestKeyPublisher.add(channelName, keys.last(), start);
+            return keys;
+        }
         // after stable() seconds, we want to write the cache entry if the write succeeded
         AtomicReference<ContentKey> ref = new AtomicReference<>();
 
@@ -484,6 +496,9 @@ public class ClusterContentService implements ContentService {
         s3SingleContentDao.delete(channelName);
         s3BatchContentDao.delete(channelName);
         s3LargePayloadContentDao.delete(channelName);
+        if (latestKeyPublisher != null) {
+            latestKeyPublisher.remove(channelName);
+        }
         latestContentCache.deleteCache(channelName);
         clusterCacheDao.delete(channelName, LAST_SINGLE_VERIFIED);
         Optional<ChannelConfig> optionalChannelConfig = contentRetriever.getCachedChannelConfig(channelName);
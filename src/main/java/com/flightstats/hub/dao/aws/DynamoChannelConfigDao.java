@@ -10,6 +10,7 @@ import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
 import com.amazonaws.services.dynamodbv2.model.ScanResult;
 import com.flightstats.hub.config.properties.DynamoProperties;
+import com.flightstats.hub.dao.ContentCodec;
 import com.flightstats.hub.dao.Dao;
 import com.flightstats.hub.model.ChannelConfig;
 import com.google.common.annotations.VisibleForTesting;
@@ -70,6 +71,9 @@ public class DynamoChannelConfigDao implements Dao<ChannelConfig> {
         if (StringUtils.isNotEmpty(config.getStorage())) {
             item.put("storage", new AttributeValue(config.getStorage()));
         }
+        if (config.getCodec() != ContentCodec.ZIP) {
+            item.put("compression", new AttributeValue(config.getCompression()));
+        }
         PutItemRequest putItemRequest = new PutItemRequest()
                 .withTableName(dynamoProperties.getChannelConfigTableName())
                 .withItem(item);
@@ -129,6 +133,9 @@ public class DynamoChannelConfigDao implements Dao<ChannelConfig> {
             if (item.containsKey("storage")) {
                 builder.storage(item.get("storage").getS());
             }
+            if (item.containsKey("compression")) {
+                builder.compression(item.get("compression").getS());
+            }
             if (item.containsKey("protect")) {
                 builder.protect(item.get("protect").getBOOL());
             }
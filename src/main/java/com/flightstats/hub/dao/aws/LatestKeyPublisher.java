@@ -0,0 +1,119 @@
+package com.flightstats.hub.dao.aws;
+
+import com.flightstats.hub.cluster.LatestContentCache;
+import com.flightstats.hub.model.ContentKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the latest stable key for each channel to the {@link LatestContentCache}.
+ * <p>
+ * A key is never published before stableSeconds have passed since its insert started, and is published
+ * no later than one second after that, as the per insert schedule did.
+ * Each channel keeps only the newest key for each second in which keys become stable, so it holds at most
+ * stableSeconds + 1 keys, and has at most one scheduled publication.
+ */
+@Slf4j
+class LatestKeyPublisher {
+
+    private static final long WINDOW_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    private final ScheduledExecutorService executor;
+    private final LatestContentCache latestContentCache;
+    private final long stableMillis;
+    private final Map<String, Pending> pendingByChannel = new ConcurrentHashMap<>();
+
+    LatestKeyPublisher(ScheduledExecutorService executor, LatestContentCache latestContentCache, int stableSeconds) {
+        this.executor = executor;
+        this.latestContentCache = latestContentCache;
+        this.stableMillis = TimeUnit.SECONDS.toMillis(stableSeconds);
+    }
+
+    /**
+     * @param startMillis when the insert of this key started
+     */
+    void add(String channel, ContentKey key, long startMillis) {
+        long publishAt = windowEnd(startMillis + stableMillis);
+        while (true) {
+            Pending pending = pendingByChannel.computeIfAbsent(channel, name -> new Pending());
+            synchronized (pending) {
+                if (pending.removed) {
+                    continue;
+                }
+                pending.keys.merge(publishAt, key, (existing, added) -> added.compareTo(existing) > 0 ? added : existing);
+                if (!pending.scheduled) {
+                    pending.scheduled = true;
+                    schedule(channel, pending, publishAt);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drops the unpublished keys of a deleted channel.
+     */
+    void remove(String channel) {
+        Pending pending = pendingByChannel.remove(channel);
+        if (pending != null) {
+            synchronized (pending) {
+                pending.removed = true;
+                pending.keys.clear();
+            }
+        }
+    }
+
+    private static long windowEnd(long millis) {
+        return (millis / WINDOW_MILLIS + 1) * WINDOW_MILLIS;
+    }
+
+    private void schedule(String channel, Pending pending, long runAt) {
+        long delay = Math.max(0, runAt - System.currentTimeMillis());
+        executor.schedule(() -> publish(channel, pending), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void publish(String channel, Pending pending) {
+        ContentKey newest = null;
+        synchronized (pending) {
+            if (pending.removed) {
+                return;
+            }
+            NavigableMap<Long, ContentKey> stable = pending.keys.headMap(System.currentTimeMillis(), true);
+            for (ContentKey key : stable.values()) {
+                if (newest == null || key.compareTo(newest) > 0) {
+                    newest = key;
+                }
+            }
+            stable.clear();
+            if (pending.keys.isEmpty()) {
+                pending.scheduled = false;
+                pending.removed = true;
+                pendingByChannel.remove(channel, pending);
+            } else {
+                schedule(channel, pending, pending.keys.firstKey());
+            }
+        }
+        if (newest != null) {
+            try {
+                latestContentCache.setIfNewer(channel, newest);
+            } catch (Exception e) {
+                log.warn("unable to publish latest {} {}", channel, newest, e);
+            }
+        }
+    }
+
+    private static class Pending {
+        /**
+         * The newest key for each time its window becomes stable.
+         */
+        private final NavigableMap<Long, ContentKey> keys = new TreeMap<>();
+        private boolean scheduled;
+        private boolean removed;
+    }
+}
@@ -13,27 +13,47 @@ import org.apache.commons.lang3.StringUtils;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 @Slf4j
 public class MultiPartParser {
 
     private static final byte[] CRLF = "\r\n".getBytes();
-    private final ByteArrayOutputStream baos;
+    private static final byte[] DASHES = "--".getBytes();
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private ByteArrayOutputStream baos;
     private BulkContent bulkContent;
     private BufferedInputStream stream;
     private Content.Builder builder;
     private final int maxBytes;
+    private final boolean streaming;
 
     public MultiPartParser(BulkContent bulkContent, int maxPayloadSizeInMB) {
+        this(bulkContent, maxPayloadSizeInMB, false);
+    }
+
+    /**
+     * @param streaming parse parts as the body is read, rather than a byte at a time
+     */
+    public MultiPartParser(BulkContent bulkContent, int maxPayloadSizeInMB, boolean streaming) {
         this.bulkContent = bulkContent;
         builder = Content.builder();
-        stream = new BufferedInputStream(bulkContent.getStream());
-        baos = new ByteArrayOutputStream();
         this.maxBytes = maxPayloadSizeInMB  * 1024 * 1024 * 3;
+        this.streaming = streaming;
+        if (!streaming) {
+            stream = new BufferedInputStream(bulkContent.getStream());
+            baos = new ByteArrayOutputStream();
+        }
     }
 
     public void parse() throws IOException {
-        parseItems();
+        if (streaming) {
+            new StreamingParser(bulkContent.getStream()).parseItems();
+        } else {
+            parseItems();
+        }
         if (bulkContent.getItems().isEmpty()) {
             throw new InvalidRequestException("multipart has no items");
         } else if (bulkContent.isNew()) {
@@ -115,5 +135,174 @@ public class MultiPartParser {
         baos.reset();
     }
 
+    /**
+     * Reads the body through a fixed size window, scanning it for each delimiter, CRLF followed by "--" and the
+     * boundary.  Only the bytes of the current part are held, and each part is copied once into an exactly sized
+     * array.  The first boundary may start the body without a CRLF, and an item whose final boundary never arrives
+     * is dropped, as with the byte at a time parser.
+     */
+    private class StreamingParser {
+
+        private final InputStream input;
+        private final byte[] window = new byte[READ_BUFFER_BYTES];
+        private final ByteArrayOutputStream part = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private int position;
+        private int limit;
+        private long total;
+
+        private StreamingParser(InputStream input) {
+            this.input = input;
+        }
 
+        private void parseItems() throws IOException {
+            byte[] dashBoundary = ("--" + getBoundary()).getBytes(StandardCharsets.UTF_8);
+            byte[] delimiter = new byte[CRLF.length + dashBoundary.length];
+            System.arraycopy(CRLF, 0, delimiter, 0, CRLF.length);
+            System.arraycopy(dashBoundary, 0, delimiter, CRLF.length, dashBoundary.length);
+            if (!skipTo(dashBoundary, null) || isCloseDelimiter()) {
+                return;
+            }
+            while (true) {
+                builder = Content.builder().withContentType("text/plain");
+                if (!readHeaders()) {
+                    return;
+                }
+                part.reset();
+                if (!startsWith(dashBoundary) && !skipTo(delimiter, part)) {
+                    return;
+                }
+                boolean closed = isCloseDelimiter();
+                addItem();
+                if (closed) {
+                    return;
+                }
+            }
+        }
+
+        private boolean readHeaders() throws IOException {
+            while (true) {
+                line.reset();
+                if (!skipTo(CRLF, line)) {
+                    return false;
+                }
+                String headerLine = StringUtils.strip(new String(line.toByteArray(), StandardCharsets.UTF_8));
+                if (StringUtils.isEmpty(headerLine)) {
+                    return true;
+                }
+                if (StringUtils.startsWithIgnoreCase(headerLine, "content-type:")) {
+                    builder.withContentType(StringUtils.trim(StringUtils.removeStartIgnoreCase(headerLine, "content-type:")));
+                } else if (StringUtils.startsWithIgnoreCase(headerLine, "content-key:")) {
+                    String key = StringUtils.trim(StringUtils.removeStartIgnoreCase(headerLine, "content-key:"));
+                    builder.withContentKey(ContentKey.fromFullUrl(key));
+                }
+            }
+        }
+
+        /**
+         * Consumes the rest of the boundary line.
+         *
+         * @return true if this was the closing delimiter
+         */
+        private boolean isCloseDelimiter() throws IOException {
+            if (startsWith(DASHES)) {
+                return true;
+            }
+            return !skipTo(CRLF, null);
+        }
+
+        private void addItem() {
+            if (part.size() > 0 || builder.getContentKey().isPresent()) {
+                builder.withData(part.toByteArray());
+                bulkContent.getItems().add(builder.build());
+            }
+        }
+
+        /**
+         * Consumes the body up to and including the next occurrence of pattern, writing the bytes before it to sink.
+         *
+         * @return false if the body ended first
+         */
+        private boolean skipTo(byte[] pattern, ByteArrayOutputStream sink) throws IOException {
+            while (true) {
+                int match = indexOf(pattern);
+                if (match >= 0) {
+                    if (sink != null) {
+                        sink.write(window, position, match - position);
+                    }
+                    position = match + pattern.length;
+                    return true;
+                }
+                int scanned = Math.max(0, limit - position - (pattern.length - 1));
+                if (sink != null) {
+                    sink.write(window, position, scanned);
+                }
+                position += scanned;
+                if (!fill()) {
+                    return false;
+                }
+            }
+        }
+
+        private int indexOf(byte[] pattern) {
+            byte first = pattern[0];
+            int last = limit - pattern.length;
+            for (int i = position; i <= last; i++) {
+                if (window[i] != first) {
+                    continue;
+                }
+                int j = 1;
+                while (j < pattern.length && window[i + j] == pattern[j]) {
+                    j++;
+                }
+                if (j == pattern.length) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Consumes pattern if the rest of the body starts with it.
+         */
+        private boolean startsWith(byte[] pattern) throws IOException {
+            while (limit - position < pattern.length) {
+                if (!fill()) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < pattern.length; i++) {
+                if (window[position + i] != pattern[i]) {
+                    return false;
+                }
+            }
+            position += pattern.length;
+            return true;
+        }
+
+        /**
+         * Moves the unconsumed bytes to the start of the window, and reads more after them.
+         *
+         * @return false if the body has ended
+         */
+        private boolean fill() throws IOException {
+            System.arraycopy(window, position, window, 0, limit - position);
+            limit -= position;
+            position = 0;
+            int read = 0;
+            while (read == 0) {
+                read = input.read(window, limit, window.length - limit);
+            }
+            if (read < 0) {
+                return false;
+            }
+            limit += read;
+            total += read;
+            if (total > maxBytes) {
+                log.warn("multipart max payload exceeded {} {}", maxBytes, bulkContent.getChannel());
+                throw new ContentTooLargeException("max payload size is " + maxBytes + " bytes");
+            }
+            return true;
+        }
+    }
 }
@@ -0,0 +1,121 @@
+package com.flightstats.hub.dao.aws;
+
+import com.flightstats.hub.channel.ZipBulkBuilder;
+import com.flightstats.hub.dao.ContentDao;
+import com.flightstats.hub.dao.ContentMarshaller;
+import com.flightstats.hub.metrics.ActiveTraces;
+import com.flightstats.hub.metrics.StatsdReporter;
+import com.flightstats.hub.model.Content;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.LargeContentUtils;
+import com.flightstats.hub.spoke.FileSpokeStore;
+import com.google.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.NotFoundException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.ZipOutputStream;
+
+import static com.flightstats.hub.constant.NamedBinding.WRITE;
+import static com.flightstats.hub.constant.NamedBinding.WRITE_CACHE;
+
+/**
+ * Builds the items zip for an S3 batch minute from this node's spoke write store, asking the write cluster only for
+ * items which this node did not receive.
+ * The entries are written the same way as {@link ZipBulkBuilder}, so the batch reads the same as one built from a bulk GET.
+ * Spoke only holds the index of a large item, so its payload is read from the large payload store.
+ */
+@Singleton
+@Slf4j
+public class S3BatchBuilder {
+
+    private final FileSpokeStore spokeStore;
+    private final ContentDao spokeWriteContentDao;
+    private final ZipBulkBuilder zipBulkBuilder;
+    private final ContentDao s3LargePayloadContentDao;
+    private final LargeContentUtils largeContentUtils;
+    private final StatsdReporter statsdReporter;
+
+    @Inject
+    public S3BatchBuilder(@Named(WRITE) FileSpokeStore spokeStore,
+                          @Named(WRITE_CACHE) ContentDao spokeWriteContentDao,
+                          @Named(ContentDao.LARGE_PAYLOAD) ContentDao s3LargePayloadContentDao,
+                          LargeContentUtils largeContentUtils,
+                          ZipBulkBuilder zipBulkBuilder,
+                          StatsdReporter statsdReporter) {
+        this.spokeStore = spokeStore;
+        this.spokeWriteContentDao = spokeWriteContentDao;
+        this.s3LargePayloadContentDao = s3LargePayloadContentDao;
+        this.largeContentUtils = largeContentUtils;
+        this.zipBulkBuilder = zipBulkBuilder;
+        this.statsdReporter = statsdReporter;
+    }
+
+    /**
+     * @return the zip of every key in ascending order, or empty if any item can't be found
+     */
+    public Optional<byte[]> build(String channel, Collection<ContentKey> keys) throws IOException {
+        ActiveTraces.getLocal().add("S3BatchBuilder.build", channel, keys.size());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream output = new ZipOutputStream(bytes)) {
+            output.setLevel(Deflater.DEFAULT_COMPRESSION);
+            int remote = 0;
+            for (ContentKey key : new TreeSet<>(keys)) {
+                Optional<Content> content = readLocal(channel, key);
+                if (!content.isPresent()) {
+                    remote++;
+                    content = Optional.ofNullable(spokeWriteContentDao.get(channel, key));
+                }
+                content = content.flatMap(found -> fetchLargeContentIfIndex(channel, found));
+                if (!content.isPresent()) {
+                    log.warn("unable to find {} {} for batch", channel, key);
+                    statsdReporter.increment("batch.missing_item");
+                    return Optional.empty();
+                }
+                zipBulkBuilder.createZipEntry(output, content.get());
+            }
+            if (remote > 0) {
+                statsdReporter.count("batch.remote_items", remote);
+            }
+        }
+        ActiveTraces.getLocal().add("S3BatchBuilder.build completed", bytes.size());
+        return Optional.of(bytes.toByteArray());
+    }
+
+    private Optional<Content> fetchLargeContentIfIndex(String channel, Content content) {
+        if (!content.isIndexForLarge()) {
+            return Optional.of(content);
+        }
+        ContentKey indexKey = content.getContentKey().get();
+        Content largeMeta = largeContentUtils.fromIndex(content);
+        Content large = s3LargePayloadContentDao.get(channel, largeMeta.getContentKey().get());
+        if (large == null) {
+            log.warn("unable to find large payload {} {} for batch", channel, largeMeta.getContentKey().get());
+            return Optional.empty();
+        }
+        large.setContentKey(indexKey);
+        large.setSize(largeMeta.getSize());
+        return Optional.of(large);
+    }
+
+    private Optional<Content> readLocal(String channel, ContentKey key) {
+        try {
+            byte[] bytes = spokeStore.read(channel + "/" + key.toUrl());
+            if (bytes.length > 0) {
+                return Optional.of(ContentMarshaller.toContent(bytes, key));
+            }
+        } catch (NotFoundException e) {
+            log.trace("not found locally {} {}", channel, key);
+        } catch (Exception e) {
+            log.warn("unable to read {} {} locally", channel, key, e);
+        }
+        return Optional.empty();
+    }
+}
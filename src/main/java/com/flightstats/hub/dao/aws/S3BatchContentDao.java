@@ -34,13 +34,13 @@ import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 
 import javax.inject.Inject;
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -52,7 +52,6 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -72,13 +71,16 @@ public class S3BatchContentDao implements ContentDao {
     private final String disasterRecoveryBucketName;
     private final StatsdReporter statsdReporter;
     private final S3Util s3Util;
+    private final S3BatchMinuteCache minuteCache;
+    private final S3ShardedLister shardedLister;
 
     @Inject
     public S3BatchContentDao(HubS3Client s3Client,
                              StatsdReporter statsdReporter,
                              AppProperties appProperties,
                              S3Properties s3Properties,
-                             S3Util s3Util) {
+                             S3Util s3Util,
+                             S3ShardedLister shardedLister) {
         this.statsdReporter = statsdReporter;
         this.s3Client = s3Client;
 
@@ -87,6 +89,12 @@ public class S3BatchContentDao implements ContentDao {
         this.bucketName = s3Properties.getBucketName();
         this.disasterRecoveryBucketName = s3Properties.getDisasterRecoveryBucketName();
         this.s3Util = s3Util;
+        this.shardedLister = shardedLister;
+        this.minuteCache = new S3BatchMinuteCache(
+                s3Properties.getBatchCacheMemoryMB() * 1024L * 1024L,
+                s3Properties.getBatchCachePath(),
+                s3Properties.getBatchCacheDiskMB() * 1024L * 1024L,
+                s3Properties.getBatchCacheMinutes());
     }
 
 
@@ -115,9 +123,57 @@ public class S3BatchContentDao implements ContentDao {
 
     private Content getS3Object(String channel, ContentKey key) throws IOException {
         log.trace("S3BatchContentDao.getS3Object {} {}", channel, key);
+        MinutePath minutePath = new MinutePath(key.getTime());
+        if (!minuteCache.get(getS3BatchItemsKey(channel, minutePath)).isPresent()) {
+            Optional<JsonNode> entries = getIndexEntries(channel, minutePath);
+            if (entries.isPresent()) {
+                return getRange(channel, minutePath, key, entries.get().get(key.toUrl()));
+            }
+        }
         return readBatch(channel, key).get(key);
     }
 
+    /**
+     * Indexes written with entry locations allow a single item to be read without the rest of the minute.
+     */
+    private Optional<JsonNode> getIndexEntries(String channel, MinutePath minutePath) {
+        String indexKey = getS3BatchIndexKey(channel, minutePath);
+        try {
+            byte[] bytes = getCachedObject(channel, indexKey);
+            return Optional.ofNullable(mapper.readTree(bytes).get("entries"));
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() != 404) {
+                log.warn("unable to get index " + channel + " " + minutePath, e);
+            }
+        } catch (IOException e) {
+            log.warn("unable to get index " + channel + " " + minutePath, e);
+        }
+        return Optional.empty();
+    }
+
+    private Content getRange(String channel, MinutePath minutePath, ContentKey key, JsonNode entry) throws IOException {
+        if (entry == null) {
+            return null;
+        }
+        ActiveTraces.getLocal().add("S3BatchContentDao.getRange", key);
+        long offset = entry.get("offset").asLong();
+        long length = entry.get("length").asLong();
+        long start = System.currentTimeMillis();
+        GetObjectRequest request = new GetObjectRequest(bucketName, getS3BatchItemsKey(channel, minutePath))
+                .withRange(offset, offset + length - 1);
+        try (S3Object object = s3Client.getObject(request)) {
+            byte[] bytes = ByteStreams.toByteArray(object.getObjectContent());
+            return S3BatchZip.read(key, bytes, entry.get("method").asInt());
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() != 404) {
+                log.warn("AmazonS3Exception : unable to read " + channel + " " + key, e);
+            }
+            return null;
+        } finally {
+            statsdReporter.time(channel, "s3.get", start, "type:batch");
+        }
+    }
+
     @Override
     public Map<ContentKey, Content> readBatch(String channelName, ContentKey key) throws IOException {
         MinutePath minutePath = new MinutePath(key.getTime());
@@ -155,13 +211,24 @@ public class S3BatchContentDao implements ContentDao {
         return builder.build();
     }
 
-    private ZipInputStream getZipInputStream(String channel, ContentPathKeys minutePath) {
+    private ZipInputStream getZipInputStream(String channel, ContentPathKeys minutePath) throws IOException {
         ActiveTraces.getLocal().add("S3BatchContentDao.getZipInputStream");
+        byte[] bytes = getCachedObject(channel, getS3BatchItemsKey(channel, minutePath));
+        return new ZipInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    private byte[] getCachedObject(String channel, String s3Key) throws IOException {
+        Optional<byte[]> cached = minuteCache.get(s3Key);
+        if (cached.isPresent()) {
+            statsdReporter.increment("s3.batch.cache.hit");
+            return cached.get();
+        }
+        statsdReporter.increment("s3.batch.cache.miss");
         long start = System.currentTimeMillis();
-        try {
-            GetObjectRequest request = new GetObjectRequest(bucketName, getS3BatchItemsKey(channel, minutePath));
-            S3Object object = s3Client.getObject(request);
-            return new ZipInputStream(new BufferedInputStream(object.getObjectContent()));
+        try (S3Object object = s3Client.getObject(new GetObjectRequest(bucketName, s3Key))) {
+            byte[] bytes = ByteStreams.toByteArray(object.getObjectContent());
+            minuteCache.put(s3Key, bytes);
+            return bytes;
         } finally {
             statsdReporter.time(channel, "s3.get", start, "type:batch");
         }
@@ -240,11 +307,7 @@ public class S3BatchContentDao implements ContentDao {
         DateTime rounded = query.getUnit().round(query.getStartTime());
         String channel = query.getChannelName();
         traces.add("S3BatchContentDao.queryHourPlus starting ", channel, rounded, query.getUnit());
-        ListObjectsRequest request = new ListObjectsRequest()
-                .withBucketName(bucketName)
-                .withPrefix(channel + BATCH_INDEX + query.getUnit().format(rounded))
-                .withMaxKeys(s3MaxQueryItems);
-        SortedSet<MinutePath> minutePaths = listMinutePaths(channel, request, traces, true);
+        SortedSet<MinutePath> minutePaths = listMinutePaths(channel, rounded, query.getUnit(), traces);
         for (MinutePath minutePath : minutePaths) {
             getKeysForMinute(channel, minutePath, keys, traces);
         }
@@ -259,11 +322,11 @@ public class S3BatchContentDao implements ContentDao {
         traces.add("S3BatchContentDao.queryMinute ", channel, rounded, unit);
         getKeysForMinute(channel, new MinutePath(rounded), keys, traces);
         if (unit.equals(TimeUtil.Unit.SECONDS)) {
-            DateTime start = rounded.minusMillis(1);
-            DateTime endTime = rounded.plus(unit.getDuration());
+            long startMillis = rounded.getMillis();
+            long endMillis = rounded.plus(unit.getDuration()).getMillis();
             keys = keys.stream()
-                    .filter(key -> key.getTime().isAfter(start))
-                    .filter(key -> key.getTime().isBefore(endTime))
+                    .filter(key -> key.getMillis() >= startMillis)
+                    .filter(key -> key.getMillis() < endMillis)
                     .collect(Collectors.toCollection(TreeSet::new));
         }
         traces.add("S3BatchContentDao.queryMinute completed", keys);
@@ -336,7 +399,7 @@ public class S3BatchContentDao implements ContentDao {
                     .withPrefix(channel + BATCH_INDEX)
                     .withMarker(channel + BATCH_INDEX + TimeUtil.Unit.MINUTES.format(markerTime))
                     .withMaxKeys(queryItems);
-            SortedSet<MinutePath> paths = listMinutePaths(channel, request, traces, false);
+            SortedSet<MinutePath> paths = listMinutePaths(channel, request, traces);
 
             if (paths.isEmpty()) {
                 return keys;
@@ -358,43 +421,41 @@ public class S3BatchContentDao implements ContentDao {
         return keys;
     }
 
-    private SortedSet<MinutePath> listMinutePaths(String channel, ListObjectsRequest request, Traces traces, boolean iterate) {
-        SortedSet<MinutePath> paths = new TreeSet<>();
-        traces.add("S3BatchContentDao.listMinutePaths ", request.getPrefix(), request.getMarker(), iterate);
+    private SortedSet<MinutePath> listMinutePaths(String channel, ListObjectsRequest request, Traces traces) {
+        traces.add("S3BatchContentDao.listMinutePaths ", request.getPrefix(), request.getMarker());
         long start = System.currentTimeMillis();
         ObjectListing listing = s3Client.listObjects(request);
         statsdReporter.time(channel, "s3.list", start, "type:batch");
-        List<S3ObjectSummary> summaries = listing.getObjectSummaries();
+        SortedSet<MinutePath> paths = toMinutePaths(channel, listing.getObjectSummaries());
+        traces.add("S3BatchContentDao.listMinutePaths ", paths);
+        return paths;
+    }
+
+    private SortedSet<MinutePath> listMinutePaths(String channel, DateTime startTime, TimeUtil.Unit unit, Traces traces) {
+        traces.add("S3BatchContentDao.listMinutePaths ", channel, startTime, unit);
+        List<S3ObjectSummary> summaries = shardedLister.list(bucketName, channel + BATCH_INDEX, startTime, unit,
+                s3MaxQueryItems, Integer.MAX_VALUE, channel, "batch");
+        SortedSet<MinutePath> paths = toMinutePaths(channel, summaries);
+        traces.add("S3BatchContentDao.listMinutePaths ", paths);
+        return paths;
+    }
+
+    private SortedSet<MinutePath> toMinutePaths(String channel, List<S3ObjectSummary> summaries) {
+        SortedSet<MinutePath> paths = new TreeSet<>();
         for (S3ObjectSummary summary : summaries) {
-            String key = summary.getKey();
-            Optional<MinutePath> pathOptional = MinutePath.fromUrl(StringUtils.substringAfter(key, channel + BATCH_INDEX));
-            if (pathOptional.isPresent()) {
-                MinutePath path = pathOptional.get();
-                paths.add(path);
-            }
+            MinutePath.fromUrl(StringUtils.substringAfter(summary.getKey(), channel + BATCH_INDEX)).ifPresent(paths::add);
         }
-        if (iterate && listing.isTruncated()) {
-            request.withMarker(channel + BATCH_INDEX + TimeUtil.Unit.MINUTES.format(paths.last().getTime()));
-            paths.addAll(listMinutePaths(channel, request, traces, iterate));
-        }
-        traces.add("S3BatchContentDao.listMinutePaths ", paths);
         return paths;
     }
 
     @Override
     public void deleteBefore(String channel, ContentKey limitKey) {
-        Stream.of(bucketName, disasterRecoveryBucketName)
-                .filter(StringUtils::isNotBlank)
-                .forEach(bucket -> {
-                    try {
-                        s3Util.delete(channel + BATCH_ITEMS, limitKey, bucket, s3Client);
-                        s3Util.delete(channel + BATCH_INDEX, limitKey, bucket, s3Client);
-                        log.info("completed deleteBefore of {}", channel);
-                    } catch (Exception e) {
-                        log.warn("unable to delete {} in {}", channel, bucket, e);
-                    }
-
-                });
+        List<String> buckets = Arrays.asList(bucketName, disasterRecoveryBucketName);
+        boolean items = s3Util.delete(channel + BATCH_ITEMS, limitKey, buckets, s3Client);
+        boolean index = s3Util.delete(channel + BATCH_INDEX, limitKey, buckets, s3Client);
+        if (items && index) {
+            log.info("completed deleteBefore of {}", channel);
+        }
     }
 
     @Override
@@ -424,7 +485,9 @@ public class S3BatchContentDao implements ContentDao {
         try {
             log.debug("writing {} batch {} keys {} bytes {}", channel, path, keys.size(), bytes.length);
             writeBatchItems(channel, path, bytes);
-            writeBatchIndex(channel, path, keys);
+            writeBatchIndex(channel, path, keys, S3BatchZip.locate(bytes));
+            minuteCache.invalidate(getS3BatchItemsKey(channel, path));
+            minuteCache.invalidate(getS3BatchIndexKey(channel, path));
         } catch (Exception e) {
             log.warn("unable to write batch to S3 " + channel + " " + path, e);
             throw e;
@@ -433,7 +496,8 @@ public class S3BatchContentDao implements ContentDao {
         }
     }
 
-    private void writeBatchIndex(String channel, ContentPath path, Collection<ContentKey> keys) {
+    private void writeBatchIndex(String channel, ContentPath path, Collection<ContentKey> keys,
+                                 Map<String, S3BatchZip.Location> locations) {
         String batchIndexKey = getS3BatchIndexKey(channel, path);
         ObjectNode root = mapper.createObjectNode();
         root.put("id", path.toUrl());
@@ -441,6 +505,18 @@ public class S3BatchContentDao implements ContentDao {
         for (ContentKey key : keys) {
             items.add(key.toUrl());
         }
+        if (!locations.isEmpty()) {
+            ObjectNode entries = root.putObject("entries");
+            for (ContentKey key : keys) {
+                S3BatchZip.Location location = locations.get(key.toUrl());
+                if (location != null) {
+                    ObjectNode entry = entries.putObject(key.toUrl());
+                    entry.put("offset", location.offset);
+                    entry.put("length", location.length);
+                    entry.put("method", location.method);
+                }
+            }
+        }
         String index = root.toString();
         log.trace("index is {} {}", batchIndexKey, index);
         byte[] bytes = index.getBytes(StandardCharsets.UTF_8);
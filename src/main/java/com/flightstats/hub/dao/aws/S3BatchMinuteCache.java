@@ -0,0 +1,143 @@
+package com.flightstats.hub.dao.aws;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Files;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded cache of recently read batch objects, keyed by S3 key.
+ * Objects are held in memory, and optionally on local disk, until they expire or are evicted by size.
+ */
+@Slf4j
+class S3BatchMinuteCache {
+
+    private static final BaseEncoding ENCODING = BaseEncoding.base64Url().omitPadding();
+
+    private final Cache<String, byte[]> memory;
+    private final File directory;
+    private final long maxDiskBytes;
+    private final long expireMillis;
+    private final Map<String, Long> diskSizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+
+    S3BatchMinuteCache(long maxMemoryBytes, String diskPath, long maxDiskBytes, int expireMinutes) {
+        this.expireMillis = TimeUnit.MINUTES.toMillis(expireMinutes);
+        this.memory = CacheBuilder.newBuilder()
+                .maximumWeight(maxMemoryBytes)
+                .weigher((String key, byte[] bytes) -> bytes.length)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .build();
+        this.maxDiskBytes = maxDiskBytes;
+        if (diskPath == null || diskPath.isEmpty() || maxDiskBytes <= 0) {
+            this.directory = null;
+        } else {
+            this.directory = new File(diskPath);
+            loadDirectory();
+        }
+    }
+
+    Optional<byte[]> get(String s3Key) {
+        byte[] bytes = memory.getIfPresent(s3Key);
+        if (bytes == null) {
+            bytes = readDisk(s3Key);
+            if (bytes != null) {
+                memory.put(s3Key, bytes);
+            }
+        }
+        return Optional.ofNullable(bytes);
+    }
+
+    void put(String s3Key, byte[] bytes) {
+        memory.put(s3Key, bytes);
+        writeDisk(s3Key, bytes);
+    }
+
+    void invalidate(String s3Key) {
+        memory.invalidate(s3Key);
+        if (directory != null) {
+            synchronized (diskSizes) {
+                remove(ENCODING.encode(s3Key.getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+    }
+
+    private byte[] readDisk(String s3Key) {
+        if (directory == null) {
+            return null;
+        }
+        String name = ENCODING.encode(s3Key.getBytes(StandardCharsets.UTF_8));
+        synchronized (diskSizes) {
+            if (diskSizes.get(name) == null) {
+                return null;
+            }
+            File file = new File(directory, name);
+            if (file.lastModified() < System.currentTimeMillis() - expireMillis) {
+                remove(name);
+                return null;
+            }
+            try {
+                return Files.toByteArray(file);
+            } catch (IOException e) {
+                log.warn("unable to read cached batch {}", s3Key, e);
+                remove(name);
+                return null;
+            }
+        }
+    }
+
+    private void writeDisk(String s3Key, byte[] bytes) {
+        if (directory == null || bytes.length > maxDiskBytes) {
+            return;
+        }
+        String name = ENCODING.encode(s3Key.getBytes(StandardCharsets.UTF_8));
+        synchronized (diskSizes) {
+            try {
+                remove(name);
+                Files.write(bytes, new File(directory, name));
+                diskSizes.put(name, (long) bytes.length);
+                diskBytes += bytes.length;
+                Iterator<Map.Entry<String, Long>> iterator = diskSizes.entrySet().iterator();
+                while (diskBytes > maxDiskBytes && iterator.hasNext()) {
+                    Map.Entry<String, Long> eldest = iterator.next();
+                    new File(directory, eldest.getKey()).delete();
+                    diskBytes -= eldest.getValue();
+                    iterator.remove();
+                }
+            } catch (IOException e) {
+                log.warn("unable to cache batch {}", s3Key, e);
+            }
+        }
+    }
+
+    private void remove(String name) {
+        Long size = diskSizes.remove(name);
+        if (size != null) {
+            diskBytes -= size;
+        }
+        new File(directory, name).delete();
+    }
+
+    private void loadDirectory() {
+        directory.mkdirs();
+        File[] files = Optional.ofNullable(directory.listFiles()).orElse(new File[]{});
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            diskSizes.put(file.getName(), file.length());
+            diskBytes += file.length();
+        }
+        log.info("loaded {} cached batches, {} bytes, from {}", files.length, diskBytes, directory);
+    }
+}
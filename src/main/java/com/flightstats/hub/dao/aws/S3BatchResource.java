@@ -5,11 +5,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.flightstats.hub.dao.ContentDao;
 import com.flightstats.hub.metrics.ActiveTraces;
-import com.flightstats.hub.metrics.StatsdReporter;
 import com.flightstats.hub.model.ContentKey;
 import com.flightstats.hub.model.MinutePath;
-import com.flightstats.hub.rest.RestClient;
-import com.sun.jersey.api.client.ClientResponse;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Inject;
@@ -18,11 +15,11 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.core.Response;
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.zip.ZipInputStream;
+import java.util.Optional;
 
 import static com.flightstats.hub.dao.ContentDao.BATCH_LONG_TERM;
 
@@ -31,50 +28,27 @@ import static com.flightstats.hub.dao.ContentDao.BATCH_LONG_TERM;
 public class S3BatchResource {
 
     private final ContentDao s3BatchContentDao;
-    private final StatsdReporter statsdReporter;
+    private final S3BatchBuilder s3BatchBuilder;
     private final ObjectMapper objectMapper;
 
     @Inject
     public S3BatchResource(@Named(BATCH_LONG_TERM) ContentDao s3BatchContentDao,
-                           StatsdReporter statsdReporter,
+                           S3BatchBuilder s3BatchBuilder,
                            ObjectMapper objectMapper) {
         this.s3BatchContentDao = s3BatchContentDao;
-        this.statsdReporter = statsdReporter;
+        this.s3BatchBuilder = s3BatchBuilder;
         this.objectMapper = objectMapper;
     }
 
-    private boolean getAndWriteBatch(ContentDao contentDao, String channel, MinutePath path,
-                                     Collection<ContentKey> keys, String batchUrl) {
-        ActiveTraces.getLocal().add("S3BatchResource.getAndWriteBatch", path);
-        final ClientResponse response = RestClient.defaultClient()
-                .resource(batchUrl + "&location=CACHE_WRITE")
-                .accept("application/zip")
-                .get(ClientResponse.class);
-        if (response.getStatus() != 200) {
-            log.warn("unable to get data for {} {}", channel, response);
-            return false;
-        }
-        ActiveTraces.getLocal().add("S3BatchResource.getAndWriteBatch got response");
-        final byte[] bytes = response.getEntity(byte[].class);
-
-        if(!verifyZipBytes(bytes)) {
-            statsdReporter.increment("batch.invalid_zip");
-            log.warn("S3BatchResource failed zip verification for keys: {}, channel: {}", keys, channel);
-            return false;
-        }
-
-        contentDao.writeBatch(channel, path, keys, bytes);
-        ActiveTraces.getLocal().add("S3BatchResource.getAndWriteBatch completed");
-        return true;
-    }
-
-    private boolean verifyZipBytes(byte[] bytes) {
-        final ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(bytes));
-        try {
-            while (zis.getNextEntry() != null) ;
-        } catch (Exception exception) {
+    private boolean buildAndWriteBatch(String channel, MinutePath path, Collection<ContentKey> keys) throws IOException {
+        ActiveTraces.getLocal().add("S3BatchResource.buildAndWriteBatch", path);
+        Optional<byte[]> bytes = s3BatchBuilder.build(channel, keys);
+        if (!bytes.isPresent()) {
+            log.warn("unable to build batch for {} {}", channel, path);
             return false;
         }
+        s3BatchContentDao.writeBatch(channel, path, keys, bytes.get());
+        ActiveTraces.getLocal().add("S3BatchResource.buildAndWriteBatch completed");
         return true;
     }
 
@@ -97,8 +71,7 @@ public class S3BatchResource {
 
             final String id = node.get("id").asText();
             final MinutePath path = MinutePath.fromUrl(id).get();
-            final String batchUrl = node.get("batchUrl").asText();
-            if (!getAndWriteBatch(s3BatchContentDao, channel, path, keys, batchUrl)) {
+            if (!buildAndWriteBatch(channel, path, keys)) {
                 return Response.status(400).build();
             }
             return Response.ok().build();
@@ -0,0 +1,138 @@
+package com.flightstats.hub.dao.aws;
+
+import com.flightstats.hub.dao.ContentMarshaller;
+import com.flightstats.hub.model.Content;
+import com.flightstats.hub.model.ContentKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Locates the entries within a batch zip, so a single item can be read with a ranged GET.
+ * Each {@link Location} covers the entry's local header and compressed data.
+ */
+@Slf4j
+class S3BatchZip {
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL = 0x06054b50;
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int END_OF_CENTRAL_LENGTH = 22;
+
+    static class Location {
+        final long offset;
+        final long length;
+        final int method;
+
+        Location(long offset, long length, int method) {
+            this.offset = offset;
+            this.length = length;
+            this.method = method;
+        }
+    }
+
+    /**
+     * @return the entry locations by name, or an empty map if the zip can't be located cheaply (e.g. zip64)
+     */
+    static Map<String, Location> locate(byte[] zip) {
+        Map<String, Location> locations = new LinkedHashMap<>();
+        int end = findEndOfCentral(zip);
+        if (end < 0) {
+            return locations;
+        }
+        int count = readShort(zip, end + 10);
+        long position = readInt(zip, end + 16);
+        if (count == 0xFFFF || position == 0xFFFFFFFFL) {
+            return locations;
+        }
+        for (int i = 0; i < count; i++) {
+            int central = (int) position;
+            if (readInt(zip, central) != CENTRAL_HEADER) {
+                log.warn("unexpected central directory header at {}", central);
+                return new LinkedHashMap<>();
+            }
+            int method = readShort(zip, central + 10);
+            long compressedSize = readInt(zip, central + 20);
+            int nameLength = readShort(zip, central + 28);
+            int extraLength = readShort(zip, central + 30);
+            int commentLength = readShort(zip, central + 32);
+            int local = (int) readInt(zip, central + 42);
+            String name = new String(zip, central + 46, nameLength);
+            if (readInt(zip, local) != LOCAL_HEADER) {
+                log.warn("unexpected local header for {} at {}", name, local);
+                return new LinkedHashMap<>();
+            }
+            long headerLength = LOCAL_HEADER_LENGTH + readShort(zip, local + 26) + readShort(zip, local + 28);
+            locations.put(name, new Location(local, headerLength + compressedSize, method));
+            position = central + 46 + nameLength + extraLength + commentLength;
+        }
+        return locations;
+    }
+
+    /**
+     * @param range the bytes covered by a {@link Location}
+     */
+    static Content read(ContentKey key, byte[] range, int method) throws IOException {
+        int nameLength = readShort(range, 26);
+        int extraLength = readShort(range, 28);
+        int dataStart = LOCAL_HEADER_LENGTH + nameLength + extraLength;
+        Content.Builder builder = Content.builder()
+                .withContentKey(key);
+        String comment = new String(range, LOCAL_HEADER_LENGTH + nameLength, extraLength);
+        ContentMarshaller.setMetaData(comment, builder);
+        if (method == ZipEntry.DEFLATED) {
+            builder.withData(inflate(range, dataStart));
+        } else {
+            byte[] data = new byte[range.length - dataStart];
+            System.arraycopy(range, dataStart, data, 0, data.length);
+            builder.withData(data);
+        }
+        return builder.build();
+    }
+
+    private static byte[] inflate(byte[] bytes, int start) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(bytes, start, bytes.length - start);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length * 2);
+            byte[] buffer = new byte[8 * 1024];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("unable to inflate batch entry", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int findEndOfCentral(byte[] zip) {
+        int lowest = Math.max(0, zip.length - END_OF_CENTRAL_LENGTH - 0xFFFF);
+        for (int i = zip.length - END_OF_CENTRAL_LENGTH; i >= lowest; i--) {
+            if (readInt(zip, i) == END_OF_CENTRAL) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+    }
+
+    private static long readInt(byte[] bytes, int offset) {
+        return (readShort(bytes, offset) | (long) readShort(bytes, offset + 2) << 16) & 0xFFFFFFFFL;
+    }
+}
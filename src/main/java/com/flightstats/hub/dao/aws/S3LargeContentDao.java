@@ -23,38 +23,49 @@ import com.flightstats.hub.model.Content;
 import com.flightstats.hub.model.ContentKey;
 import com.flightstats.hub.model.DirectionQuery;
 import com.flightstats.hub.model.TimeQuery;
+import com.flightstats.hub.util.ChunkBufferPool;
 import com.flightstats.hub.util.ChunkOutputStream;
 import com.flightstats.hub.util.TimeUtil;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import javax.inject.Inject;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.SortedSet;
-import java.util.stream.Stream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @SuppressWarnings("Duplicates")
 @Singleton
 @Slf4j
 public class S3LargeContentDao implements ContentDao {
 
+    private static final int MB = 1024 * 1024;
+    /**
+     * Ten parts each of s3.large.chunkMB and the midway size, then s3.maxChunkMB, reaches 390GB in 10,000 parts.
+     */
+    private static final int PARTS_PER_SIZE = 10;
+
     private final HubS3Client s3Client;
     private final StatsdReporter statsdReporter;
     private final AppProperties appProperties;
     private final String bucketName;
     private final String disasterRecoveryBucketName;
-    private final int maxChunkInMB;
     private final S3Util s3Util;
+    private final ExecutorService uploadExecutor;
+    private final ChunkBufferPool bufferPool;
 
     @Inject
     public S3LargeContentDao(HubS3Client s3Client,
@@ -67,9 +78,13 @@ public class S3LargeContentDao implements ContentDao {
         this.appProperties = appPropertiesIn;
         this.bucketName = s3Properties.getBucketName();
         this.disasterRecoveryBucketName = s3Properties.getDisasterRecoveryBucketName();
-        this.maxChunkInMB = s3Properties.getMaxChunkInMB();
         this.s3Util = s3Util;
-
+        this.uploadExecutor = Executors.newFixedThreadPool(s3Properties.getLargeUploadThreadCount(),
+                new ThreadFactoryBuilder().setNameFormat("S3LargeUpload-%d").setDaemon(true).build());
+        int chunkMB = s3Properties.getLargeChunkInMB();
+        int maxChunkMB = Math.max(chunkMB, s3Properties.getMaxChunkInMB());
+        this.bufferPool = new ChunkBufferPool(s3Properties.getLargeBufferCount(), PARTS_PER_SIZE,
+                chunkMB * MB, (chunkMB + maxChunkMB) / 2 * MB, maxChunkMB * MB);
     }
 
     public void initialize() {
@@ -86,31 +101,30 @@ public class S3LargeContentDao implements ContentDao {
         ContentKey key = content.getContentKey().get();
         ActiveTraces.getLocal().add("S3LargeContentDao.write ", key);
         long start = System.currentTimeMillis();
-        int length = 0;
+        long length = 0;
         List<PartETag> partETags = Collections.synchronizedList(new ArrayList<>());
         String s3Key = getS3ContentKey(channelName, key, content.isHistorical());
         String uploadId = "";
         boolean completed = false;
+        ChunkOutputStream outputStream = null;
         try {
             ObjectMetadata metadata = S3SingleContentDao.createObjectMetadata(content, appProperties.isAppEncrypted());
             InitiateMultipartUploadRequest initRequest = new InitiateMultipartUploadRequest(bucketName, s3Key, metadata);
             InitiateMultipartUploadResult initResponse = s3Client.initiateMultipartUpload(initRequest);
             uploadId = initResponse.getUploadId();
-            ChunkOutputStream outputStream = new ChunkOutputStream(content.getThreads(), maxChunkInMB, chunk -> {
+            outputStream = new ChunkOutputStream(uploadExecutor, bufferPool, content.getThreads(), chunk -> {
                 try {
-                    byte[] bytes = chunk.getBytes();
-                    log.debug("got bytes {} {}", s3Key, bytes.length);
-                    ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
+                    log.debug("got bytes {} {}", s3Key, chunk.getLength());
                     UploadPartRequest uploadRequest = new UploadPartRequest()
                             .withBucketName(bucketName)
                             .withKey(s3Key)
                             .withUploadId(initResponse.getUploadId())
                             .withPartNumber(chunk.getCount())
-                            .withInputStream(bais)
-                            .withPartSize(bytes.length);
+                            .withInputStream(chunk.getInputStream())
+                            .withPartSize(chunk.getLength());
                     UploadPartResult uploadPart = s3Client.uploadPart(uploadRequest);
                     partETags.add(uploadPart.getPartETag());
-                    log.debug("wrote chunk {} {} {}", s3Key, chunk.getCount(), bytes.length);
+                    log.debug("wrote chunk {} {} {}", s3Key, chunk.getCount(), chunk.getLength());
                     return "ok";
                 } catch (Exception e) {
                     log.error("what happened POST to " + channelName + " for chunk " + chunk.getCount(), e);
@@ -123,22 +137,26 @@ public class S3LargeContentDao implements ContentDao {
             ActiveTraces.getLocal().add("S3LargeContentDao.write processed", copied);
             log.debug("before complete key {} with {} parts", s3Key, partETags.size());
             outputStream.close();
+            long expectedParts = bufferPool.getParts(copied);
+            if (partETags.size() != expectedParts) {
+                throw new IOException("expected " + expectedParts + " parts for " + copied + " bytes, found " + partETags.size());
+            }
+            partETags.sort(Comparator.comparingInt(PartETag::getPartNumber));
             CompleteMultipartUploadRequest compRequest = new CompleteMultipartUploadRequest(bucketName, s3Key, uploadId, partETags);
             s3Client.completeMultipartUpload(compRequest);
             S3ResponseMetadata completedMetaData = s3Client.getCachedResponseMetadata(compRequest);
             log.debug("completed key {} request id {} with {} parts", s3Key, completedMetaData.getRequestId(), partETags.size());
             completed = true;
             content.setSize(copied);
-            long s3Length = getLength(s3Key, bucketName);
-            if (s3Length != copied) {
-                String message = "object is not the correct size. expected " + copied + ", found " + s3Length;
-                log.error(message);
-                throw new RuntimeException(message);
-            }
+            length = copied;
+            ActiveTraces.getLocal().add("S3LargeContentDao.write completed length ", copied);
             return key;
         } catch (Exception e) {
             log.warn("unable to write large item to S3 {} {}", channelName, key, e);
             ActiveTraces.getLocal().add("S3LargeContentDao.error ", e.getMessage());
+            if (outputStream != null) {
+                outputStream.abort();
+            }
             if (StringUtils.isNotBlank(uploadId)) {
                 if (completed) {
                     log.warn("deleting multipart {} {}", channelName, key, e);
@@ -155,21 +173,6 @@ public class S3LargeContentDao implements ContentDao {
         }
     }
 
-    private long getLength(String s3Key, String name) {
-        GetObjectRequest request = new GetObjectRequest(name, s3Key);
-        try (S3Object object = s3Client.getObject(request)) {
-            ObjectMetadata metadata = object.getObjectMetadata();
-            long contentLength = metadata.getContentLength();
-            S3ResponseMetadata responseMetadata = s3Client.getCachedResponseMetadata(request);
-            log.debug("{} {} get content length {} {}", name, s3Key, contentLength, responseMetadata.getRequestId());
-            ActiveTraces.getLocal().add("S3LargeContentDao.write completed length ", contentLength);
-            return contentLength;
-        } catch (Exception e) {
-            log.warn("unable to get length" + name + " " + s3Key, e);
-            return 0;
-        }
-    }
-
     @Override
     public void delete(String channelName, ContentKey key) {
         String s3ContentKey = getS3ContentKey(channelName, key, false);
@@ -242,16 +245,9 @@ public class S3LargeContentDao implements ContentDao {
 
     @Override
     public void deleteBefore(String channel, ContentKey limitKey) {
-        Stream.of(bucketName, disasterRecoveryBucketName)
-                .filter(StringUtils::isNotBlank)
-                .forEach(bucket -> {
-                    try {
-                        s3Util.delete(channel + "/large/", limitKey, bucket, s3Client);
-                        log.info("completed deletion of " + channel);
-                    } catch (Exception e) {
-                        log.error("unable to delete  {} in {}", channel, bucket, e);
-                    }
-                });
+        if (s3Util.delete(channel + "/large/", limitKey, Arrays.asList(bucketName, disasterRecoveryBucketName), s3Client)) {
+            log.info("completed deletion of " + channel);
+        }
     }
 
     @Override
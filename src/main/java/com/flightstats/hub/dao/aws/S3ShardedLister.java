@@ -0,0 +1,145 @@
+package com.flightstats.hub.dao.aws;
+
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.flightstats.hub.config.properties.S3Properties;
+import com.flightstats.hub.metrics.StatsdReporter;
+import com.flightstats.hub.util.RuntimeInterruptedException;
+import com.flightstats.hub.util.TimeUtil;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lists a time range of keys as several smaller prefixes, such as each hour of a day, which are paged through
+ * concurrently instead of one marker after another.
+ * Ranges which fit in a single page are listed with one request, and only larger ranges are sharded.
+ */
+@Singleton
+@Slf4j
+class S3ShardedLister {
+
+    private static final int MINUTE_SHARDS = 6;
+    private static final int HOURS_PER_DAY = 24;
+
+    private final HubS3Client s3Client;
+    private final StatsdReporter statsdReporter;
+    private final ExecutorService executorService;
+
+    @Inject
+    S3ShardedLister(HubS3Client s3Client, StatsdReporter statsdReporter, S3Properties s3Properties) {
+        this.s3Client = s3Client;
+        this.statsdReporter = statsdReporter;
+        this.executorService = Executors.newFixedThreadPool(s3Properties.getListThreadCount(),
+                new ThreadFactoryBuilder().setNameFormat("S3List-%d").setDaemon(true).build());
+    }
+
+    /**
+     * @return prefixes which together cover the unit starting at startTime, in key order.
+     * Months are split by day, days by hour, and hours by ten minutes.  Shorter units are not split.
+     */
+    static List<String> shardPrefixes(String basePrefix, DateTime startTime, TimeUtil.Unit unit) {
+        String timePath = basePrefix + unit.format(startTime);
+        List<String> prefixes = new ArrayList<>();
+        if (unit == TimeUtil.Unit.MONTHS) {
+            int days = startTime.dayOfMonth().getMaximumValue();
+            for (int day = 1; day <= days; day++) {
+                prefixes.add(String.format("%s/%02d", timePath, day));
+            }
+        } else if (unit == TimeUtil.Unit.DAYS) {
+            for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+                prefixes.add(String.format("%s/%02d", timePath, hour));
+            }
+        } else if (unit == TimeUtil.Unit.HOURS) {
+            for (int tens = 0; tens < MINUTE_SHARDS; tens++) {
+                prefixes.add(timePath + "/" + tens);
+            }
+        } else {
+            prefixes.add(timePath);
+        }
+        return prefixes;
+    }
+
+    /**
+     * Lists the first page of the unit starting at startTime.  If that page is truncated, the rest of the unit
+     * is paged through concurrently by {@link #shardPrefixes}, continuing after the first page.
+     * All of the prefixes share maxItems, and stop once it's used up.
+     *
+     * @return the summaries of the unit, in key order
+     */
+    List<S3ObjectSummary> list(String bucketName, String basePrefix, DateTime startTime, TimeUtil.Unit unit,
+                               int maxKeys, int maxItems, String channel, String type) {
+        ListObjectsRequest request = new ListObjectsRequest()
+                .withBucketName(bucketName)
+                .withPrefix(basePrefix + unit.format(startTime))
+                .withMaxKeys(maxKeys);
+        long start = System.currentTimeMillis();
+        ObjectListing listing = s3Client.listObjects(request);
+        statsdReporter.time(channel, "s3.list", start, "type:" + type);
+        List<S3ObjectSummary> summaries = new ArrayList<>(listing.getObjectSummaries());
+        if (!listing.isTruncated() || summaries.isEmpty() || summaries.size() >= maxItems) {
+            return summaries;
+        }
+        String lastKey = summaries.get(summaries.size() - 1).getKey();
+        AtomicInteger remaining = new AtomicInteger(maxItems - summaries.size());
+        List<Future<List<S3ObjectSummary>>> futures = new ArrayList<>();
+        for (String prefix : shardPrefixes(basePrefix, startTime, unit)) {
+            if (lastKey.startsWith(prefix)) {
+                futures.add(executorService.submit(() -> listPrefix(bucketName, prefix, lastKey, maxKeys, remaining, channel, type)));
+            } else if (prefix.compareTo(lastKey) > 0) {
+                futures.add(executorService.submit(() -> listPrefix(bucketName, prefix, null, maxKeys, remaining, channel, type)));
+            }
+        }
+        try {
+            for (Future<List<S3ObjectSummary>> future : futures) {
+                summaries.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeInterruptedException(e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        return summaries;
+    }
+
+    private List<S3ObjectSummary> listPrefix(String bucketName, String prefix, String marker, int maxKeys,
+                                             AtomicInteger remaining, String channel, String type) {
+        ListObjectsRequest request = new ListObjectsRequest()
+                .withBucketName(bucketName)
+                .withPrefix(prefix)
+                .withMarker(marker)
+                .withMaxKeys(maxKeys);
+        List<S3ObjectSummary> summaries = new ArrayList<>();
+        boolean truncated = true;
+        while (truncated && remaining.get() > 0) {
+            long start = System.currentTimeMillis();
+            ObjectListing listing = s3Client.listObjects(request);
+            statsdReporter.time(channel, "s3.list", start, "type:" + type);
+            List<S3ObjectSummary> page = listing.getObjectSummaries();
+            if (page.isEmpty()) {
+                break;
+            }
+            summaries.addAll(page);
+            remaining.addAndGet(-page.size());
+            truncated = listing.isTruncated();
+            request.withMarker(page.get(page.size() - 1).getKey());
+            log.trace("list {} {}", prefix, request.getMarker());
+        }
+        return summaries;
+    }
+}
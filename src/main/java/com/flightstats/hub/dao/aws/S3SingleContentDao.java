@@ -31,6 +31,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.SocketTimeoutException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -38,7 +39,6 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.function.Function;
-import java.util.stream.Stream;
 
 @Singleton
 @Slf4j
@@ -52,13 +52,15 @@ public class S3SingleContentDao implements ContentDao {
     private final StatsdReporter statsdReporter;
     private final HubS3Client s3Client;
     private final S3Util s3Util;
+    private final S3ShardedLister shardedLister;
 
     @Inject
     public S3SingleContentDao(HubS3Client s3Client,
                               StatsdReporter statsdReporter,
                               AppProperties appProperties,
                               S3Properties s3Properties,
-                              S3Util s3Util) {
+                              S3Util s3Util,
+                              S3ShardedLister shardedLister) {
         this.s3Client = s3Client;
         this.statsdReporter = statsdReporter;
 
@@ -67,6 +69,7 @@ public class S3SingleContentDao implements ContentDao {
         this.bucketName = s3Properties.getBucketName();
         this.disasterRecoveryBucketName = s3Properties.getDisasterRecoveryBucketName();
         this.s3Util = s3Util;
+        this.shardedLister = shardedLister;
     }
 
     static ObjectMetadata createObjectMetadata(Content content, boolean useEncrypted) {
@@ -193,23 +196,35 @@ public class S3SingleContentDao implements ContentDao {
         log.debug("queryByTime {} ", query);
         Traces traces = ActiveTraces.getLocal();
         traces.add("S3SingleContentDao.queryByTime", query);
-        String timePath = query.getUnit().format(query.getStartTime());
-        ListObjectsRequest request = new ListObjectsRequest()
-                .withBucketName(bucketName)
-                .withMaxKeys(s3MaxQueryItems);
         ContentKey limitKey = query.getLimitKey();
         if (limitKey == null) {
-            request.withPrefix(query.getChannelName() + "/" + timePath);
             limitKey = ContentKey.lastKey(query.getStartTime().plus(query.getUnit().getDuration()));
-        } else {
-            request.withPrefix(query.getChannelName() + "/");
-            request.withMarker(query.getChannelName() + "/" + timePath);
+            SortedSet<ContentKey> keys = listShards(query, limitKey);
+            traces.add("S3SingleContentDao.queryByTime completed", keys);
+            return keys;
         }
+        String timePath = query.getUnit().format(query.getStartTime());
+        ListObjectsRequest request = new ListObjectsRequest()
+                .withBucketName(bucketName)
+                .withMaxKeys(s3MaxQueryItems)
+                .withPrefix(query.getChannelName() + "/")
+                .withMarker(query.getChannelName() + "/" + timePath);
         SortedSet<ContentKey> keys = iterateListObjects(query.getChannelName(), request, MAX_ITEMS, query.getCount(), limitKey);
         traces.add("S3SingleContentDao.queryByTime completed", keys);
         return keys;
     }
 
+    private SortedSet<ContentKey> listShards(TimeQuery query, ContentKey limitKey) {
+        String channel = query.getChannelName();
+        ActiveTraces.getLocal().add("S3SingleContentDao.listShards", channel, query.getStartTime(), query.getUnit());
+        SortedSet<ContentKey> keys = new ContentKeySet(query.getCount(), limitKey);
+        for (S3ObjectSummary summary : shardedLister.list(bucketName, channel + "/", query.getStartTime(), query.getUnit(),
+                s3MaxQueryItems, MAX_ITEMS, channel, "single")) {
+            ContentKey.fromUrl(StringUtils.substringAfter(summary.getKey(), channel + "/")).ifPresent(keys::add);
+        }
+        return keys;
+    }
+
     private SortedSet<ContentKey> iterateListObjects(String channel, ListObjectsRequest request,
                                                      int maxItems, int count, ContentKey limitKey) {
         Traces traces = ActiveTraces.getLocal();
@@ -292,16 +307,9 @@ public class S3SingleContentDao implements ContentDao {
 
     @Override
     public void deleteBefore(String channel, ContentKey limitKey) {
-        Stream.of(bucketName, disasterRecoveryBucketName)
-                .filter(StringUtils::isNotBlank)
-                .forEach(bucket -> {
-                    try {
-                        s3Util.delete(channel + "/", limitKey, bucket, s3Client);
-                        log.debug("completed deletion of {} using limit key {} for bucket: {}", channel, limitKey.toUrl(), bucket);
-                    } catch (Exception e) {
-                        log.warn("unable to delete {} in {}", channel, bucket, e);
-                    }
-                });
+        if (s3Util.delete(channel + "/", limitKey, Arrays.asList(bucketName, disasterRecoveryBucketName), s3Client)) {
+            log.debug("completed deletion of {} using limit key {}", channel, limitKey.toUrl());
+        }
     }
 
     @Override
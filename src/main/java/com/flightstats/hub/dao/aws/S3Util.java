@@ -5,26 +5,67 @@ import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.MultiObjectDeleteException;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.flightstats.hub.cluster.ClusterCacheDao;
+import com.flightstats.hub.config.properties.S3Properties;
 import com.flightstats.hub.dao.ContentDao;
 import com.flightstats.hub.dao.ContentKeyUtil;
 import com.flightstats.hub.metrics.ActiveTraces;
+import com.flightstats.hub.metrics.StatsdReporter;
 import com.flightstats.hub.model.ContentKey;
 import com.flightstats.hub.model.ContentPath;
 import com.flightstats.hub.model.DirectionQuery;
+import com.flightstats.hub.util.RuntimeInterruptedException;
 import com.flightstats.hub.util.TimeUtil;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 import org.joda.time.Duration;
 
+import javax.inject.Inject;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static com.flightstats.hub.constant.ZookeeperNodes.S3_DELETE_CHECKPOINT;
+import static com.flightstats.hub.constant.ZookeeperNodes.S3_DELETE_LIMIT;
+
+@Singleton
 @Slf4j
 class S3Util {
 
+    private final ClusterCacheDao clusterCacheDao;
+    private final StatsdReporter statsdReporter;
+    private final RateLimiter rateLimiter;
+    private final int deleteThreads;
+    private final ExecutorService bucketExecutor;
+    private final ExecutorService batchExecutor;
+
+    @Inject
+    S3Util(ClusterCacheDao clusterCacheDao, StatsdReporter statsdReporter, S3Properties s3Properties) {
+        this.clusterCacheDao = clusterCacheDao;
+        this.statsdReporter = statsdReporter;
+        this.rateLimiter = RateLimiter.create(s3Properties.getDeletesPerSecond());
+        this.deleteThreads = s3Properties.getDeleteThreadCount();
+        this.bucketExecutor = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("S3Delete-%d").setDaemon(true).build());
+        this.batchExecutor = Executors.newFixedThreadPool(deleteThreads,
+                new ThreadFactoryBuilder().setNameFormat("S3DeleteBatch-%d").setDaemon(true).build());
+    }
+
     SortedSet<ContentKey> queryPrevious(DirectionQuery query, ContentDao dao) {
         DateTime endTime = query.getStartKey().getTime();
         DateTime queryTime = endTime;
@@ -50,38 +91,200 @@ class S3Util {
         return keys;
     }
 
-    public void delete(String channelPath, ContentKey limitKey, String s3BucketName, HubS3Client s3Client) {
-        //noinspection StatementWithEmptyBody
-        while (internalDelete(channelPath, limitKey, s3BucketName, s3Client)) {
+    /**
+     * Deletes every key under channelPath before limitKey, in each bucket at the same time.
+     * Listing continues while earlier pages are deleted in DeleteObjects batches, which share one rate limit across
+     * all deletions.  Since keys are deleted oldest first, progress is checkpointed in ZooKeeper, and an interrupted
+     * deletion resumes from its checkpoint the next time the same path is deleted with the same limitKey.
+     *
+     * @return true if every bucket completed
+     */
+    boolean delete(String channelPath, ContentKey limitKey, Collection<String> bucketNames, HubS3Client s3Client) {
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (String bucketName : bucketNames) {
+            if (StringUtils.isNotBlank(bucketName)) {
+                DeleteJob job = new DeleteJob(channelPath, limitKey, bucketName, s3Client);
+                futures.add(bucketExecutor.submit(job::run));
+            }
         }
-        internalDelete(channelPath, limitKey, s3BucketName, s3Client);
+        boolean completed = true;
+        for (Future<Boolean> future : futures) {
+            try {
+                completed &= future.get();
+            } catch (InterruptedException e) {
+                throw new RuntimeInterruptedException(e);
+            } catch (ExecutionException e) {
+                log.warn("unable to delete {}", channelPath, e.getCause());
+                completed = false;
+            }
+        }
+        return completed;
+    }
+
+    static String checkpointName(String bucketName, String channelPath) {
+        return (bucketName + "/" + channelPath).replace('/', ':');
     }
 
-    private boolean internalDelete(String channelPath, ContentKey limitKey, String s3BucketName, HubS3Client s3Client) {
-        ListObjectsRequest request = new ListObjectsRequest();
-        request.withBucketName(s3BucketName);
-        request.withPrefix(channelPath);
-        ObjectListing listing = s3Client.listObjects(request);
-        List<DeleteObjectsRequest.KeyVersion> keys = new ArrayList<>();
-        for (S3ObjectSummary objectSummary : listing.getObjectSummaries()) {
-            ContentPath contentKey = ContentPath.fromUrl(StringUtils.substringAfter(objectSummary.getKey(), channelPath)).get();
-            if (contentKey.compareTo(limitKey) < 0) {
-                keys.add(new DeleteObjectsRequest.KeyVersion(objectSummary.getKey()));
+    private class DeleteJob {
+
+        private final String channelPath;
+        private final ContentKey limitKey;
+        private final String bucketName;
+        private final HubS3Client s3Client;
+        private final String checkpointName;
+        private final String[] tags;
+        private final Semaphore inFlight = new Semaphore(deleteThreads);
+        private final List<Future<?>> futures = new ArrayList<>();
+        private final SortedMap<Long, ContentPath> completedBatches = new TreeMap<>();
+        private final AtomicLong items = new AtomicLong();
+        private long sequence;
+        private long nextCheckpoint;
+        private volatile boolean failed;
+
+        private DeleteJob(String channelPath, ContentKey limitKey, String bucketName, HubS3Client s3Client) {
+            this.channelPath = channelPath;
+            this.limitKey = limitKey;
+            this.bucketName = bucketName;
+            this.s3Client = s3Client;
+            this.checkpointName = checkpointName(bucketName, channelPath);
+            this.tags = new String[]{"bucket:" + bucketName};
+        }
+
+        private boolean run() {
+            long start = System.currentTimeMillis();
+            ListObjectsRequest request = new ListObjectsRequest()
+                    .withBucketName(bucketName)
+                    .withPrefix(channelPath);
+            ContentPath checkpoint = getCheckpoint();
+            if (checkpoint != null) {
+                log.info("resuming deletion of {} in {} after {}", channelPath, bucketName, checkpoint);
+                request.withMarker(channelPath + checkpoint.toUrl());
+            } else {
+                clusterCacheDao.set(limitKey, checkpointName, S3_DELETE_LIMIT);
             }
+            try {
+                boolean more = true;
+                while (more && !failed) {
+                    ObjectListing listing = s3Client.listObjects(request);
+                    List<S3ObjectSummary> batch = new ArrayList<>();
+                    ContentPath last = null;
+                    for (S3ObjectSummary summary : listing.getObjectSummaries()) {
+                        Optional<ContentPath> path = ContentPath.fromUrl(StringUtils.substringAfter(summary.getKey(), channelPath));
+                        if (!path.isPresent() || path.get().compareTo(limitKey) >= 0) {
+                            more = false;
+                            break;
+                        }
+                        batch.add(summary);
+                        last = path.get();
+                    }
+                    if (!batch.isEmpty()) {
+                        send(batch, last);
+                    }
+                    if (!listing.isTruncated() || listing.getObjectSummaries().isEmpty()) {
+                        more = false;
+                    } else {
+                        List<S3ObjectSummary> summaries = listing.getObjectSummaries();
+                        request.withMarker(summaries.get(summaries.size() - 1).getKey());
+                    }
+                }
+            } finally {
+                waitForBatches();
+            }
+            long millis = Math.max(1, System.currentTimeMillis() - start);
+            statsdReporter.gauge("s3.delete.rate", items.get() * 1000.0 / millis, tags);
+            if (failed) {
+                log.warn("incomplete deletion of {} in {}, deleted {} items", channelPath, bucketName, items.get());
+                return false;
+            }
+            clusterCacheDao.delete(checkpointName, S3_DELETE_CHECKPOINT);
+            clusterCacheDao.delete(checkpointName, S3_DELETE_LIMIT);
+            log.debug("deleted {} items from {} in {} in {} ms", items.get(), channelPath, bucketName, millis);
+            return true;
         }
-        if (keys.isEmpty()) {
-            return false;
+
+        /**
+         * A checkpoint left by a deletion with a different limitKey is dropped, since keys before it may have been
+         * written after that deletion stopped.
+         */
+        private ContentPath getCheckpoint() {
+            ContentPath checkpoint = clusterCacheDao.get(checkpointName, null, S3_DELETE_CHECKPOINT);
+            if (checkpoint == null) {
+                return null;
+            }
+            ContentPath checkpointLimit = clusterCacheDao.get(checkpointName, null, S3_DELETE_LIMIT);
+            if (checkpointLimit != null && checkpointLimit.compareTo(limitKey) == 0) {
+                return checkpoint;
+            }
+            log.info("ignoring checkpoint {} of {} in {} with limit {}", checkpoint, channelPath, bucketName, checkpointLimit);
+            clusterCacheDao.delete(checkpointName, S3_DELETE_CHECKPOINT);
+            return null;
         }
-        DeleteObjectsRequest multiObjectDeleteRequest = new DeleteObjectsRequest(s3BucketName);
-        multiObjectDeleteRequest.setKeys(keys);
-        try {
-            s3Client.deleteObjects(multiObjectDeleteRequest);
-            log.debug("deleted more from {}; {} keys deleted", channelPath, keys.size());
-            ActiveTraces.getLocal().add("S3Util.internalDelete", channelPath, keys.size());
-        } catch (MultiObjectDeleteException e) {
-            log.warn("something happened with internal deletion for {}", channelPath, e);
-            return true;
+
+        private void send(List<S3ObjectSummary> batch, ContentPath last) {
+            rateLimiter.acquire(batch.size());
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                throw new RuntimeInterruptedException(e);
+            }
+            long batchSequence = sequence++;
+            futures.add(batchExecutor.submit(() -> {
+                try {
+                    deleteBatch(batch);
+                    checkpoint(batchSequence, last);
+                } catch (Exception e) {
+                    log.warn("unable to delete batch from {} in {}", channelPath, bucketName, e);
+                    failed = true;
+                } finally {
+                    inFlight.release();
+                }
+            }));
+        }
+
+        private void deleteBatch(List<S3ObjectSummary> batch) {
+            List<DeleteObjectsRequest.KeyVersion> keys = new ArrayList<>();
+            long bytes = 0;
+            for (S3ObjectSummary summary : batch) {
+                keys.add(new DeleteObjectsRequest.KeyVersion(summary.getKey()));
+                bytes += summary.getSize();
+            }
+            DeleteObjectsRequest deleteRequest = new DeleteObjectsRequest(bucketName).withKeys(keys);
+            try {
+                s3Client.deleteObjects(deleteRequest);
+            } catch (MultiObjectDeleteException e) {
+                log.info("retrying {} failed deletes from {}", e.getErrors().size(), channelPath);
+                s3Client.deleteObjects(deleteRequest);
+            }
+            items.addAndGet(keys.size());
+            statsdReporter.count("s3.delete.items", keys.size(), tags);
+            statsdReporter.count("s3.delete.bytes", bytes, tags);
+        }
+
+        /**
+         * Batches complete out of order, so the checkpoint only moves past batches which have all completed.
+         */
+        private synchronized void checkpoint(long batchSequence, ContentPath last) {
+            completedBatches.put(batchSequence, last);
+            ContentPath checkpoint = null;
+            while (completedBatches.containsKey(nextCheckpoint)) {
+                checkpoint = completedBatches.remove(nextCheckpoint);
+                nextCheckpoint++;
+            }
+            if (checkpoint != null) {
+                clusterCacheDao.set(checkpoint, checkpointName, S3_DELETE_CHECKPOINT);
+            }
+        }
+
+        private void waitForBatches() {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    throw new RuntimeInterruptedException(e);
+                } catch (ExecutionException e) {
+                    failed = true;
+                }
+            }
         }
-        return listing.isTruncated();
     }
 }
@@ -3,6 +3,7 @@ package com.flightstats.hub.dao.aws;
 import com.flightstats.hub.config.properties.S3Properties;
 import com.flightstats.hub.dao.ContentDao;
 import com.flightstats.hub.dao.aws.writeQueue.WriteQueue;
+import com.flightstats.hub.dao.aws.writeQueue.WriteQueueJournal;
 import com.flightstats.hub.exception.FailedReadException;
 import com.flightstats.hub.metrics.ActiveTraces;
 import com.flightstats.hub.metrics.StatsdReporter;
@@ -19,6 +20,10 @@ import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -28,10 +33,12 @@ import java.util.concurrent.TimeUnit;
 public class S3WriteQueue implements WriteQueue {
 
     private final Retryer<Void> retryer = buildRetryer();
-    private final BlockingQueue<ChannelContentKey> keys;
+    private final BlockingQueue<QueuedKey> keys;
     private final ContentDao spokeWriteContentDao;
     private final ContentDao s3SingleContentDao;
     private final StatsdReporter statsdReporter;
+    private final WriteQueueJournal journal;
+    private final boolean journalPayloads;
 
     @Inject
     S3WriteQueue(@Named(ContentDao.WRITE_CACHE) ContentDao spokeWriteContentDao,
@@ -42,33 +49,63 @@ public class S3WriteQueue implements WriteQueue {
         this.s3SingleContentDao = s3SingleContentDao;
         this.statsdReporter = statsdReporter;
         keys = new LinkedBlockingQueue<>(s3property.getWriteQueueSize());
+        String journalPath = s3property.getWriteQueueJournalPath();
+        if (journalPath == null || journalPath.isEmpty()) {
+            journal = null;
+        } else {
+            journal = new WriteQueueJournal(new File(journalPath), s3property.getWriteQueueJournalSegmentBytes());
+        }
+        journalPayloads = s3property.isWriteQueueJournalPayloads();
+    }
+
+    /**
+     * Queues every entry which was journaled but not written before the last shutdown.
+     */
+    void replay() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        List<WriteQueueJournal.Entry> entries = journal.replay();
+        for (WriteQueueJournal.Entry entry : entries) {
+            if (!keys.offer(new QueuedKey(entry.getKey(), entry))) {
+                //left in the journal for the next restart, and the S3Verifier
+                statsdReporter.increment("s3.writeQueue.dropped");
+            }
+        }
+        statsdReporter.gauge("s3.writeQueue.used", keys.size());
+        statsdReporter.gauge("s3.writeQueue.journal.bytes", journal.getBytes());
+        log.info("replayed {} keys", entries.size());
     }
 
     @VisibleForTesting
     @SneakyThrows
     void write() {
+        QueuedKey queuedKey = null;
         try {
-            ChannelContentKey key = keys.poll(5, TimeUnit.SECONDS);
-            if (key != null) {
+            queuedKey = keys.poll(5, TimeUnit.SECONDS);
+            if (queuedKey != null) {
                 statsdReporter.gauge("s3.writeQueue.used", keys.size());
-                statsdReporter.time("s3.writeQueue.age.removed", key.getAgeMS());
+                statsdReporter.time("s3.writeQueue.age.removed", queuedKey.key.getAgeMS());
             }
+            QueuedKey toWrite = queuedKey;
             retryer.call(() -> {
-                writeContent(key);
+                writeContent(toWrite);
                 return null;
             });
         } catch (Exception e) {
             log.warn("unable to call s3", e);
+        } finally {
+            complete(queuedKey);
         }
     }
 
-    private void writeContent(ChannelContentKey key) throws Exception {
-        if (key != null) {
+    private void writeContent(QueuedKey queuedKey) throws Exception {
+        if (queuedKey != null) {
+            ChannelContentKey key = queuedKey.key;
             ActiveTraces.start("S3WriteQueue.writeContent", key);
             try {
                 log.trace("writing {}", key.getContentKey());
-                Content content = spokeWriteContentDao.get(key.getChannel(), key.getContentKey());
-                content.packageStream();
+                Content content = readJournaled(queuedKey).orElseGet(() -> readSpoke(key));
                 if (content.getData() == null) {
                     throw new FailedReadException("unable to read " + key.toString());
                 }
@@ -79,19 +116,91 @@ public class S3WriteQueue implements WriteQueue {
         }
     }
 
+    private Optional<Content> readJournaled(QueuedKey queuedKey) throws IOException {
+        if (queuedKey.entry == null) {
+            return Optional.empty();
+        }
+        Optional<byte[]> payload = journal.readPayload(queuedKey.entry);
+        if (!payload.isPresent()) {
+            return Optional.empty();
+        }
+        Content.Builder builder = Content.builder()
+                .withContentKey(queuedKey.key.getContentKey())
+                .withData(payload.get());
+        queuedKey.entry.getContentType().ifPresent(builder::withContentType);
+        return Optional.of(builder.build());
+    }
+
+    @SneakyThrows
+    private Content readSpoke(ChannelContentKey key) {
+        Content content = spokeWriteContentDao.get(key.getChannel(), key.getContentKey());
+        content.packageStream();
+        return content;
+    }
+
+    /**
+     * Once an entry is written, or its retries are exhausted, the journal no longer needs it.
+     * The S3Verifier remains responsible for anything which failed.
+     */
+    private void complete(QueuedKey queuedKey) {
+        if (queuedKey == null || queuedKey.entry == null) {
+            return;
+        }
+        try {
+            journal.complete(queuedKey.entry);
+        } catch (IOException e) {
+            log.warn("unable to complete journal entry {}", queuedKey.key, e);
+        }
+    }
+
     @Override
     public boolean add(ChannelContentKey key) {
-        boolean value = keys.offer(key);
+        return add(key, null);
+    }
+
+    @Override
+    public boolean add(ChannelContentKey key, Content content) {
+        if (keys.remainingCapacity() == 0) {
+            return dropped(key);
+        }
+        WriteQueueJournal.Entry entry = null;
+        if (journal != null) {
+            try {
+                entry = journal.append(key, getContentType(content), getPayload(content));
+                statsdReporter.gauge("s3.writeQueue.journal.bytes", journal.getBytes());
+            } catch (IOException e) {
+                log.warn("unable to journal {}", key, e);
+            }
+        }
+        boolean value = keys.offer(new QueuedKey(key, entry));
         if (value) {
             statsdReporter.gauge("s3.writeQueue.used", keys.size());
             statsdReporter.time("s3.writeQueue.age.added", key.getAgeMS());
-        } else {
-            log.warn("Add to queue failed - out of queue space. key={}, queue-size={} queue-remaining-capacity={}", key, keys.size(), keys.remainingCapacity());
-            statsdReporter.increment("s3.writeQueue.dropped");
+            return true;
         }
-        return value;
+        complete(new QueuedKey(key, entry));
+        return dropped(key);
     }
 
+    private boolean dropped(ChannelContentKey key) {
+        log.warn("Add to queue failed - out of queue space. key={}, queue-size={} queue-remaining-capacity={}", key, keys.size(), keys.remainingCapacity());
+        statsdReporter.increment("s3.writeQueue.dropped");
+        return false;
+    }
+
+    private String getContentType(Content content) {
+        if (content == null) {
+            return null;
+        }
+        return content.getContentType().orElse(null);
+    }
+
+    private byte[] getPayload(Content content) {
+        if (!journalPayloads || content == null || content.isLarge()) {
+            return null;
+        }
+        return content.getData();
+    }
 
     int getQueueSize() {
         return keys.size();
@@ -110,4 +219,14 @@ public class S3WriteQueue implements WriteQueue {
                 .withStopStrategy(StopStrategies.stopAfterAttempt(3))
                 .build();
     }
+
+    private static class QueuedKey {
+        private final ChannelContentKey key;
+        private final WriteQueueJournal.Entry entry;
+
+        private QueuedKey(ChannelContentKey key, WriteQueueJournal.Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+    }
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Inject;
+import java.io.IOException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -35,6 +36,11 @@ public class S3WriteQueueLifecycle extends AbstractService {
 
     public void doStart() {
         log.info("queue capacity {}", s3Properties.getWriteQueueSize());
+        try {
+            s3WriteQueue.replay();
+        } catch (IOException e) {
+            log.error("unable to replay write queue journal", e);
+        }
         for (int i = 0; i < s3Properties.getWriteQueueThreadCount(); i++) {
             executorService.submit(() -> {
                 try {
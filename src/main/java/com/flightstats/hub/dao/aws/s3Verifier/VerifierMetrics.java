@@ -5,7 +5,9 @@ public enum VerifierMetrics {
     FAILED("s3.verifier.failed"),
     TIMEOUT("s3.verifier.timeout"),
     PARTIAL_UPDATE("s3.verifier.partial_update"),
-    EXCESSIVE_CHANNEL_VOLUME("s3.verifier.excessive_channel_volume");
+    EXCESSIVE_CHANNEL_VOLUME("s3.verifier.excessive_channel_volume"),
+    DIGEST_MISMATCH("s3.verifier.digest_mismatch"),
+    DIGEST_UNAVAILABLE("s3.verifier.digest_unavailable");
 
     private final String name;
 
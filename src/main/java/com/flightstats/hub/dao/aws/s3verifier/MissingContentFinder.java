@@ -8,58 +8,88 @@ import com.flightstats.hub.metrics.Traces;
 import com.flightstats.hub.model.ContentKey;
 import com.flightstats.hub.model.MinutePath;
 import com.flightstats.hub.model.TimeQuery;
+import com.flightstats.hub.spoke.ClusterWriteSpoke;
+import com.flightstats.hub.spoke.SpokeMinuteDigests;
 import com.flightstats.hub.util.RuntimeInterruptedException;
 import com.flightstats.hub.util.TimeUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
 import org.joda.time.Duration;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static com.flightstats.hub.constant.NamedBinding.S3_VERIFIER_QUERY_THREAD_POOL;
 
+/**
+ * Compares each spoke node's per minute key digests with S3, listing S3 only for the minutes spoke has items in
+ * which haven't already been verified, and querying spoke for the keys of minutes whose digests differ.
+ * Without digests for the whole range, all of spoke's keys are compared with S3.
+ */
 @Slf4j
+@Singleton
 public class MissingContentFinder {
 
+    private static final int MAX_VERIFIED_MINUTES = 100 * 1000;
+
     private final VerifierConfig verifierConfig;
     private final ExecutorService queryThreadPool;
     private final ContentDao spokeWriteContentDao;
     private final ContentDao s3SingleContentDao;
     private final StatsdReporter statsdReporter;
+    private final ClusterWriteSpoke clusterWriteSpoke;
+    /**
+     * The spoke node digests of closed minutes which were found in S3, by channel/minute.
+     */
+    private final Cache<String, Set<SpokeMinuteDigests.Digest>> verifiedDigests = CacheBuilder.newBuilder()
+            .maximumSize(MAX_VERIFIED_MINUTES)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
 
     @Inject
     public MissingContentFinder(@Named(ContentDao.WRITE_CACHE) ContentDao spokeWriteContentDao,
                                 @Named(ContentDao.SINGLE_LONG_TERM) ContentDao s3SingleContentDao,
                                 VerifierConfig verifierConfig,
                                 StatsdReporter statsdReporter,
-                                @Named(S3_VERIFIER_QUERY_THREAD_POOL) ExecutorService queryThreadPool) {
+                                @Named(S3_VERIFIER_QUERY_THREAD_POOL) ExecutorService queryThreadPool,
+                                ClusterWriteSpoke clusterWriteSpoke) {
         this.spokeWriteContentDao = spokeWriteContentDao;
         this.s3SingleContentDao = s3SingleContentDao;
         this.verifierConfig = verifierConfig;
         this.queryThreadPool = queryThreadPool;
         this.statsdReporter = statsdReporter;
+        this.clusterWriteSpoke = clusterWriteSpoke;
     }
 
     public SortedSet<ContentKey> getMissing(MinutePath startPath, MinutePath endPath, String channelName) {
-        TimeQuery timeQuery = buildTimeQuery(channelName, startPath, endPath);
-        CompletableFuture<QueryResult> spokeQueryResults = getContentKeyFuture(() -> spokeWriteContentDao.queryByTime(timeQuery));
-        CompletableFuture<QueryResult> s3QueryResults = getContentKeyFuture(() -> s3SingleContentDao.queryByTime(timeQuery));
+        CompletableFuture<Optional<List<SpokeMinuteDigests>>> spokeDigests = getFuture(() -> readSpokeDigests(channelName, startPath, endPath));
+        CompletableFuture<SortedSet<ContentKey>> missingKeys = spokeDigests.thenCompose(digests -> digests.isPresent()
+                ? getFuture(() -> findMissingByMinute(channelName, startPath, endPath, digests.get()))
+                : findMissingInRange(channelName, startPath, endPath));
 
         try {
-            CompletableFuture
-                    .allOf(spokeQueryResults, s3QueryResults)
-                    .get(calculateQueryTimeout(startPath, endPath), verifierConfig.getBaseTimeoutUnit());
-
-            return findMissingKeys(channelName, spokeQueryResults.get(), s3QueryResults.get());
+            return missingKeys.get(calculateQueryTimeout(startPath, endPath), verifierConfig.getBaseTimeoutUnit());
         } catch (InterruptedException e) {
             throw new RuntimeInterruptedException(e);
         } catch (TimeoutException e) {
@@ -69,12 +99,119 @@ public class MissingContentFinder {
         } catch (ExecutionException e) {
             throw new RuntimeException(e);
         } finally {
-            Stream.of(spokeQueryResults, s3QueryResults)
+            Stream.of(spokeDigests, missingKeys)
                     .filter(future -> !future.isDone())
                     .forEach(future -> future.cancel(true));
         }
     }
 
+    /**
+     * @return the digests of every spoke node for the hours covering the minutes before endPath
+     */
+    private Optional<List<SpokeMinuteDigests>> readSpokeDigests(String channelName, MinutePath startPath, MinutePath endPath) {
+        if (endPath == null) {
+            return Optional.empty();
+        }
+        List<SpokeMinuteDigests> digests = new ArrayList<>();
+        try {
+            DateTime hour = TimeUtil.Unit.HOURS.round(startPath.getTime());
+            while (hour.isBefore(endPath.getTime())) {
+                Optional<List<SpokeMinuteDigests>> hourDigests = clusterWriteSpoke.readMinuteDigestsFromWriteCluster(channelName, TimeUtil.Unit.HOURS.format(hour));
+                if (!hourDigests.isPresent()) {
+                    return Optional.empty();
+                }
+                digests.addAll(hourDigests.get());
+                hour = hour.plusHours(1);
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeInterruptedException(e);
+        }
+        return Optional.of(digests);
+    }
+
+    private CompletableFuture<SortedSet<ContentKey>> findMissingInRange(String channelName, MinutePath startPath, MinutePath endPath) {
+        statsdReporter.increment(VerifierMetrics.DIGEST_UNAVAILABLE.getName());
+        TimeQuery timeQuery = buildTimeQuery(channelName, startPath, endPath);
+        CompletableFuture<QueryResult> spokeQueryResults = getContentKeyFuture(() -> spokeWriteContentDao.queryByTime(timeQuery));
+        CompletableFuture<QueryResult> s3QueryResults = getContentKeyFuture(() -> s3SingleContentDao.queryByTime(timeQuery));
+        return spokeQueryResults.thenCombine(s3QueryResults,
+                (spokeQueryResult, s3QueryResult) -> findMissingKeys(channelName, spokeQueryResult, s3QueryResult));
+    }
+
+    /**
+     * Lists S3 once for each run of consecutive unverified minutes.
+     */
+    private SortedSet<ContentKey> findMissingByMinute(String channelName, MinutePath startPath, MinutePath endPath,
+                                                      List<SpokeMinuteDigests> spokeDigests) {
+        SortedMap<MinutePath, Set<SpokeMinuteDigests.Digest>> unverified = findUnverifiedMinutes(channelName, spokeDigests, startPath, endPath);
+        QueryResult spokeQueryResult = new QueryResult(1);
+        QueryResult s3QueryResult = new QueryResult(1);
+        int mismatches = 0;
+        for (List<MinutePath> run : consecutiveRuns(unverified.keySet())) {
+            MinutePath last = run.get(run.size() - 1);
+            SortedSet<ContentKey> s3Keys = s3SingleContentDao.queryByTime(buildTimeQuery(channelName, run.get(0),
+                    new MinutePath(last.getTime().plusMinutes(1))));
+            s3QueryResult.addKeys(s3Keys);
+            SpokeMinuteDigests s3Digests = SpokeMinuteDigests.of(s3Keys);
+            for (MinutePath minute : run) {
+                Set<SpokeMinuteDigests.Digest> nodeDigests = unverified.get(minute);
+                if (s3Digests.get(minute).filter(digest -> nodeDigests.equals(Collections.singleton(digest))).isPresent()) {
+                    verifiedDigests.put(verifiedName(channelName, minute), nodeDigests);
+                    continue;
+                }
+                log.debug("digest mismatch {} {}", channelName, minute);
+                mismatches++;
+                SortedSet<ContentKey> spokeKeys = spokeWriteContentDao.queryByTime(TimeQuery.builder()
+                        .channelName(channelName)
+                        .startTime(minute.getTime())
+                        .unit(TimeUtil.Unit.MINUTES)
+                        .build());
+                spokeQueryResult.addKeys(spokeKeys);
+                if (s3Keys.containsAll(spokeKeys)) {
+                    verifiedDigests.put(verifiedName(channelName, minute), nodeDigests);
+                }
+            }
+        }
+        if (mismatches > 0) {
+            statsdReporter.count(VerifierMetrics.DIGEST_MISMATCH.getName(), mismatches);
+        }
+        return findMissingKeys(channelName, spokeQueryResult, s3QueryResult);
+    }
+
+    /**
+     * @return the distinct node digests of each minute with items in spoke, leaving out minutes already verified
+     */
+    private SortedMap<MinutePath, Set<SpokeMinuteDigests.Digest>> findUnverifiedMinutes(String channelName, List<SpokeMinuteDigests> spokeDigests,
+                                                                                       MinutePath startPath, MinutePath endPath) {
+        SortedMap<MinutePath, Set<SpokeMinuteDigests.Digest>> minutes = new TreeMap<>();
+        for (SpokeMinuteDigests nodeDigests : spokeDigests) {
+            nodeDigests.getDigests().subMap(startPath, endPath).forEach((minute, digest) ->
+                    minutes.computeIfAbsent(minute, key -> new HashSet<>()).add(digest));
+        }
+        minutes.entrySet().removeIf(entry -> {
+            Set<SpokeMinuteDigests.Digest> verified = verifiedDigests.getIfPresent(verifiedName(channelName, entry.getKey()));
+            return verified != null && verified.containsAll(entry.getValue());
+        });
+        return minutes;
+    }
+
+    private static List<List<MinutePath>> consecutiveRuns(Collection<MinutePath> minutes) {
+        List<List<MinutePath>> runs = new ArrayList<>();
+        List<MinutePath> run = null;
+        for (MinutePath minute : minutes) {
+            if (run == null || !run.get(run.size() - 1).getTime().plusMinutes(1).equals(minute.getTime())) {
+                run = new ArrayList<>();
+                runs.add(run);
+            }
+            run.add(minute);
+        }
+        return runs;
+    }
+
+    private static String verifiedName(String channelName, MinutePath minute) {
+        return channelName + "/" + minute.toUrl();
+    }
+
     private SortedSet<ContentKey> findMissingKeys(String channelName, QueryResult spokeQueryResult, QueryResult s3QueryResult) {
         SortedSet<ContentKey> missingKeys = new TreeSet<>(spokeQueryResult.getContentKeys());
         missingKeys.removeAll(s3QueryResult.getContentKeys());
@@ -113,12 +250,18 @@ public class MissingContentFinder {
     }
 
     private CompletableFuture<QueryResult> getContentKeyFuture(Supplier<SortedSet<ContentKey>> callable) {
-        Traces traces = ActiveTraces.getLocal();
-        return CompletableFuture.supplyAsync(() -> {
-            ActiveTraces.setLocal(traces);
+        return getFuture(() -> {
             QueryResult queryResult = new QueryResult(1);
             queryResult.addKeys(callable.get());
             return queryResult;
+        });
+    }
+
+    private <T> CompletableFuture<T> getFuture(Supplier<T> supplier) {
+        Traces traces = ActiveTraces.getLocal();
+        return CompletableFuture.supplyAsync(() -> {
+            ActiveTraces.setLocal(traces);
+            return supplier.get();
         }, queryThreadPool);
     }
 }
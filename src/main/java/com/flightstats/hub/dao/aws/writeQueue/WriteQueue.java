@@ -1,8 +1,16 @@
 package com.flightstats.hub.dao.aws.writeQueue;
 
 import com.flightstats.hub.model.ChannelContentKey;
+import com.flightstats.hub.model.Content;
 
 public interface WriteQueue {
     boolean add(ChannelContentKey key);
 
+    /**
+     * @param content the item as written to spoke, which implementations may keep instead of reading it back
+     */
+    default boolean add(ChannelContentKey key, Content content) {
+        return add(key);
+    }
+
 }
@@ -0,0 +1,344 @@
+package com.flightstats.hub.dao.aws.writeQueue;
+
+import com.flightstats.hub.model.ChannelContentKey;
+import com.flightstats.hub.model.ContentKey;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An append-only journal of S3 write queue entries, so queued writes survive a restart.
+ * <p>
+ * Entries, optionally with the marshalled payload, are appended to numbered segment files.
+ * Completed entries are recorded in a matching ack file, and a segment is deleted once it has rolled over
+ * and all of its entries are complete.  {@link #replay()} returns every entry which was never completed.
+ * <p>
+ * Appends share one lock, and return once their record has been forced to disk.  Appenders which arrive while
+ * a force is in progress are covered by the next single force, so concurrent appends share the cost.
+ * Acks are written under their segment's lock, and are not forced, as a lost ack only replays a write
+ * which S3 has already accepted.
+ */
+@Slf4j
+public class WriteQueueJournal {
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String ACK_SUFFIX = ".acks";
+
+    private final File directory;
+    private final long maxSegmentBytes;
+    private final Map<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Object appendLock = new Object();
+    private long sequence;
+    private volatile Segment active;
+
+    public WriteQueueJournal(File directory, long maxSegmentBytes) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        directory.mkdirs();
+    }
+
+    /**
+     * Reads all existing segments, and returns the incomplete entries in the order they were added.
+     */
+    public List<Entry> replay() throws IOException {
+        synchronized (appendLock) {
+            return replayLocked();
+        }
+    }
+
+    private List<Entry> replayLocked() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        File[] files = Optional.ofNullable(directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX)))
+                .orElse(new File[]{});
+        Arrays.sort(files);
+        for (File file : files) {
+            long id = Long.parseLong(file.getName().replace(SEGMENT_SUFFIX, ""));
+            Segment segment = new Segment(id);
+            Set<Long> acked = segment.readAcks();
+            List<Entry> segmentEntries = segment.readEntries();
+            for (Entry entry : segmentEntries) {
+                sequence = Math.max(sequence, entry.sequence);
+                if (!acked.contains(entry.sequence)) {
+                    entries.add(entry);
+                    segment.outstanding.incrementAndGet();
+                }
+            }
+            segments.put(id, segment);
+            if (segment.outstanding.get() == 0) {
+                segment.delete();
+            }
+        }
+        log.info("replayed {} incomplete entries from {} segments in {}", entries.size(), files.length, directory);
+        return entries;
+    }
+
+    /**
+     * @param payload the marshalled item, or null if it should be read from spoke
+     */
+    public Entry append(ChannelContentKey key, String contentType, byte[] payload) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(64 + (payload == null ? 0 : payload.length));
+        DataOutputStream output = new DataOutputStream(baos);
+        output.writeLong(0);
+        output.writeUTF(key.getChannel());
+        output.writeUTF(key.getContentKey().toUrl());
+        output.writeUTF(contentType == null ? "" : contentType);
+        output.writeInt(payload == null ? -1 : payload.length);
+        int payloadOffset = output.size();
+        if (payload != null) {
+            output.write(payload);
+        }
+        output.flush();
+        ByteBuffer record = ByteBuffer.wrap(baos.toByteArray());
+        Entry entry;
+        Segment segment;
+        long recordEnd;
+        synchronized (appendLock) {
+            if (active == null || active.size() >= maxSegmentBytes) {
+                roll();
+            }
+            segment = active;
+            sequence++;
+            record.putLong(0, sequence);
+            long recordOffset = segment.append(record);
+            recordEnd = recordOffset + record.capacity();
+            segment.outstanding.incrementAndGet();
+            entry = new Entry(segment.id, sequence, key, contentType,
+                    payload == null ? -1 : recordOffset + payloadOffset, payload == null ? -1 : payload.length);
+        }
+        segment.force(recordEnd);
+        return entry;
+    }
+
+    public Optional<byte[]> readPayload(Entry entry) throws IOException {
+        if (!entry.hasPayload()) {
+            return Optional.empty();
+        }
+        byte[] bytes = new byte[entry.payloadLength];
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(entry.segment), "r")) {
+            file.seek(entry.payloadOffset);
+            file.readFully(bytes);
+        }
+        return Optional.of(bytes);
+    }
+
+    public void complete(Entry entry) throws IOException {
+        Segment segment = segments.get(entry.segment);
+        if (segment == null) {
+            return;
+        }
+        segment.ack(entry.sequence);
+        if (segment.outstanding.decrementAndGet() <= 0 && segment != active) {
+            segment.delete();
+        }
+    }
+
+    public long getBytes() {
+        return segments.values().stream().mapToLong(Segment::size).sum();
+    }
+
+    private void roll() throws IOException {
+        Segment previous = active;
+        Segment next = new Segment(sequence + 1);
+        next.open();
+        segments.put(next.id, next);
+        active = next;
+        if (previous != null && previous.outstanding.get() <= 0) {
+            previous.delete();
+        }
+    }
+
+    private File segmentFile(long id) {
+        return new File(directory, String.format("%020d", id) + SEGMENT_SUFFIX);
+    }
+
+    private File ackFile(long id) {
+        return new File(directory, String.format("%020d", id) + ACK_SUFFIX);
+    }
+
+    public static class Entry {
+        private final long segment;
+        private final long sequence;
+        private final ChannelContentKey key;
+        private final String contentType;
+        private final long payloadOffset;
+        private final int payloadLength;
+
+        Entry(long segment, long sequence, ChannelContentKey key, String contentType, long payloadOffset, int payloadLength) {
+            this.segment = segment;
+            this.sequence = sequence;
+            this.key = key;
+            this.contentType = contentType;
+            this.payloadOffset = payloadOffset;
+            this.payloadLength = payloadLength;
+        }
+
+        public ChannelContentKey getKey() {
+            return key;
+        }
+
+        public Optional<String> getContentType() {
+            return Optional.ofNullable(contentType).filter(type -> !type.isEmpty());
+        }
+
+        public boolean hasPayload() {
+            return payloadLength >= 0;
+        }
+    }
+
+    private class Segment {
+        private final long id;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicLong size = new AtomicLong();
+        private final Object forceLock = new Object();
+        private long forced;
+        private FileChannel channel;
+        private FileChannel ackChannel;
+        private boolean deleted;
+
+        private Segment(long id) {
+            this.id = id;
+            this.size.set(segmentFile(id).length());
+        }
+
+        private void open() throws IOException {
+            channel = FileChannel.open(segmentFile(id).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        }
+
+        /**
+         * Only called by the active segment, under the append lock.
+         */
+        private long append(ByteBuffer record) throws IOException {
+            long offset = size.get();
+            while (record.hasRemaining()) {
+                channel.write(record, offset + record.position());
+            }
+            size.addAndGet(record.capacity());
+            return offset;
+        }
+
+        /**
+         * Forces the segment up to at least end.  A caller which waited for another caller's force may find its
+         * record already covered.
+         */
+        private void force(long end) throws IOException {
+            synchronized (forceLock) {
+                if (forced >= end) {
+                    return;
+                }
+                long written = size.get();
+                synchronized (this) {
+                    if (deleted) {
+                        return;
+                    }
+                    channel.force(false);
+                }
+                forced = written;
+            }
+        }
+
+        private synchronized void ack(long ackSequence) throws IOException {
+            if (deleted) {
+                return;
+            }
+            if (ackChannel == null) {
+                ackChannel = FileChannel.open(ackFile(id).toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            buffer.putLong(0, ackSequence);
+            while (buffer.hasRemaining()) {
+                ackChannel.write(buffer);
+            }
+        }
+
+        private long size() {
+            return size.get();
+        }
+
+        private Set<Long> readAcks() throws IOException {
+            Set<Long> acks = new HashSet<>();
+            File file = ackFile(id);
+            if (!file.exists()) {
+                return acks;
+            }
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                while (true) {
+                    acks.add(input.readLong());
+                }
+            } catch (EOFException e) {
+                return acks;
+            }
+        }
+
+        private List<Entry> readEntries() throws IOException {
+            List<Entry> entries = new ArrayList<>();
+            try (CountingInputStream counting = new CountingInputStream(new BufferedInputStream(new FileInputStream(segmentFile(id))));
+                 DataInputStream input = new DataInputStream(counting)) {
+                while (true) {
+                    long entrySequence = input.readLong();
+                    String channel = input.readUTF();
+                    String keyUrl = input.readUTF();
+                    String contentType = input.readUTF();
+                    int payloadLength = input.readInt();
+                    long payloadOffset = counting.getCount();
+                    if (payloadLength > 0) {
+                        ByteStreams.skipFully(input, payloadLength);
+                    }
+                    Optional<ContentKey> contentKey = ContentKey.fromUrl(keyUrl);
+                    if (contentKey.isPresent()) {
+                        entries.add(new Entry(id, entrySequence, new ChannelContentKey(channel, contentKey.get()),
+                                contentType, payloadLength < 0 ? -1 : payloadOffset, payloadLength));
+                    } else {
+                        log.warn("unable to parse journal key {} {}", channel, keyUrl);
+                    }
+                }
+            } catch (EOFException e) {
+                //append never returned for a record cut short by a crash, so no caller is waiting on it,
+                //and new records always start a new segment, so nothing is written after it
+            }
+            return entries;
+        }
+
+        private synchronized void delete() {
+            if (deleted) {
+                return;
+            }
+            deleted = true;
+            for (FileChannel open : new FileChannel[]{channel, ackChannel}) {
+                if (open != null) {
+                    try {
+                        open.close();
+                    } catch (IOException e) {
+                        log.warn("unable to close journal segment {}", id, e);
+                    }
+                }
+            }
+            segmentFile(id).delete();
+            ackFile(id).delete();
+            segments.remove(id);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.flightstats.hub.events;
+
+import com.flightstats.hub.model.Content;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.MinutePath;
+
+import java.util.Optional;
+
+/**
+ * Receives new items from {@link ChannelSubscriptions}.
+ * Sends to one subscriber happen in order on one thread at a time, though not always the same thread.
+ * Any exception thrown while sending, or falling too far behind, drops the subscriber.
+ */
+public interface ChannelSubscriber {
+
+    /**
+     * @param content is only read, once for all subscribers, when {@link #needsContent()}
+     */
+    void send(ContentKey key, Optional<Content> content) throws Exception;
+
+    default boolean needsContent() {
+        return false;
+    }
+
+    default void sendHeartbeat(MinutePath minutePath) throws Exception {
+    }
+
+    /**
+     * Called once when this subscriber is dropped by the bus.
+     */
+    default void onClose() {
+    }
+}
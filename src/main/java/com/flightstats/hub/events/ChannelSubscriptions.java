@@ -0,0 +1,341 @@
+package com.flightstats.hub.events;
+
+import com.flightstats.hub.config.properties.AppProperties;
+import com.flightstats.hub.dao.ChannelService;
+import com.flightstats.hub.dao.ItemRequest;
+import com.flightstats.hub.dao.aws.ContentRetriever;
+import com.flightstats.hub.exception.NoSuchChannelException;
+import com.flightstats.hub.model.Content;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.MinutePath;
+import com.flightstats.hub.model.TimeQuery;
+import com.flightstats.hub.util.RuntimeInterruptedException;
+import com.flightstats.hub.util.Sleeper;
+import com.flightstats.hub.util.TimeUtil;
+import com.flightstats.hub.webhook.strategy.QueryGenerator;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers new items to local subscribers from one reader per channel.
+ * <p>
+ * Each channel with subscribers on this hub has a single thread which follows the channel's stable items, the same
+ * way a webhook does, reads each payload at most once, and fans it out to every subscriber.
+ * A subscriber which starts before the reader's position catches up with its own queries, then joins the others.
+ * <p>
+ * Each subscription is sent to from its own bounded queue, so a slow subscriber doesn't hold up the others, and a
+ * subscriber whose queue overflows is dropped.  Errors reading the channel are retried with a backoff.
+ */
+@Singleton
+@Slf4j
+public class ChannelSubscriptions {
+
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 60 * 1000;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("channel-subscriptions-%d").setDaemon(true).build());
+    private final Map<String, Follower> followers = new HashMap<>();
+
+    private final ContentRetriever contentRetriever;
+    private final ChannelService channelService;
+    private final int queueSize;
+
+    @Inject
+    public ChannelSubscriptions(ContentRetriever contentRetriever, ChannelService channelService, AppProperties appProperties) {
+        this(contentRetriever, channelService, appProperties.getSubscriptionQueueSize());
+    }
+
+    ChannelSubscriptions(ContentRetriever contentRetriever, ChannelService channelService, int queueSize) {
+        this.contentRetriever = contentRetriever;
+        this.channelService = channelService;
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * @param startingKey only items after this key are sent
+     */
+    public synchronized Subscription subscribe(String channel, ContentKey startingKey, ChannelSubscriber subscriber) {
+        Subscription subscription = new Subscription(subscriber, startingKey, executor, queueSize);
+        Follower follower = followers.get(channel);
+        if (follower == null) {
+            follower = new Follower(channel);
+            followers.put(channel, follower);
+            executor.submit(follower);
+        }
+        follower.joining.add(subscription);
+        log.debug("subscribed to {} from {}, {} followed channels", channel, startingKey, followers.size());
+        return subscription;
+    }
+
+    synchronized int getFollowedChannels() {
+        return followers.size();
+    }
+
+    public static class Subscription {
+
+        private final ChannelSubscriber subscriber;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final BlockingQueue<Delivery> queue;
+        private final ExecutorService executor;
+        /**
+         * The last key queued for this subscriber.
+         */
+        private ContentKey lastSent;
+        private QueryGenerator catchUp;
+
+        private Subscription(ChannelSubscriber subscriber, ContentKey startingKey, ExecutorService executor, int queueSize) {
+            this.subscriber = subscriber;
+            this.lastSent = startingKey;
+            this.executor = executor;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        /**
+         * Stops delivery to this subscription, the follower exits once its last subscription is closed.
+         */
+        public void close() {
+            closed.set(true);
+        }
+
+        private boolean isClosed() {
+            return closed.get();
+        }
+
+        private void drop() {
+            if (closed.compareAndSet(false, true)) {
+                subscriber.onClose();
+            }
+        }
+
+        private void send(ContentKey key, Optional<Content> content) {
+            lastSent = key;
+            enqueue(() -> subscriber.send(key, content));
+        }
+
+        private void sendHeartbeat(MinutePath minutePath) {
+            enqueue(() -> subscriber.sendHeartbeat(minutePath));
+        }
+
+        private void enqueue(Delivery delivery) {
+            if (isClosed()) {
+                return;
+            }
+            if (!queue.offer(delivery)) {
+                log.info("subscriber queue is full at {}, dropping subscriber", lastSent);
+                drop();
+                return;
+            }
+            if (sending.compareAndSet(false, true)) {
+                executor.submit(this::drain);
+            }
+        }
+
+        /**
+         * Sends everything queued, leaving sending set while this is running so only one thread sends at a time.
+         */
+        private void drain() {
+            do {
+                Delivery delivery;
+                while (!isClosed() && (delivery = queue.poll()) != null) {
+                    try {
+                        delivery.send();
+                    } catch (Exception e) {
+                        log.debug("unable to send to subscriber, dropping it", e);
+                        drop();
+                    }
+                }
+                sending.set(false);
+            } while (!isClosed() && !queue.isEmpty() && sending.compareAndSet(false, true));
+            if (isClosed()) {
+                queue.clear();
+            }
+        }
+    }
+
+    private interface Delivery {
+        void send() throws Exception;
+    }
+
+    private class Follower implements Runnable {
+
+        private final String channel;
+        private final Queue<Subscription> joining = new ConcurrentLinkedQueue<>();
+        private final List<Subscription> catchingUp = new ArrayList<>();
+        private final List<Subscription> live = new ArrayList<>();
+        private QueryGenerator queryGenerator;
+        private ContentKey lastAdded;
+
+        private Follower(String channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void run() {
+            Thread.currentThread().setName("channel-subscriptions-" + channel);
+            long backoffMillis = MIN_BACKOFF_MILLIS;
+            try {
+                while (hasSubscriptions()) {
+                    try {
+                        if (!doWork()) {
+                            Sleeper.sleep(1000);
+                        }
+                        backoffMillis = MIN_BACKOFF_MILLIS;
+                    } catch (RuntimeInterruptedException | NoSuchChannelException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        log.warn("unable to follow {}, retrying in {} ms", channel, backoffMillis, e);
+                        rewind();
+                        Sleeper.sleep(backoffMillis);
+                        backoffMillis = Math.min(MAX_BACKOFF_MILLIS, backoffMillis * 2);
+                    }
+                }
+            } catch (RuntimeInterruptedException e) {
+                log.warn("interrupted following {}", channel);
+                Thread.currentThread().interrupt();
+                dropAll();
+            } catch (NoSuchChannelException e) {
+                log.info("channel {} no longer exists", channel);
+                dropAll();
+            } catch (Exception e) {
+                log.error("unexpected issue following {}", channel, e);
+                dropAll();
+            }
+        }
+
+        /**
+         * Queries again from the last keys queued, since a failed query has already moved its generator on.
+         */
+        private void rewind() {
+            if (queryGenerator != null) {
+                queryGenerator = new QueryGenerator(lastAdded.getTime(), channel);
+            }
+            for (Subscription subscription : catchingUp) {
+                subscription.catchUp = new QueryGenerator(subscription.lastSent.getTime(), channel);
+            }
+        }
+
+        private boolean hasSubscriptions() {
+            synchronized (ChannelSubscriptions.this) {
+                Subscription subscription;
+                while ((subscription = joining.poll()) != null) {
+                    join(subscription);
+                }
+                catchingUp.removeIf(Subscription::isClosed);
+                live.removeIf(Subscription::isClosed);
+                if (catchingUp.isEmpty() && live.isEmpty()) {
+                    followers.remove(channel);
+                    log.debug("no more subscriptions to {}", channel);
+                    return false;
+                }
+                return true;
+            }
+        }
+
+        private void join(Subscription subscription) {
+            if (queryGenerator == null) {
+                queryGenerator = new QueryGenerator(subscription.lastSent.getTime(), channel);
+                lastAdded = subscription.lastSent;
+                live.add(subscription);
+            } else if (subscription.lastSent.compareTo(lastAdded) >= 0) {
+                live.add(subscription);
+            } else {
+                subscription.catchUp = new QueryGenerator(subscription.lastSent.getTime(), channel);
+                catchingUp.add(subscription);
+            }
+        }
+
+        private boolean doWork() {
+            boolean worked = false;
+            DateTime latestStableInChannel = TimeUtil.stable();
+            if (!contentRetriever.isLiveChannel(channel)) {
+                latestStableInChannel = contentRetriever.getLastUpdated(channel, MinutePath.NONE).getTime();
+            }
+            TimeQuery timeQuery = queryGenerator.getQuery(latestStableInChannel);
+            if (timeQuery != null) {
+                for (ContentKey key : contentRetriever.queryByTime(timeQuery)) {
+                    if (key.compareTo(lastAdded) > 0) {
+                        send(live, key);
+                        lastAdded = key;
+                    }
+                }
+                if (queryGenerator.getLastQueryTime().getSecondOfMinute() == 0) {
+                    MinutePath minutePath = new MinutePath(queryGenerator.getLastQueryTime().minusMinutes(1));
+                    for (Subscription subscription : live) {
+                        subscription.sendHeartbeat(minutePath);
+                    }
+                }
+                worked = true;
+            }
+            Iterator<Subscription> iterator = catchingUp.iterator();
+            while (iterator.hasNext()) {
+                Subscription subscription = iterator.next();
+                TimeQuery catchUpQuery = subscription.catchUp.getQuery(queryGenerator.getLastQueryTime());
+                if (catchUpQuery == null) {
+                    log.debug("caught up {} at {}", channel, subscription.lastSent);
+                    subscription.catchUp = null;
+                    iterator.remove();
+                    live.add(subscription);
+                } else {
+                    for (ContentKey key : contentRetriever.queryByTime(catchUpQuery)) {
+                        send(Collections.singletonList(subscription), key);
+                    }
+                    worked = true;
+                }
+            }
+            return worked;
+        }
+
+        private void send(List<Subscription> subscriptions, ContentKey key) {
+            Optional<Content> content = null;
+            for (Subscription subscription : subscriptions) {
+                if (subscription.isClosed() || key.compareTo(subscription.lastSent) <= 0) {
+                    continue;
+                }
+                if (subscription.subscriber.needsContent()) {
+                    if (content == null) {
+                        content = channelService.get(ItemRequest.builder().channel(channel).key(key).build());
+                    }
+                    if (!content.isPresent()) {
+                        subscription.lastSent = key;
+                        continue;
+                    }
+                    subscription.send(key, content);
+                } else {
+                    subscription.send(key, Optional.empty());
+                }
+            }
+        }
+
+        private void dropAll() {
+            synchronized (ChannelSubscriptions.this) {
+                followers.remove(channel);
+                Subscription subscription;
+                while ((subscription = joining.poll()) != null) {
+                    subscription.drop();
+                }
+            }
+            catchingUp.forEach(Subscription::drop);
+            live.forEach(Subscription::drop);
+        }
+    }
+}
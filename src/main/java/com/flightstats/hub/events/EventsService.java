@@ -7,6 +7,8 @@ import com.flightstats.hub.dao.ChannelService;
 import com.flightstats.hub.dao.ItemRequest;
 import com.flightstats.hub.model.ChannelContentKey;
 import com.flightstats.hub.model.Content;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.MinutePath;
 import com.flightstats.hub.webhook.WebhookService;
 import com.google.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
@@ -26,16 +28,19 @@ public class EventsService {
     private final WebhookService webhookService;
     private final AppProperties appProperties;
     private final LocalHostProperties localHostProperties;
+    private final ChannelSubscriptions channelSubscriptions;
 
     @Inject
     public EventsService(ChannelService channelService,
                          WebhookService webhookService,
                          AppProperties appProperties,
-                         LocalHostProperties localHostProperties){
+                         LocalHostProperties localHostProperties,
+                         ChannelSubscriptions channelSubscriptions){
         this.channelService = channelService;
         this.webhookService = webhookService;
         this.appProperties = appProperties;
         this.localHostProperties = localHostProperties;
+        this.channelSubscriptions = channelSubscriptions;
     }
 
     private Map<String, EventWebhook> outputStreamMap = new ConcurrentHashMap<>();
@@ -87,6 +92,11 @@ public class EventsService {
     }
 
     public void register(ContentOutput contentOutput) {
+        if (appProperties.isSubscriptionBusEnabled()) {
+            log.debug("subscribing events to {}", contentOutput.getChannel());
+            channelSubscriptions.subscribe(contentOutput.getChannel(), contentOutput.getContentKey(), new EventsSubscriber(contentOutput));
+            return;
+        }
         EventWebhook eventWebhook = new EventWebhook(
                 contentOutput,
                 webhookService,
@@ -108,4 +118,33 @@ public class EventsService {
         }
     }
 
+    private static class EventsSubscriber implements ChannelSubscriber {
+
+        private final ContentOutput contentOutput;
+
+        private EventsSubscriber(ContentOutput contentOutput) {
+            this.contentOutput = contentOutput;
+        }
+
+        @Override
+        public void send(ContentKey key, Optional<Content> content) throws Exception {
+            contentOutput.write(content.get());
+        }
+
+        @Override
+        public boolean needsContent() {
+            return true;
+        }
+
+        @Override
+        public void sendHeartbeat(MinutePath minutePath) throws Exception {
+            contentOutput.writeHeartbeat();
+        }
+
+        @Override
+        public void onClose() {
+            log.debug("closing events for {}", contentOutput.getChannel());
+            contentOutput.close();
+        }
+    }
 }
@@ -2,6 +2,7 @@ package com.flightstats.hub.filter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.flightstats.hub.metrics.ActiveTraces;
+import com.flightstats.hub.metrics.Traces;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
@@ -50,6 +51,10 @@ public class TracesFilter implements ContainerRequestFilter, ContainerResponseFi
         log.trace("incoming {} {} {}", requestUri, request.getMethod(), ipAddress);
         Thread thread = Thread.currentThread();
         thread.setName(thread.getName() + "|" + request.getMethod() + "|" + requestUri);
-        ActiveTraces.start(requestUri, request.getMethod(), ipAddress);
+        if (Boolean.valueOf(request.getUriInfo().getQueryParameters().getFirst("trace"))) {
+            ActiveTraces.start(new Traces(requestUri, request.getMethod(), ipAddress));
+        } else {
+            ActiveTraces.start(requestUri, request.getMethod(), ipAddress);
+        }
     }
 }
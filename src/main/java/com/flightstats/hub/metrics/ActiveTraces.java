@@ -13,7 +13,7 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public class ActiveTraces {
 
-    private static final Map<String, Traces> tracesMap = new ConcurrentHashMap<>();
+    private static final Map<Long, Traces> tracesMap = new ConcurrentHashMap<>();
     private static final ThreadLocal<Traces> threadLocal = new ThreadLocal<>();
 
     //How long an http request needs to take before being considered 'slow' and logged
@@ -21,11 +21,14 @@ public class ActiveTraces {
     private static final ObjectRing<Traces> recent = new ObjectRing<>(100);
     private static final TopSortedSet<Traces> slowest = new TopSortedSet<>(100, Traces::getTime, new DescendingTracesComparator());
 
+    /**
+     * Starts sampled traces, see {@link Traces#sample(Object...)}.
+     */
     public static void start(Object... objects) {
-        start(new Traces(objects));
+        start(Traces.sample(objects));
     }
 
-    private static void start(Traces traces) {
+    public static void start(Traces traces) {
         tracesMap.put(traces.getId(), traces);
         setLocal(traces);
         log.trace("setting {}", traces);
@@ -69,6 +72,13 @@ public class ActiveTraces {
         threadLocal.set(traces);
     }
 
+    /**
+     * Forgets this thread's traces without ending them, for pooled threads which only borrowed them.
+     */
+    public static void clearLocal() {
+        threadLocal.remove();
+    }
+
     public static void log(ObjectNode root) {
         TreeSet<Traces> orderedActive = new TreeSet<>((t1, t2) -> (int) (t1.getStart() - t2.getStart()));
         orderedActive.addAll(tracesMap.values());
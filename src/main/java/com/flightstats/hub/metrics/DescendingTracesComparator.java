@@ -7,7 +7,7 @@ class DescendingTracesComparator implements Comparator<Traces> {
     public int compare(Traces t1, Traces t2) {
         int difference = (int) (t2.getTime() - t1.getTime());
         if (difference == 0) {
-            difference = t1.getId().compareTo(t2.getId());
+            difference = Long.compare(t1.getId(), t2.getId());
         }
         return difference;
     }
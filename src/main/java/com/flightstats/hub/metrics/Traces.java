@@ -11,29 +11,52 @@ import org.joda.time.DateTime;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.SortedSet;
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
+/**
+ * The trace entries of a single request or task.
+ * <p>
+ * Traces created by {@link #sample(Object...)} record entries for traces.sample.rate of calls. The rest keep only
+ * their start time and id, and begin recording if they are still running after traces.record.after.millis.
+ * The rate defaults to 0.1, since slow calls, and requests with trace=true, are recorded regardless.
+ */
 public class Traces {
 
     private static final AppProperties appProperties = new AppProperties(PropertiesLoader.getInstance());
-    private final List<Trace> traces = Collections.synchronizedList(new ArrayList<>());
-    private final String id = UUID.randomUUID().toString();
+    private static final AtomicLong ids = new AtomicLong();
+    private static final int limit = appProperties.getTracesLimit();
+    private static final double sampleRate = appProperties.getTracesSampleRate();
+    private static final long recordAfterMillis = appProperties.getTracesRecordAfterMillis();
+
+    private final long id = ids.incrementAndGet();
+    private final Object[] context;
     private long start = System.currentTimeMillis();
+    private final AtomicBoolean recording;
 
-    private final ObjectRing<Trace> lastTraces;
-    private final int limit;
+    private List<Trace> traces;
+    private ObjectRing<Trace> lastTraces;
     private long end;
 
     public Traces(Object... objects) {
-        this.limit = appProperties.getTracesLimit();
-        this.lastTraces = new ObjectRing<>(limit);
+        this(objects, true);
+    }
+
+    Traces(Object[] objects, boolean recording) {
+        this.context = objects;
+        this.recording = new AtomicBoolean(recording);
         add(objects);
     }
 
+    public static Traces sample(Object... objects) {
+        return new Traces(objects, sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
     public void end(int status) {
         end = System.currentTimeMillis();
         add("response", status);
@@ -51,19 +74,48 @@ public class Traces {
         }
     }
 
+    public boolean isRecording() {
+        if (!recording.get()) {
+            long elapsed = System.currentTimeMillis() - start;
+            if (elapsed < recordAfterMillis) {
+                return false;
+            }
+            if (recording.compareAndSet(false, true)) {
+                add(new SingleTrace("recording after", elapsed, "millis"));
+            }
+        }
+        return true;
+    }
+
     public void add(Trace trace) {
-        if (traces.size() > limit) {
-            lastTraces.put(trace);
-        } else {
-            traces.add(trace);
+        if (!isRecording()) {
+            return;
+        }
+        synchronized (this) {
+            if (traces == null) {
+                traces = new ArrayList<>();
+            }
+            if (traces.size() > limit) {
+                if (lastTraces == null) {
+                    lastTraces = new ObjectRing<>(limit);
+                }
+                lastTraces.put(trace);
+            } else {
+                traces.add(trace);
+            }
         }
     }
 
     public void add(Object... objects) {
-        add(new SingleTrace(objects));
+        if (isRecording()) {
+            add(new SingleTrace(objects));
+        }
     }
 
     public void add(String string, SortedSet sortedSet) {
+        if (!isRecording()) {
+            return;
+        }
         if (sortedSet.isEmpty()) {
             add(string, "empty set");
         } else {
@@ -79,7 +131,7 @@ public class Traces {
         this.start = start;
     }
 
-    public String getId() {
+    public long getId() {
         return id;
     }
 
@@ -102,14 +154,15 @@ public class Traces {
             outputTraces((trace) -> builder.append(trace).append("\n\t"));
             return builder.toString();
         } catch (Exception e) {
-            logger.warn("unable to log {} traces {}", traces);
+            logger.warn("unable to log traces {}", id, e);
             return "unable to output";
         }
     }
 
     public void output(ObjectNode root) {
-        root.put("first", traces.get(0).context());
+        root.put("first", Arrays.toString(context));
         root.put("id", id);
+        root.put("recording", recording.get());
         root.put("start", new DateTime(this.start).toString());
         root.put("millis", getTime());
         ArrayNode traceRoot = root.putArray("trace");
@@ -117,10 +170,16 @@ public class Traces {
     }
 
     void outputTraces(Consumer<String> consumer) {
-        synchronized (traces) {
+        synchronized (this) {
+            if (traces == null) {
+                return;
+            }
             for (Trace trace : traces) {
                 consumer.accept(trace.toString());
             }
+            if (lastTraces == null) {
+                return;
+            }
             if (lastTraces.getTotalSize() > limit) {
                 consumer.accept("   ...cut " + (lastTraces.getTotalSize() - limit) + " lines...");
             }
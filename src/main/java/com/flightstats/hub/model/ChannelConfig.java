@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.flightstats.hub.config.properties.ContentProperties;
 import com.flightstats.hub.config.properties.PropertiesLoader;
+import com.flightstats.hub.dao.ContentCodec;
 import com.flightstats.hub.exception.InvalidRequestException;
 import com.flightstats.hub.model.adapters.HubDateTimeTypeAdapter;
 import com.flightstats.hub.model.adapters.HubDateTypeAdapter;
@@ -55,6 +56,7 @@ public class ChannelConfig implements Serializable, NamedType {
     private DateTime mutableTime;
     private boolean allowZeroBytes;
     private boolean secondaryMetricsReporting;
+    private String compression;
 
     private ChannelConfig(String name,
                           String owner,
@@ -70,7 +72,8 @@ public class ChannelConfig implements Serializable, NamedType {
                           DateTime mutableTime,
                           boolean allowZeroBytes,
                           String displayName,
-                          boolean secondaryMetricsReporting) {
+                          boolean secondaryMetricsReporting,
+                          String compression) {
         this.name = StringUtils.trim(name);
         this.displayName = StringUtils.defaultIfBlank(StringUtils.trim(displayName), this.name);
         this.owner = StringUtils.trim(owner);
@@ -95,6 +98,7 @@ public class ChannelConfig implements Serializable, NamedType {
         }
 
         this.storage = getStorageOrDefault(storage);
+        this.compression = StringUtils.defaultIfBlank(StringUtils.upperCase(StringUtils.trim(compression)), ContentCodec.ZIP.name());
 
         addTagIf(isHistorical(), HISTORICAL);
         addTagIf(!isBlank(replicationSource), REPLICATED);
@@ -149,6 +153,7 @@ public class ChannelConfig implements Serializable, NamedType {
         if (rootNode.has("secondaryMetricsReporting")) {
             builder.secondaryMetricsReporting(rootNode.get("secondaryMetricsReporting").asBoolean());
         }
+        if (rootNode.has("compression")) builder.compression(getString(rootNode.get("compression")));
         return builder.build();
     }
 
@@ -223,6 +228,14 @@ public class ChannelConfig implements Serializable, NamedType {
         return mutableTime != null;
     }
 
+    public boolean isValidCompression() {
+        return ContentCodec.isValid(compression);
+    }
+
+    public ContentCodec getCodec() {
+        return ContentCodec.fromName(compression);
+    }
+
     public String getName() {
         return this.name;
     }
@@ -287,6 +300,10 @@ public class ChannelConfig implements Serializable, NamedType {
         return secondaryMetricsReporting;
     }
 
+    public String getCompression() {
+        return compression;
+    }
+
     public boolean equals(Object o) {
         if (o == this) return true;
         if (!(o instanceof ChannelConfig)) return false;
@@ -323,6 +340,10 @@ public class ChannelConfig implements Serializable, NamedType {
         final Object other$mutableTime = other.getMutableTime();
         if (this$mutableTime == null ? other$mutableTime != null : !this$mutableTime.equals(other$mutableTime))
             return false;
+        final Object this$compression = this.getCompression();
+        final Object other$compression = other.getCompression();
+        if (this$compression == null ? other$compression != null : !this$compression.equals(other$compression))
+            return false;
         return this.isSecondaryMetricsReporting() == other.isSecondaryMetricsReporting() &&
                 this.isAllowZeroBytes() == other.isAllowZeroBytes();
     }
@@ -354,11 +375,13 @@ public class ChannelConfig implements Serializable, NamedType {
         final Object $mutableTime = this.getMutableTime();
         result = result * PRIME + ($mutableTime == null ? 43 : $mutableTime.hashCode());
         result = result * PRIME + (this.isAllowZeroBytes() ? 79 : 97);
+        final Object $compression = this.getCompression();
+        result = result * PRIME + ($compression == null ? 43 : $compression.hashCode());
         return result;
     }
 
     public String toString() {
-        return "com.flightstats.hub.model.ChannelConfig(name=" + this.getName() + ", owner=" + this.getOwner() + ", creationDate=" + this.getCreationDate() + ", ttlDays=" + this.getTtlDays() + ", maxItems=" + this.getMaxItems() + ", description=" + this.getDescription() + ", tags=" + this.getTags() + ", replicationSource=" + this.getReplicationSource() + ", storage=" + this.getStorage() + ", protect=" + this.isProtect() + ", mutableTime=" + this.getMutableTime() + ", allowZeroBytes=" + this.isAllowZeroBytes() + ")";
+        return "com.flightstats.hub.model.ChannelConfig(name=" + this.getName() + ", owner=" + this.getOwner() + ", creationDate=" + this.getCreationDate() + ", ttlDays=" + this.getTtlDays() + ", maxItems=" + this.getMaxItems() + ", description=" + this.getDescription() + ", tags=" + this.getTags() + ", replicationSource=" + this.getReplicationSource() + ", storage=" + this.getStorage() + ", protect=" + this.isProtect() + ", mutableTime=" + this.getMutableTime() + ", allowZeroBytes=" + this.isAllowZeroBytes() + ", compression=" + this.getCompression() + ")";
     }
 
     public ChannelConfigBuilder toBuilder() {
@@ -383,6 +406,7 @@ public class ChannelConfig implements Serializable, NamedType {
         private DateTime mutableTime;
         private String displayName;
         private boolean secondaryMetricsReporting = false;
+        private String compression = "";
 
         ChannelConfigBuilder() {
         }
@@ -403,6 +427,7 @@ public class ChannelConfig implements Serializable, NamedType {
             mutableTime(config.getMutableTime());
             displayName(config.getDisplayName());
             secondaryMetricsReporting(config.isSecondaryMetricsReporting());
+            compression(config.getCompression());
         }
 
         public ChannelConfigBuilder tags(List<String> tagList) {
@@ -487,6 +512,11 @@ public class ChannelConfig implements Serializable, NamedType {
             return this;
         }
 
+        public ChannelConfigBuilder compression(String compression) {
+            this.compression = compression;
+            return this;
+        }
+
         public ChannelConfig build() {
             return new ChannelConfig(
                     name,
@@ -503,7 +533,8 @@ public class ChannelConfig implements Serializable, NamedType {
                     mutableTime,
                     allowZeroBytes,
                     displayName,
-                    secondaryMetricsReporting);
+                    secondaryMetricsReporting,
+                    compression);
         }
 
     }
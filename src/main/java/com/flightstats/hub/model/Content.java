@@ -4,6 +4,7 @@ import com.flightstats.hub.config.properties.AppProperties;
 import com.flightstats.hub.config.properties.ContentProperties;
 import com.flightstats.hub.config.properties.PropertiesLoader;
 import com.flightstats.hub.config.properties.S3Properties;
+import com.flightstats.hub.dao.ContentCodec;
 import com.flightstats.hub.dao.ContentMarshaller;
 import com.flightstats.hub.metrics.ActiveTraces;
 import com.flightstats.hub.util.HubUtils;
@@ -40,6 +41,7 @@ public class Content implements Serializable {
     private transient int threads;
     private transient boolean isHistorical;
     private boolean replicated;
+    private transient ContentCodec codec;
 
     private Content(Builder builder) {
         contentKey = builder.contentKey;
@@ -49,6 +51,7 @@ public class Content implements Serializable {
         threads = Math.max(s3Properties.getLargeThreadCount(), builder.threads);
         isLarge = builder.large;
         size = builder.size;
+        codec = builder.codec;
     }
 
     public static Builder builder() {
@@ -71,6 +74,7 @@ public class Content implements Serializable {
         contentBuilder.withSize(content.getSize());
         contentBuilder.withLarge(content.isLarge());
         contentBuilder.withThreads(content.getThreads());
+        contentBuilder.withCodec(content.getCodec());
 
         return contentBuilder.build();
     }
@@ -188,6 +192,17 @@ public class Content implements Serializable {
         return this.threads;
     }
 
+    /**
+     * @return the codec used when this item is marshalled, which is the one it was read with
+     */
+    public ContentCodec getCodec() {
+        return this.codec == null ? ContentCodec.ZIP : this.codec;
+    }
+
+    public void setCodec(ContentCodec codec) {
+        this.codec = codec;
+    }
+
     public boolean equals(Object o) {
         if (o == this) return true;
         if (!(o instanceof Content)) return false;
@@ -218,6 +233,7 @@ public class Content implements Serializable {
         private InputStream stream;
         private int threads;
         private boolean large;
+        private ContentCodec codec = ContentCodec.ZIP;
 
         public Builder withContentType(String contentType) {
             this.contentType = Optional.ofNullable(contentType);
@@ -263,6 +279,11 @@ public class Content implements Serializable {
             return this;
         }
 
+        public Builder withCodec(ContentCodec codec) {
+            this.codec = codec;
+            return this;
+        }
+
         public Optional<String> getContentType() {
             return this.contentType;
         }
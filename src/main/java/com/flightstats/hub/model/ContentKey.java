@@ -3,19 +3,28 @@ package com.flightstats.hub.model;
 import com.flightstats.hub.util.TimeUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.joda.time.Chronology;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
+import org.joda.time.chrono.ISOChronology;
 import org.joda.time.format.DateTimeFormatter;
 
 import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
+import java.util.Arrays;
 import java.util.Optional;
 
+/**
+ * A key is held as its UTC millis and hash, rather than a DateTime, since large sets of keys are common.
+ * {@link #getTime()} creates a UTC DateTime on each call, so comparisons over many keys use {@link #getMillis()}.
+ */
 @Slf4j
 public class ContentKey implements ContentPath {
     public static final ContentKey NONE = new ContentKey(TimeUtil.BIG_BANG, "none");
-    private static final DecimalFormat format = new DecimalFormat("000000");
-    private final DateTime time;
+    private static final Chronology UTC = ISOChronology.getInstanceUTC();
+    private static final int URL_HASH_START = 24;
+    private static final int BULK_HASH_DIGITS = 6;
+    private final long millis;
     private final String hash;
 
     public ContentKey() {
@@ -27,7 +36,11 @@ public class ContentKey implements ContentPath {
     }
 
     public ContentKey(DateTime time, String hash) {
-        this.time = time;
+        this(time.getMillis(), hash);
+    }
+
+    public ContentKey(long millis, String hash) {
+        this.millis = millis;
         this.hash = hash;
     }
 
@@ -36,7 +49,7 @@ public class ContentKey implements ContentPath {
     }
 
     public ContentKey(int year, int month, int day, int hour, int minute, int second, int millis, String hash) {
-        this(new DateTime(year, month, day, hour, minute, second, millis, DateTimeZone.UTC), hash);
+        this(UTC.getDateTimeMillis(year, month, day, hour, minute, second, millis), hash);
     }
 
     public static ContentKey lastKey(DateTime time) {
@@ -54,42 +67,94 @@ public class ContentKey implements ContentPath {
         }
     }
 
+    /**
+     * Parses yyyy/MM/dd/HH/mm/ss/SSS/hash, reading the digits in place.
+     */
     public static Optional<ContentKey> fromUrl(String key) {
         try {
-            int year = Integer.parseInt(key.substring(0, 4));
-            int month = Integer.parseInt(key.substring(5, 7));
-            int day = Integer.parseInt(key.substring(8, 10));
-            int hour = Integer.parseInt(key.substring(11, 13));
-            int minute = Integer.parseInt(key.substring(14, 16));
-            int second = Integer.parseInt(key.substring(17, 19));
-            int millis = Integer.parseInt(key.substring(20, 23));
-            String hash = key.substring(24);
-            DateTime dateTime = new DateTime(year, month, day, hour, minute, second, millis, DateTimeZone.UTC);
-            return Optional.of(new ContentKey(dateTime, hash));
+            if (key.length() <= URL_HASH_START - 1) {
+                return Optional.empty();
+            }
+            int year = digits(key, 0, 4);
+            int month = digits(key, 5, 2);
+            int day = digits(key, 8, 2);
+            int hour = digits(key, 11, 2);
+            int minute = digits(key, 14, 2);
+            int second = digits(key, 17, 2);
+            int millis = digits(key, 20, 3);
+            if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0 || millis < 0) {
+                return Optional.empty();
+            }
+            String hash = key.substring(URL_HASH_START);
+            return Optional.of(new ContentKey(UTC.getDateTimeMillis(year, month, day, hour, minute, second, millis), hash));
         } catch (Exception e) {
             log.trace("unable to parse {} {} ", key, e.getMessage());
             return Optional.empty();
         }
     }
 
-    private synchronized static String bulkHash(int number) {
-        return format.format(number);
+    /**
+     * @return the value of the digits, or -1 if any character is not a digit
+     */
+    private static int digits(String value, int start, int length) {
+        int result = 0;
+        for (int i = start; i < start + length; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private static String bulkHash(int number) {
+        String digits = Integer.toString(number);
+        if (number < 0 || digits.length() >= BULK_HASH_DIGITS) {
+            return new DecimalFormat("000000").format(number);
+        }
+        char[] chars = new char[BULK_HASH_DIGITS];
+        int padding = BULK_HASH_DIGITS - digits.length();
+        Arrays.fill(chars, 0, padding, '0');
+        digits.getChars(0, digits.length(), chars, padding);
+        return new String(chars);
     }
 
     public static ContentKey bulkKey(ContentKey master, int index) {
-        return new ContentKey(master.getTime(), master.getHash() + ContentKey.bulkHash(index));
+        return new ContentKey(master.millis, master.getHash() + ContentKey.bulkHash(index));
     }
 
+    /**
+     * Formats yyyy/MM/dd/HH/mm/ss/SSS/hash in UTC, the same as {@link TimeUtil#millis(DateTime)}.
+     */
     public String toUrl() {
-        return TimeUtil.millis(time) + hash;
+        StringBuilder builder = new StringBuilder(URL_HASH_START + hash.length());
+        appendDigits(builder, UTC.year().get(millis), 4).append('/');
+        appendDigits(builder, UTC.monthOfYear().get(millis), 2).append('/');
+        appendDigits(builder, UTC.dayOfMonth().get(millis), 2).append('/');
+        appendDigits(builder, UTC.hourOfDay().get(millis), 2).append('/');
+        appendDigits(builder, UTC.minuteOfHour().get(millis), 2).append('/');
+        appendDigits(builder, UTC.secondOfMinute().get(millis), 2).append('/');
+        appendDigits(builder, UTC.millisOfSecond().get(millis), 3).append('/');
+        return builder.append(hash).toString();
+    }
+
+    private static StringBuilder appendDigits(StringBuilder builder, int value, int length) {
+        if (value < 0) {
+            return builder.append(value);
+        }
+        for (int divisor = length == 4 ? 1000 : length == 3 ? 100 : 10; divisor > value && divisor > 1; divisor /= 10) {
+            builder.append('0');
+        }
+        return builder.append(value);
     }
 
     public long getMillis() {
-        return time.getMillis();
+        return millis;
     }
 
     public String toString(DateTimeFormatter pathFormatter) {
-        return time.toString(pathFormatter) + hash;
+        return getTime().toString(pathFormatter) + hash;
     }
 
     @Override
@@ -104,30 +169,23 @@ public class ContentKey implements ContentPath {
         }
         if (other instanceof ContentKey) {
             ContentKey key = (ContentKey) other;
-            int diff = time.compareTo(key.getTime());
+            int diff = Long.compare(millis, key.millis);
             if (diff == 0) {
                 diff = hash.compareTo(key.hash);
             }
             return diff;
         }
+        long endMillis;
         if (other instanceof SecondPath) {
-            SecondPath secondPath = (SecondPath) other;
-            DateTime endTime = secondPath.getTime().plusSeconds(1);
-            int diff = time.compareTo(endTime);
-            if (diff == 0) {
-                return 1;
-            }
-            return diff;
-
+            endMillis = other.getTime().getMillis() + 1000;
         } else {
-            MinutePath minutePath = (MinutePath) other;
-            DateTime endTime = minutePath.getTime().plusMinutes(1);
-            int diff = time.compareTo(endTime);
-            if (diff == 0) {
-                return 1;
-            }
-            return diff;
+            endMillis = other.getTime().getMillis() + 60 * 1000;
+        }
+        int diff = Long.compare(millis, endMillis);
+        if (diff == 0) {
+            return 1;
         }
+        return diff;
     }
 
     public byte[] toBytes() {
@@ -135,16 +193,16 @@ public class ContentKey implements ContentPath {
     }
 
     public String toZk() {
-        return time.getMillis() + ":" + hash;
+        return millis + ":" + hash;
     }
 
     public ContentKey fromZk(String value) {
-        String[] split = value.split(":");
-        return new ContentKey(new DateTime(Long.parseLong(split[0]), DateTimeZone.UTC), split[1]);
+        int separator = value.indexOf(':');
+        return new ContentKey(Long.parseLong(value.substring(0, separator)), value.substring(separator + 1));
     }
 
     public DateTime getTime() {
-        return this.time;
+        return new DateTime(millis, DateTimeZone.UTC);
     }
 
     public String getHash() {
@@ -156,21 +214,15 @@ public class ContentKey implements ContentPath {
         if (!(o instanceof ContentKey)) return false;
         final ContentKey other = (ContentKey) o;
         if (!other.canEqual(this)) return false;
-        final Object this$time = this.getTime();
-        final Object other$time = other.getTime();
-        if (this$time == null ? other$time != null : !this$time.equals(other$time)) return false;
-        final Object this$hash = this.getHash();
-        final Object other$hash = other.getHash();
-        return this$hash == null ? other$hash == null : this$hash.equals(other$hash);
+        if (this.millis != other.millis) return false;
+        return this.hash == null ? other.hash == null : this.hash.equals(other.hash);
     }
 
     public int hashCode() {
         final int PRIME = 59;
         int result = 1;
-        final Object $time = this.getTime();
-        result = result * PRIME + ($time == null ? 43 : $time.hashCode());
-        final Object $hash = this.getHash();
-        result = result * PRIME + ($hash == null ? 43 : $hash.hashCode());
+        result = result * PRIME + Long.hashCode(millis);
+        result = result * PRIME + (hash == null ? 43 : hash.hashCode());
         return result;
     }
 
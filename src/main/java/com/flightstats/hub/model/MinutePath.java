@@ -71,8 +71,8 @@ public class MinutePath implements ContentPathKeys {
         if (other instanceof MinutePath) {
             return time.compareTo(other.getTime());
         } else {
-            DateTime endTime = getTime().plusMinutes(1);
-            int diff = endTime.compareTo(other.getTime());
+            long otherMillis = other instanceof ContentKey ? ((ContentKey) other).getMillis() : other.getTime().getMillis();
+            int diff = Long.compare(time.getMillis() + 60 * 1000, otherMillis);
             if (diff == 0) {
                 return -1;
             }
@@ -6,6 +6,9 @@ import com.sun.jersey.api.client.config.DefaultClientConfig;
 import com.sun.jersey.api.client.filter.GZIPContentEncodingFilter;
 import com.sun.jersey.client.urlconnection.HTTPSProperties;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
@@ -69,4 +72,26 @@ public class RestClient {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Creates a started, non-blocking Jetty client which pools connections per destination.
+     * Like the Jersey clients, it trusts all certificates.
+     */
+    public static HttpClient createAsyncClient(String name, int connectTimeout, int maxConnectionsPerDestination, int maxThreads) {
+        try {
+            QueuedThreadPool threadPool = new QueuedThreadPool(maxThreads, Math.min(8, maxThreads));
+            threadPool.setName(name);
+            threadPool.setDaemon(true);
+            HttpClient client = new HttpClient(new SslContextFactory(true));
+            client.setExecutor(threadPool);
+            client.setConnectTimeout(TimeUnit.SECONDS.toMillis(connectTimeout));
+            client.setMaxConnectionsPerDestination(maxConnectionsPerDestination);
+            client.setFollowRedirects(false);
+            client.start();
+            return client;
+        } catch (Exception e) {
+            log.warn("can't create async client ", e);
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -0,0 +1,87 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.metrics.StatsdReporter;
+import com.flightstats.hub.metrics.Traces;
+import com.flightstats.hub.util.RuntimeInterruptedException;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.client.util.BytesContentProvider;
+import org.eclipse.jetty.http.HttpMethod;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes to spoke servers with a shared, non-blocking client, so waiting on a quorum doesn't park a thread per server.
+ */
+@Slf4j
+class AsyncSpokeWriter {
+
+    private final HttpClient httpClient;
+    private final StatsdReporter statsdReporter;
+    private final String uriScheme;
+    private final int stableSeconds;
+
+    AsyncSpokeWriter(HttpClient httpClient, StatsdReporter statsdReporter, String uriScheme, int stableSeconds) {
+        this.httpClient = httpClient;
+        this.statsdReporter = statsdReporter;
+        this.uriScheme = uriScheme;
+        this.stableSeconds = stableSeconds;
+    }
+
+    boolean insert(SpokeStore spokeStore, String path, byte[] payload, Collection<String> servers,
+                   Traces traces, String spokeApi, String channel) {
+        int quorum = SpokeManager.getQuorum(servers.size());
+        CompletableFuture<Boolean> quorumFuture = new CompletableFuture<>();
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger responses = new AtomicInteger();
+        for (String server : servers) {
+            String uri = uriScheme + server + "/internal/spoke/" + spokeStore + "/" + spokeApi + "/" + path;
+            traces.add(uri);
+            httpClient.newRequest(uri)
+                    .method(HttpMethod.PUT)
+                    .content(new BytesContentProvider(payload))
+                    .timeout(stableSeconds + 5, TimeUnit.SECONDS)
+                    .send(new BufferingResponseListener() {
+                        @Override
+                        public void onComplete(Result result) {
+                            if (result.isSucceeded() && result.getResponse().getStatus() == 201) {
+                                traces.add(server, getContentAsString());
+                                int successCount = successes.incrementAndGet();
+                                if (successCount == 1) {
+                                    statsdReporter.time(channel, "heisenberg", traces.getStart());
+                                }
+                                if (successCount >= quorum) {
+                                    quorumFuture.complete(true);
+                                }
+                                log.trace("server {} path {} response {}", server, path, result.getResponse());
+                            } else if (result.isFailed()) {
+                                traces.add(server, result.getFailure().getMessage());
+                                log.warn("write failed: {} {}", server, path, result.getFailure());
+                            } else {
+                                traces.add(server, getContentAsString());
+                                log.warn("write failed: server {} path {} response {}", server, path, result.getResponse());
+                            }
+                            if (responses.incrementAndGet() == servers.size()) {
+                                quorumFuture.complete(successes.get() > 0);
+                            }
+                        }
+                    });
+        }
+        try {
+            quorumFuture.get(stableSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new RuntimeInterruptedException(e);
+        } catch (TimeoutException | ExecutionException e) {
+            log.debug("quorum not reached for {} {}", path, successes.get());
+        }
+        statsdReporter.time(channel, "consistent", traces.getStart());
+        return successes.get() > 0;
+    }
+}
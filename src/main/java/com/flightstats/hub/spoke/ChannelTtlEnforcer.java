@@ -6,33 +6,42 @@ import com.flightstats.hub.config.properties.SpokeProperties;
 import com.flightstats.hub.dao.ChannelService;
 import com.flightstats.hub.dao.TtlEnforcer;
 import com.flightstats.hub.model.ChannelConfig;
-import com.flightstats.hub.util.Commander;
 import com.flightstats.hub.util.TimeUtil;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import javax.inject.Inject;
+import javax.inject.Named;
 import com.google.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 
+import java.io.File;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
+import static com.flightstats.hub.constant.NamedBinding.WRITE;
+
 @Singleton
 @Slf4j
 public class ChannelTtlEnforcer {
 
     private final ChannelService channelService;
     private final TtlEnforcer ttlEnforcer;
+    private final SpokeTtlWalker spokeTtlWalker;
+    private final SpokeItemIndex itemIndex;
     private final String spokePath;
 
     @Inject
     public ChannelTtlEnforcer(ChannelService channelService,
                               SpokeProperties spokeProperties,
                               S3Properties s3Properties,
-                              TtlEnforcer ttlEnforcer) {
+                              TtlEnforcer ttlEnforcer,
+                              SpokeTtlWalker spokeTtlWalker,
+                              @Named(WRITE) FileSpokeStore fileSpokeStore) {
         this.channelService = channelService;
         this.spokePath = spokeProperties.getPath(SpokeStore.WRITE);
         this.ttlEnforcer = ttlEnforcer;
+        this.spokeTtlWalker = spokeTtlWalker;
+        this.itemIndex = fileSpokeStore.getItemIndex();
 
         if (s3Properties.isChannelTtlEnforced()) {
             HubServices.register(new ChannelTtlEnforcerService());
@@ -42,11 +51,9 @@ public class ChannelTtlEnforcer {
     private Consumer<ChannelConfig> handleCleanup() {
         return channel -> {
             if (channel.getTtlDays() > 0) {
-                String channelPath = spokePath + "/" + channel.getDisplayName();
                 DateTime channelTTL = TimeUtil.stable().minusDays((int) channel.getTtlDays());
-                for (int i = 0; i < 3; i++) {
-                    Commander.run(new String[]{"rm", "-rf", channelPath + "/" + TimeUtil.days(channelTTL.minusDays(i))}, 1);
-                }
+                SpokeTtlWalker.Deleted deleted = spokeTtlWalker.deleteBefore(new File(spokePath, channel.getDisplayName()), channelTTL, itemIndex);
+                log.debug("deleted {} items {} bytes from {}", deleted.getItems(), deleted.getBytes(), channel.getDisplayName());
             }
         };
     }
@@ -57,7 +64,7 @@ public class ChannelTtlEnforcer {
             try {
                 long start = System.currentTimeMillis();
                 log.debug("running channel cleanup");
-                ttlEnforcer.deleteFilteredPaths(spokePath, channelService, handleCleanup());
+                ttlEnforcer.deleteFilteredPaths(spokePath, channelService, handleCleanup(), itemIndex);
                 log.info("completed channel cleanup {}", (System.currentTimeMillis() - start));
             } catch (Exception e) {
                 log.error("issue cleaning up channels in spoke", e);
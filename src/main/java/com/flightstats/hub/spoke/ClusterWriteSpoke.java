@@ -4,9 +4,17 @@ import com.flightstats.hub.dao.QueryResult;
 import com.flightstats.hub.model.Content;
 import com.flightstats.hub.model.ContentKey;
 
+import java.util.List;
+import java.util.Optional;
+
 public interface ClusterWriteSpoke {
     boolean insertToWriteCluster(String path, byte[] payload, String spokeApi, String channel);
     Content getFromWriteCluster(String path, ContentKey key);
     boolean deleteFromWriteCluster(String path) throws Exception;
     QueryResult readTimeBucketFromWriteCluster(String channel, String timePath) throws InterruptedException;
+
+    /**
+     * @return the minute digests of every write node for the hour, or empty unless every node answered.
+     */
+    Optional<List<SpokeMinuteDigests>> readMinuteDigestsFromWriteCluster(String channel, String hourPath) throws InterruptedException;
 }
@@ -4,19 +4,20 @@ import com.flightstats.hub.model.ContentKey;
 import com.flightstats.hub.model.MinutePath;
 import com.flightstats.hub.util.TimeUtil;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.io.ByteStreams;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.WildcardFileFilter;
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 
 import javax.ws.rs.NotFoundException;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -33,6 +34,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
@@ -47,14 +49,34 @@ import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 @Slf4j
 public class FileSpokeStore {
     private static final String SECOND_RESOLUTION = "second";
+    private static final int MAX_CACHED_DIGESTS = 100 * 1000;
+    private static final long CLOSED_MILLIS = TimeUnit.MINUTES.toMillis(2);
     private final String spokePath;
     private final int spokeTtlMinutes;
+    private final SpokeStorageMode storageMode;
     private final Set<String> filesArtificiallyLocked = ConcurrentHashMap.newKeySet();
+    private final SpokeItemIndex itemIndex;
+    private final Cache<String, SpokeMinuteDigests.Digest> closedMinuteDigests;
 
     public FileSpokeStore(String spokePath, int spokeTtlMinutes) {
+        this(spokePath, spokeTtlMinutes, SpokeStorageMode.FILE);
+    }
+
+    public FileSpokeStore(String spokePath, int spokeTtlMinutes, SpokeStorageMode storageMode) {
+        this(spokePath, spokeTtlMinutes, storageMode, new SpokeItemIndex(spokePath));
+        itemIndex.startRebuild();
+    }
+
+    FileSpokeStore(String spokePath, int spokeTtlMinutes, SpokeStorageMode storageMode, SpokeItemIndex itemIndex) {
         this.spokePath = StringUtils.appendIfMissing(spokePath, "/");
         this.spokeTtlMinutes = spokeTtlMinutes;
-        log.info("starting with storage path " + this.spokePath);
+        this.storageMode = storageMode;
+        this.itemIndex = itemIndex;
+        this.closedMinuteDigests = CacheBuilder.newBuilder()
+                .maximumSize(MAX_CACHED_DIGESTS)
+                .expireAfterWrite(spokeTtlMinutes, TimeUnit.MINUTES)
+                .build();
+        log.info("starting with storage path {} in {} mode", this.spokePath, storageMode);
         if (!insert("hub-startup/" + new ContentKey().toUrl(), ("" + System.currentTimeMillis()).getBytes())) {
             throw new RuntimeException("unable to create startup file");
         }
@@ -66,6 +88,9 @@ public class FileSpokeStore {
 
     @SneakyThrows
     public boolean insert(String path, InputStream input) {
+        if (storageMode == SpokeStorageMode.SEGMENT && isItemPath(path)) {
+            return insertSegment(path, input);
+        }
         File file = spokeFilePathPart(path);
         File tmpFile = spokeFilePathPart(path + SPOKE_TMP_SUFFIX);
         Stream.of(file, tmpFile).forEach(f -> f.getParentFile().mkdirs());
@@ -79,7 +104,12 @@ public class FileSpokeStore {
                 log.error("Error writing to spoke path (tmp file phase) {}", tmpFile.getPath(), e);
                 return false;
             }
+            boolean overwrite = file.exists();
             Files.move(tmpFile.toPath(), file.toPath(), ATOMIC_MOVE);
+            if (isItemPath(path) && !overwrite) {
+                itemIndex.added(path);
+                closedMinuteDigests.invalidate(minutePath(path));
+            }
             return true;
         } catch (IOException e) {
             log.error("Error moving file to spoke channel destination after write");
@@ -89,6 +119,32 @@ public class FileSpokeStore {
         }
     }
 
+    private boolean insertSegment(String path, InputStream input) {
+        File file = spokeFilePathPart(path);
+        log.trace("insert segment {}", file);
+        try {
+            if (SpokeSegment.of(file.getParentFile()).append(file.getName(), ByteStreams.toByteArray(input))) {
+                itemIndex.added(path);
+                closedMinuteDigests.invalidate(minutePath(path));
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("Error appending to spoke segment {}", file.getPath(), e);
+            return false;
+        }
+    }
+
+    private boolean isItemPath(String path) {
+        return StringUtils.split(path, "/").length > 8;
+    }
+
+    /**
+     * @return channel/yyyy/MM/dd/HH/mm of an item path
+     */
+    private static String minutePath(String path) {
+        return StringUtils.join(Arrays.copyOf(StringUtils.split(path, "/"), 6), "/");
+    }
+
     @SneakyThrows
     public byte[] read(String path) {
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
@@ -100,6 +156,10 @@ public class FileSpokeStore {
     public void read(String path, OutputStream output) {
         File file = spokeFilePathPart(path);
         if (!file.exists()) {
+            Optional<SpokeSegment> segment = findSegment(file.getParentFile());
+            if (segment.isPresent() && segment.get().read(file.getName(), output)) {
+                return;
+            }
             throw new NotFoundException("not found " + path);
         }
         if (!file.canRead()) {
@@ -136,11 +196,31 @@ public class FileSpokeStore {
 
     public boolean delete(String path) throws Exception {
         FileUtils.deleteDirectory(new File(spokePath + path));
+        itemIndex.deleted(path);
+        closedMinuteDigests.asMap().keySet().removeIf(minute -> minute.startsWith(path));
         return true;
     }
 
     public boolean deleteFile(String path) throws Exception {
-        return FileUtils.deleteQuietly(spokeFilePathPart(path));
+        File file = spokeFilePathPart(path);
+        Optional<SpokeSegment> segment = findSegment(file.getParentFile());
+        boolean segmentDelete = segment.isPresent() && segment.get().delete(file.getName());
+        boolean deleted = FileUtils.deleteQuietly(file) || segmentDelete;
+        if (deleted) {
+            itemIndex.deleted(path);
+            closedMinuteDigests.invalidate(minutePath(path));
+        }
+        return deleted;
+    }
+
+    /**
+     * In FILE mode, a directory only has a segment if it was written before switching from SEGMENT mode.
+     */
+    private Optional<SpokeSegment> findSegment(File minuteDirectory) {
+        if (storageMode == SpokeStorageMode.SEGMENT) {
+            return Optional.of(SpokeSegment.of(minuteDirectory));
+        }
+        return SpokeSegment.find(minuteDirectory);
     }
 
     // given an url containing a key, return the file format
@@ -178,7 +258,39 @@ public class FileSpokeStore {
         return path;
     }
 
+    /**
+     * @return the digest of each minute of the hour which has items.  Minutes which ended at least a minute ago are
+     * listed once, and then cached until an item in them is added or deleted.
+     */
+    public SpokeMinuteDigests readMinuteDigests(String channel, MinutePath hour) {
+        SpokeMinuteDigests digests = new SpokeMinuteDigests();
+        long closedBefore = System.currentTimeMillis() - CLOSED_MILLIS;
+        for (int i = 0; i < 60; i++) {
+            MinutePath minute = new MinutePath(hour.getTime().plusMinutes(i));
+            if (minute.getTime().isAfterNow()) {
+                break;
+            }
+            String path = channel + "/" + minute.toUrl();
+            boolean closed = minute.getTime().getMillis() < closedBefore;
+            SpokeMinuteDigests.Digest digest = closed ? closedMinuteDigests.getIfPresent(path) : null;
+            if (digest == null) {
+                SpokeMinuteDigests minuteDigests = new SpokeMinuteDigests();
+                readKeysInBucket(path, minuteDigests);
+                digest = minuteDigests.get(minute).orElse(SpokeMinuteDigests.Digest.EMPTY);
+                if (closed) {
+                    closedMinuteDigests.put(path, digest);
+                }
+            }
+            digests.put(minute, digest);
+        }
+        return digests;
+    }
+
     public void readKeysInBucket(String key, OutputStream output) {
+        readKeysInBucket(key, SpokeKeyCodec.textWriter(output));
+    }
+
+    public void readKeysInBucket(String key, SpokeKeyCodec.KeyWriter writer) {
         String path = spokeFilePathPart(key).getAbsolutePath();
         log.trace("path {}", path);
         String resolution = SpokePathUtil.smallestTimeResolution(key);
@@ -190,42 +302,90 @@ public class FileSpokeStore {
         try {
             if (SECOND_RESOLUTION.equals(resolution)) {
                 // filter all files in the minute folder that start with seconds
-                FileFilter fileFilter = new WildcardFileFilter(SpokePathUtil.second(key) + "*");
-                List<File> files = Arrays.asList(Optional.ofNullable(directory.listFiles(fileFilter)).orElse(new File[]{}));
-                writeFilesToOutput(files, output);
+                String second = SpokePathUtil.second(key);
+                for (String name : listItemNames(directory)) {
+                    if (name.startsWith(second)) {
+                        writer.write(spokeKeyFromPath(new File(directory, name).getAbsolutePath()));
+                    }
+                }
             } else {
-                writeFilesToOutput(FileUtils.listFiles(new File(path), null, true), output);
+                writeFilesToOutput(FileUtils.listFiles(new File(path), null, true), writer);
             }
         } catch (Exception e) {
             log.error("error with " + path, e);
         }
     }
 
-    private void writeFilesToOutput(Collection<File> files, OutputStream outputStream) {
+    private void writeFilesToOutput(Collection<File> files, SpokeKeyCodec.KeyWriter writer) {
         files.stream()
                 .filter(f -> !isTempFile(f))
                 .forEach(file -> {
                     try {
                         log.trace("file path: {}", file.getPath());
-                        writeKey(outputStream, spokeKeyFromPath(file.getAbsolutePath()));
+                        if (SpokeSegment.isIndexFile(file)) {
+                            File minuteDirectory = file.getParentFile();
+                            for (String name : SpokeSegment.of(minuteDirectory).names()) {
+                                writer.write(spokeKeyFromPath(new File(minuteDirectory, name).getAbsolutePath()));
+                            }
+                        } else if (!SpokeSegment.isSegmentFile(file)) {
+                            writer.write(spokeKeyFromPath(file.getAbsolutePath()));
+                        }
                     } catch (IOException e) {
                         log.error("Error writing file to output ", e);
                     }
                 });
     }
 
-    private void writeKey(OutputStream output, String keyFromPath) throws IOException {
-        output.write(keyFromPath.getBytes());
-        output.write(",".getBytes());
+    /**
+     * @return the item names (ssSSShash) in a minute directory, from both individual files and any segment
+     */
+    static List<String> listItemNames(File minuteDirectory) {
+        String[] files = Optional.ofNullable(minuteDirectory.list()).orElse(new String[]{});
+        List<String> names = Arrays.stream(files)
+                .filter(f -> !isTempFile(f) && !SpokeSegment.isSegmentFile(f))
+                .collect(Collectors.toList());
+        if (Arrays.asList(files).contains(SpokeSegment.INDEX_FILE)) {
+            SpokeSegment.of(minuteDirectory).names().forEach(names::add);
+        }
+        return names;
+    }
+
+    SpokeItemIndex getItemIndex() {
+        return itemIndex;
     }
 
     public String getLatest(String channel, String limitPath) {
         log.trace("latest {} {}", channel, limitPath);
         ContentKey limitKey = ContentKey.fromUrl(limitPath)
                 .orElseThrow(() -> new RuntimeException("Could not parse ContentKey: " + limitPath));
+        if (itemIndex.isRebuilt()) {
+            return getIndexedLatest(channel, limitPath, limitKey.getTime());
+        }
         return getLatest(channel, limitPath, limitKey.getTime());
     }
 
+    /**
+     * Only looks in minutes which the item index has seen items written to.
+     */
+    private String getIndexedLatest(String channel, String limitPath, DateTime limitTime) {
+        DateTime ttlTime = TimeUtil.now().minusMinutes(spokeTtlMinutes);
+        long oldestHour = TimeUtil.Unit.HOURS.round(limitTime.isBefore(ttlTime) ? limitTime : ttlTime).getMillis();
+        Optional<Long> minute = itemIndex.previousMinute(channel, limitTime.getMillis());
+        while (minute.isPresent() && minute.get() >= oldestHour) {
+            String minutePath = TimeUtil.minutes(new DateTime(minute.get(), DateTimeZone.UTC));
+            Optional<String> latest = listItemNames(new File(spokePath + channel + "/" + minutePath)).stream()
+                    .map(fileName -> spokeKeyFromPath(minutePath + "/" + fileName))
+                    .filter(key -> key.compareTo(limitPath) < 0)
+                    .max(String::compareTo);
+            if (latest.isPresent()) {
+                return channel + "/" + latest.get();
+            }
+            minute = itemIndex.previousMinute(channel, minute.get() - 1);
+        }
+        log.debug("no latest found for {} {} ", channel, limitPath);
+        return null;
+    }
+
     private String getLatest(String channel, String limitPath, DateTime hourToSearch) {
         log.trace("latest {} {} {}", channel, limitPath, hourToSearch);
         String hoursPath = TimeUtil.hours(hourToSearch);
@@ -236,10 +396,7 @@ public class FileSpokeStore {
         log.trace("looking at {} {}", fullHoursPath, minutes.toArray());
         Collections.reverse(minutes);
         for (String minute: minutes) {
-            List<String> fileNames = Arrays.stream(Optional
-                            .ofNullable(new File(fullHoursPath + "/" + minute).list())
-                            .orElse(new String[]{}))
-                    .filter(f -> !isTempFile(f))
+            List<String> fileNames = listItemNames(new File(fullHoursPath + "/" + minute)).stream()
                     .sorted()
                     .collect(Collectors.toList());
             Collections.reverse(fileNames);
@@ -260,11 +417,11 @@ public class FileSpokeStore {
         return getLatest(channel, limitPath, previous);
     }
 
-    private boolean isTempFile(File file) {
+    private static boolean isTempFile(File file) {
         return isTempFile(file.getName());
     }
 
-    private boolean isTempFile(String pathName) {
+    private static boolean isTempFile(String pathName) {
         return pathName.endsWith(SPOKE_TMP_SUFFIX);
     }
 
@@ -273,6 +430,13 @@ public class FileSpokeStore {
      * This may return more than the request count, as this does not do any sorting.
      */
     public void getNext(String channel, String startKey, int count, OutputStream output) throws IOException {
+        getNext(channel, startKey, count, SpokeKeyCodec.textWriter(output));
+    }
+
+    /**
+     * This may return more than the request count, as this does not do any sorting.
+     */
+    public void getNext(String channel, String startKey, int count, SpokeKeyCodec.KeyWriter writer) throws IOException {
         DateTime now = TimeUtil.now();
         String channelPath = spokePath + channel + "/";
         log.trace("next {} {} {}", channel, startKey, now);
@@ -282,22 +446,24 @@ public class FileSpokeStore {
         AtomicInteger found = new AtomicInteger();
         AtomicBoolean firstMinute = new AtomicBoolean(true);
         MinutePath minutePath = new MinutePath(start.getTime());
+        if (itemIndex.isRebuilt()) {
+            getIndexedNext(channel, start, count, now, writer);
+            return;
+        }
         do {
             //todo gfm - while this fast for short time ranges, it is quite slow over years
             String minuteUrl = minutePath.toUrl();
             String minute = channelPath + minuteUrl;
             log.trace("minute {}", minute);
-            Arrays.stream(Optional.ofNullable(new File(minute).list())
-                            .orElse(new String[]{}))
-                    .filter(f -> !isTempFile(f))
+            listItemNames(new File(minute))
                     .forEach(item -> {
                         String keyFromPath = spokeKeyFromPath(minuteUrl + "/" + item);
                         String fullKey = channel + "/" + keyFromPath;
                         if (firstMinute.get()) {
                             ContentKey.fromUrl(keyFromPath).filter((key) -> key.compareTo(start) > 0)
-                                    .ifPresent((key) -> writeNext(found, output, fullKey));
+                                    .ifPresent((key) -> writeNext(found, writer, fullKey));
                         } else {
-                            writeNext(found, output, fullKey);
+                            writeNext(found, writer, fullKey);
                         }
                     });
             minutePath = new MinutePath(minutePath.getTime().plusMinutes(1));
@@ -305,10 +471,30 @@ public class FileSpokeStore {
         } while (found.get() < count && minutePath.getTime().isBefore(now));
     }
 
-    private void writeNext(AtomicInteger found, OutputStream outputStream, String key) {
+    /**
+     * Only lists minutes which the item index has seen items written to.
+     */
+    private void getIndexedNext(String channel, ContentKey start, int count, DateTime now, SpokeKeyCodec.KeyWriter writer) {
+        AtomicInteger found = new AtomicInteger();
+        long startMinute = new MinutePath(start.getTime()).getTime().getMillis();
+        Optional<Long> minute = itemIndex.nextMinute(channel, startMinute);
+        while (found.get() < count && minute.isPresent() && minute.get() < now.getMillis()) {
+            String minuteUrl = TimeUtil.minutes(new DateTime(minute.get(), DateTimeZone.UTC));
+            boolean firstMinute = minute.get() == startMinute;
+            for (String item : listItemNames(new File(spokePath + channel + "/" + minuteUrl))) {
+                String keyFromPath = spokeKeyFromPath(minuteUrl + "/" + item);
+                if (!firstMinute || ContentKey.fromUrl(keyFromPath).filter(key -> key.compareTo(start) > 0).isPresent()) {
+                    writeNext(found, writer, channel + "/" + keyFromPath);
+                }
+            }
+            minute = itemIndex.nextMinute(channel, minute.get() + 1);
+        }
+    }
+
+    private void writeNext(AtomicInteger found, SpokeKeyCodec.KeyWriter writer, String key) {
         try {
             found.getAndIncrement();
-            writeKey(outputStream, key);
+            writer.write(key);
         } catch (IOException e) {
             log.error("Error writing read data to output stream ", e);
         }
@@ -343,6 +529,7 @@ public class FileSpokeStore {
                 } else {
                     log.debug("deleting {}", spokePath + "/" + current);
                     FileUtils.deleteQuietly(new File(spokePath + "/" + current));
+                    itemIndex.deleted(current);
                 }
             }
         }
@@ -1,5 +1,6 @@
 package com.flightstats.hub.spoke;
 
+import com.flightstats.hub.model.MinutePath;
 import com.flightstats.hub.model.SingleTrace;
 import com.google.common.io.ByteStreams;
 import lombok.extern.slf4j.Slf4j;
@@ -14,11 +15,14 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
@@ -32,6 +36,8 @@ import static com.flightstats.hub.constant.NamedBinding.WRITE;
 @Path("/internal/spoke")
 public class InternalSpokeResource {
 
+    private static final MediaType BINARY_KEYS = MediaType.valueOf(SpokeKeyCodec.BINARY_TYPE);
+
     private final FileSpokeStore writeSpokeStore;
     private final FileSpokeStore readSpokeStore;
     private final SpokeClusterHealthCheck healthCheck;
@@ -39,6 +45,9 @@ public class InternalSpokeResource {
     @Context
     private UriInfo uriInfo;
 
+    @Context
+    private HttpHeaders httpHeaders;
+
     @Inject
     public InternalSpokeResource(@Named(WRITE) FileSpokeStore writeSpokeStore,
                                  @Named(READ) FileSpokeStore readSpokeStore,
@@ -142,18 +151,32 @@ public class InternalSpokeResource {
     private Response getResponse(FileSpokeStore store, String path) {
         log.trace("time {}", path);
         try {
+            boolean binary = acceptsBinaryKeys();
             Response.ResponseBuilder builder = Response.ok((StreamingOutput) os -> {
                 BufferedOutputStream output = new BufferedOutputStream(os);
-                store.readKeysInBucket(path, output);
+                store.readKeysInBucket(path, keyWriter(binary, output));
                 output.flush();
             });
-            return builder.build();
+            return keyType(builder, binary).build();
         } catch (Exception e) {
             log.error("unable to get " + path, e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    private boolean acceptsBinaryKeys() {
+        return httpHeaders != null
+                && SpokeKeyCodec.BINARY.equals(httpHeaders.getHeaderString(SpokeKeyCodec.ENCODING_HEADER));
+    }
+
+    private SpokeKeyCodec.KeyWriter keyWriter(boolean binary, OutputStream output) {
+        return binary ? SpokeKeyCodec.binaryWriter(output) : SpokeKeyCodec.textWriter(output);
+    }
+
+    private Response.ResponseBuilder keyType(Response.ResponseBuilder builder, boolean binary) {
+        return binary ? builder.type(BINARY_KEYS) : builder;
+    }
+
     private FileSpokeStore getSpokeStoreByName(String name) {
         switch (SpokeStore.from(name)) {
             case WRITE:
@@ -188,6 +211,27 @@ public class InternalSpokeResource {
         return getResponse(store, C + "/" + Y + "/" + M + "/" + D + "/" + hour);
     }
 
+    @GET
+    @Path("/{storeName}/digest/{C}/{Y}/{M}/{D}/{hour}")
+    public Response getMinuteDigests(@PathParam("storeName") String storeName,
+                                     @PathParam("C") String C,
+                                     @PathParam("Y") String Y,
+                                     @PathParam("M") String M,
+                                     @PathParam("D") String D,
+                                     @PathParam("hour") String hour) {
+        String path = C + "/" + Y + "/" + M + "/" + D + "/" + hour;
+        try {
+            FileSpokeStore store = getSpokeStoreByName(storeName);
+            MinutePath hourPath = MinutePath.fromUrl(Y + "/" + M + "/" + D + "/" + hour + "/00")
+                    .orElseThrow(() -> new IllegalArgumentException("invalid hour " + path));
+            SpokeMinuteDigests digests = store.readMinuteDigests(C, hourPath);
+            return Response.ok((StreamingOutput) digests::writeTo).build();
+        } catch (Exception e) {
+            log.error("unable to get digests " + path, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @GET
     @Path("/{storeName}/time/{C}/{Y}/{M}/{D}/{h}/{minute}")
     public Response getTimeBucket(@PathParam("storeName") String storeName,
@@ -237,6 +281,11 @@ public class InternalSpokeResource {
             if (read == null) {
                 return Response.status(Response.Status.NOT_FOUND).build();
             }
+            if (acceptsBinaryKeys()) {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                SpokeKeyCodec.binaryWriter(output).write(read);
+                return Response.ok(output.toByteArray(), BINARY_KEYS).build();
+            }
             return Response.ok(read).build();
         } catch (Exception e) {
             log.warn("unable to get latest " + channel + " " + path, e);
@@ -249,12 +298,13 @@ public class InternalSpokeResource {
     public Response getNext(@PathParam("channel") String channel, @PathParam("count") int count,
                             @PathParam("startKey") String startKey) {
         try {
+            boolean binary = acceptsBinaryKeys();
             Response.ResponseBuilder builder = Response.ok((StreamingOutput) os -> {
                 BufferedOutputStream output = new BufferedOutputStream(os);
-                writeSpokeStore.getNext(channel, startKey, count, output);
+                writeSpokeStore.getNext(channel, startKey, count, keyWriter(binary, output));
                 output.flush();
             });
-            return builder.build();
+            return keyType(builder, binary).build();
         } catch (Exception e) {
             log.warn("unable to get next " + channel + " " + startKey, e);
         }
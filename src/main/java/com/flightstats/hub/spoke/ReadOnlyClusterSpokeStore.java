@@ -4,6 +4,8 @@ import com.flightstats.hub.dao.QueryResult;
 import com.flightstats.hub.model.Content;
 import com.flightstats.hub.model.ContentKey;
 import javax.inject.Inject;
+import java.util.List;
+import java.util.Optional;
 
 public class ReadOnlyClusterSpokeStore implements ClusterWriteSpoke {
     private final ClusterWriteSpoke writeClusterDelegate;
@@ -33,4 +35,9 @@ public class ReadOnlyClusterSpokeStore implements ClusterWriteSpoke {
         return writeClusterDelegate.readTimeBucketFromWriteCluster(channel, timePath);
     }
 
+    @Override
+    public Optional<List<SpokeMinuteDigests>> readMinuteDigestsFromWriteCluster(String channel, String hourPath) throws InterruptedException {
+        return writeClusterDelegate.readMinuteDigestsFromWriteCluster(channel, hourPath);
+    }
+
 }
@@ -1,6 +1,5 @@
 package com.flightstats.hub.spoke;
 
-import com.flightstats.hub.config.properties.SpokeProperties;
 import com.flightstats.hub.exception.ContentTooLargeException;
 import com.flightstats.hub.exception.FailedWriteException;
 import com.flightstats.hub.metrics.ActiveTraces;
@@ -9,12 +8,12 @@ import com.flightstats.hub.model.BulkContent;
 import com.flightstats.hub.model.ChannelContentKey;
 import com.flightstats.hub.model.Content;
 import com.flightstats.hub.model.ContentKey;
-import com.flightstats.hub.util.Commander;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 
 import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectOutputStream;
 import java.util.List;
@@ -23,20 +22,20 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.function.Function;
 
-import static com.flightstats.hub.constant.ContentConstant.GET_ITEM_COUNT_COMMAND;
-import static com.flightstats.hub.constant.ContentConstant.GET_OLDEST_ITEM_COMMAND;
+import static com.flightstats.hub.constant.NamedBinding.READ;
+import static com.flightstats.hub.constant.NamedBinding.WRITE;
 
 @Slf4j
 public class SpokeContentDao {
 
-    private final Commander commander;
-    private final SpokeProperties spokeProperties;
+    private final Provider<FileSpokeStore> readSpokeStore;
+    private final Provider<FileSpokeStore> writeSpokeStore;
 
     @Inject
-    public SpokeContentDao(Commander commander,
-                           SpokeProperties spokeProperties) {
-        this.commander = commander;
-        this.spokeProperties = spokeProperties;
+    public SpokeContentDao(@Named(READ) Provider<FileSpokeStore> readSpokeStore,
+                           @Named(WRITE) Provider<FileSpokeStore> writeSpokeStore) {
+        this.readSpokeStore = readSpokeStore;
+        this.writeSpokeStore = writeSpokeStore;
     }
 
     @SneakyThrows
@@ -79,28 +78,27 @@ public class SpokeContentDao {
         }
     }
 
+    /**
+     * @return the earliest item in the store, or empty until the store's item index has been rebuilt
+     */
     Optional<ChannelContentKey> getOldestItem(SpokeStore store) {
-        String storePath = spokeProperties.getPath(store);
-        log.trace("getting oldest item from " + storePath);
-        // expected result format: YYYY-MM-DD+HH:MM:SS.SSSSSSSSSS /mnt/spoke/store/channel/yyyy/mm/dd/hh/mm/ssSSShash
-        String command = String.format(GET_OLDEST_ITEM_COMMAND, storePath);
-        int waitTimeSeconds = 3;
-        String result = StringUtils.chomp(commander.runInBash(command, waitTimeSeconds));
-        if (StringUtils.isEmpty(result)) return Optional.empty();
-        try {
-            return Optional.of(ChannelContentKey.fromSpokePath(result));
-        } catch (IllegalArgumentException e) {
+        SpokeItemIndex itemIndex = getItemIndex(store);
+        if (!itemIndex.isRebuilt()) {
+            log.debug("item index for {} is not yet rebuilt", store);
             return Optional.empty();
         }
+        return itemIndex.getOldestItem();
+    }
+
+    /**
+     * @return the number of items in the store, or empty until the store's item index has been rebuilt
+     */
+    Optional<Long> getNumberOfItems(SpokeStore store) {
+        return getItemIndex(store).getNumberOfItems();
     }
 
-    long getNumberOfItems(SpokeStore spokeStore) {
-        String storePath = spokeProperties.getPath(spokeStore);
-        log.trace("getting the total number of items in " + storePath);
-        String command = String.format(GET_ITEM_COUNT_COMMAND, storePath);
-        int waitTimeSeconds = 1;
-        String result = StringUtils.chomp(commander.runInBash(command, waitTimeSeconds));
-        return StringUtils.isEmpty(result) ? 0L : Long.parseLong(result);
+    SpokeItemIndex getItemIndex(SpokeStore store) {
+        return store == SpokeStore.READ ? readSpokeStore.get().getItemIndex() : writeSpokeStore.get().getItemIndex();
     }
 
 }
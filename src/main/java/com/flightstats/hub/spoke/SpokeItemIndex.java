@@ -0,0 +1,307 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.model.ChannelContentKey;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.util.TimeUtil;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.Chronology;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.DurationFieldType;
+import org.joda.time.chrono.ISOChronology;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts of the items in each channel minute of a spoke store, kept in memory so the oldest item, the number of
+ * items, and the populated minutes of a channel can be found without walking the file system.
+ * <p>
+ * The counts are only held in memory.  They are rebuilt from disk in the background at startup, then kept current
+ * by inserts and deletes, and callers fall back to the file system until {@link #isRebuilt()}.
+ * The rebuild merges each minute's listed count with the inserts and deletes made while it was listing, so concurrent
+ * writes are never lost, though one landing while its own minute is listed may be counted twice.  Over counts are
+ * corrected when that minute is deleted.  Minutes are removed once their count reaches zero.
+ */
+@Slf4j
+class SpokeItemIndex implements SpokeTtlWalker.Listener {
+
+    private static final Chronology UTC = ISOChronology.getInstanceUTC();
+    private static final int MINUTE_PARTS = 6;
+    private static final DurationFieldType[] FIELD_TYPES = {DurationFieldType.years(), DurationFieldType.months(),
+            DurationFieldType.days(), DurationFieldType.hours(), DurationFieldType.minutes()};
+
+    private final String spokePath;
+    private final Map<String, ConcurrentSkipListMap<Long, Long>> channels = new ConcurrentHashMap<>();
+    private final AtomicLong items = new AtomicLong();
+    private volatile boolean rebuilt;
+
+    SpokeItemIndex(String spokePath) {
+        this.spokePath = StringUtils.appendIfMissing(spokePath, "/");
+    }
+
+    void startRebuild() {
+        ExecutorService executor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("spoke-item-index-%d").setDaemon(true).build());
+        executor.submit(() -> rebuild());
+        executor.shutdown();
+    }
+
+    void rebuild() {
+        long start = System.currentTimeMillis();
+        try {
+            for (String channel : list(new File(spokePath))) {
+                rebuild(new File(spokePath, channel), channel, new int[MINUTE_PARTS - 1], 0);
+            }
+            rebuilt = true;
+            log.info("rebuilt item index for {} with {} items in {} ms", spokePath, items.get(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("unable to rebuild item index for {}", spokePath, e);
+        }
+    }
+
+    private void rebuild(File directory, String channel, int[] fields, int depth) {
+        for (String name : list(directory)) {
+            if (!StringUtils.isNumeric(name)) {
+                continue;
+            }
+            fields[depth] = Integer.parseInt(name);
+            File child = new File(directory, name);
+            if (depth < fields.length - 1) {
+                rebuild(child, channel, fields, depth + 1);
+                continue;
+            }
+            try {
+                long minute = UTC.getDateTimeMillis(fields[0], fields[1], fields[2], fields[3], fields[4], 0, 0);
+                rebuildMinute(child, channel, minute);
+            } catch (IllegalArgumentException e) {
+                log.trace("ignoring {}", child);
+            }
+        }
+    }
+
+    /**
+     * Replaces the count from before the listing with the listed count, keeping any change made during the listing.
+     */
+    private void rebuildMinute(File minuteDirectory, String channel, long minute) {
+        ConcurrentSkipListMap<Long, Long> minutes = minutes(channel);
+        long before = minutes.getOrDefault(minute, 0L);
+        long listed = countItems(minuteDirectory);
+        while (true) {
+            Long current = minutes.get(minute);
+            long previous = current == null ? 0 : current;
+            long merged = Math.max(0, listed + previous - before);
+            boolean updated;
+            if (current == null) {
+                updated = merged == 0 || minutes.putIfAbsent(minute, merged) == null;
+            } else if (merged > 0) {
+                updated = minutes.replace(minute, current, merged);
+            } else {
+                updated = minutes.remove(minute, current);
+            }
+            if (updated) {
+                items.addAndGet(merged - previous);
+                return;
+            }
+        }
+    }
+
+    long countItems(File minuteDirectory) {
+        return FileSpokeStore.listItemNames(minuteDirectory).size();
+    }
+
+    boolean isRebuilt() {
+        return rebuilt;
+    }
+
+    /**
+     * @return the number of items in the store, or empty until {@link #isRebuilt()}
+     */
+    Optional<Long> getNumberOfItems() {
+        return rebuilt ? Optional.of(items.get()) : Optional.empty();
+    }
+
+    /**
+     * @return the first minute at or after minute which may hold items, only valid once {@link #isRebuilt()}
+     */
+    Optional<Long> nextMinute(String channel, long minute) {
+        ConcurrentSkipListMap<Long, Long> minutes = channels.get(channel);
+        return minutes == null ? Optional.empty() : Optional.ofNullable(minutes.ceilingKey(minute));
+    }
+
+    /**
+     * @return the last minute at or before minute which may hold items, only valid once {@link #isRebuilt()}
+     */
+    Optional<Long> previousMinute(String channel, long minute) {
+        ConcurrentSkipListMap<Long, Long> minutes = channels.get(channel);
+        return minutes == null ? Optional.empty() : Optional.ofNullable(minutes.floorKey(minute));
+    }
+
+    /**
+     * Only called for items which weren't already in the store, so overwrites aren't counted twice.
+     *
+     * @param path an item path, channel/yyyy/MM/dd/HH/mm/ss/SSS/hash
+     */
+    void added(String path) {
+        String[] parts = StringUtils.split(path, "/", 2);
+        if (parts.length < 2) {
+            return;
+        }
+        ContentKey.fromUrl(parts[1]).ifPresent(key -> {
+            minutes(parts[0]).merge(minute(key.getMillis()), 1L, Long::sum);
+            items.incrementAndGet();
+        });
+    }
+
+    /**
+     * @param path a channel, time bucket or item path
+     */
+    void deleted(String path) {
+        String[] parts = StringUtils.split(path, "/");
+        if (parts.length == 0) {
+            return;
+        }
+        String channel = parts[0];
+        if (parts.length > MINUTE_PARTS) {
+            decrement(parts, 1);
+        } else if (parts.length == 1) {
+            channels.computeIfPresent(channel, (name, minutes) -> {
+                minutes.values().forEach(count -> items.addAndGet(-count));
+                return null;
+            });
+        } else {
+            ConcurrentSkipListMap<Long, Long> minutes = channels.get(channel);
+            if (minutes == null) {
+                return;
+            }
+            try {
+                int[] fields = {0, 1, 1, 0, 0};
+                for (int i = 1; i < parts.length; i++) {
+                    fields[i - 1] = Integer.parseInt(parts[i]);
+                }
+                DateTime start = new DateTime(fields[0], fields[1], fields[2], fields[3], fields[4], DateTimeZone.UTC);
+                DateTime end = start.withFieldAdded(FIELD_TYPES[parts.length - 2], 1);
+                for (Long minute : minutes.subMap(start.getMillis(), end.getMillis()).keySet()) {
+                    remove(minute, channel);
+                }
+            } catch (IllegalArgumentException e) {
+                log.trace("ignoring {}", path);
+            }
+        }
+    }
+
+    /**
+     * Called by {@link SpokeTtlWalker} for each file and directory it deletes.
+     */
+    @Override
+    public void deleted(File file, long count) {
+        String path = StringUtils.removeStart(file.getPath(), spokePath);
+        String[] parts = StringUtils.split(path, "/");
+        if (parts.length == MINUTE_PARTS) {
+            deleted(path);
+        } else if (parts.length == MINUTE_PARTS + 1 && count > 0) {
+            decrement(parts, count);
+        }
+    }
+
+    private void decrement(String[] parts, long count) {
+        String minutePath = StringUtils.join(Arrays.copyOfRange(parts, 1, MINUTE_PARTS), "/");
+        try {
+            ConcurrentSkipListMap<Long, Long> minutes = channels.get(parts[0]);
+            if (minutes == null) {
+                return;
+            }
+            long minute = TimeUtil.minutes(minutePath).getMillis();
+            while (true) {
+                Long current = minutes.get(minute);
+                if (current == null) {
+                    return;
+                }
+                long removed = Math.min(current, count);
+                boolean updated = current > removed
+                        ? minutes.replace(minute, current, current - removed)
+                        : minutes.remove(minute, current);
+                if (updated) {
+                    items.addAndGet(-removed);
+                    return;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            log.trace("ignoring {}", minutePath);
+        }
+    }
+
+    /**
+     * @return the earliest item by key, from the oldest minute of each channel
+     */
+    Optional<ChannelContentKey> getOldestItem() {
+        ChannelContentKey oldest = null;
+        for (Map.Entry<String, ConcurrentSkipListMap<Long, Long>> channel : channels.entrySet()) {
+            for (Map.Entry<Long, Long> minute : channel.getValue().entrySet()) {
+                if (oldest != null && minute.getKey() > oldest.getContentKey().getMillis()) {
+                    break;
+                }
+                Optional<ChannelContentKey> first = firstItem(channel.getKey(), minute.getKey());
+                if (first.isPresent()) {
+                    if (oldest == null || first.get().compareTo(oldest) < 0) {
+                        oldest = first.get();
+                    }
+                    break;
+                }
+            }
+        }
+        return Optional.ofNullable(oldest);
+    }
+
+    private Optional<ChannelContentKey> firstItem(String channel, long minute) {
+        File minuteDirectory = new File(spokePath + channel + "/" + TimeUtil.minutes(new DateTime(minute, DateTimeZone.UTC)));
+        List<String> names = FileSpokeStore.listItemNames(minuteDirectory);
+        if (names.isEmpty()) {
+            if (!minuteDirectory.exists()) {
+                remove(minute, channel);
+            }
+            return Optional.empty();
+        }
+        String name = names.stream().min(String::compareTo).get();
+        try {
+            return Optional.of(ChannelContentKey.fromSpokePath(minuteDirectory.getPath() + "/" + name));
+        } catch (IllegalArgumentException e) {
+            log.warn("unable to parse oldest item {} {}", minuteDirectory, name);
+            return Optional.empty();
+        }
+    }
+
+    private ConcurrentSkipListMap<Long, Long> minutes(String channel) {
+        return channels.computeIfAbsent(channel, c -> new ConcurrentSkipListMap<>());
+    }
+
+    private void remove(long minute, String channel) {
+        ConcurrentSkipListMap<Long, Long> minutes = channels.get(channel);
+        if (minutes != null) {
+            Long removed = minutes.remove(minute);
+            if (removed != null) {
+                items.addAndGet(-removed);
+            }
+        }
+    }
+
+    private long minute(long millis) {
+        return millis - Math.floorMod(millis, 60_000L);
+    }
+
+    private static String[] list(File directory) {
+        String[] names = Optional.ofNullable(directory.list()).orElse(new String[]{});
+        Arrays.sort(names);
+        return names;
+    }
+}
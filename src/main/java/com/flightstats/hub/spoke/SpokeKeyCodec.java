@@ -0,0 +1,135 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.model.ContentKey;
+import org.joda.time.Chronology;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.chrono.ISOChronology;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Encodes the key lists returned by the internal spoke time, next and latest endpoints.
+ * <p>
+ * The text encoding is the original comma separated list of channel/yyyy/MM/dd/HH/mm/ss/SSS/hash paths.
+ * The binary encoding writes each key as a zig-zag varint of the millis delta from the previous key,
+ * followed by a varint length and the UTF-8 hash.
+ * Callers ask for it with the {@link #ENCODING_HEADER} request header, and nodes which support it respond
+ * with the {@link #BINARY_TYPE} content type, so mixed version clusters fall back to text.
+ */
+public class SpokeKeyCodec {
+
+    public static final String BINARY_TYPE = "application/x-hub-keys";
+    public static final String ENCODING_HEADER = "X-Hub-Key-Encoding";
+    public static final String BINARY = "binary";
+
+    private static final Chronology UTC = ISOChronology.getInstanceUTC();
+
+    public interface KeyWriter {
+        /**
+         * @param keyPath channel/yyyy/MM/dd/HH/mm/ss/SSS/hash
+         */
+        void write(String keyPath) throws IOException;
+    }
+
+    public static KeyWriter textWriter(OutputStream output) {
+        return keyPath -> {
+            output.write(keyPath.getBytes());
+            output.write(',');
+        };
+    }
+
+    public static KeyWriter binaryWriter(OutputStream output) {
+        return new KeyWriter() {
+            private long previous = 0;
+
+            @Override
+            public void write(String keyPath) throws IOException {
+                int start = keyPath.indexOf('/') + 1;
+                long millis = UTC.getDateTimeMillis(
+                        parse(keyPath, start, 4),
+                        parse(keyPath, start + 5, 2),
+                        parse(keyPath, start + 8, 2),
+                        parse(keyPath, start + 11, 2),
+                        parse(keyPath, start + 14, 2),
+                        parse(keyPath, start + 17, 2),
+                        parse(keyPath, start + 20, 3));
+                writeVarLong(output, zigZag(millis - previous));
+                previous = millis;
+                byte[] hash = keyPath.substring(start + 24).getBytes(StandardCharsets.UTF_8);
+                writeVarLong(output, hash.length);
+                output.write(hash);
+            }
+        };
+    }
+
+    public static void readKeys(InputStream input, Collection<ContentKey> keys) throws IOException {
+        long previous = 0;
+        long delta;
+        while ((delta = readVarLong(input, true)) != -1) {
+            long millis = previous + unZigZag(delta);
+            previous = millis;
+            byte[] hash = new byte[(int) readVarLong(input, false)];
+            int read = 0;
+            while (read < hash.length) {
+                int count = input.read(hash, read, hash.length - read);
+                if (count < 0) {
+                    throw new EOFException("truncated key hash");
+                }
+                read += count;
+            }
+            keys.add(new ContentKey(new DateTime(millis, DateTimeZone.UTC), new String(hash, StandardCharsets.UTF_8)));
+        }
+    }
+
+    private static int parse(String value, int start, int length) {
+        int result = 0;
+        for (int i = start; i < start + length; i++) {
+            result = result * 10 + (value.charAt(i) - '0');
+        }
+        return result;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(OutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    /**
+     * @return -1 if the stream ends cleanly before the value starts and endAllowed is true
+     */
+    private static long readVarLong(InputStream input, boolean endAllowed) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = input.read();
+            if (b < 0) {
+                if (shift == 0 && endAllowed) {
+                    return -1;
+                }
+                throw new EOFException("truncated key list");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
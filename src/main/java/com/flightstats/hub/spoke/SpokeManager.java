@@ -1,9 +1,11 @@
 package com.flightstats.hub.spoke;
 
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.flightstats.hub.app.HubServices;
 import com.flightstats.hub.cluster.CuratorCluster;
 import com.flightstats.hub.config.properties.ContentProperties;
 import com.flightstats.hub.config.properties.LocalHostProperties;
+import com.flightstats.hub.config.properties.SpokeProperties;
 import com.flightstats.hub.dao.ContentKeyUtil;
 import com.flightstats.hub.dao.ContentMarshaller;
 import com.flightstats.hub.dao.QueryResult;
@@ -15,6 +17,7 @@ import com.flightstats.hub.model.ContentKey;
 import com.flightstats.hub.rest.RestClient;
 import com.flightstats.hub.util.HubUtils;
 import com.flightstats.hub.util.RuntimeInterruptedException;
+import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.name.Named;
 import com.sun.jersey.api.client.Client;
@@ -22,12 +25,19 @@ import com.sun.jersey.api.client.ClientHandlerException;
 import com.sun.jersey.api.client.ClientResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jetty.client.HttpClient;
 
 import javax.inject.Inject;
+import javax.ws.rs.core.MediaType;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.ConnectException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -44,6 +54,7 @@ public class SpokeManager implements SpokeClusterHealthCheck, SpokeChronologySto
 
     private final static Client write_client = RestClient.createClient(1, 5, true, false);
     private final static Client query_client = RestClient.createClient(5, 15, true, true);
+    private final static MediaType BINARY_KEYS = MediaType.valueOf(SpokeKeyCodec.BINARY_TYPE);
 
     private final CuratorCluster cluster;
     private final StatsdReporter statsdReporter;
@@ -52,12 +63,14 @@ public class SpokeManager implements SpokeClusterHealthCheck, SpokeChronologySto
     private final String hostAddressWithPort;
     private final ExecutorService executorService;
     private final LocalHostProperties localHostProperties;
+    private final AsyncSpokeWriter asyncSpokeWriter;
 
     @Inject
     public SpokeManager(@Named("SpokeCuratorCluster") CuratorCluster cluster,
                         StatsdReporter statsdReporter,
                         ContentProperties contentProperties,
-                        LocalHostProperties localHostProperties) {
+                        LocalHostProperties localHostProperties,
+                        SpokeProperties spokeProperties) {
         this.cluster = cluster;
         this.statsdReporter = statsdReporter;
         this.contentProperties = contentProperties;
@@ -65,6 +78,14 @@ public class SpokeManager implements SpokeClusterHealthCheck, SpokeChronologySto
         this.hostAddressWithPort = localHostProperties.getAddressWithPort();
         this.localHostProperties = localHostProperties;
         this.executorService = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("RemoteSpokeStore-%d").build());
+        if (spokeProperties.isAsyncWriteClient()) {
+            HttpClient httpClient = RestClient.createAsyncClient("SpokeWriteClient",
+                    1, spokeProperties.getAsyncWriteMaxConnections(), spokeProperties.getAsyncWriteMaxThreads());
+            this.asyncSpokeWriter = new AsyncSpokeWriter(httpClient, statsdReporter, uriScheme, contentProperties.getStableSeconds());
+            HubServices.register(new SpokeWriteClientService(httpClient));
+        } else {
+            this.asyncSpokeWriter = null;
+        }
     }
 
     static int getQuorum(int size) {
@@ -146,6 +167,9 @@ public class SpokeManager implements SpokeClusterHealthCheck, SpokeChronologySto
     }
 
     private boolean insertToStore(SpokeStore spokeStore, String path, byte[] payload, Collection<String> servers, Traces traces, String spokeApi, String channel) {
+        if (asyncSpokeWriter != null) {
+            return asyncSpokeWriter.insert(spokeStore, path, payload, servers, traces, spokeApi, channel);
+        }
         int quorum = getQuorum(servers.size());
         CountDownLatch quorumLatch = new CountDownLatch(quorum);
         AtomicBoolean firstComplete = new AtomicBoolean();
@@ -270,12 +294,13 @@ public class SpokeManager implements SpokeClusterHealthCheck, SpokeChronologySto
                     try {
                         setThread(path);
                         traces.add("spoke calling", server, path);
-                        response = query_client.resource(uriScheme + server + path).get(ClientResponse.class);
+                        response = query_client.resource(uriScheme + server + path)
+                                .header(SpokeKeyCodec.ENCODING_HEADER, SpokeKeyCodec.BINARY)
+                                .get(ClientResponse.class);
                         traces.add("spoke server response", server, response);
                         if (response.getStatus() == 200) {
                             SortedSet<ContentKey> keySet = new TreeSet<>();
-                            String keysString = response.getEntity(String.class);
-                            ContentKeyUtil.convertKeyStrings(keysString, keySet);
+                            readKeys(response, keySet);
                             traces.add(server, keySet);
                             queryResult.addKeys(keySet);
                         }
@@ -301,6 +326,57 @@ public class SpokeManager implements SpokeClusterHealthCheck, SpokeChronologySto
         return queryResult;
     }
 
+    @Override
+    public Optional<List<SpokeMinuteDigests>> readMinuteDigestsFromWriteCluster(String channel, String hourPath) throws InterruptedException {
+        String path = "/internal/spoke/" + SpokeStore.WRITE + "/digest/" + channel + "/" + hourPath;
+        Collection<String> servers = cluster.getAllServers();
+        CountDownLatch countDownLatch = new CountDownLatch(servers.size());
+        List<SpokeMinuteDigests> digests = Collections.synchronizedList(new ArrayList<>());
+        for (final String server : servers) {
+            executorService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    ClientResponse response = null;
+                    try {
+                        setThread(path);
+                        response = query_client.resource(uriScheme + server + path).get(ClientResponse.class);
+                        if (response.getStatus() == 200) {
+                            try (InputStream input = new BufferedInputStream(response.getEntityInputStream())) {
+                                digests.add(SpokeMinuteDigests.read(input));
+                            }
+                        } else {
+                            log.info("unable to get digests {} {} {}", server, path, response.getStatus());
+                        }
+                    } catch (Exception e) {
+                        log.warn("unable to get digests " + server + " " + path, e);
+                    } finally {
+                        HubUtils.close(response);
+                        resetThread();
+                        countDownLatch.countDown();
+                    }
+                }
+            });
+        }
+        countDownLatch.await(20, TimeUnit.SECONDS);
+        synchronized (digests) {
+            if (servers.isEmpty() || digests.size() < servers.size()) {
+                return Optional.empty();
+            }
+            return Optional.of(new ArrayList<>(digests));
+        }
+    }
+
+    private void readKeys(ClientResponse response, Collection<ContentKey> keys) throws IOException {
+        MediaType type = response.getType();
+        if (type != null && BINARY_KEYS.isCompatible(type)) {
+            try (InputStream input = new BufferedInputStream(response.getEntityInputStream())) {
+                SpokeKeyCodec.readKeys(input, keys);
+            }
+        } else {
+            ContentKeyUtil.convertKeyStrings(response.getEntity(String.class), keys);
+        }
+    }
+
     @Override
     public Optional<ContentKey> getLatestFromCluster(String channel, String path, Traces traces) throws InterruptedException {
         Collection<String> servers = cluster.getAllServers();
@@ -315,14 +391,14 @@ public class SpokeManager implements SpokeClusterHealthCheck, SpokeChronologySto
                         setThread(path);
                         traces.add("spoke calling", server, channel);
                         response = query_client.resource(uriScheme + server + "/internal/spoke/latest/" + path)
+                                .header(SpokeKeyCodec.ENCODING_HEADER, SpokeKeyCodec.BINARY)
                                 .get(ClientResponse.class);
                         traces.add("spoke server response", server, response);
                         if (response.getStatus() == 200) {
-                            String key = response.getEntity(String.class);
-                            if (StringUtils.isNotEmpty(key)) {
-                                orderedKeys.add(ContentKeyUtil.convertKey(key).get());
-                            }
-                            traces.add(server, key);
+                            SortedSet<ContentKey> keySet = new TreeSet<>();
+                            readKeys(response, keySet);
+                            orderedKeys.addAll(keySet);
+                            traces.add(server, keySet);
                         }
                     } catch (ClientHandlerException e) {
                         if (e.getCause() != null && e.getCause() instanceof ConnectException) {
@@ -397,4 +473,21 @@ public class SpokeManager implements SpokeClusterHealthCheck, SpokeChronologySto
         return Arrays.asList(localHostProperties.getHost(false));
     }
 
+    private static class SpokeWriteClientService extends AbstractIdleService {
+
+        private final HttpClient httpClient;
+
+        private SpokeWriteClientService(HttpClient httpClient) {
+            this.httpClient = httpClient;
+        }
+
+        @Override
+        protected void startUp() {
+        }
+
+        @Override
+        protected void shutDown() throws Exception {
+            httpClient.stop();
+        }
+    }
 }
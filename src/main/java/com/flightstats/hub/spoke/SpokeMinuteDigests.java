@@ -0,0 +1,96 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.MinutePath;
+import com.flightstats.hub.util.Hash;
+import lombok.Value;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The number of keys in each minute, and the sum of their hashes.  The sum doesn't depend on the order keys are added,
+ * so the keys a spoke node has for a minute can be compared with another listing of the minute without sending them.
+ * <p>
+ * The text form is one "yyyy/MM/dd/HH/mm count hash" line per minute.
+ */
+public class SpokeMinuteDigests implements SpokeKeyCodec.KeyWriter {
+
+    private final SortedMap<MinutePath, Digest> digests = new TreeMap<>();
+
+    public static SpokeMinuteDigests of(Collection<ContentKey> keys) {
+        SpokeMinuteDigests digests = new SpokeMinuteDigests();
+        keys.forEach(digests::add);
+        return digests;
+    }
+
+    public static SpokeMinuteDigests read(InputStream input) throws IOException {
+        SpokeMinuteDigests digests = new SpokeMinuteDigests();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] parts = StringUtils.split(line, ' ');
+            if (parts.length == 3) {
+                MinutePath.fromUrl(parts[0]).ifPresent(minute ->
+                        digests.digests.put(minute, new Digest(Long.parseLong(parts[1]), Long.parseUnsignedLong(parts[2], 16))));
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * @param keyPath channel/yyyy/MM/dd/HH/mm/ss/SSS/hash
+     */
+    @Override
+    public void write(String keyPath) {
+        ContentKey.fromUrl(StringUtils.substringAfter(keyPath, "/")).ifPresent(this::add);
+    }
+
+    public void add(ContentKey key) {
+        long hash = Hash.hash(key.toUrl());
+        digests.merge(new MinutePath(key.getTime()), new Digest(1, hash),
+                (existing, added) -> new Digest(existing.count + added.count, existing.hash + added.hash));
+    }
+
+    /**
+     * Sets the digest of a minute, leaving out empty minutes.
+     */
+    void put(MinutePath minute, Digest digest) {
+        if (digest.count > 0) {
+            digests.put(minute, digest);
+        }
+    }
+
+    public Optional<Digest> get(MinutePath minute) {
+        return Optional.ofNullable(digests.get(minute));
+    }
+
+    public SortedMap<MinutePath, Digest> getDigests() {
+        return digests;
+    }
+
+    public void writeTo(OutputStream output) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        digests.forEach((minute, digest) -> builder.append(minute.toUrl()).append(' ')
+                .append(digest.count).append(' ')
+                .append(Long.toHexString(digest.hash)).append('\n'));
+        output.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Value
+    public static class Digest {
+        static final Digest EMPTY = new Digest(0, 0);
+
+        long count;
+        long hash;
+    }
+}
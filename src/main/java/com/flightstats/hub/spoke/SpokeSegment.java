@@ -0,0 +1,336 @@
+package com.flightstats.hub.spoke;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only segment holding every item written to a single channel minute.
+ * Item bytes are appended to {@link #DATA_FILE}, and an entry of name, offset and length is then appended
+ * to {@link #INDEX_FILE}.  Readers only trust the index, so a partially written item is never visible.
+ * Deletes are recorded as tombstone entries, and the last entry for a name wins.
+ * <p>
+ * There is one open instance per minute directory, which loads the index once and keeps its files open.
+ * A segment is sealed, forcing both files to disk, once it has been idle for {@link #SEAL_MINUTES}, or when more
+ * than {@link #MAX_OPEN} segments are open.  Sealing retires the instance, and a call on a retired instance is
+ * passed to the directory's current one, so appends to a directory are never made by two instances.
+ * Until a segment is sealed the latest writes are only in the page cache, like the individual item files.
+ * Reading a segment which hasn't been written to since it was opened doesn't keep its data file open.
+ */
+@Slf4j
+class SpokeSegment {
+
+    static final String DATA_FILE = "segment.data";
+    static final String INDEX_FILE = "segment.index";
+
+    private static final int TOMBSTONE = -1;
+    private static final int SEAL_MINUTES = 2;
+    private static final int MAX_OPEN = 1000;
+    private static final LoadingCache<File, SpokeSegment> segments = CacheBuilder.newBuilder()
+            .expireAfterAccess(SEAL_MINUTES, TimeUnit.MINUTES)
+            .maximumSize(MAX_OPEN)
+            .removalListener((RemovalListener<File, SpokeSegment>) notification -> notification.getValue().seal())
+            .build(CacheLoader.from(SpokeSegment::new));
+
+    private final File minuteDirectory;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private boolean loaded;
+    private boolean onDisk;
+    private boolean retired;
+    private FileChannel data;
+    private FileChannel index;
+
+    private SpokeSegment(File minuteDirectory) {
+        this.minuteDirectory = minuteDirectory;
+    }
+
+    static SpokeSegment of(File minuteDirectory) {
+        return segments.getUnchecked(minuteDirectory.getAbsoluteFile());
+    }
+
+    /**
+     * @return the segment of a minute directory, if one has been written
+     */
+    static Optional<SpokeSegment> find(File minuteDirectory) {
+        File directory = minuteDirectory.getAbsoluteFile();
+        SpokeSegment segment = segments.getIfPresent(directory);
+        if (segment == null && new File(directory, INDEX_FILE).exists()) {
+            segment = of(directory);
+        }
+        return Optional.ofNullable(segment);
+    }
+
+    /**
+     * Seals every open segment.
+     */
+    static void sealAll() {
+        segments.invalidateAll();
+        segments.cleanUp();
+    }
+
+    static boolean isSegmentFile(File file) {
+        return isSegmentFile(file.getName());
+    }
+
+    static boolean isSegmentFile(String name) {
+        return DATA_FILE.equals(name) || INDEX_FILE.equals(name);
+    }
+
+    static boolean isIndexFile(File file) {
+        return INDEX_FILE.equals(file.getName());
+    }
+
+    boolean exists() {
+        return indexFile().exists();
+    }
+
+    /**
+     * @return true if the name was not already in this segment
+     */
+    boolean append(String name, byte[] payload) throws IOException {
+        return current(segment -> segment.appendLocked(name, payload));
+    }
+
+    boolean delete(String name) throws IOException {
+        return current(segment -> segment.deleteLocked(name));
+    }
+
+    /**
+     * @return false if the item is not in this segment
+     */
+    boolean read(String name, OutputStream output) throws IOException {
+        return current(segment -> segment.readLocked(name, output));
+    }
+
+    /**
+     * @return the live item names in this segment, in write order
+     */
+    Iterable<String> names() {
+        try {
+            return current(SpokeSegment::namesLocked);
+        } catch (IOException e) {
+            log.warn("unable to read segment index {}", indexFile(), e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Calls the operation holding the lock of the directory's current instance.
+     */
+    private <T> T current(SegmentOperation<T> operation) throws IOException {
+        SpokeSegment segment = this;
+        while (true) {
+            synchronized (segment) {
+                if (!segment.retired) {
+                    return operation.apply(segment);
+                }
+            }
+            segment = of(minuteDirectory);
+        }
+    }
+
+    private boolean appendLocked(String name, byte[] payload) throws IOException {
+        load();
+        minuteDirectory.mkdirs();
+        FileChannel data = dataChannel();
+        long offset = data.size();
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        while (buffer.hasRemaining()) {
+            data.write(buffer, offset + buffer.position());
+        }
+        appendIndex(name, offset, payload.length);
+        onDisk = true;
+        return entries.put(name, new Entry(offset, payload.length)) == null;
+    }
+
+    private boolean deleteLocked(String name) throws IOException {
+        if (!exists()) {
+            return false;
+        }
+        load();
+        if (!entries.containsKey(name)) {
+            return false;
+        }
+        appendIndex(name, 0, TOMBSTONE);
+        entries.remove(name);
+        return true;
+    }
+
+    private boolean readLocked(String name, OutputStream output) throws IOException {
+        if (!exists()) {
+            return false;
+        }
+        load();
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+        if (data == null) {
+            try (FileChannel readOnly = FileChannel.open(dataFile().toPath(), StandardOpenOption.READ)) {
+                readFully(readOnly, buffer, entry.offset);
+            }
+        } else {
+            readFully(data, buffer, entry.offset);
+        }
+        output.write(buffer.array());
+        return true;
+    }
+
+    private void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("segment data is shorter than its index " + minuteDirectory);
+            }
+        }
+    }
+
+    private Iterable<String> namesLocked() throws IOException {
+        if (!exists()) {
+            return Collections.emptyList();
+        }
+        load();
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * Reads the index the first time it's needed, or again after the minute directory has been deleted.
+     * A trailing partial entry, left by a crash during appendIndex, is truncated so later entries line up.
+     */
+    private void load() throws IOException {
+        if (loaded && (!onDisk || exists())) {
+            return;
+        }
+        close();
+        entries.clear();
+        loaded = true;
+        onDisk = exists();
+        if (!onDisk) {
+            return;
+        }
+        byte[] bytes = Files.readAllBytes(indexFile().toPath());
+        ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
+        DataInputStream input = new DataInputStream(stream);
+        int complete = 0;
+        try {
+            while (stream.available() > 0) {
+                String name = input.readUTF();
+                long offset = input.readLong();
+                int length = input.readInt();
+                complete = bytes.length - stream.available();
+                if (length == TOMBSTONE) {
+                    entries.remove(name);
+                } else {
+                    entries.put(name, new Entry(offset, length));
+                }
+            }
+        } catch (EOFException e) {
+            log.warn("truncating {} partial index bytes in {}", bytes.length - complete, minuteDirectory);
+            indexChannel().truncate(complete);
+        }
+    }
+
+    private void appendIndex(String name, long offset, int length) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(name.length() + 16);
+        try (DataOutputStream output = new DataOutputStream(baos)) {
+            output.writeUTF(name);
+            output.writeLong(offset);
+            output.writeInt(length);
+        }
+        FileChannel index = indexChannel();
+        ByteBuffer buffer = ByteBuffer.wrap(baos.toByteArray());
+        while (buffer.hasRemaining()) {
+            index.write(buffer);
+        }
+    }
+
+    private FileChannel dataChannel() throws IOException {
+        if (data == null) {
+            data = FileChannel.open(dataFile().toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return data;
+    }
+
+    private FileChannel indexChannel() throws IOException {
+        if (index == null) {
+            index = FileChannel.open(indexFile().toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return index;
+    }
+
+    private synchronized void seal() {
+        retired = true;
+        try {
+            if (data != null && exists()) {
+                data.force(true);
+            }
+            if (index != null && exists()) {
+                index.force(true);
+            }
+        } catch (IOException e) {
+            log.warn("unable to force segment {}", minuteDirectory, e);
+        }
+        close();
+        entries.clear();
+        loaded = false;
+    }
+
+    private void close() {
+        for (FileChannel channel : new FileChannel[]{data, index}) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.warn("unable to close segment {}", minuteDirectory, e);
+                }
+            }
+        }
+        data = null;
+        index = null;
+    }
+
+    private File dataFile() {
+        return new File(minuteDirectory, DATA_FILE);
+    }
+
+    private File indexFile() {
+        return new File(minuteDirectory, INDEX_FILE);
+    }
+
+    private interface SegmentOperation<T> {
+        T apply(SpokeSegment segment) throws IOException;
+    }
+
+    private static class Entry {
+        private final long offset;
+        private final int length;
+
+        private Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.flightstats.hub.spoke;
+
+/**
+ * FILE writes each item to its own file, SEGMENT appends each channel minute's items to a single {@link SpokeSegment}.
+ * Both modes can read items written by the other.
+ */
+public enum SpokeStorageMode {
+    FILE,
+    SEGMENT;
+
+    public static SpokeStorageMode from(String value) {
+        return SpokeStorageMode.valueOf(value.toUpperCase());
+    }
+
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
@@ -6,15 +6,13 @@ import com.flightstats.hub.dao.TtlEnforcer;
 import com.flightstats.hub.metrics.StatsdReporter;
 import com.flightstats.hub.model.ChannelConfig;
 import com.flightstats.hub.model.ChannelContentKey;
-import com.flightstats.hub.util.FileUtils;
 import com.flightstats.hub.util.TimeUtil;
 import lombok.extern.slf4j.Slf4j;
-import org.joda.time.DateTime;
 
 import javax.inject.Inject;
+import java.io.File;
 import java.util.Arrays;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -27,6 +25,7 @@ public class SpokeTtlEnforcer {
     private final StatsdReporter statsdReporter;
     private final SpokeStore spokeStore;
     private final TtlEnforcer ttlEnforcer;
+    private final SpokeTtlWalker spokeTtlWalker;
     private final String storagePath;
     private final int ttlMinutes;
 
@@ -36,7 +35,8 @@ public class SpokeTtlEnforcer {
                             SpokeContentDao spokeContentDao,
                             StatsdReporter statsdReporter,
                             SpokeProperties spokeProperties,
-                            TtlEnforcer ttlEnforcer) {
+                            TtlEnforcer ttlEnforcer,
+                            SpokeTtlWalker spokeTtlWalker) {
         this.spokeStore = spokeStore;
         this.channelService = channelService;
         this.spokeContentDao = spokeContentDao;
@@ -44,34 +44,27 @@ public class SpokeTtlEnforcer {
         this.storagePath = spokeProperties.getPath(spokeStore);
         this.ttlMinutes = spokeProperties.getTtlMinutes(spokeStore);
         this.ttlEnforcer = ttlEnforcer;
+        this.spokeTtlWalker = spokeTtlWalker;
     }
 
-    private Consumer<ChannelConfig> handleCleanup(AtomicLong evictionCounter) {
+    private Consumer<ChannelConfig> handleCleanup(SpokeTtlWalker.Deleted evicted) {
         return channel -> {
-            int itemsEvicted = 0;
-            final String channelPath = storagePath + "/" + channel.getDisplayName();
+            File channelDirectory = new File(storagePath, channel.getDisplayName());
+            SpokeItemIndex itemIndex = spokeContentDao.getItemIndex(spokeStore);
+            SpokeTtlWalker.Deleted deleted;
             if (channel.isLive()) {
-                final DateTime ttlDateTime = TimeUtil.stable().minusMinutes(ttlMinutes + 1);
-                for (int i = 0; i < 2; i++) {
-                    itemsEvicted += removeFromChannelByTime(channelPath, TimeUtil.minutes(ttlDateTime.minusMinutes(i)));
-                    itemsEvicted += removeFromChannelByTime(channelPath, TimeUtil.hours(ttlDateTime.minusHours(i + 1)));
-                    itemsEvicted += removeFromChannelByTime(channelPath, TimeUtil.days(ttlDateTime.minusDays(i + 1)));
-                    itemsEvicted += removeFromChannelByTime(channelPath, TimeUtil.months(ttlDateTime.minusMonths(i + 1)));
-                }
+                deleted = spokeTtlWalker.deleteBefore(channelDirectory, TimeUtil.stable().minusMinutes(ttlMinutes), itemIndex);
             } else {
-                int waitTimeSeconds = 3;
-                itemsEvicted += FileUtils.deleteFilesByAge(channelPath, ttlMinutes, waitTimeSeconds);
+                deleted = spokeTtlWalker.deleteOlderThan(channelDirectory, TimeUtil.now().minusMinutes(ttlMinutes), itemIndex);
             }
-            evictionCounter.getAndAdd(itemsEvicted);
+            if (deleted.getItems() > 0) {
+                log.debug("evicted {} items {} bytes from {} {}", deleted.getItems(), deleted.getBytes(), spokeStore, channel.getDisplayName());
+                statsdReporter.count(buildMetricName("evicted", "items"), deleted.getItems(), "channel:" + channel.getDisplayName());
+            }
+            evicted.add(deleted);
         };
     }
 
-    private long removeFromChannelByTime(String channelPath, String timePath) {
-        final String path = channelPath + "/" + timePath;
-        final int waitTimeSeconds = 3;
-        return FileUtils.deleteFiles(path, waitTimeSeconds);
-    }
-
     private void updateOldestItemMetric() {
         final Optional<ChannelContentKey> potentialItem = spokeContentDao.getOldestItem(spokeStore);
         final long oldestItemAgeMS = potentialItem.map(ChannelContentKey::getAgeMS).orElse(0L);
@@ -87,15 +80,17 @@ public class SpokeTtlEnforcer {
     void cleanup() {
         try {
             long start = System.currentTimeMillis();
-            AtomicLong evictionCounter = new AtomicLong(0);
+            SpokeTtlWalker.Deleted evicted = new SpokeTtlWalker.Deleted();
 
             log.debug("running ttl cleanup");
-            ttlEnforcer.deleteFilteredPaths(storagePath, channelService, handleCleanup(evictionCounter));
+            ttlEnforcer.deleteFilteredPaths(storagePath, channelService, handleCleanup(evicted), spokeContentDao.getItemIndex(spokeStore));
             updateOldestItemMetric();
-            statsdReporter.gauge(buildMetricName("evicted"), evictionCounter.get());
+            statsdReporter.gauge(buildMetricName("evicted"), evicted.getItems());
+            statsdReporter.gauge(buildMetricName("evicted", "bytes"), evicted.getBytes());
+            statsdReporter.gauge(buildMetricName("ttl", "lag"), evicted.getLagMillis());
 
             long runtime = (System.currentTimeMillis() - start);
-            log.info("completed ttl cleanup {}", runtime);
+            log.info("completed ttl cleanup {} evicted {} items {} bytes", runtime, evicted.getItems(), evicted.getBytes());
             statsdReporter.gauge(buildMetricName("ttl", "enforcer", "runtime"), runtime);
 
         } catch (Exception e) {
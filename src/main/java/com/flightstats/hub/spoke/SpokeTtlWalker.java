@@ -0,0 +1,213 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.config.properties.SpokeProperties;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.Chronology;
+import org.joda.time.DateTime;
+import org.joda.time.DurationField;
+import org.joda.time.chrono.ISOChronology;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static com.flightstats.hub.constant.ContentConstant.SPOKE_TMP_SUFFIX;
+
+/**
+ * Deletes expired spoke files from within the JVM, sharing one rate limit across all callers.
+ * <p>
+ * Channels are stored as channel/yyyy/MM/dd/HH/mm/ssSSShash, so {@link #deleteBefore(File, DateTime, Listener)} walks the
+ * buckets oldest first, removing whole buckets which have expired and stopping at the first bucket which has not.
+ * Progress is kept on disk: since buckets are removed oldest first, an interrupted walk is resumed by the next one.
+ * The rate limit is charged per directory removed rather than per file, so a minute costs the same however many items
+ * it holds.
+ */
+@Singleton
+@Slf4j
+public class SpokeTtlWalker {
+
+    private static final Chronology UTC = ISOChronology.getInstanceUTC();
+    private static final DurationField[] BUCKETS = {UTC.years(), UTC.months(), UTC.days(), UTC.hours(), UTC.minutes()};
+
+    private final RateLimiter rateLimiter;
+
+    @Inject
+    public SpokeTtlWalker(SpokeProperties spokeProperties) {
+        this(spokeProperties.getTtlDirectoriesPerSecond());
+    }
+
+    SpokeTtlWalker(double directoriesPerSecond) {
+        this.rateLimiter = RateLimiter.create(directoriesPerSecond);
+    }
+
+    /**
+     * Deletes every minute bucket in the channel which ends at or before ttlTime.
+     */
+    public Deleted deleteBefore(File channelDirectory, DateTime ttlTime, Listener listener) {
+        Deleted deleted = new Deleted(listener);
+        deleteBuckets(channelDirectory, new int[BUCKETS.length], 0, ttlTime.getMillis(), deleted);
+        return deleted;
+    }
+
+    /**
+     * Deletes files last modified before cutoff, and the directories they leave empty.
+     * This is used for channels which are not live, where an item's time does not say when it was written.
+     */
+    public Deleted deleteOlderThan(File channelDirectory, DateTime cutoff, Listener listener) {
+        Deleted deleted = new Deleted(listener);
+        deleteOlderThan(channelDirectory, cutoff.getMillis(), deleted);
+        return deleted;
+    }
+
+    /**
+     * Deletes the file or directory and everything within it.
+     */
+    public Deleted delete(File file, Listener listener) {
+        Deleted deleted = new Deleted(listener);
+        deleteRecursively(file, deleted);
+        return deleted;
+    }
+
+    private void deleteBuckets(File directory, int[] fields, int depth, long ttlMillis, Deleted deleted) {
+        for (String name : sortedList(directory)) {
+            File child = new File(directory, name);
+            Optional<Long> bucketStart = bucketStart(name, fields, depth);
+            if (!bucketStart.isPresent()) {
+                log.trace("ignoring {}", child);
+                continue;
+            }
+            long start = bucketStart.get();
+            long end = BUCKETS[depth].add(start, 1);
+            if (end <= ttlMillis) {
+                deleted.lagMillis = Math.max(deleted.lagMillis, ttlMillis - end);
+                deleteRecursively(child, deleted);
+            } else if (start < ttlMillis && depth < BUCKETS.length - 1) {
+                deleteBuckets(child, fields, depth + 1, ttlMillis, deleted);
+            } else {
+                return;
+            }
+        }
+    }
+
+    private Optional<Long> bucketStart(String name, int[] fields, int depth) {
+        try {
+            fields[depth] = Integer.parseInt(name);
+            int year = fields[0];
+            int month = depth >= 1 ? fields[1] : 1;
+            int day = depth >= 2 ? fields[2] : 1;
+            int hour = depth >= 3 ? fields[3] : 0;
+            int minute = depth >= 4 ? fields[4] : 0;
+            return Optional.of(UTC.getDateTimeMillis(year, month, day, hour, minute, 0, 0));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void deleteOlderThan(File directory, long cutoffMillis, Deleted deleted) {
+        for (String name : sortedList(directory)) {
+            File child = new File(directory, name);
+            if (child.isDirectory()) {
+                deleteOlderThan(child, cutoffMillis, deleted);
+                String[] remaining = child.list();
+                if (remaining != null && remaining.length == 0 && child.lastModified() < cutoffMillis) {
+                    deleteFile(child, deleted);
+                }
+            } else if (child.lastModified() < cutoffMillis) {
+                deleted.lagMillis = Math.max(deleted.lagMillis, cutoffMillis - child.lastModified());
+                deleteFile(child, deleted);
+            }
+        }
+    }
+
+    private void deleteRecursively(File file, Deleted deleted) {
+        if (file.isDirectory()) {
+            for (String name : sortedList(file)) {
+                deleteRecursively(new File(file, name), deleted);
+            }
+        }
+        deleteFile(file, deleted);
+    }
+
+    private void deleteFile(File file, Deleted deleted) {
+        if (file.isDirectory()) {
+            rateLimiter.acquire();
+        }
+        long items = countItems(file);
+        long bytes = file.isFile() ? file.length() : 0;
+        if (file.delete()) {
+            deleted.items += items;
+            deleted.bytes += bytes;
+            deleted.listener.deleted(file, items);
+        } else if (file.exists()) {
+            log.warn("unable to delete {}", file);
+        }
+    }
+
+    private long countItems(File file) {
+        if (file.isDirectory() || file.getName().endsWith(SPOKE_TMP_SUFFIX) || SpokeSegment.isSegmentFile(file)) {
+            if (SpokeSegment.isIndexFile(file)) {
+                return Iterables.size(SpokeSegment.of(file.getParentFile()).names());
+            }
+            return 0;
+        }
+        return 1;
+    }
+
+    private String[] sortedList(File directory) {
+        String[] names = Optional.ofNullable(directory.list()).orElse(new String[]{});
+        Arrays.sort(names);
+        return names;
+    }
+
+    /**
+     * Told of each file and directory as it is deleted.
+     */
+    public interface Listener {
+
+        Listener NONE = (file, items) -> {
+        };
+
+        void deleted(File file, long items);
+    }
+
+    public static class Deleted {
+
+        private final Listener listener;
+        private long items;
+        private long bytes;
+        private long lagMillis;
+
+        public Deleted() {
+            this(Listener.NONE);
+        }
+
+        private Deleted(Listener listener) {
+            this.listener = listener;
+        }
+
+        public long getItems() {
+            return items;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return how long the oldest expired data deleted had been past its TTL
+         */
+        public long getLagMillis() {
+            return lagMillis;
+        }
+
+        public void add(Deleted other) {
+            items += other.items;
+            bytes += other.bytes;
+            lagMillis = Math.max(lagMillis, other.lagMillis);
+        }
+    }
+}
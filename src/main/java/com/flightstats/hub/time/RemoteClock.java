@@ -0,0 +1,96 @@
+package com.flightstats.hub.time;
+
+import java.util.Optional;
+
+/**
+ * The offset of a remote clock from the local one, estimated from timed samples of the remote time.
+ * <p>
+ * Each sample assumes the remote time was read half way through the round trip, so the uncertainty of the
+ * offset is half the round trip time.  The rate at which the offset drifts is smoothed across samples, and
+ * used to correct the offset between them.
+ */
+class RemoteClock {
+
+    private static final double MAX_DRIFT = 500e-6;
+    private static final double DRIFT_WEIGHT = 0.25;
+
+    private volatile Estimate estimate;
+
+    /**
+     * @param localSent     local millis when the request was sent
+     * @param remoteMillis  the remote time in the response
+     * @param localReceived local millis when the response was received
+     */
+    void update(long localSent, long remoteMillis, long localReceived) {
+        double halfTrip = Math.max(0, localReceived - localSent) / 2.0;
+        double offset = remoteMillis + halfTrip - localReceived;
+        Estimate previous = estimate;
+        double drift = 0;
+        if (previous != null) {
+            drift = previous.drift;
+            long elapsed = localReceived - previous.localMillis;
+            if (elapsed > 0) {
+                double measured = (offset - previous.offset) / elapsed;
+                drift = clamp(drift + DRIFT_WEIGHT * (measured - drift));
+            }
+        }
+        estimate = new Estimate(localReceived, offset, halfTrip, drift);
+    }
+
+    /**
+     * @return the remote time at localMillis, or empty if the last sample is older than maxAgeMillis
+     */
+    Optional<Long> now(long localMillis, long maxAgeMillis) {
+        Estimate current = estimate;
+        if (current == null || localMillis - current.localMillis > maxAgeMillis) {
+            return Optional.empty();
+        }
+        return Optional.of(localMillis + Math.round(current.offsetAt(localMillis)));
+    }
+
+    double getOffset(long localMillis) {
+        Estimate current = estimate;
+        return current == null ? 0 : current.offsetAt(localMillis);
+    }
+
+    double getUncertainty() {
+        Estimate current = estimate;
+        return current == null ? 0 : current.uncertainty;
+    }
+
+    double getDrift() {
+        Estimate current = estimate;
+        return current == null ? 0 : current.drift;
+    }
+
+    /**
+     * @return millis since the last sample, or -1 if there has not been one
+     */
+    long getAge(long localMillis) {
+        Estimate current = estimate;
+        return current == null ? -1 : localMillis - current.localMillis;
+    }
+
+    private static double clamp(double drift) {
+        return Math.max(-MAX_DRIFT, Math.min(MAX_DRIFT, drift));
+    }
+
+    private static class Estimate {
+
+        private final long localMillis;
+        private final double offset;
+        private final double uncertainty;
+        private final double drift;
+
+        private Estimate(long localMillis, double offset, double uncertainty, double drift) {
+            this.localMillis = localMillis;
+            this.offset = offset;
+            this.uncertainty = uncertainty;
+            this.drift = drift;
+        }
+
+        private double offsetAt(long millis) {
+            return offset + drift * (millis - localMillis);
+        }
+    }
+}
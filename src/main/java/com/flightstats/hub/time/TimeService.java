@@ -4,11 +4,12 @@ import com.flightstats.hub.app.HubServices;
 import com.flightstats.hub.cluster.Cluster;
 import com.flightstats.hub.config.properties.AppProperties;
 import com.flightstats.hub.config.properties.LocalHostProperties;
+import com.flightstats.hub.metrics.StatsdReporter;
 import com.flightstats.hub.rest.RestClient;
 import com.flightstats.hub.util.HubUtils;
 import com.flightstats.hub.util.StringUtils;
 import com.flightstats.hub.util.TimeUtil;
-import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.AbstractScheduledService;
 import javax.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
@@ -24,27 +25,42 @@ import java.io.File;
 import java.io.IOException;
 import java.net.ConnectException;
 import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * The time used for new items.  When remote, the offset from the remote time server is sampled in the background
+ * and applied to the local clock, so callers never wait on the remote server.
+ */
 @Singleton
 @Slf4j
 public class TimeService {
 
     private final static Client client = RestClient.createClient(1, 5, true, false);
     private final static String randomKey = StringUtils.randomAlphaNumeric(6);
-    private boolean isRemote = false;
+    private static final int SAMPLES = 3;
+    private volatile boolean isRemote = false;
 
     private final Cluster cluster;
+    private final StatsdReporter statsdReporter;
     private final String remoteFile;
     private final String uriScheme;
+    private final int refreshSeconds;
+    private final long maxAgeMillis;
+    private final RemoteClock remoteClock = new RemoteClock();
 
     @Inject
     public TimeService(@Named("HubCluster") Cluster cluster,
+                       StatsdReporter statsdReporter,
                        AppProperties appProperties,
                        LocalHostProperties localHostProperties) {
         this.cluster = cluster;
+        this.statsdReporter = statsdReporter;
 
         this.remoteFile = appProperties.getAppRemoteTimeFile();
         this.uriScheme = localHostProperties.getUriScheme();
+        this.refreshSeconds = appProperties.getRemoteTimeRefreshSeconds();
+        this.maxAgeMillis = TimeUnit.SECONDS.toMillis(appProperties.getRemoteTimeMaxAgeSeconds());
         HubServices.register(new TimeServiceRegister());
     }
 
@@ -52,9 +68,9 @@ public class TimeService {
         if (!isRemote) {
             return TimeUtil.now();
         }
-        DateTime millis = getRemoteNow();
-        if (millis != null) {
-            return millis;
+        Optional<Long> millis = remoteClock.now(System.currentTimeMillis(), maxAgeMillis);
+        if (millis.isPresent()) {
+            return new DateTime(millis.get(), DateTimeZone.UTC);
         }
         log.warn("unable to get external time, using local!");
         return TimeUtil.now();
@@ -62,28 +78,76 @@ public class TimeService {
 
     DateTime getRemoteNow() {
         for (String server : cluster.getRemoteServers(randomKey)) {
-            ClientResponse response = null;
-            try {
-                response = client.resource(uriScheme + server + "/internal/time/millis")
-                        .get(ClientResponse.class);
-                if (response.getStatus() == 200) {
-                    Long millis = Long.parseLong(response.getEntity(String.class));
-                    log.trace("using remote time {} from {}", millis, server);
-                    return new DateTime(millis, DateTimeZone.UTC);
+            Optional<Long> millis = getRemoteMillis(server);
+            if (millis.isPresent()) {
+                return new DateTime(millis.get(), DateTimeZone.UTC);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Samples the first remote server which answers, keeping the sample with the shortest round trip.
+     */
+    void refresh() {
+        for (String server : cluster.getRemoteServers(randomKey)) {
+            long[] best = null;
+            for (int i = 0; i < SAMPLES; i++) {
+                long sent = System.currentTimeMillis();
+                Optional<Long> millis = getRemoteMillis(server);
+                long received = System.currentTimeMillis();
+                if (!millis.isPresent()) {
+                    break;
                 }
-            } catch (ClientHandlerException e) {
-                if (e.getCause() != null && e.getCause() instanceof ConnectException) {
-                    log.warn("connection exception {}", server);
-                } else {
-                    log.warn("unable to get time for server {}", server, e);
+                if (best == null || received - sent < best[2] - best[0]) {
+                    best = new long[]{sent, millis.get(), received};
                 }
-            } catch (Exception e) {
+            }
+            if (best != null) {
+                remoteClock.update(best[0], best[1], best[2]);
+                log.trace("remote time offset {} from {}", remoteClock.getOffset(best[2]), server);
+                return;
+            }
+        }
+        log.warn("unable to refresh remote time");
+    }
+
+    private Optional<Long> getRemoteMillis(String server) {
+        ClientResponse response = null;
+        try {
+            response = client.resource(uriScheme + server + "/internal/time/millis")
+                    .get(ClientResponse.class);
+            if (response.getStatus() == 200) {
+                Long millis = Long.parseLong(response.getEntity(String.class));
+                log.trace("using remote time {} from {}", millis, server);
+                return Optional.of(millis);
+            }
+        } catch (ClientHandlerException e) {
+            if (e.getCause() != null && e.getCause() instanceof ConnectException) {
+                log.warn("connection exception {}", server);
+            } else {
                 log.warn("unable to get time for server {}", server, e);
-            } finally {
-                HubUtils.close(response);
             }
+        } catch (Exception e) {
+            log.warn("unable to get time for server {}", server, e);
+        } finally {
+            HubUtils.close(response);
+        }
+        return Optional.empty();
+    }
+
+    private void report() {
+        long now = System.currentTimeMillis();
+        statsdReporter.gauge("ntp", remoteClock.getOffset(now), "ntpType:remoteOffset");
+        statsdReporter.gauge("ntp", remoteClock.getUncertainty(), "ntpType:remoteUncertainty");
+        statsdReporter.gauge("ntp", remoteClock.getAge(now), "ntpType:remoteAge");
+    }
+
+    private void warnIfStale() {
+        long age = remoteClock.getAge(System.currentTimeMillis());
+        if (age < 0 || age > maxAgeMillis) {
+            log.warn("remote time offset is stale, age {} ms exceeds {} ms; using local time", age, maxAgeMillis);
         }
-        return null;
     }
 
     private void deleteFile() {
@@ -110,6 +174,9 @@ public class TimeService {
     }
 
     public void setRemote(boolean remote) {
+        if (remote) {
+            refresh();
+        }
         isRemote = remote;
         log.debug("remote {}", remote);
         if (isRemote) {
@@ -119,7 +186,7 @@ public class TimeService {
         }
     }
 
-    private class TimeServiceRegister extends AbstractIdleService {
+    private class TimeServiceRegister extends AbstractScheduledService {
 
         @Override
         protected void startUp() throws Exception {
@@ -129,8 +196,21 @@ public class TimeService {
         }
 
         @Override
-        protected void shutDown() throws Exception {
-            //do anything?
+        protected void runOneIteration() throws Exception {
+            try {
+                if (isRemote) {
+                    refresh();
+                    report();
+                    warnIfStale();
+                }
+            } catch (Exception e) {
+                log.error("unable to refresh remote time", e);
+            }
+        }
+
+        @Override
+        protected Scheduler scheduler() {
+            return Scheduler.newFixedDelaySchedule(0, refreshSeconds, TimeUnit.SECONDS);
         }
     }
 }
@@ -1,16 +1,17 @@
 package com.flightstats.hub.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
 public class Chunk {
 
     private int count;
-    private int chunkSize;
     private byte[] bytes;
     private int index = 0;
 
-    Chunk(int count, int chunkSize) {
+    Chunk(int count, byte[] bytes) {
         this.count = count;
-        this.chunkSize = chunkSize;
-        bytes = new byte[chunkSize];
+        this.bytes = bytes;
     }
 
     /**
@@ -26,24 +27,40 @@ public class Chunk {
         return true;
     }
 
+    /**
+     * @return the number of bytes added, which is less than length when the chunk fills up.
+     */
+    int add(byte[] b, int offset, int length) {
+        int added = Math.min(length, bytes.length - index);
+        System.arraycopy(b, offset, bytes, index, added);
+        index += added;
+        return added;
+    }
+
     boolean isFull() {
-        return index >= chunkSize;
+        return index >= bytes.length;
     }
 
     boolean hasData() {
         return index > 0;
     }
 
-    public byte[] getBytes() {
-        if (isFull()) {
-            return bytes;
-        }
-        byte[] partial = new byte[index];
-        System.arraycopy(this.bytes, 0, partial, 0, index);
-        return partial;
+    byte[] getBuffer() {
+        return bytes;
+    }
+
+    /**
+     * @return the written bytes, without copying the buffer.
+     */
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(bytes, 0, index);
+    }
+
+    public int getLength() {
+        return index;
     }
 
     public int getCount() {
         return count;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,92 @@
+package com.flightstats.hub.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Buffers in a few size classes, shared by every {@link ChunkOutputStream}.
+ * The first partsPerSize parts of a stream use the smallest size, the next partsPerSize the next size, and so on,
+ * with every later part using the largest size.  This keeps small items in small parts, while still reaching the
+ * largest item S3 allows in its maximum number of parts.
+ * Buffers are allocated on first use and reused after that, and {@link #acquire(int)} blocks while every buffer of
+ * a size is in use, which bounds the memory held by concurrent large uploads.
+ */
+public class ChunkBufferPool {
+
+    private final int partsPerSize;
+    private final SizeClass[] sizes;
+
+    public ChunkBufferPool(int buffers, int bufferSize) {
+        this(buffers, Integer.MAX_VALUE, bufferSize);
+    }
+
+    public ChunkBufferPool(int buffers, int partsPerSize, int... bufferSizes) {
+        this.partsPerSize = partsPerSize;
+        this.sizes = new SizeClass[bufferSizes.length];
+        for (int i = 0; i < bufferSizes.length; i++) {
+            sizes[i] = new SizeClass(buffers, bufferSizes[i]);
+        }
+    }
+
+    /**
+     * @param part the one based part number
+     */
+    byte[] acquire(int part) {
+        SizeClass size = sizes[sizeIndex(part)];
+        try {
+            size.available.acquire();
+        } catch (InterruptedException e) {
+            throw new RuntimeInterruptedException(e);
+        }
+        byte[] buffer = size.free.poll();
+        return buffer == null ? new byte[size.bufferSize] : buffer;
+    }
+
+    void release(byte[] buffer) {
+        for (SizeClass size : sizes) {
+            if (size.bufferSize == buffer.length) {
+                size.free.offer(buffer);
+                size.available.release();
+                return;
+            }
+        }
+        throw new IllegalArgumentException("buffer of " + buffer.length + " bytes is not from this pool");
+    }
+
+    /**
+     * @return the number of parts a stream of length bytes is split into
+     */
+    public long getParts(long length) {
+        long parts = 0;
+        for (int i = 0; i < sizes.length - 1 && length > 0; i++) {
+            long sizeParts = Math.min(partsPerSize, (length + sizes[i].bufferSize - 1) / sizes[i].bufferSize);
+            parts += sizeParts;
+            length -= sizeParts * sizes[i].bufferSize;
+        }
+        int largest = sizes[sizes.length - 1].bufferSize;
+        return length > 0 ? parts + (length + largest - 1) / largest : parts;
+    }
+
+    private int sizeIndex(int part) {
+        return (int) Math.min(sizes.length - 1, (part - 1L) / partsPerSize);
+    }
+
+    int getAvailable() {
+        int available = 0;
+        for (SizeClass size : sizes) {
+            available += size.available.availablePermits();
+        }
+        return available;
+    }
+
+    private static class SizeClass {
+        private final int bufferSize;
+        private final Semaphore available;
+        private final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<>();
+
+        private SizeClass(int buffers, int bufferSize) {
+            this.bufferSize = bufferSize;
+            this.available = new Semaphore(buffers, true);
+        }
+    }
+}
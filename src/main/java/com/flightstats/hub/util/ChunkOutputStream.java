@@ -11,64 +11,151 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.function.Function;
 
+/**
+ * Splits a stream into chunks the size of the pool's buffers, and hands each full chunk to the chunkFunction
+ * on the shared executor.  At most maxInFlight chunks from one stream are uploading at a time.
+ * Writes fail once a stream needs more than the {@link #MAX_PARTS} S3 allows in a multipart upload.
+ */
 @Slf4j
 public class ChunkOutputStream extends OutputStream {
 
-    private static final int MEGABYTES = 1024 * 1024;
+    static final int MAX_PARTS = 10 * 1000;
+
+    private final List<ListenableFuture<String>> futures = new ArrayList<>();
+    private final ListeningExecutorService service;
+    private final ChunkBufferPool bufferPool;
+    private final Semaphore inFlight;
+    private final Function<Chunk, String> chunkFunction;
 
-    private List<ListenableFuture<String>> futures = new ArrayList<>();
     private int count = 1;
     private Chunk chunk;
+    private boolean closed;
+    private volatile Exception failure;
 
-    private ListeningExecutorService service;
-    private Function<Chunk, String> chunkFunction;
-    private int maxChunkInMB;
-
-
-    public ChunkOutputStream(int threads, int maxChunkInMB, Function<Chunk, String> chunkFunction) {
-        this.maxChunkInMB = maxChunkInMB;
+    public ChunkOutputStream(ExecutorService executor, ChunkBufferPool bufferPool, int maxInFlight,
+                             Function<Chunk, String> chunkFunction) {
+        this.service = MoreExecutors.listeningDecorator(executor);
+        this.bufferPool = bufferPool;
+        this.inFlight = new Semaphore(maxInFlight);
         this.chunkFunction = chunkFunction;
-
-        this.chunk = new Chunk(count, getSize(count));
-        service = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(threads));
-        log.info("creating ChunkOutputStream with {} threads", threads);
     }
 
+    @Override
     public void write(int b) throws IOException {
-        if (!chunk.add(b)) {
-            sendChunk(chunk);
+        nextChunk().add(b);
+        sendIfFull();
+    }
+
+    @Override
+    public void write(byte[] b, int offset, int length) throws IOException {
+        while (length > 0) {
+            int added = nextChunk().add(b, offset, length);
+            offset += added;
+            length -= added;
+            sendIfFull();
+        }
+    }
+
+    private Chunk nextChunk() throws IOException {
+        if (closed) {
+            throw new IOException("stream is closed");
+        }
+        checkFailure();
+        if (chunk == null) {
+            if (count > MAX_PARTS) {
+                throw new IOException("stream exceeds the maximum of " + MAX_PARTS + " parts");
+            }
+            chunk = new Chunk(count, bufferPool.acquire(count));
             count++;
-            chunk = new Chunk(count, getSize(count));
-            chunk.add(b);
         }
+        return chunk;
     }
 
-    private void sendChunk(Chunk chunk) {
-        futures.add(service.submit(() -> chunkFunction.apply(chunk)));
+    private void sendIfFull() throws IOException {
+        if (chunk.isFull()) {
+            sendChunk();
+        }
+    }
+
+    private void sendChunk() throws IOException {
+        Chunk sending = chunk;
+        chunk = null;
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            bufferPool.release(sending.getBuffer());
+            throw new RuntimeInterruptedException(e);
+        }
+        try {
+            futures.add(service.submit(() -> upload(sending)));
+        } catch (RuntimeException e) {
+            release(sending);
+            throw new IOException("unable to send chunk " + sending.getCount(), e);
+        }
+    }
+
+    private String upload(Chunk sending) throws Exception {
+        try {
+            if (failure != null) {
+                return "skipped";
+            }
+            return chunkFunction.apply(sending);
+        } catch (Exception e) {
+            failure = e;
+            throw e;
+        } finally {
+            release(sending);
+        }
+    }
+
+    private void release(Chunk released) {
+        bufferPool.release(released.getBuffer());
+        inFlight.release();
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("chunk upload failed", failure);
+        }
     }
 
     @Override
     public void close() throws IOException {
-        if (chunk.hasData()) {
-            sendChunk(chunk);
+        if (closed) {
+            return;
+        }
+        if (chunk != null) {
+            sendChunk();
         }
-        ListenableFuture<String> allFutures = Futures.whenAllSucceed(futures).call(() -> "ok", MoreExecutors.directExecutor());
+        closed = true;
         try {
-            allFutures.get();
+            Futures.allAsList(futures).get();
         } catch (InterruptedException e) {
             throw new RuntimeInterruptedException(e);
         } catch (ExecutionException e) {
-            throw new RuntimeException(e);
-        } finally {
-            service.shutdown();
+            throw new RuntimeException(e.getCause());
         }
     }
 
-     int getSize(int count) {
-        int chunkMB = (Math.floorDiv(count, 3) + 1) * 5;
-        return Math.min(chunkMB, maxChunkInMB) * MEGABYTES;
+    /**
+     * Stops accepting data, and waits for any chunks already sent, so the upload can be safely aborted.
+     */
+    public void abort() {
+        closed = true;
+        if (chunk != null) {
+            bufferPool.release(chunk.getBuffer());
+            chunk = null;
+        }
+        try {
+            Futures.successfulAsList(futures).get();
+        } catch (InterruptedException e) {
+            throw new RuntimeInterruptedException(e);
+        } catch (ExecutionException e) {
+            log.debug("ignoring failure on abort", e);
+        }
     }
 }
@@ -72,6 +72,20 @@ public class SafeZooKeeperUtils {
         );
     }
 
+    public void setData(byte[] data, String... pathParts) {
+        doItSafely(path -> {
+                    try {
+                        return curator.setData().forPath(path, data);
+                    } catch (KeeperException.NoNodeException e) {
+                        return curator.create().creatingParentsIfNeeded().forPath(path, data);
+                    }
+                },
+                newArrayList(pathParts),
+                "unable to set data",
+                null
+        );
+    }
+
     public void delete(String... pathParts) {
         deletePath(builder -> builder, pathParts);
     }
@@ -0,0 +1,138 @@
+package com.flightstats.hub.webhook;
+
+import com.flightstats.hub.cluster.ClusterCacheDao;
+import com.flightstats.hub.model.ContentPath;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static com.flightstats.hub.constant.ZookeeperNodes.WEBHOOK_LAST_COMPLETED;
+
+/**
+ * Tracks a webhook leader's in flight keys locally, and checkpoints them with the last completed watermark
+ * after a number of completed items, or on an interval.
+ * <p>
+ * Each flush writes a snapshot of the in flight set before the watermark, so a new leader which starts from the
+ * persisted watermark also resends every key that was in flight below it.  Keys started after the last flush are
+ * above the persisted watermark, and are sent again by the strategy.
+ */
+@Slf4j
+class WebhookCheckpoint {
+
+    private static final ScheduledExecutorService flusher = Executors.newScheduledThreadPool(2,
+            new ThreadFactoryBuilder().setNameFormat("webhook-checkpoint-%d").setDaemon(true).build());
+
+    private final String webhookName;
+    private final WebhookContentInFlight keysInFlight;
+    private final ClusterCacheDao clusterCacheDao;
+    private final Supplier<ContentPath> lastCompleted;
+    private final BooleanSupplier hasLeadership;
+    private final int maxItems;
+    private final Set<ContentPath> inFlight = new ConcurrentSkipListSet<>();
+    private final AtomicInteger completedSinceFlush = new AtomicInteger();
+    private ScheduledFuture<?> scheduled;
+    private ContentPath persistedLastCompleted;
+    private Set<ContentPath> persistedInFlight = new TreeSet<>();
+
+    WebhookCheckpoint(String webhookName,
+                      WebhookContentInFlight keysInFlight,
+                      ClusterCacheDao clusterCacheDao,
+                      Supplier<ContentPath> lastCompleted,
+                      BooleanSupplier hasLeadership,
+                      int maxItems) {
+        this.webhookName = webhookName;
+        this.keysInFlight = keysInFlight;
+        this.clusterCacheDao = clusterCacheDao;
+        this.lastCompleted = lastCompleted;
+        this.hasLeadership = hasLeadership;
+        this.maxItems = maxItems;
+    }
+
+    /**
+     * Converts any previously persisted in flight keys, individual or compact, into a single compact set.
+     *
+     * @return the keys below lastCompletedPath which need to be sent again
+     */
+    synchronized Set<ContentPath> recover(ContentPath lastCompletedPath) {
+        persistedLastCompleted = lastCompletedPath;
+        Set<ContentPath> previous = keysInFlight.getSet(webhookName, lastCompletedPath);
+        Set<ContentPath> toSend = new TreeSet<>();
+        for (ContentPath contentPath : previous) {
+            if (contentPath.compareTo(lastCompletedPath) < 0) {
+                toSend.add(contentPath);
+            }
+        }
+        keysInFlight.setAll(webhookName, toSend);
+        persistedInFlight = toSend;
+        for (ContentPath contentPath : previous) {
+            keysInFlight.remove(webhookName, contentPath);
+        }
+        log.debug("recovered in flight {} for {}", toSend, webhookName);
+        return toSend;
+    }
+
+    synchronized void start(int intervalMillis) {
+        scheduled = flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void started(ContentPath contentPath) {
+        inFlight.add(contentPath);
+    }
+
+    void completed(ContentPath contentPath) {
+        inFlight.remove(contentPath);
+        if (completedSinceFlush.incrementAndGet() >= maxItems) {
+            flushQuietly();
+        }
+    }
+
+    /**
+     * Writes a final checkpoint while this leader still holds leadership, and stops the interval flush.
+     */
+    synchronized void stop() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        flushQuietly();
+    }
+
+    synchronized void flush() {
+        if (!hasLeadership.getAsBoolean()) {
+            log.debug("not flushing {} without leadership", webhookName);
+            return;
+        }
+        completedSinceFlush.set(0);
+        ContentPath watermark = lastCompleted.get();
+        Set<ContentPath> snapshot = new TreeSet<>(inFlight);
+        if (!snapshot.equals(persistedInFlight)) {
+            List<ContentPath> keys = new ArrayList<>(snapshot);
+            keysInFlight.setAll(webhookName, keys);
+            persistedInFlight = snapshot;
+        }
+        if (watermark != null && (persistedLastCompleted == null || watermark.compareTo(persistedLastCompleted) > 0)) {
+            clusterCacheDao.setIfNewer(watermark, webhookName, WEBHOOK_LAST_COMPLETED);
+            persistedLastCompleted = watermark;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("unable to checkpoint {}", webhookName, e);
+        }
+    }
+}
@@ -4,12 +4,23 @@ import com.flightstats.hub.model.ContentPath;
 import com.flightstats.hub.util.SafeZooKeeperUtils;
 import javax.inject.Inject;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toSet;
 
+/**
+ * Keys in flight are either individual child nodes of the webhook's node,
+ * or a compact set stored as the webhook node's data by {@link #setAll}.
+ */
 class WebhookContentInFlight {
     private final static String BASE_PATH = "/GroupInFlight";
+    private final static String SET_PREFIX = "inFlight:";
 
     private final SafeZooKeeperUtils zooKeeperUtils;
 
@@ -26,13 +37,25 @@ class WebhookContentInFlight {
         zooKeeperUtils.delete(BASE_PATH, webhookName, key.toZk());
     }
 
+    public void setAll(String webhookName, Collection<ContentPath> keys) {
+        String value = SET_PREFIX + keys.stream().map(ContentPath::toZk).collect(joining(","));
+        zooKeeperUtils.setData(value.getBytes(StandardCharsets.UTF_8), BASE_PATH, webhookName);
+    }
+
     public Set<ContentPath> getSet(String webhookName, ContentPath type) {
-        return zooKeeperUtils.getChildren(BASE_PATH, webhookName)
-                .stream()
+        return Stream.concat(zooKeeperUtils.getChildren(BASE_PATH, webhookName).stream(), getCompactSet(webhookName))
                 .map(type::fromZk)
                 .collect(toSet());
     }
 
+    private Stream<String> getCompactSet(String webhookName) {
+        Optional<String> data = zooKeeperUtils.getData(BASE_PATH, webhookName);
+        if (!data.isPresent() || !data.get().startsWith(SET_PREFIX) || data.get().length() == SET_PREFIX.length()) {
+            return Stream.empty();
+        }
+        return Arrays.stream(data.get().substring(SET_PREFIX.length()).split(","));
+    }
+
     public void delete(String webhookName) {
         zooKeeperUtils.deletePathAndChildren(BASE_PATH, webhookName);
     }
@@ -60,6 +60,7 @@ class WebhookLeader {
     private Semaphore semaphore;
     private WebhookRetryer retryer;
     private WebhookStrategy webhookStrategy;
+    private WebhookCheckpoint checkpoint;
     private Webhook webhook;
     private Long leadershipStartTime;
 
@@ -144,7 +145,14 @@ class WebhookLeader {
             lastUpdated.set(lastCompletedPath);
             log.debug("last completed at {} {}", lastCompletedPath, webhook.getName());
             if (leadership.hasLeadership()) {
+                if (webhookProperties.isCheckpointBatched()) {
+                    checkpoint = new WebhookCheckpoint(webhook.getName(), keysInFlight, clusterCacheDao,
+                            lastUpdated::get, leadership::hasLeadership, webhookProperties.getCheckpointItems());
+                }
                 sendInProcess(lastCompletedPath);
+                if (checkpoint != null) {
+                    checkpoint.start(webhookProperties.getCheckpointMillis());
+                }
                 webhookStrategy.start(webhook, lastCompletedPath);
                 while (leadership.hasLeadership()) {
                     Optional<ContentPath> nextOptional = webhookStrategy.next();
@@ -159,6 +167,9 @@ class WebhookLeader {
             log.error("Execption for " + webhook.getName(), e);
         } finally {
             log.debug("stopping last completed at {} {}", webhookStrategy.getLastCompleted(), webhook.getName());
+            if (checkpoint != null) {
+                checkpoint.stop();
+            }
             leadership.setLeadership(false);
             closeStrategy();
             stopExecutor();
@@ -166,6 +177,7 @@ class WebhookLeader {
             log.info("stopped last completed at {} {}", webhookStrategy.getLastCompleted(), webhook.getName());
             statsdReporter.incrementEventCompletion(LEADERSHIP_METRIC, "name:" + webhook.getName());
             webhookStrategy = null;
+            checkpoint = null;
             executorService = null;
         }
     }
@@ -233,7 +245,9 @@ class WebhookLeader {
     }
 
     private void sendInProcess(ContentPath lastCompletedPath) throws InterruptedException {
-        Set<ContentPath> inProcessSet = keysInFlight.getSet(webhook.getName(), lastCompletedPath);
+        Set<ContentPath> inProcessSet = checkpoint != null
+                ? checkpoint.recover(lastCompletedPath)
+                : keysInFlight.getSet(webhook.getName(), lastCompletedPath);
         log.debug("sending in process {} to {}", inProcessSet, webhook.getName());
         for (ContentPath toSend : inProcessSet) {
             if (toSend.compareTo(lastCompletedPath) < 0) {
@@ -259,16 +273,28 @@ class WebhookLeader {
             String workerName = Thread.currentThread().getName();
             Thread.currentThread().setName(workerName + "|" + parentName);
             ActiveTraces.start("WebhookLeader.send", webhook, contentPath);
-            keysInFlight.add(webhook.getName(), contentPath);
+            WebhookCheckpoint sendCheckpoint = checkpoint;
+            if (sendCheckpoint != null) {
+                sendCheckpoint.started(contentPath);
+            } else {
+                keysInFlight.add(webhook.getName(), contentPath);
+            }
             try {
                 statsdReporter.time("webhook.delta", contentPath.getTime().getMillis(), "name:" + webhook.getName());
                 long start = System.currentTimeMillis();
                 boolean shouldGoToNextItem = retryer.send(webhook, contentPath, webhookStrategy.createResponse(contentPath));
                 statsdReporter.time("webhook", start, "name:" + webhook.getName());
-                if (shouldGoToNextItem && increaseLastUpdatedIfNewer(contentPath)) {
-                    clusterCacheDao.setIfNewer(contentPath, webhook.getName(), WEBHOOK_LAST_COMPLETED);
+                if (sendCheckpoint != null) {
+                    if (shouldGoToNextItem) {
+                        increaseLastUpdatedIfNewer(contentPath);
+                    }
+                    sendCheckpoint.completed(contentPath);
+                } else {
+                    if (shouldGoToNextItem && increaseLastUpdatedIfNewer(contentPath)) {
+                        clusterCacheDao.setIfNewer(contentPath, webhook.getName(), WEBHOOK_LAST_COMPLETED);
+                    }
+                    keysInFlight.remove(webhook.getName(), contentPath);
                 }
-                keysInFlight.remove(webhook.getName(), contentPath);
                 log.trace("done sending {} to {} ", contentPath, webhook.getName());
             } catch (Exception e) {
                 log.warn("exception sending {} to {}", contentPath, webhook.getName(), e);
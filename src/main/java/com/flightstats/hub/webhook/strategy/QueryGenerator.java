@@ -17,7 +17,7 @@ public class QueryGenerator {
         this.channel = channel;
     }
 
-    TimeQuery getQuery(DateTime latestStableInChannel) {
+    public TimeQuery getQuery(DateTime latestStableInChannel) {
         log.trace("iterating last {} stable {} ", lastQueryTime, latestStableInChannel);
         if (lastQueryTime.isBefore(latestStableInChannel)) {
             TimeUtil.Unit unit = getStepUnit(latestStableInChannel);
@@ -50,7 +50,7 @@ public class QueryGenerator {
         return TimeUtil.Unit.SECONDS;
     }
 
-    DateTime getLastQueryTime() {
+    public DateTime getLastQueryTime() {
         return lastQueryTime;
     }
 }
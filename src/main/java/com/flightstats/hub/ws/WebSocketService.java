@@ -1,6 +1,8 @@
 package com.flightstats.hub.ws;
 
+import com.flightstats.hub.config.properties.AppProperties;
 import com.flightstats.hub.config.properties.LocalHostProperties;
+import com.flightstats.hub.events.ChannelSubscriptions;
 import com.flightstats.hub.model.ContentKey;
 import com.flightstats.hub.util.StringUtils;
 import com.flightstats.hub.webhook.Webhook;
@@ -14,19 +16,29 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 public class WebSocketService {
 
     private final Map<String, Session> sessionMap = new HashMap<>();
 
+    private final Map<String, ChannelSubscriptions.Subscription> subscriptionMap = new ConcurrentHashMap<>();
+
     private final WebhookService webhookService;
     private LocalHostProperties localHostProperties;
+    private final AppProperties appProperties;
+    private final ChannelSubscriptions channelSubscriptions;
 
     @Inject
-    public WebSocketService(WebhookService webhookService, LocalHostProperties localHostProperties) {
+    public WebSocketService(WebhookService webhookService,
+                            LocalHostProperties localHostProperties,
+                            AppProperties appProperties,
+                            ChannelSubscriptions channelSubscriptions) {
         this.webhookService = webhookService;
         this.localHostProperties = localHostProperties;
+        this.appProperties = appProperties;
+        this.channelSubscriptions = channelSubscriptions;
     }
 
     void createCallback(Session session, String channel) {
@@ -38,6 +50,12 @@ public class WebSocketService {
         URI uri = session.getRequestURI();
         log.debug("creating callback {} {} {}", channel, id, uri);
         sessionMap.put(id, session);
+        if (appProperties.isSubscriptionBusEnabled()) {
+            String channelUrl = getChannelUrl(uri);
+            subscriptionMap.put(id, channelSubscriptions.subscribe(channel, startingKey,
+                    (key, content) -> call(id, channelUrl + "/" + key.toUrl())));
+            return;
+        }
         Webhook webhook = Webhook.builder()
                 .channelUrl(getChannelUrl(uri))
                 .callbackUrl(getCallbackUrl(id))
@@ -97,8 +115,14 @@ public class WebSocketService {
 
     private void close(String id) {
         try {
-            log.debug("deleting ws group {}", id);
-            webhookService.delete(id);
+            ChannelSubscriptions.Subscription subscription = subscriptionMap.remove(id);
+            if (subscription != null) {
+                log.debug("closing ws subscription {}", id);
+                subscription.close();
+            } else {
+                log.debug("deleting ws group {}", id);
+                webhookService.delete(id);
+            }
             sessionMap.remove(id);
         } catch (Exception e) {
             log.error("unable to close ws group {}", id, e);
@@ -5,6 +5,7 @@ import com.flightstats.hub.model.ContentKey;
 import com.flightstats.hub.model.ContentPath;
 import com.flightstats.hub.model.MinutePath;
 import com.flightstats.hub.test.IntegrationTestSetup;
+import com.flightstats.hub.util.Sleeper;
 import org.apache.curator.framework.CuratorFramework;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -17,6 +18,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -133,4 +137,39 @@ class ClusterCacheDaoTest {
         assertEquals(key2, clusterCacheDao.get(name, new ContentKey(), BASE_PATH));
     }
 
-}
\ No newline at end of file
+    @Test
+    void testCachedValueSeesOtherWriters() {
+        String name = "testCachedValueSeesOtherWriters";
+        DateTime start = new DateTime(2014, 12, 3, 20, 45, DateTimeZone.UTC);
+        ClusterCacheDao otherDao = new ClusterCacheDao(curator, appProperties);
+
+        ContentKey key1 = new ContentKey(start, "B");
+        clusterCacheDao.initialize(name, key1, BASE_PATH);
+        assertEquals(key1, clusterCacheDao.get(name, new ContentKey(), BASE_PATH));
+
+        ContentKey key2 = new ContentKey(start.plusMinutes(1), "C");
+        otherDao.setIfNewer(key2, name, BASE_PATH);
+        for (int i = 0; i < 50 && !key2.equals(clusterCacheDao.get(name, new ContentKey(), BASE_PATH)); i++) {
+            Sleeper.sleep(100);
+        }
+        assertEquals(key2, clusterCacheDao.get(name, new ContentKey(), BASE_PATH));
+    }
+
+    @Test
+    void testOwnWritesStayCached() {
+        String name = "testOwnWritesStayCached";
+        DateTime start = new DateTime(2014, 12, 3, 20, 45, DateTimeZone.UTC);
+        CuratorFramework spyCurator = spy(curator);
+        ClusterCacheDao spyDao = new ClusterCacheDao(spyCurator, appProperties);
+
+        spyDao.initialize(name, new ContentKey(start, "A"), BASE_PATH);
+        spyDao.setIfNewer(new ContentKey(start.plusMillis(1), "B"), name, BASE_PATH);
+        Sleeper.sleep(100);
+        ContentKey key3 = new ContentKey(start.plusMillis(2), "C");
+        spyDao.setIfNewer(key3, name, BASE_PATH);
+
+        assertEquals(key3, spyDao.get(name, new ContentKey(), BASE_PATH));
+        verify(spyCurator, times(1)).getData();
+    }
+
+}
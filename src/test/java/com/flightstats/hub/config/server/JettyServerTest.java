@@ -0,0 +1,126 @@
+package com.flightstats.hub.config.server;
+
+import com.flightstats.hub.config.properties.LocalHostProperties;
+import com.flightstats.hub.config.properties.SystemProperties;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.http.HttpClientTransportOverHTTP2;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class JettyServerTest {
+
+    @Mock
+    private SystemProperties systemProperties;
+    @Mock
+    private LocalHostProperties localHostProperties;
+
+    private Server server;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(systemProperties.getHttpBindIp()).thenReturn("127.0.0.1");
+        lenient().when(systemProperties.getHttpIdleTimeInMillis()).thenReturn(30_000);
+        lenient().when(systemProperties.getHttp2MaxConcurrentStreams()).thenReturn(128);
+        when(systemProperties.getHttp2BindPort()).thenReturn(-1);
+        when(localHostProperties.getPort()).thenReturn(0);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (client != null) {
+            client.stop();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    void testHttp1Only() throws Exception {
+        when(systemProperties.getHttp2CleartextBindPort()).thenReturn(-1);
+        start();
+        assertEquals(1, server.getConnectors().length);
+
+        client = new HttpClient();
+        client.start();
+        ContentResponse response = client.GET(url(0));
+        assertEquals(HttpVersion.HTTP_1_1, response.getVersion());
+        assertEquals("HTTP/1.1", response.getContentAsString());
+    }
+
+    @Test
+    void testCleartextHttp2() throws Exception {
+        when(systemProperties.getHttp2CleartextBindPort()).thenReturn(0);
+        start();
+        assertEquals(2, server.getConnectors().length);
+
+        client = new HttpClient(new HttpClientTransportOverHTTP2(new HTTP2Client()), null);
+        client.start();
+        for (int i = 0; i < 10; i++) {
+            ContentResponse response = client.GET(url(1));
+            assertEquals(HttpVersion.HTTP_2, response.getVersion());
+            assertEquals("HTTP/2.0", response.getContentAsString());
+        }
+    }
+
+    @Test
+    void testCleartextAcceptsHttp1() throws Exception {
+        when(systemProperties.getHttp2CleartextBindPort()).thenReturn(0);
+        start();
+
+        client = new HttpClient();
+        client.start();
+        ContentResponse response = client.GET(url(1));
+        assertEquals(HttpVersion.HTTP_1_1, response.getVersion());
+    }
+
+    @Test
+    void testTlsHttp2RequiresEncryption() throws Exception {
+        when(systemProperties.getHttp2CleartextBindPort()).thenReturn(-1);
+        when(systemProperties.getHttp2BindPort()).thenReturn(0);
+        start();
+        assertEquals(1, server.getConnectors().length);
+    }
+
+    private void start() throws Exception {
+        JettyServer jettyServer = new JettyServer(null, systemProperties, null, localHostProperties, null);
+        server = new Server();
+        Connector[] connectors = jettyServer.buildConnectors(server, null, null);
+        server.setConnectors(connectors);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+                response.getWriter().write(request.getProtocol());
+                baseRequest.setHandled(true);
+            }
+        });
+        server.start();
+    }
+
+    private String url(int connector) {
+        return "http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[connector]).getLocalPort() + "/";
+    }
+}
@@ -0,0 +1,118 @@
+package com.flightstats.hub.dao;
+
+import com.flightstats.hub.config.properties.ContentProperties;
+import com.flightstats.hub.config.properties.PropertiesLoader;
+import com.flightstats.hub.dao.aws.ContentRetriever;
+import com.flightstats.hub.model.ChannelConfig;
+import com.flightstats.hub.model.ChannelContentKey;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.DirectionQuery;
+import com.flightstats.hub.util.TimeUtil;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TagServiceTest {
+
+    private static final String TAG = "merged";
+
+    @Mock
+    private ChannelService channelService;
+    @Mock
+    private ContentRetriever contentRetriever;
+
+    private final DateTime start = TimeUtil.now().minusHours(1);
+    private final Map<String, SortedSet<ContentKey>> keysByChannel = new LinkedHashMap<>();
+    private TagService tagService;
+
+    @BeforeEach
+    void setUp() {
+        List<ChannelConfig> channels = new ArrayList<>();
+        for (int channel = 0; channel < 5; channel++) {
+            String name = "channel" + channel;
+            channels.add(ChannelConfig.builder().name(name).tags(Collections.singletonList(TAG)).build());
+            SortedSet<ContentKey> keys = new TreeSet<>();
+            for (int i = 0; i < 10; i++) {
+                keys.add(new ContentKey(start.plusSeconds(i * 5 + channel), name + i));
+            }
+            keysByChannel.put(name, keys);
+        }
+        lenient().when(channelService.getChannels(TAG, true)).thenReturn(channels);
+        tagService = new TagService(channelService, contentRetriever, null, null, null,
+                new ContentProperties(PropertiesLoader.getInstance()));
+    }
+
+    @Test
+    void testMergeNextStopsAtLimit() {
+        SortedSet<ChannelContentKey> merged = TagService.merge(keysByChannel, 7, true);
+        List<ChannelContentKey> expected = new ArrayList<>(all()).subList(0, 7);
+        assertEquals(expected, new ArrayList<>(merged));
+    }
+
+    @Test
+    void testMergePreviousTakesLatest() {
+        SortedSet<ChannelContentKey> merged = TagService.merge(keysByChannel, 7, false);
+        List<ChannelContentKey> all = new ArrayList<>(all());
+        assertEquals(all.subList(all.size() - 7, all.size()), new ArrayList<>(merged));
+    }
+
+    @Test
+    void testGetKeysQueriesEachChannel() {
+        when(contentRetriever.query(any(DirectionQuery.class))).thenAnswer(invocation -> {
+            DirectionQuery query = invocation.getArgument(0);
+            return keysByChannel.get(query.getChannelName());
+        });
+        DirectionQuery query = DirectionQuery.builder()
+                .tagName(TAG)
+                .startKey(new ContentKey(start, "0"))
+                .next(true)
+                .count(12)
+                .build();
+        SortedSet<ChannelContentKey> keys = tagService.getKeys(query);
+        assertEquals(new ArrayList<>(all()).subList(0, 12), new ArrayList<>(keys));
+    }
+
+    @Test
+    void testGetLatest() {
+        when(contentRetriever.getLatest(any(DirectionQuery.class))).thenAnswer(invocation -> {
+            DirectionQuery query = invocation.getArgument(0);
+            return Optional.of(keysByChannel.get(query.getChannelName()).last());
+        });
+        Optional<ChannelContentKey> latest = tagService.getLatest(DirectionQuery.builder().tagName(TAG).build());
+        assertTrue(latest.isPresent());
+        assertEquals(all().last(), latest.get());
+    }
+
+    @Test
+    void testMergeEmpty() {
+        Map<String, SortedSet<ContentKey>> empty = new LinkedHashMap<>();
+        empty.put("none", new TreeSet<>());
+        assertTrue(TagService.merge(empty, 10, true).isEmpty());
+        assertTrue(TagService.merge(Collections.emptyMap(), 10, false).isEmpty());
+    }
+
+    private SortedSet<ChannelContentKey> all() {
+        SortedSet<ChannelContentKey> all = new TreeSet<>();
+        keysByChannel.forEach((channel, keys) -> keys.forEach(key -> all.add(new ChannelContentKey(channel, key))));
+        return all;
+    }
+}
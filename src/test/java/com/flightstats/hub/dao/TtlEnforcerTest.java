@@ -1,7 +1,7 @@
 package com.flightstats.hub.dao;
 
 import com.flightstats.hub.model.ChannelConfig;
-import com.flightstats.hub.util.Commander;
+import com.flightstats.hub.spoke.SpokeTtlWalker;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,8 +14,7 @@ import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
-import static org.mockito.ArgumentMatchers.anyInt;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -36,7 +35,7 @@ class TtlEnforcerTest {
     @Mock
     private ChannelService channelService;
     @Mock
-    private Commander commander;
+    private SpokeTtlWalker spokeTtlWalker;
 
     private TtlEnforcer ttlEnforcer;
 
@@ -61,23 +60,23 @@ class TtlEnforcerTest {
     @BeforeEach
     void setup() {
         initMocks(this);
-        ttlEnforcer = new TtlEnforcer(commander);
+        ttlEnforcer = new TtlEnforcer(spokeTtlWalker);
     }
 
     @Test
     void enforce_deletesFilteredChildPaths_affirmThreeFilesDeleted(@TempDir File spoke) {
         assertEquals(0, getSpokePathList(spoke).length);
         assertTrue(createMockSpokeFiles(spoke, "a", "b", "c", LOST_AND_FOUND_DIR));
-        ttlEnforcer.deleteFilteredPaths(spoke.getPath(), channelService, callback);
-        verify(commander, times(3)).runInBash(anyString(), anyInt());
+        ttlEnforcer.deleteFilteredPaths(spoke.getPath(), channelService, callback, SpokeTtlWalker.Listener.NONE);
+        verify(spokeTtlWalker, times(3)).delete(any(File.class), any(SpokeTtlWalker.Listener.class));
     }
 
     @Test
     void enforce_deletesFilteredUpperCaseChildPaths_affirmTwoFilesDeleted(@TempDir File spoke) {
         assertEquals(0, getSpokePathList(spoke).length);
         assertTrue(createMockSpokeFiles(spoke, "BacA", "aCaB", LOST_AND_FOUND_DIR));
-        ttlEnforcer.deleteFilteredPaths(spoke.getPath(), channelService, callback);
-        verify(commander, times(2)).runInBash(anyString(), anyInt());
+        ttlEnforcer.deleteFilteredPaths(spoke.getPath(), channelService, callback, SpokeTtlWalker.Listener.NONE);
+        verify(spokeTtlWalker, times(2)).delete(any(File.class), any(SpokeTtlWalker.Listener.class));
     }
 
     @Test
@@ -97,7 +96,7 @@ class TtlEnforcerTest {
 
         // THEN
         assertTrue(createMockSpokeFiles(spoke, names[0], names[1], LOST_AND_FOUND_DIR));
-        ttlEnforcer.deleteFilteredPaths(spoke.getPath(), channelService, callback);
-        verify(commander, never()).runInBash(anyString(), anyInt());
+        ttlEnforcer.deleteFilteredPaths(spoke.getPath(), channelService, callback, SpokeTtlWalker.Listener.NONE);
+        verify(spokeTtlWalker, never()).delete(any(File.class), any(SpokeTtlWalker.Listener.class));
     }
 }
@@ -117,7 +117,7 @@ class ClusterContentServiceTest {
         assertEquals(contentKey, ret);
 
         ArgumentCaptor<ChannelContentKey> arg = ArgumentCaptor.forClass(ChannelContentKey.class);
-        verify(s3WriteQueue, times(1)).add(arg.capture());
+        verify(s3WriteQueue, times(1)).add(arg.capture(), eq(content));
         assertNotNull(arg.getValue());
         assertEquals(contentKey, arg.getValue().getContentKey());
         assertEquals(channelName, arg.getValue().getChannel());
@@ -146,7 +146,7 @@ class ClusterContentServiceTest {
         ccs.insert(channelName, content);
         verify(mockS3LargeDao, times(1)).insert(channelName, content);
         verify(mockSpokeWriteDao, times(1)).insert(channelName, largeContentUtils.createIndex(content));
-        verify(s3WriteQueue, times(1)).add(any());
+        verify(s3WriteQueue, times(1)).add(any(), any());
     }
 
     @Test
@@ -0,0 +1,76 @@
+package com.flightstats.hub.dao.aws;
+
+import com.flightstats.hub.cluster.LatestContentCache;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.util.TimeUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class LatestKeyPublisherTest {
+
+    @Mock
+    private LatestContentCache latestContentCache;
+    private ScheduledExecutorService executor;
+    private LatestKeyPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newScheduledThreadPool(1);
+        publisher = new LatestKeyPublisher(executor, latestContentCache, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testPublishesOnlyNewestStableKey() {
+        long start = System.currentTimeMillis();
+        ContentKey newest = null;
+        for (int i = 0; i < 100; i++) {
+            newest = new ContentKey(TimeUtil.now().plusMillis(i), "key" + i);
+            publisher.add("coalesced", newest, start);
+        }
+        verify(latestContentCache, after(900).never()).setIfNewer(anyString(), any());
+        verify(latestContentCache, timeout(2000)).setIfNewer("coalesced", newest);
+        verify(latestContentCache, after(500).times(1)).setIfNewer(anyString(), any());
+    }
+
+    @Test
+    void testKeysStableLaterArePublishedSeparately() {
+        long start = System.currentTimeMillis();
+        ContentKey first = new ContentKey(TimeUtil.now(), "first");
+        ContentKey second = new ContentKey(TimeUtil.now().plusMillis(1), "second");
+        publisher.add("later", first, start);
+        publisher.add("later", second, start + 1500);
+
+        verify(latestContentCache, timeout(2500)).setIfNewer("later", first);
+        verify(latestContentCache, never()).setIfNewer("later", second);
+        verify(latestContentCache, timeout(2500)).setIfNewer("later", second);
+    }
+
+    @Test
+    void testRemovedChannelIsNotPublished() {
+        publisher.add("removed", new ContentKey(TimeUtil.now(), "removed"), System.currentTimeMillis());
+        publisher.remove("removed");
+
+        verify(latestContentCache, after(2500).never()).setIfNewer(anyString(), any());
+    }
+}
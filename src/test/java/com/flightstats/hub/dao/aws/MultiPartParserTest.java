@@ -1,14 +1,23 @@
 package com.flightstats.hub.dao.aws;
 
+import com.flightstats.hub.exception.ContentTooLargeException;
 import com.flightstats.hub.exception.InvalidRequestException;
 import com.flightstats.hub.model.BulkContent;
 import com.flightstats.hub.model.Content;
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
-import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -20,8 +29,13 @@ class MultiPartParserTest {
     private static final String BINARY_ITEM = "PGh0bWw+CiAgPGhlYWQ+CiAgPC9oZWFkPgogIDxib2R5PgogICAgPHA+VGhpcyBpcyB0aGUgYm9keSBvZiB0aGUgbWVzc2FnZS48L3A+CiAgPC9ib2R5Pgo8L2h0bWw+Cg==";
     private static final int MAX_PAYLOAD_SIZE_IN_MB = 40;
 
-    @Test
-    void testSimple() throws IOException {
+    private static Stream<Boolean> parsers() {
+        return Stream.of(false, true);
+    }
+
+    @ParameterizedTest
+    @MethodSource("parsers")
+    void testSimple(boolean streaming) throws IOException {
         String data = "This is a message with multiple parts in MIME format.\r\n" +
                 "--frontier\r\n" +
                 "Content-Type: text/plain\r\n" +
@@ -40,7 +54,7 @@ class MultiPartParserTest {
                 .contentType("multipart/mixed; boundary=frontier")
                 .isNew(true)
                 .build();
-        MultiPartParser parser = new MultiPartParser(bulkContent, MAX_PAYLOAD_SIZE_IN_MB);
+        MultiPartParser parser = new MultiPartParser(bulkContent, MAX_PAYLOAD_SIZE_IN_MB, streaming);
         parser.parse();
         Content item = bulkContent.getItems().get(0);
         assertEquals("This is the body of the message.", new String(item.getData()));
@@ -55,8 +69,9 @@ class MultiPartParserTest {
         assertTrue(StringUtils.endsWith(item.getContentKey().get().getHash(), "000001"));
     }
 
-    @Test
-    void testSimpleWithKeys() throws IOException {
+    @ParameterizedTest
+    @MethodSource("parsers")
+    void testSimpleWithKeys(boolean streaming) throws IOException {
         String data = "This is a message with multiple parts in MIME format.\r\n" +
                 "--frontier\r\n" +
                 "Content-Type: text/plain\r\n" +
@@ -78,7 +93,7 @@ class MultiPartParserTest {
                 .stream(inputStream)
                 .contentType("multipart/mixed; boundary=frontier")
                 .build();
-        MultiPartParser parser = new MultiPartParser(bulkContent, MAX_PAYLOAD_SIZE_IN_MB);
+        MultiPartParser parser = new MultiPartParser(bulkContent, MAX_PAYLOAD_SIZE_IN_MB, streaming);
         parser.parse();
         assertEquals(2, bulkContent.getItems().size());
         Content item = bulkContent.getItems().get(0);
@@ -92,8 +107,9 @@ class MultiPartParserTest {
         assertEquals("2016/04/20/11/42/00/000/b", item.getContentKey().get().toUrl());
     }
 
-    @Test
-    void testMinimal() throws IOException {
+    @ParameterizedTest
+    @MethodSource("parsers")
+    void testMinimal(boolean streaming) throws IOException {
         String data = "--boundary\r\n" +
                 "\r\n" +
                 "There is some message here.\r\n" +
@@ -104,15 +120,16 @@ class MultiPartParserTest {
                 .stream(inputStream)
                 .contentType("multipart/mixed; boundary=boundary")
                 .build();
-        MultiPartParser parser = new MultiPartParser(bulkContent, MAX_PAYLOAD_SIZE_IN_MB);
+        MultiPartParser parser = new MultiPartParser(bulkContent, MAX_PAYLOAD_SIZE_IN_MB, streaming);
         parser.parse();
         Content item = bulkContent.getItems().get(0);
         assertEquals("There is some message here.", new String(item.getData()));
         assertEquals("text/plain", item.getContentType().get());
     }
 
-    @Test
-    void testContentHeaders() throws IOException {
+    @ParameterizedTest
+    @MethodSource("parsers")
+    void testContentHeaders(boolean streaming) throws IOException {
         String data = "--boundary\r\n" +
                 "Content-Transfer-Encoding: text\r\n" +
                 "Content-Type: application/ocelot-stream\r\n" +
@@ -125,15 +142,16 @@ class MultiPartParserTest {
                 .stream(inputStream)
                 .contentType("multipart/mixed; boundary=\"boundary\"")
                 .build();
-        MultiPartParser parser = new MultiPartParser(bulkContent, MAX_PAYLOAD_SIZE_IN_MB);
+        MultiPartParser parser = new MultiPartParser(bulkContent, MAX_PAYLOAD_SIZE_IN_MB, streaming);
         parser.parse();
         Content item = bulkContent.getItems().get(0);
         assertEquals("meow.", new String(item.getData()));
         assertEquals("application/ocelot-stream", item.getContentType().get());
     }
 
-    @Test
-    void testWhiteSpace() throws IOException {
+    @ParameterizedTest
+    @MethodSource("parsers")
+    void testWhiteSpace(boolean streaming) throws IOException {
         String data = "--boundary\r\n" +
                 "\r\n" +
                 "\r\n" +
@@ -146,15 +164,16 @@ class MultiPartParserTest {
                 .stream(inputStream)
                 .contentType("multipart/mixed; boundary=boundary")
                 .build();
-        MultiPartParser parser = new MultiPartParser(bulkContent, MAX_PAYLOAD_SIZE_IN_MB);
+        MultiPartParser parser = new MultiPartParser(bulkContent, MAX_PAYLOAD_SIZE_IN_MB, streaming);
         parser.parse();
         Content item = bulkContent.getItems().get(0);
         assertEquals("\r\nThere is some message here.\r\n", new String(item.getData()));
         assertEquals("text/plain", item.getContentType().get());
     }
 
-    @Test
-    void testMalformed() {
+    @ParameterizedTest
+    @MethodSource("parsers")
+    void testMalformed(boolean streaming) {
         String data = "--boundary--";
 
         ByteArrayInputStream inputStream = new ByteArrayInputStream(data.getBytes());
@@ -162,12 +181,13 @@ class MultiPartParserTest {
                 .stream(inputStream)
                 .contentType("multipart/mixed; boundary=boundary")
                 .build();
-        MultiPartParser parser = new MultiPartParser(bulkContent, MAX_PAYLOAD_SIZE_IN_MB);
+        MultiPartParser parser = new MultiPartParser(bulkContent, MAX_PAYLOAD_SIZE_IN_MB, streaming);
         assertThrows(InvalidRequestException.class, parser::parse);
     }
 
-    @Test
-    void testEmptyBytePayload() throws IOException {
+    @ParameterizedTest
+    @MethodSource("parsers")
+    void testEmptyBytePayload(boolean streaming) throws IOException {
 
         String data = "--boundary\r\n" +
                 "Content-Type: text/plain\r\n" +
@@ -182,7 +202,7 @@ class MultiPartParserTest {
                 .contentType("multipart/mixed; boundary=boundary")
                 .build();
 
-        MultiPartParser parser = new MultiPartParser(bulkContent, MAX_PAYLOAD_SIZE_IN_MB);
+        MultiPartParser parser = new MultiPartParser(bulkContent, MAX_PAYLOAD_SIZE_IN_MB, streaming);
         parser.parse();
         Content item = bulkContent.getItems().get(0);
         assertArrayEquals(new byte[0], item.getData());
@@ -190,4 +210,81 @@ class MultiPartParserTest {
 
     }
 
-}
\ No newline at end of file
+    @ParameterizedTest
+    @MethodSource("parsers")
+    void testLargePartsInSmallReads(boolean streaming) throws IOException {
+        Random random = new Random(7);
+        List<byte[]> items = new ArrayList<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write("preamble\r\n".getBytes());
+        for (int i = 0; i < 5; i++) {
+            byte[] item = new byte[100_000 + i * 50_000];
+            random.nextBytes(item);
+            // a partial boundary inside an item is data
+            System.arraycopy("\r\n--bound".getBytes(), 0, item, 1000, 9);
+            items.add(item);
+            body.write(("--boundary\r\nContent-Type: application/octet-stream\r\n\r\n").getBytes());
+            body.write(item);
+            body.write("\r\n".getBytes());
+        }
+        body.write("--boundary--\r\n".getBytes());
+        InputStream inputStream = new FilterInputStream(new ByteArrayInputStream(body.toByteArray())) {
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                return super.read(bytes, offset, Math.min(length, 7919));
+            }
+        };
+        BulkContent bulkContent = BulkContent.builder()
+                .stream(inputStream)
+                .contentType("multipart/mixed; boundary=boundary")
+                .build();
+        new MultiPartParser(bulkContent, MAX_PAYLOAD_SIZE_IN_MB, streaming).parse();
+        assertEquals(items.size(), bulkContent.getItems().size());
+        for (int i = 0; i < items.size(); i++) {
+            assertArrayEquals(items.get(i), bulkContent.getItems().get(i).getData());
+            assertEquals("application/octet-stream", bulkContent.getItems().get(i).getContentType().get());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("parsers")
+    void testSingleByteReads(boolean streaming) throws IOException {
+        String data = "--abcdefg\r\n" +
+                "Content-Type: text/plain\r\n" +
+                "\r\n" +
+                "first item\r\n" +
+                "--abcdefg\r\n" +
+                "\r\n" +
+                "second\r\n--abc item\r\n" +
+                "--abcdefg--";
+        InputStream inputStream = new FilterInputStream(new ByteArrayInputStream(data.getBytes())) {
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                return super.read(bytes, offset, Math.min(length, 1));
+            }
+        };
+        BulkContent bulkContent = BulkContent.builder()
+                .stream(inputStream)
+                .contentType("multipart/mixed; boundary=abcdefg")
+                .build();
+        new MultiPartParser(bulkContent, MAX_PAYLOAD_SIZE_IN_MB, streaming).parse();
+        assertEquals(2, bulkContent.getItems().size());
+        assertEquals("first item", new String(bulkContent.getItems().get(0).getData()));
+        assertEquals("second\r\n--abc item", new String(bulkContent.getItems().get(1).getData()));
+    }
+
+    @ParameterizedTest
+    @MethodSource("parsers")
+    void testTooLarge(boolean streaming) {
+        String data = "--boundary\r\n" +
+                "\r\n" +
+                "There is some message here.\r\n" +
+                "--boundary--";
+        BulkContent bulkContent = BulkContent.builder()
+                .stream(new ByteArrayInputStream(data.getBytes()))
+                .contentType("multipart/mixed; boundary=boundary")
+                .build();
+        MultiPartParser parser = new MultiPartParser(bulkContent, 0, streaming);
+        assertThrows(ContentTooLargeException.class, parser::parse);
+    }
+}
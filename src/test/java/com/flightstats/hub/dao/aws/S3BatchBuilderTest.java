@@ -0,0 +1,164 @@
+package com.flightstats.hub.dao.aws;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flightstats.hub.channel.ZipBulkBuilder;
+import com.flightstats.hub.dao.ContentDao;
+import com.flightstats.hub.dao.ContentMarshaller;
+import com.flightstats.hub.metrics.StatsdReporter;
+import com.flightstats.hub.model.Content;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.LargeContentUtils;
+import com.flightstats.hub.spoke.FileSpokeStore;
+import com.google.common.io.ByteStreams;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class S3BatchBuilderTest {
+
+    private static final String CHANNEL = "batched";
+
+    @TempDir
+    File spokeDirectory;
+    @Mock
+    private ContentDao spokeWriteContentDao;
+    @Mock
+    private ContentDao s3LargePayloadContentDao;
+    @Mock
+    private StatsdReporter statsdReporter;
+
+    private final LargeContentUtils largeContentUtils = new LargeContentUtils(new ObjectMapper());
+    private FileSpokeStore spokeStore;
+    private S3BatchBuilder builder;
+    private final DateTime minute = new DateTime(2019, 5, 1, 10, 30, DateTimeZone.UTC);
+
+    @BeforeEach
+    void setUp() {
+        spokeStore = new FileSpokeStore(spokeDirectory.getPath(), 60);
+        builder = new S3BatchBuilder(spokeStore, spokeWriteContentDao, s3LargePayloadContentDao, largeContentUtils,
+                new ZipBulkBuilder(), statsdReporter);
+    }
+
+    @Test
+    void testBuildFromLocalItems() throws Exception {
+        List<ContentKey> keys = new ArrayList<>();
+        for (int i = 4; i >= 0; i--) {
+            ContentKey key = new ContentKey(minute.plusSeconds(i), "local" + i);
+            write(key);
+            keys.add(key);
+        }
+
+        byte[] zip = builder.build(CHANNEL, keys).get();
+
+        List<String> names = assertEntries(zip);
+        assertEquals(Arrays.asList(key(0), key(1), key(2), key(3), key(4)), names);
+        assertEquals(5, S3BatchZip.locate(zip).size());
+        verify(spokeWriteContentDao, never()).get(any(), any());
+    }
+
+    @Test
+    void testBuildFetchesMissingItems() throws Exception {
+        ContentKey local = new ContentKey(minute, "local");
+        write(local);
+        ContentKey remote = new ContentKey(minute.plusSeconds(1), "remote");
+        when(spokeWriteContentDao.get(CHANNEL, remote)).thenReturn(content(remote));
+
+        byte[] zip = builder.build(CHANNEL, Arrays.asList(local, remote)).get();
+
+        assertEquals(Arrays.asList(local.toUrl(), remote.toUrl()), assertEntries(zip));
+        verify(statsdReporter).count("batch.remote_items", 1);
+    }
+
+    @Test
+    void testBuildReadsLargePayloads() throws Exception {
+        ContentKey small = new ContentKey(minute, "small");
+        write(small);
+        ContentKey indexKey = new ContentKey(minute.plusSeconds(1), "index");
+        ContentKey largeKey = new ContentKey(minute.plusSeconds(1), "large");
+        Content large = Content.builder()
+                .withContentKey(largeKey)
+                .withContentType("text/plain")
+                .withData(indexKey.toString().getBytes())
+                .build();
+        Content index = largeContentUtils.createIndex(large);
+        index.setContentKey(indexKey);
+        assertTrue(spokeStore.insert(CHANNEL + "/" + indexKey.toUrl(), index.getData()));
+        when(s3LargePayloadContentDao.get(CHANNEL, largeKey)).thenReturn(large);
+
+        byte[] zip = builder.build(CHANNEL, Arrays.asList(small, indexKey)).get();
+
+        assertEquals(Arrays.asList(small.toUrl(), indexKey.toUrl()), assertEntries(zip));
+    }
+
+    @Test
+    void testBuildFailsWhenItemIsMissing() throws Exception {
+        ContentKey missing = new ContentKey(minute, "missing");
+        when(spokeWriteContentDao.get(CHANNEL, missing)).thenReturn(null);
+
+        Optional<byte[]> zip = builder.build(CHANNEL, Arrays.asList(missing));
+
+        assertFalse(zip.isPresent());
+        verify(statsdReporter).increment("batch.missing_item");
+    }
+
+    private String key(int second) {
+        return new ContentKey(minute.plusSeconds(second), "local" + second).toUrl();
+    }
+
+    private void write(ContentKey key) throws Exception {
+        assertTrue(spokeStore.insert(CHANNEL + "/" + key.toUrl(), ContentMarshaller.toBytes(content(key))));
+    }
+
+    private Content content(ContentKey key) {
+        return Content.builder()
+                .withContentKey(key)
+                .withContentType("text/plain")
+                .withData(key.toString().getBytes())
+                .build();
+    }
+
+    /**
+     * Checks each entry holds its item and meta data, the way a bulk zip does.
+     */
+    private List<String> assertEntries(byte[] zip) throws Exception {
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream input = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry = input.getNextEntry();
+            while (entry != null) {
+                ContentKey key = ContentKey.fromUrl(entry.getName()).get();
+                Content.Builder meta = Content.builder();
+                ContentMarshaller.setMetaData(new String(entry.getExtra()), meta);
+                assertEquals(Optional.of("text/plain"), meta.getContentType());
+                byte[] data = ByteStreams.toByteArray(input);
+                assertArrayEquals(key.toString().getBytes(), data);
+                names.add(entry.getName());
+                entry = input.getNextEntry();
+            }
+        }
+        return names;
+    }
+}
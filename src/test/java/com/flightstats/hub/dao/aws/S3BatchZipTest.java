@@ -0,0 +1,86 @@
+package com.flightstats.hub.dao.aws;
+
+import com.flightstats.hub.channel.ZipBulkBuilder;
+import com.flightstats.hub.dao.ContentDaoUtil;
+import com.flightstats.hub.dao.ContentMarshaller;
+import com.flightstats.hub.model.Content;
+import com.flightstats.hub.model.ContentKey;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class S3BatchZipTest {
+
+    @Test
+    void testLocateAndReadDeflated() throws Exception {
+        assertRanges(ZipEntry.DEFLATED);
+    }
+
+    @Test
+    void testLocateAndReadStored() throws Exception {
+        assertRanges(ZipEntry.STORED);
+    }
+
+    @Test
+    void testLocateInvalid() {
+        assertTrue(S3BatchZip.locate(new byte[]{1, 2, 3}).isEmpty());
+    }
+
+    private void assertRanges(int method) throws Exception {
+        List<Content> contents = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            contents.add(ContentDaoUtil.createContent(new ContentKey()));
+        }
+        byte[] zip = zip(contents, method);
+
+        Map<String, S3BatchZip.Location> locations = S3BatchZip.locate(zip);
+        assertEquals(5, locations.size());
+        for (Content content : contents) {
+            ContentKey key = content.getContentKey().get();
+            S3BatchZip.Location location = locations.get(key.toUrl());
+            assertEquals(method, location.method);
+            byte[] range = Arrays.copyOfRange(zip, (int) location.offset, (int) (location.offset + location.length));
+            Content read = S3BatchZip.read(key, range, location.method);
+            assertEquals(key, read.getContentKey().get());
+            assertEquals(content.getContentType(), read.getContentType());
+            assertArrayEquals(key.toString().getBytes(), read.getData());
+        }
+    }
+
+    private byte[] zip(List<Content> contents, int method) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ZipBulkBuilder zipBulkBuilder = new ZipBulkBuilder();
+        try (ZipOutputStream output = new ZipOutputStream(baos)) {
+            if (method == ZipEntry.STORED) {
+                for (Content content : contents) {
+                    byte[] data = content.getData();
+                    ZipEntry entry = new ZipEntry(content.getContentKey().get().toUrl());
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(data.length);
+                    CRC32 crc = new CRC32();
+                    crc.update(data);
+                    entry.setCrc(crc.getValue());
+                    entry.setExtra(ContentMarshaller.getMetaData(content).getBytes());
+                    output.putNextEntry(entry);
+                    output.write(data);
+                }
+            } else {
+                for (Content content : contents) {
+                    zipBulkBuilder.createZipEntry(output, content);
+                }
+            }
+        }
+        return baos.toByteArray();
+    }
+}
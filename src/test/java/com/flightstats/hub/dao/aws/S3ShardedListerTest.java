@@ -0,0 +1,140 @@
+package com.flightstats.hub.dao.aws;
+
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.flightstats.hub.config.properties.S3Properties;
+import com.flightstats.hub.metrics.StatsdReporter;
+import com.flightstats.hub.util.TimeUtil;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class S3ShardedListerTest {
+
+    private static final String BUCKET = "bucket";
+
+    @Mock
+    private HubS3Client s3Client;
+    @Mock
+    private StatsdReporter statsdReporter;
+    @Mock
+    private S3Properties s3Properties;
+
+    private final NavigableSet<String> objects = new ConcurrentSkipListSet<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private S3ShardedLister lister;
+
+    @BeforeEach
+    void setUp() {
+        when(s3Properties.getListThreadCount()).thenReturn(4);
+        lister = new S3ShardedLister(s3Client, statsdReporter, s3Properties);
+    }
+
+    @Test
+    void testShardPrefixes() {
+        DateTime time = new DateTime(2019, 2, 10, 13, 45, DateTimeZone.UTC);
+        List<String> hours = S3ShardedLister.shardPrefixes("c/", time, TimeUtil.Unit.HOURS);
+        assertEquals(Arrays.asList("c/2019/02/10/13/0", "c/2019/02/10/13/1", "c/2019/02/10/13/2",
+                "c/2019/02/10/13/3", "c/2019/02/10/13/4", "c/2019/02/10/13/5"), hours);
+
+        List<String> days = S3ShardedLister.shardPrefixes("c/", time, TimeUtil.Unit.DAYS);
+        assertEquals(24, days.size());
+        assertEquals("c/2019/02/10/00", days.get(0));
+        assertEquals("c/2019/02/10/23", days.get(23));
+
+        List<String> months = S3ShardedLister.shardPrefixes("c/", time, TimeUtil.Unit.MONTHS);
+        assertEquals(28, months.size());
+        assertEquals("c/2019/02/28", months.get(27));
+
+        assertEquals(Collections.singletonList("c/2019/02/10/13/45"),
+                S3ShardedLister.shardPrefixes("c/", time, TimeUtil.Unit.MINUTES));
+    }
+
+    @Test
+    void testListDayInKeyOrder() {
+        stubListObjects();
+        DateTime day = new DateTime(2019, 2, 10, 0, 0, DateTimeZone.UTC);
+        List<String> expected = new ArrayList<>();
+        for (int minute = 0; minute < 24 * 60; minute += 7) {
+            String key = "c/" + TimeUtil.Unit.MINUTES.format(day.plusMinutes(minute)) + "/00/000/abc";
+            objects.add(key);
+            expected.add(key);
+        }
+        objects.add("c/2019/02/09/23/59/00/000/before");
+        objects.add("c/2019/02/11/00/00/00/000/after");
+
+        List<String> keys = lister.list(BUCKET, "c/", day, TimeUtil.Unit.DAYS, 5, 1000, "c", "single")
+                .stream().map(S3ObjectSummary::getKey).collect(Collectors.toList());
+
+        assertEquals(expected, keys);
+        assertEquals(48, requests.get(), "one unsharded page, the rest of hour 00, then two pages per hour");
+    }
+
+    @Test
+    void testSparseRangeIsNotSharded() {
+        stubListObjects();
+        DateTime day = new DateTime(2019, 2, 10, 0, 0, DateTimeZone.UTC);
+        objects.add("c/2019/02/10/03/15/00/000/abc");
+        objects.add("c/2019/02/10/21/45/00/000/abc");
+
+        List<S3ObjectSummary> summaries = lister.list(BUCKET, "c/", day, TimeUtil.Unit.DAYS, 5, 1000, "c", "single");
+
+        assertEquals(2, summaries.size());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void testMaxItemsSharedAcrossShards() {
+        stubListObjects();
+        DateTime day = new DateTime(2019, 2, 10, 0, 0, DateTimeZone.UTC);
+        for (int hour = 0; hour < 24; hour++) {
+            for (int i = 0; i < 20; i++) {
+                objects.add(String.format("c/2019/02/10/%02d/%02d/00/000/abc", hour, i));
+            }
+        }
+        List<S3ObjectSummary> summaries = lister.list(BUCKET, "c/", day, TimeUtil.Unit.DAYS, 5, 30, "c", "single");
+        assertTrue(summaries.size() < 30 + 4 * 5, "at most one page past the cap per listing thread");
+    }
+
+    /**
+     * Answers listObjects from the objects set, the way S3 handles prefix, marker and max keys.
+     */
+    private void stubListObjects() {
+        when(s3Client.listObjects(any(ListObjectsRequest.class))).thenAnswer(invocation -> {
+            requests.incrementAndGet();
+            ListObjectsRequest request = invocation.getArgument(0);
+            NavigableSet<String> after = request.getMarker() == null ? objects : objects.tailSet(request.getMarker(), false);
+            List<String> matching = after.stream()
+                    .filter(key -> key.startsWith(request.getPrefix()))
+                    .collect(Collectors.toList());
+            ObjectListing listing = new ObjectListing();
+            for (String key : matching.subList(0, Math.min(matching.size(), request.getMaxKeys()))) {
+                S3ObjectSummary summary = new S3ObjectSummary();
+                summary.setKey(key);
+                listing.getObjectSummaries().add(summary);
+            }
+            listing.setTruncated(matching.size() > request.getMaxKeys());
+            return listing;
+        });
+    }
+}
@@ -0,0 +1,187 @@
+package com.flightstats.hub.dao.aws;
+
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.flightstats.hub.cluster.ClusterCacheDao;
+import com.flightstats.hub.config.properties.S3Properties;
+import com.flightstats.hub.metrics.StatsdReporter;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.ContentPath;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+
+import static com.flightstats.hub.constant.ZookeeperNodes.S3_DELETE_CHECKPOINT;
+import static com.flightstats.hub.constant.ZookeeperNodes.S3_DELETE_LIMIT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class S3UtilTest {
+
+    private static final String MAIN = "main";
+    private static final String DR = "dr";
+    private static final String PATH = "channel/";
+
+    @Mock
+    private HubS3Client s3Client;
+    @Mock
+    private ClusterCacheDao clusterCacheDao;
+    @Mock
+    private StatsdReporter statsdReporter;
+    @Mock
+    private S3Properties s3Properties;
+
+    private final Map<String, NavigableSet<String>> buckets = new HashMap<>();
+    private final DateTime start = new DateTime(2019, 5, 1, 0, 0, DateTimeZone.UTC);
+    private S3Util s3Util;
+
+    @BeforeEach
+    void setUp() {
+        when(s3Properties.getDeletesPerSecond()).thenReturn(1000.0 * 1000);
+        when(s3Properties.getDeleteThreadCount()).thenReturn(3);
+        s3Util = new S3Util(clusterCacheDao, statsdReporter, s3Properties);
+        buckets.put(MAIN, new ConcurrentSkipListSet<>());
+        buckets.put(DR, new ConcurrentSkipListSet<>());
+    }
+
+    @Test
+    void testDeleteBeforeInBothBuckets() {
+        stubS3(-1);
+        for (NavigableSet<String> objects : buckets.values()) {
+            for (int i = 0; i < 50; i++) {
+                objects.add(PATH + key(i).toUrl());
+            }
+            objects.add(PATH + "large/" + key(1).toUrl());
+        }
+
+        assertTrue(s3Util.delete(PATH, key(30), Arrays.asList(MAIN, DR, ""), s3Client));
+
+        for (NavigableSet<String> objects : buckets.values()) {
+            assertEquals(21, objects.size());
+            assertEquals(PATH + key(30).toUrl(), objects.first());
+        }
+        verify(clusterCacheDao).delete(S3Util.checkpointName(MAIN, PATH), S3_DELETE_CHECKPOINT);
+        verify(clusterCacheDao).delete(S3Util.checkpointName(DR, PATH), S3_DELETE_CHECKPOINT);
+        verify(clusterCacheDao).set(key(30), S3Util.checkpointName(MAIN, PATH), S3_DELETE_LIMIT);
+        verify(clusterCacheDao).delete(S3Util.checkpointName(MAIN, PATH), S3_DELETE_LIMIT);
+        assertFalse(S3Util.checkpointName(MAIN, PATH).contains("/"), "no parent node per bucket");
+        ArgumentCaptor<Long> items = ArgumentCaptor.forClass(Long.class);
+        verify(statsdReporter, atLeastOnce()).count(eq("s3.delete.items"), items.capture(), any());
+        assertEquals(60, items.getAllValues().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    void testResumesFromCheckpoint() {
+        stubS3(-1);
+        NavigableSet<String> objects = buckets.get(MAIN);
+        for (int i = 0; i < 20; i++) {
+            objects.add(PATH + key(i).toUrl());
+        }
+        when(clusterCacheDao.get(S3Util.checkpointName(MAIN, PATH), null, S3_DELETE_CHECKPOINT)).thenReturn(key(9));
+        when(clusterCacheDao.get(S3Util.checkpointName(MAIN, PATH), null, S3_DELETE_LIMIT)).thenReturn(key(15));
+
+        assertTrue(s3Util.delete(PATH, key(15), Arrays.asList(MAIN), s3Client));
+
+        List<Integer> remaining = objects.stream().map(this::index).collect(Collectors.toList());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 15, 16, 17, 18, 19), remaining);
+    }
+
+    @Test
+    void testIgnoresCheckpointForAnotherLimit() {
+        stubS3(-1);
+        NavigableSet<String> objects = buckets.get(MAIN);
+        for (int i = 0; i < 20; i++) {
+            objects.add(PATH + key(i).toUrl());
+        }
+        when(clusterCacheDao.get(S3Util.checkpointName(MAIN, PATH), null, S3_DELETE_CHECKPOINT)).thenReturn(key(9));
+        when(clusterCacheDao.get(S3Util.checkpointName(MAIN, PATH), null, S3_DELETE_LIMIT)).thenReturn(key(12));
+
+        assertTrue(s3Util.delete(PATH, key(15), Arrays.asList(MAIN), s3Client));
+
+        List<Integer> remaining = objects.stream().map(this::index).collect(Collectors.toList());
+        assertEquals(Arrays.asList(15, 16, 17, 18, 19), remaining);
+        verify(clusterCacheDao).set(key(15), S3Util.checkpointName(MAIN, PATH), S3_DELETE_LIMIT);
+    }
+
+    @Test
+    void testFailedBatchKeepsCheckpoint() {
+        stubS3(1);
+        NavigableSet<String> objects = buckets.get(MAIN);
+        for (int i = 0; i < 30; i++) {
+            objects.add(PATH + key(i).toUrl());
+        }
+
+        assertFalse(s3Util.delete(PATH, key(30), Arrays.asList(MAIN), s3Client));
+
+        assertTrue(objects.contains(PATH + key(10).toUrl()));
+        verify(clusterCacheDao, never()).delete(anyString(), eq(S3_DELETE_CHECKPOINT));
+        ArgumentCaptor<ContentPath> checkpoints = ArgumentCaptor.forClass(ContentPath.class);
+        verify(clusterCacheDao, atLeastOnce()).set(checkpoints.capture(), eq(S3Util.checkpointName(MAIN, PATH)), eq(S3_DELETE_CHECKPOINT));
+        assertEquals(key(9), checkpoints.getAllValues().get(0));
+        assertTrue(checkpoints.getAllValues().stream().allMatch(path -> path.compareTo(key(10)) < 0));
+    }
+
+    private ContentKey key(int index) {
+        return new ContentKey(start.plusSeconds(index), "key" + index);
+    }
+
+    private int index(String s3Key) {
+        return Integer.parseInt(s3Key.substring(s3Key.lastIndexOf("key") + 3));
+    }
+
+    /**
+     * Lists ten keys per page from the bucket's objects, and removes deleted keys, failing the given batch.
+     */
+    private void stubS3(int failingBatch) {
+        when(s3Client.listObjects(any(ListObjectsRequest.class))).thenAnswer(invocation -> {
+            ListObjectsRequest request = invocation.getArgument(0);
+            NavigableSet<String> objects = buckets.get(request.getBucketName());
+            NavigableSet<String> after = request.getMarker() == null ? objects : objects.tailSet(request.getMarker(), false);
+            List<String> matching = after.stream()
+                    .filter(key -> key.startsWith(request.getPrefix()))
+                    .collect(Collectors.toList());
+            ObjectListing listing = new ObjectListing();
+            for (String key : matching.subList(0, Math.min(10, matching.size()))) {
+                S3ObjectSummary summary = new S3ObjectSummary();
+                summary.setKey(key);
+                summary.setSize(100);
+                listing.getObjectSummaries().add(summary);
+            }
+            listing.setTruncated(matching.size() > 10);
+            return listing;
+        });
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class))).thenAnswer(invocation -> {
+            DeleteObjectsRequest request = invocation.getArgument(0);
+            List<String> keys = request.getKeys().stream().map(DeleteObjectsRequest.KeyVersion::getKey).collect(Collectors.toList());
+            if (keys.contains(PATH + key(10 * failingBatch).toUrl())) {
+                throw new RuntimeException("delete failed");
+            }
+            buckets.get(request.getBucketName()).removeAll(keys);
+            return null;
+        });
+    }
+}
@@ -6,21 +6,28 @@ import com.flightstats.hub.model.ChannelContentKey;
 import com.flightstats.hub.model.Content;
 import com.flightstats.hub.model.ContentKey;
 import com.flightstats.hub.spoke.SpokeWriteContentDao;
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -102,6 +109,59 @@ class S3WriteQueueTest {
         verify(statsdReporter, times(40)).time("s3.writeQueue.age.added", AGE_MILLIS);
     }
 
+    @Test
+    void testS3WriteQueue_journal_writesPayloadWithoutReadingSpoke(@TempDir File journal) {
+        s3WriteQueue = journaledQueue(journal);
+        ChannelContentKey channelKey = new ChannelContentKey(CHANNEL_NAME, new ContentKey());
+        Content content = Content.builder()
+                .withContentKey(channelKey.getContentKey())
+                .withContentType("text/plain")
+                .withData("payload".getBytes())
+                .build();
+
+        assertTrue(s3WriteQueue.add(channelKey, content));
+        s3WriteQueue.write();
+
+        ArgumentCaptor<Content> written = ArgumentCaptor.forClass(Content.class);
+        verify(s3SingleContentDao).insert(eq(CHANNEL_NAME), written.capture());
+        assertArrayEquals("payload".getBytes(), written.getValue().getData());
+        assertEquals("text/plain", written.getValue().getContentType().get());
+        verifyZeroInteractions(spokeWriteContentDao);
+    }
+
+    @Test
+    @SneakyThrows
+    void testS3WriteQueue_journal_replaysIncompleteWrites(@TempDir File journal) {
+        s3WriteQueue = journaledQueue(journal);
+        ChannelContentKey first = new ChannelContentKey(CHANNEL_NAME, new ContentKey());
+        ChannelContentKey second = new ChannelContentKey(CHANNEL_NAME, new ContentKey());
+        s3WriteQueue.add(first, Content.builder().withContentKey(first.getContentKey()).withData(new byte[]{1}).build());
+        s3WriteQueue.add(second);
+        s3WriteQueue.write();
+
+        S3WriteQueue restarted = journaledQueue(journal);
+        restarted.replay();
+        assertEquals(1, restarted.getQueueSize());
+
+        Content content = Content.builder().withContentKey(second.getContentKey()).withData(new byte[]{2}).build();
+        when(spokeWriteContentDao.get(CHANNEL_NAME, second.getContentKey())).thenReturn(content);
+        restarted.write();
+        ArgumentCaptor<Content> written = ArgumentCaptor.forClass(Content.class);
+        verify(s3SingleContentDao, times(2)).insert(eq(CHANNEL_NAME), written.capture());
+        assertEquals(second.getContentKey(), written.getValue().getContentKey().get());
+
+        S3WriteQueue again = journaledQueue(journal);
+        again.replay();
+        assertEquals(0, again.getQueueSize());
+    }
+
+    private S3WriteQueue journaledQueue(File journal) {
+        when(s3Properties.getWriteQueueJournalPath()).thenReturn(journal.getPath());
+        when(s3Properties.isWriteQueueJournalPayloads()).thenReturn(true);
+        when(s3Properties.getWriteQueueJournalSegmentBytes()).thenReturn(1024L * 1024L);
+        return new S3WriteQueue(spokeWriteContentDao, s3SingleContentDao, statsdReporter, s3Properties);
+    }
+
     private List<ChannelContentKey> keyFactory(int keyCount) {
         List<ChannelContentKey> keys = new ArrayList<>();
         for (int i = 1; i <= keyCount; i++) {
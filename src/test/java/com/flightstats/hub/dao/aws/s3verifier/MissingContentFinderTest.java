@@ -5,9 +5,12 @@ import com.flightstats.hub.metrics.StatsdReporter;
 import com.flightstats.hub.model.ContentKey;
 import com.flightstats.hub.model.MinutePath;
 import com.flightstats.hub.model.TimeQuery;
+import com.flightstats.hub.spoke.ClusterWriteSpoke;
+import com.flightstats.hub.spoke.SpokeMinuteDigests;
 import com.flightstats.hub.util.TimeUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.Duration;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,7 +19,9 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.net.UnknownHostException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.AbstractExecutorService;
@@ -31,6 +36,8 @@ import static java.util.Collections.emptyList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -43,6 +50,8 @@ class MissingContentFinderTest {
     private ContentDao spokeWriteContentDao;
     @Mock
     private ContentDao s3SContentDao;
+    @Mock
+    private ClusterWriteSpoke clusterWriteSpoke;
 
     private final DateTime now = DateTime.now();
     private final MinutePath startPath = new MinutePath(now.minusMinutes(20));
@@ -67,7 +76,8 @@ class MissingContentFinderTest {
                 s3SContentDao,
                 defaultConfig,
                 statsdReporter,
-                queryThreadPool);
+                queryThreadPool,
+                clusterWriteSpoke);
     }
 
     @Test
@@ -130,13 +140,92 @@ class MissingContentFinderTest {
         Duration executionDelay = Duration.standardSeconds(baseTimeoutInSeconds + 5);
         ExecutorService executorService = Executors.newFixedThreadPool(2, buildSlowThread(executionDelay));
 
-        MissingContentFinder missingContentFinder = new MissingContentFinder(spokeWriteContentDao, s3SContentDao, configWithShortTimeout, statsdReporter, executorService);
+        MissingContentFinder missingContentFinder = new MissingContentFinder(spokeWriteContentDao, s3SContentDao, configWithShortTimeout, statsdReporter, executorService, clusterWriteSpoke);
 
         SortedSet<ContentKey> missing = missingContentFinder.getMissing(startPath, endPath, channelName);
         assertTrue(missing.isEmpty());
         verify(statsdReporter).increment(VerifierMetrics.TIMEOUT.getName());
     }
 
+    @Test
+    void testOnlyQueriesSpokeForMinutesWithDifferentDigests() throws InterruptedException {
+        DateTime start = new DateTime(2019, 5, 1, 10, 58, DateTimeZone.UTC);
+        stubDigests(start);
+
+        SortedSet<ContentKey> found = missingContentFinder.getMissing(new MinutePath(start), new MinutePath(start.plusMinutes(5)), channelName);
+
+        assertEquals(buildSet(new ContentKey(start.plusMinutes(3), "missing")), found);
+        verify(s3SContentDao).queryByTime(minutesQuery(start, start.plusMinutes(2)));
+        verify(s3SContentDao).queryByTime(minutesQuery(start.plusMinutes(3), start.plusMinutes(4)));
+        verify(s3SContentDao, times(2)).queryByTime(any());
+        verify(spokeWriteContentDao, times(1)).queryByTime(any());
+        verify(statsdReporter).count(VerifierMetrics.DIGEST_MISMATCH.getName(), 1);
+    }
+
+    @Test
+    void testOnlyListsS3ForUnverifiedMinutesAgain() throws InterruptedException {
+        DateTime start = new DateTime(2019, 5, 1, 10, 58, DateTimeZone.UTC);
+        stubDigests(start);
+
+        missingContentFinder.getMissing(new MinutePath(start), new MinutePath(start.plusMinutes(5)), channelName);
+        SortedSet<ContentKey> found = missingContentFinder.getMissing(new MinutePath(start), new MinutePath(start.plusMinutes(5)), channelName);
+
+        assertEquals(buildSet(new ContentKey(start.plusMinutes(3), "missing")), found);
+        verify(s3SContentDao, times(1)).queryByTime(minutesQuery(start, start.plusMinutes(2)));
+        verify(s3SContentDao, times(2)).queryByTime(minutesQuery(start.plusMinutes(3), start.plusMinutes(4)));
+        verify(spokeWriteContentDao, times(2)).queryByTime(any());
+    }
+
+    /**
+     * Two nodes which agree with S3 for 10:58 and 10:59, and one node with an item at 11:01 which isn't in S3.
+     */
+    private void stubDigests(DateTime start) throws InterruptedException {
+        ContentKey first = new ContentKey(start.plusSeconds(1), "first");
+        ContentKey second = new ContentKey(start.plusMinutes(1), "second");
+        ContentKey missing = new ContentKey(start.plusMinutes(3), "missing");
+        ContentKey notYetVerified = new ContentKey(start.plusMinutes(5), "later");
+
+        when(s3SContentDao.queryByTime(minutesQuery(start, start.plusMinutes(2)))).thenReturn(buildSet(first, second));
+        when(s3SContentDao.queryByTime(minutesQuery(start.plusMinutes(3), start.plusMinutes(4)))).thenReturn(buildSet());
+        when(clusterWriteSpoke.readMinuteDigestsFromWriteCluster(channelName, "2019/05/01/10"))
+                .thenReturn(Optional.of(Arrays.asList(SpokeMinuteDigests.of(buildSet(first, second)), SpokeMinuteDigests.of(buildSet(first)))));
+        when(clusterWriteSpoke.readMinuteDigestsFromWriteCluster(channelName, "2019/05/01/11"))
+                .thenReturn(Optional.of(Arrays.asList(SpokeMinuteDigests.of(buildSet(notYetVerified)), SpokeMinuteDigests.of(buildSet(missing)))));
+        TimeQuery minuteQuery = TimeQuery.builder()
+                .channelName(channelName)
+                .startTime(new MinutePath(missing.getTime()).getTime())
+                .unit(TimeUtil.Unit.MINUTES)
+                .build();
+        when(spokeWriteContentDao.queryByTime(minuteQuery)).thenReturn(buildSet(missing));
+    }
+
+    private TimeQuery minutesQuery(DateTime start, DateTime end) {
+        return TimeQuery.builder()
+                .channelName(channelName)
+                .startTime(start)
+                .unit(TimeUtil.Unit.MINUTES)
+                .limitKey(ContentKey.lastKey(end))
+                .build();
+    }
+
+    @Test
+    void testWithoutDigestsForEveryHour_queriesAllOfSpoke() throws InterruptedException {
+        TimeQuery timeQuery = TimeQuery.builder()
+                .channelName(channelName)
+                .startTime(startPath.getTime())
+                .unit(TimeUtil.Unit.MINUTES)
+                .limitKey(ContentKey.lastKey(endPath.getTime()))
+                .build();
+        when(clusterWriteSpoke.readMinuteDigestsFromWriteCluster(any(), any())).thenReturn(Optional.empty());
+        when(spokeWriteContentDao.queryByTime(timeQuery)).thenReturn(buildSet(contentKey1, contentKey2, contentKey3));
+        when(s3SContentDao.queryByTime(timeQuery)).thenReturn(buildSet(contentKey2));
+
+        SortedSet<ContentKey> missing = missingContentFinder.getMissing(startPath, endPath, channelName);
+
+        assertEquals(buildSet(contentKey1, contentKey3), missing);
+        verify(statsdReporter).increment(VerifierMetrics.DIGEST_UNAVAILABLE.getName());
+    }
+
     private TreeSet<ContentKey> buildSet(ContentKey... contentKeys) {
         return new TreeSet<>(newArrayList(contentKeys));
     }
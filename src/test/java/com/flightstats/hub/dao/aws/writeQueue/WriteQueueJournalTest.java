@@ -0,0 +1,57 @@
+package com.flightstats.hub.dao.aws.writeQueue;
+
+import com.flightstats.hub.model.ChannelContentKey;
+import com.flightstats.hub.model.ContentKey;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteQueueJournalTest {
+
+    @Test
+    void testConcurrentAppendsAndCompletes(@TempDir File directory) throws Exception {
+        WriteQueueJournal journal = new WriteQueueJournal(directory, 2048);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<WriteQueueJournal.Entry>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                WriteQueueJournal.Entry entry = journal.append(key(index), "text/plain", ("payload" + index).getBytes());
+                if (index % 2 == 0) {
+                    journal.complete(entry);
+                }
+                return entry;
+            }));
+        }
+        for (Future<WriteQueueJournal.Entry> future : futures) {
+            WriteQueueJournal.Entry entry = future.get();
+            String hash = entry.getKey().getContentKey().getHash();
+            assertArrayEquals(("payload" + hash).getBytes(), journal.readPayload(entry).get());
+        }
+        executor.shutdown();
+
+        List<WriteQueueJournal.Entry> replayed = new WriteQueueJournal(directory, 2048).replay();
+
+        Set<String> hashes = replayed.stream().map(entry -> entry.getKey().getContentKey().getHash()).collect(Collectors.toSet());
+        assertEquals(100, hashes.size());
+        for (int i = 1; i < 200; i += 2) {
+            assertTrue(hashes.contains("" + i));
+        }
+    }
+
+    private ChannelContentKey key(int index) {
+        return new ChannelContentKey("journaled", new ContentKey(new ContentKey().getTime(), "" + index));
+    }
+}
@@ -0,0 +1,223 @@
+package com.flightstats.hub.events;
+
+import com.flightstats.hub.dao.ChannelService;
+import com.flightstats.hub.dao.ItemRequest;
+import com.flightstats.hub.dao.aws.ContentRetriever;
+import com.flightstats.hub.model.Content;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.TimeQuery;
+import com.flightstats.hub.util.TimeUtil;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChannelSubscriptionsTest {
+
+    private static final String CHANNEL = "subscribed";
+
+    @Mock
+    private ContentRetriever contentRetriever;
+    @Mock
+    private ChannelService channelService;
+
+    private final SortedSet<ContentKey> keys = new TreeSet<>();
+    private final DateTime start = TimeUtil.now().minusSeconds(30).withMillisOfSecond(0);
+    private ChannelSubscriptions channelSubscriptions;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 1; i <= 20; i++) {
+            keys.add(new ContentKey(start.plusSeconds(i), "key" + i));
+        }
+        when(contentRetriever.isLiveChannel(CHANNEL)).thenReturn(true);
+        lenient().when(contentRetriever.queryByTime(any())).thenAnswer(invocation -> query(invocation.getArgument(0)));
+        lenient().when(channelService.get(any(ItemRequest.class))).thenAnswer(invocation -> {
+            ItemRequest request = invocation.getArgument(0);
+            return Optional.of(Content.builder().withContentKey(request.getKey()).withData(new byte[0]).build());
+        });
+        channelSubscriptions = new ChannelSubscriptions(contentRetriever, channelService, 1000);
+    }
+
+    @Test
+    void testContentIsReadOnceForAllSubscribers() throws Exception {
+        ContentKey startingKey = new ContentKey(start, "0");
+        Recorder first = new Recorder(true);
+        Recorder second = new Recorder(true);
+        Recorder uris = new Recorder(false);
+        synchronized (channelSubscriptions) {
+            channelSubscriptions.subscribe(CHANNEL, startingKey, first);
+            channelSubscriptions.subscribe(CHANNEL, startingKey, second);
+            channelSubscriptions.subscribe(CHANNEL, startingKey, uris);
+        }
+
+        waitFor(first, keys.size());
+        waitFor(second, keys.size());
+        waitFor(uris, keys.size());
+        List<ContentKey> expected = new ArrayList<>(keys);
+        assertEquals(expected, first.sent);
+        assertEquals(expected, second.sent);
+        assertEquals(expected, uris.sent);
+        verify(channelService, times(keys.size())).get(any(ItemRequest.class));
+        assertEquals(1, channelSubscriptions.getFollowedChannels());
+    }
+
+    @Test
+    void testLateSubscriberCatchesUp() throws Exception {
+        List<ContentKey> all = new ArrayList<>(keys);
+        Recorder first = new Recorder(false);
+        channelSubscriptions.subscribe(CHANNEL, all.get(9), first);
+        waitFor(first, 10);
+
+        Recorder late = new Recorder(false);
+        channelSubscriptions.subscribe(CHANNEL, new ContentKey(start, "0"), late);
+        waitFor(late, keys.size());
+
+        assertEquals(all, late.sent);
+        assertEquals(all.subList(10, all.size()), first.sent);
+    }
+
+    @Test
+    void testFailedSubscriberIsDropped() throws Exception {
+        Recorder failing = new Recorder(false);
+        failing.fail.set(true);
+        ChannelSubscriptions.Subscription subscription = channelSubscriptions.subscribe(CHANNEL, new ContentKey(start, "0"), failing);
+
+        for (int i = 0; i < 50 && channelSubscriptions.getFollowedChannels() > 0; i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(failing.closed.get());
+        assertEquals(0, channelSubscriptions.getFollowedChannels());
+        subscription.close();
+    }
+
+    @Test
+    void testQueryErrorIsRetried() throws Exception {
+        AtomicBoolean failed = new AtomicBoolean();
+        doAnswer(invocation -> {
+            if (failed.compareAndSet(false, true)) {
+                throw new RuntimeException("unavailable");
+            }
+            return query(invocation.getArgument(0));
+        }).when(contentRetriever).queryByTime(any());
+        Recorder recorder = new Recorder(false);
+        channelSubscriptions.subscribe(CHANNEL, new ContentKey(start, "0"), recorder);
+
+        waitFor(recorder, keys.size());
+        assertTrue(failed.get());
+        assertEquals(new ArrayList<>(keys), recorder.sent);
+        assertFalse(recorder.closed.get());
+    }
+
+    @Test
+    void testSlowSubscriberIsDroppedWithoutStallingOthers() throws Exception {
+        channelSubscriptions = new ChannelSubscriptions(contentRetriever, channelService, 5);
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder slow = new Recorder(false) {
+            @Override
+            public void send(ContentKey key, Optional<Content> content) throws Exception {
+                release.await();
+                super.send(key, content);
+            }
+        };
+        Recorder fast = new Recorder(false);
+        // only query once the fast subscriber has sent everything so far, so just the slow one overflows
+        AtomicInteger returned = new AtomicInteger();
+        doAnswer(invocation -> {
+            for (int i = 0; i < 100 && fast.sent.size() < returned.get(); i++) {
+                Thread.sleep(10);
+            }
+            SortedSet<ContentKey> found = query(invocation.getArgument(0));
+            returned.addAndGet(found.size());
+            return found;
+        }).when(contentRetriever).queryByTime(any());
+        ContentKey startingKey = new ContentKey(start, "0");
+        try {
+            synchronized (channelSubscriptions) {
+                channelSubscriptions.subscribe(CHANNEL, startingKey, slow);
+                channelSubscriptions.subscribe(CHANNEL, startingKey, fast);
+            }
+            waitFor(fast, keys.size());
+            assertEquals(new ArrayList<>(keys), fast.sent);
+            assertTrue(slow.closed.get());
+            assertFalse(fast.closed.get());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private SortedSet<ContentKey> query(TimeQuery query) {
+        DateTime queryStart = query.getUnit().round(query.getStartTime());
+        DateTime queryEnd = queryStart.plus(query.getUnit().getDuration());
+        SortedSet<ContentKey> found = new TreeSet<>();
+        for (ContentKey key : keys) {
+            if (!key.getTime().isBefore(queryStart) && key.getTime().isBefore(queryEnd)) {
+                found.add(key);
+            }
+        }
+        return found;
+    }
+
+    private void waitFor(Recorder recorder, int count) throws InterruptedException {
+        for (int i = 0; i < 100 && recorder.sent.size() < count; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(count, recorder.sent.size(), () -> "sent " + recorder.sent);
+    }
+
+    private static class Recorder implements ChannelSubscriber {
+
+        private final boolean needsContent;
+        private final List<ContentKey> sent = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean fail = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Recorder(boolean needsContent) {
+            this.needsContent = needsContent;
+        }
+
+        @Override
+        public void send(ContentKey key, Optional<Content> content) throws Exception {
+            if (fail.get()) {
+                throw new RuntimeException("closed connection");
+            }
+            if (needsContent) {
+                assertEquals(key, content.get().getContentKey().get());
+            }
+            sent.add(key);
+        }
+
+        @Override
+        public boolean needsContent() {
+            return needsContent;
+        }
+
+        @Override
+        public void onClose() {
+            closed.set(true);
+        }
+    }
+}
@@ -8,6 +8,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(MockitoExtension.class)
 class TracesTest {
@@ -23,4 +25,36 @@ class TracesTest {
         assertEquals(102, output.size());
     }
 
-}
\ No newline at end of file
+    @Test
+    void testUnsampledRecordsNothing() {
+        Traces traces = new Traces(new Object[]{"start"}, false);
+        traces.add("ignored");
+        traces.end(200);
+        List<String> output = new ArrayList<>();
+        traces.outputTraces(output::add);
+        assertTrue(output.isEmpty());
+        assertFalse(traces.isRecording());
+    }
+
+    @Test
+    void testUnsampledRecordsWhenSlow() {
+        Traces traces = new Traces(new Object[]{"start"}, false);
+        traces.add("ignored");
+        traces.setStart(System.currentTimeMillis() - 60 * 1000);
+        traces.add("recorded");
+        List<String> output = new ArrayList<>();
+        traces.outputTraces(output::add);
+        assertEquals(2, output.size());
+        assertTrue(output.get(0).contains("recording after"));
+        assertTrue(output.get(1).contains("recorded"));
+    }
+
+    @Test
+    void testIdsAreUnique() {
+        Traces first = Traces.sample("first");
+        Traces second = Traces.sample("second");
+        assertTrue(second.getId() > first.getId());
+        assertTrue(new Traces("always").isRecording());
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.flightstats.hub.model;
 
 import com.flightstats.hub.channel.ChannelValidator;
+import com.flightstats.hub.dao.ContentCodec;
 import com.flightstats.hub.dao.Dao;
 import com.flightstats.hub.exception.InvalidRequestException;
 import com.flightstats.hub.util.TimeUtil;
@@ -109,6 +110,18 @@ class ChannelConfigTest {
         assertEquals(config, copy);
     }
 
+    @Test
+    void testCompression() {
+        assertEquals(ContentCodec.ZIP, ChannelConfig.builder().build().getCodec());
+        ChannelConfig config = ChannelConfig.builder().compression("fast").build();
+        assertEquals("FAST", config.getCompression());
+        assertEquals(ContentCodec.FAST, config.getCodec());
+        assertEquals(config, config.toBuilder().build());
+        ChannelConfig updated = ChannelConfig.updateFromJson(config, "{\"compression\": \"none\"}");
+        assertEquals(ContentCodec.NONE, updated.getCodec());
+        assertFalse(ChannelConfig.builder().compression("lzma").build().isValidCompression());
+    }
+
     @Test
     void testHasChanged() {
         ChannelConfig defaults = ChannelConfig.builder().name("defaults").build();
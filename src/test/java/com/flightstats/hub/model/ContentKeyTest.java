@@ -2,6 +2,7 @@ package com.flightstats.hub.model;
 
 import com.flightstats.hub.util.TimeUtil;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.junit.jupiter.api.Test;
 
 import java.util.TreeSet;
@@ -74,5 +75,43 @@ class ContentKeyTest {
         ContentKey nextMinute = new ContentKey(minutePath.getTime().plusMinutes(1), "0");
         assertTrue(nextMinute.compareTo(minutePath) > 0);
     }
-}
 
+    @Test
+    void testUrlMatchesTimeUtil() {
+        DateTime[] times = {TimeUtil.now(), new DateTime(5, 1, 2, 3, 4, 5, 6, DateTimeZone.UTC),
+                new DateTime(1970, 1, 1, 0, 0, 0, 0, DateTimeZone.UTC), new DateTime(2015, 12, 31, 23, 59, 59, 999, DateTimeZone.UTC)};
+        for (DateTime time : times) {
+            ContentKey key = new ContentKey(time, "hash");
+            assertEquals(TimeUtil.millis(time) + "hash", key.toUrl());
+            assertEquals(key, ContentKey.fromUrl(key.toUrl()).get());
+        }
+    }
+
+    @Test
+    void testInvalidUrl() {
+        assertFalse(ContentKey.fromUrl("2015/01/23/21/11/19/407").isPresent());
+        assertFalse(ContentKey.fromUrl("2015/01/23/21/1a/19/407/hash").isPresent());
+        assertFalse(ContentKey.fromUrl("2015/02/30/21/11/19/407/hash").isPresent());
+        assertFalse(ContentKey.fromUrl("latest/2015/01/23/21/11/19").isPresent());
+    }
+
+    @Test
+    void testEqualsIgnoresZone() {
+        DateTime now = TimeUtil.now();
+        ContentKey utc = new ContentKey(now, "A");
+        ContentKey local = new ContentKey(now.withZone(DateTimeZone.forOffsetHours(-7)), "A");
+        assertEquals(utc, local);
+        assertEquals(utc.hashCode(), local.hashCode());
+        assertEquals(utc.toUrl(), local.toUrl());
+        assertEquals(DateTimeZone.UTC, local.getTime().getZone());
+    }
+
+    @Test
+    void testBulkKey() {
+        ContentKey master = new ContentKey(TimeUtil.now(), "bulk");
+        assertEquals("bulk000000", ContentKey.bulkKey(master, 0).getHash());
+        assertEquals("bulk000042", ContentKey.bulkKey(master, 42).getHash());
+        assertEquals("bulk1234567", ContentKey.bulkKey(master, 1234567).getHash());
+        assertEquals(master.getMillis(), ContentKey.bulkKey(master, 1).getMillis());
+    }
+}
@@ -0,0 +1,94 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.metrics.StatsdReporter;
+import com.flightstats.hub.metrics.Traces;
+import com.flightstats.hub.rest.RestClient;
+import com.google.common.io.ByteStreams;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class AsyncSpokeWriterTest {
+
+    private static final byte[] BYTES = new byte[]{0, 2, 3, 4, 5, 6};
+    private static final List<String> paths = new CopyOnWriteArrayList<>();
+    private static final List<byte[]> payloads = new CopyOnWriteArrayList<>();
+    private static Server server;
+    private static HttpClient httpClient;
+    private static String good;
+    private static String bad;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+                paths.add(target);
+                payloads.add(ByteStreams.toByteArray(request.getInputStream()));
+                response.setStatus(target.contains("fail") ? 500 : 201);
+                baseRequest.setHandled(true);
+            }
+        });
+        server.start();
+        good = "localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        bad = "localhost:1";
+        httpClient = RestClient.createAsyncClient("AsyncSpokeWriterTest", 1, 4, 8);
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        httpClient.stop();
+        server.stop();
+    }
+
+    @Test
+    void testQuorum() {
+        StatsdReporter statsdReporter = mock(StatsdReporter.class);
+        AsyncSpokeWriter writer = new AsyncSpokeWriter(httpClient, statsdReporter, "http://", 5);
+        Traces traces = new Traces("testQuorum");
+        assertTrue(writer.insert(SpokeStore.WRITE, "testQuorum/2014/11/18/00/57/24/015/A", BYTES,
+                Arrays.asList(good, bad), traces, "payload", "testQuorum"));
+        assertTrue(paths.contains("/internal/spoke/write/payload/testQuorum/2014/11/18/00/57/24/015/A"));
+        assertArrayEquals(BYTES, payloads.get(paths.indexOf("/internal/spoke/write/payload/testQuorum/2014/11/18/00/57/24/015/A")));
+        verify(statsdReporter, times(1)).time(eq("testQuorum"), eq("heisenberg"), anyLong());
+        verify(statsdReporter, times(1)).time(eq("testQuorum"), eq("consistent"), anyLong());
+    }
+
+    @Test
+    void testFailure() {
+        StatsdReporter statsdReporter = mock(StatsdReporter.class);
+        AsyncSpokeWriter writer = new AsyncSpokeWriter(httpClient, statsdReporter, "http://", 5);
+        long start = System.currentTimeMillis();
+        assertFalse(writer.insert(SpokeStore.WRITE, "fail/2014/11/18/00/57/24/015/A", BYTES,
+                Collections.singletonList(good), new Traces("testFailure"), "payload", "fail"));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        verify(statsdReporter, times(0)).time(eq("fail"), eq("heisenberg"), anyLong());
+        verify(statsdReporter, times(1)).time(eq("fail"), eq("consistent"), anyLong());
+        assertEquals(1, paths.stream().filter(path -> path.contains("fail")).count());
+    }
+}
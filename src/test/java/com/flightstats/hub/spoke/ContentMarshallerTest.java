@@ -1,5 +1,6 @@
 package com.flightstats.hub.spoke;
 
+import com.flightstats.hub.dao.ContentCodec;
 import com.flightstats.hub.dao.ContentMarshaller;
 import com.flightstats.hub.model.Content;
 import com.flightstats.hub.model.ContentKey;
@@ -8,6 +9,7 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -62,6 +64,41 @@ class ContentMarshallerTest {
         verify(content, 1024);
     }
 
+    @Test
+    void testEachCodec() throws IOException {
+        int size = 100 * 1024;
+        for (ContentCodec codec : ContentCodec.values()) {
+            Content content = getContent(size);
+            content.setCodec(codec);
+            byte[] bytes = ContentMarshaller.toBytes(content);
+            Content cycled = ContentMarshaller.toContent(bytes, content.getContentKey().get());
+            assertEquals(codec, cycled.getCodec());
+            assertEquals(content.getContentType(), cycled.getContentType());
+            assertEquals(size, cycled.getSize().longValue());
+            assertEquals(size, cycled.getData().length);
+        }
+    }
+
+    @Test
+    void testCodecMarker() throws IOException {
+        Content zip = getContent(1024);
+        assertEquals('P', ContentMarshaller.toBytes(zip)[0]);
+        Content none = getContent(1024);
+        byte[] bytes = ContentMarshaller.toBytes(none, ContentCodec.NONE);
+        assertEquals('H', bytes[0]);
+        assertTrue(bytes.length > 1024);
+    }
+
+    @Test
+    void testRemarshalKeepsCodec() throws IOException {
+        Content content = getContent(10 * 1024);
+        content.setCodec(ContentCodec.FAST);
+        byte[] bytes = ContentMarshaller.toBytes(content);
+        Content read = ContentMarshaller.toContent(bytes, content.getContentKey().get());
+        read.packageStream();
+        assertArrayEquals(bytes, read.getData());
+    }
+
     private void verify(Content content, int size) throws IOException {
         Content cycled = ContentMarshaller.toContent(ContentMarshaller.toBytes(content), content.getContentKey().get());
         assertTrue(content.equals(cycled));
@@ -2,7 +2,10 @@ package com.flightstats.hub.spoke;
 
 import com.flightstats.hub.dao.ContentKeyUtil;
 import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.MinutePath;
 import com.flightstats.hub.util.TimeUtil;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.io.Files;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
@@ -13,13 +16,20 @@ import org.junit.jupiter.api.Test;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -34,7 +44,8 @@ class FileSpokeStoreTest {
     @BeforeEach
     void setUp() {
         tempDir = Files.createTempDir().getPath();
-        spokeStore = new FileSpokeStore(tempDir, ttlMinutes);
+        spokeStore = new FileSpokeStore(tempDir, ttlMinutes, SpokeStorageMode.FILE, new SpokeItemIndex(tempDir));
+        spokeStore.getItemIndex().rebuild();
     }
 
     @Test
@@ -233,6 +244,61 @@ class FileSpokeStoreTest {
         assertTrue(found.contains(name + "/" + contentKeyC.toUrl()));
     }
 
+    @Test
+    void testSparseNextAndLatest() throws IOException {
+        String name = "testSparseNextAndLatest";
+        DateTime startTime = TimeUtil.now().minusYears(3);
+        ContentKey first = new ContentKey(startTime, "A");
+        ContentKey second = new ContentKey(startTime.plusYears(2), "B");
+        ContentKey third = new ContentKey(TimeUtil.now().minusMinutes(5), "C");
+        for (ContentKey key : Arrays.asList(first, second, third)) {
+            spokeStore.insert(name + "/" + key.toUrl(), BYTES);
+        }
+
+        List<String> found = getNextTesting(name, new ContentKey(startTime.minusMinutes(1), "A").toUrl(), 2);
+        assertEquals(Arrays.asList(name + "/" + first.toUrl(), name + "/" + second.toUrl()), found);
+
+        String latest = spokeStore.getLatest(name, ContentKey.lastKey(TimeUtil.now()).toUrl());
+        assertEquals(name + "/" + third.toUrl(), latest);
+        assertNull(spokeStore.getLatest(name, third.toUrl()));
+    }
+
+    @Test
+    void testNextAndLatestBeforeIndexRebuilt() throws IOException {
+        spokeStore = new FileSpokeStore(tempDir, ttlMinutes, SpokeStorageMode.FILE, new SpokeItemIndex(tempDir));
+        String name = "testNextAndLatestBeforeIndexRebuilt";
+        DateTime startTime = TimeUtil.now().minusMinutes(20);
+        ContentKey first = new ContentKey(startTime, "A");
+        ContentKey second = new ContentKey(startTime.plusMinutes(10), "B");
+        spokeStore.insert(name + "/" + first.toUrl(), BYTES);
+        spokeStore.insert(name + "/" + second.toUrl(), BYTES);
+        assertFalse(spokeStore.getItemIndex().isRebuilt());
+
+        List<String> found = getNextTesting(name, new ContentKey(startTime.minusMinutes(1), "A").toUrl(), 2);
+        assertEquals(Arrays.asList(name + "/" + first.toUrl(), name + "/" + second.toUrl()), found);
+        assertEquals(name + "/" + second.toUrl(), spokeStore.getLatest(name, ContentKey.lastKey(TimeUtil.now()).toUrl()));
+    }
+
+    @Test
+    void testMinuteDigestsFollowInsertsAndDeletes() throws Exception {
+        String name = "testMinuteDigests";
+        MinutePath hour = new MinutePath(TimeUtil.Unit.HOURS.round(TimeUtil.now().minusHours(1)));
+        ContentKey first = new ContentKey(hour.getTime().plusMinutes(5), "A");
+        ContentKey second = new ContentKey(hour.getTime().plusMinutes(5).plusSeconds(1), "B");
+        MinutePath minute = new MinutePath(first.getTime());
+        spokeStore.insert(name + "/" + first.toUrl(), BYTES);
+
+        SpokeMinuteDigests digests = spokeStore.readMinuteDigests(name, hour);
+        assertEquals(SpokeMinuteDigests.of(Arrays.asList(first)).getDigests(), digests.getDigests());
+
+        spokeStore.insert(name + "/" + second.toUrl(), BYTES);
+        assertEquals(SpokeMinuteDigests.of(Arrays.asList(first, second)).get(minute), spokeStore.readMinuteDigests(name, hour).get(minute));
+
+        assertTrue(spokeStore.deleteFile(name + "/" + first.toUrl()));
+        assertTrue(spokeStore.deleteFile(name + "/" + second.toUrl()));
+        assertTrue(spokeStore.readMinuteDigests(name, hour).getDigests().isEmpty());
+    }
+
     List<String> getNextTesting(String channel, String startKey, int count) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         spokeStore.getNext(channel, startKey, count, baos);
@@ -338,6 +404,152 @@ class FileSpokeStoreTest {
         }
     }
 
+    @Test
+    void testSegmentWriteRead() throws Exception {
+        FileSpokeStore segmentStore = new FileSpokeStore(tempDir, ttlMinutes, SpokeStorageMode.SEGMENT);
+        String path1 = "testSegment/2014/11/18/00/57/24/015/1";
+        String path2 = "testSegment/2014/11/18/00/57/24/015/2";
+        String path3 = "testSegment/2014/11/18/00/57/25/015/3";
+        assertTrue(segmentStore.insert(path1, BYTES));
+        assertTrue(segmentStore.insert(path2, new byte[]{9, 8}));
+        assertTrue(segmentStore.insert(path3, BYTES));
+
+        assertArrayEquals(BYTES, segmentStore.read(path1));
+        assertArrayEquals(new byte[]{9, 8}, segmentStore.read(path2));
+        String[] minuteFiles = new File(tempDir + "/testSegment/2014/11/18/00/57").list();
+        assertEquals(2, minuteFiles.length);
+
+        assertEquals(3, segmentStore.getKeysInBucketArray("/testSegment/2014/11/18/00/57").size());
+        assertEquals(2, segmentStore.getKeysInBucketArray("/testSegment/2014/11/18/00/57/24").size());
+        assertEquals(3, segmentStore.getKeysInBucketArray("/testSegment/2014/11/18").size());
+
+        assertTrue(segmentStore.deleteFile(path2));
+        Collection<String> keys = segmentStore.getKeysInBucketArray("/testSegment/2014/11/18/00/57");
+        assertEquals(2, keys.size());
+        assertTrue(keys.contains(path1));
+        assertTrue(keys.contains(path3));
+    }
+
+    @Test
+    void testSegmentTruncatesPartialIndexEntry() throws Exception {
+        FileSpokeStore segmentStore = new FileSpokeStore(tempDir, ttlMinutes, SpokeStorageMode.SEGMENT);
+        String path1 = "testSegmentPartial/2014/11/18/00/57/24/015/1";
+        String path2 = "testSegmentPartial/2014/11/18/00/57/25/015/2";
+        assertTrue(segmentStore.insert(path1, BYTES));
+        SpokeSegment.sealAll();
+        File index = new File(tempDir + "/testSegmentPartial/2014/11/18/00/57/" + SpokeSegment.INDEX_FILE);
+        java.nio.file.Files.write(index.toPath(), new byte[]{0, 9, 'p', 'a'}, StandardOpenOption.APPEND);
+
+        assertTrue(segmentStore.insert(path2, new byte[]{9, 8}));
+        SpokeSegment.sealAll();
+
+        assertArrayEquals(BYTES, segmentStore.read(path1));
+        assertArrayEquals(new byte[]{9, 8}, segmentStore.read(path2));
+        assertEquals(2, segmentStore.getKeysInBucketArray("/testSegmentPartial/2014/11/18/00/57").size());
+    }
+
+    @Test
+    void testSegmentReadsFiles() {
+        String fileKey = "testSegmentReadsFiles/2014/11/18/00/57/24/015/1";
+        String segmentKey = "testSegmentReadsFiles/2014/11/18/00/57/24/016/2";
+        assertTrue(spokeStore.insert(fileKey, BYTES));
+        FileSpokeStore segmentStore = new FileSpokeStore(tempDir, ttlMinutes, SpokeStorageMode.SEGMENT);
+        assertTrue(segmentStore.insert(segmentKey, BYTES));
+
+        assertArrayEquals(BYTES, segmentStore.read(fileKey));
+        assertArrayEquals(BYTES, spokeStore.read(segmentKey));
+        Collection<String> keys = spokeStore.getKeysInBucketArray("/testSegmentReadsFiles/2014/11/18/00/57/24");
+        assertEquals(2, keys.size());
+        assertTrue(keys.contains(fileKey));
+        assertTrue(keys.contains(segmentKey));
+    }
+
+    @Test
+    void testRetiredSegmentAppendsThroughCurrent() throws Exception {
+        File minute = new File(tempDir + "/testSegmentRetired/2014/11/18/00/57");
+        SpokeSegment retired = SpokeSegment.of(minute);
+        SpokeSegment.sealAll();
+
+        assertTrue(retired.append("24015a", BYTES));
+        assertTrue(SpokeSegment.of(minute).append("24016b", new byte[]{9, 8}));
+        assertTrue(retired.append("24017c", new byte[]{7}));
+
+        assertEquals(Arrays.asList("24015a", "24016b", "24017c"), Lists.newArrayList(SpokeSegment.of(minute).names()));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertTrue(SpokeSegment.of(minute).read("24016b", output));
+        assertArrayEquals(new byte[]{9, 8}, output.toByteArray());
+        assertEquals(BYTES.length + 3, new File(minute, SpokeSegment.DATA_FILE).length());
+    }
+
+    @Test
+    void testConcurrentAppendsWhileSealing() throws Exception {
+        File minute = new File(tempDir + "/testSegmentSealing/2014/11/18/00/57");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicBoolean appending = new AtomicBoolean(true);
+        Future<?> sealer = Executors.newSingleThreadExecutor().submit(() -> {
+            while (appending.get()) {
+                SpokeSegment.sealAll();
+            }
+        });
+        List<Future<?>> writers = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            int writer = thread;
+            writers.add(executor.submit(() -> {
+                SpokeSegment segment = SpokeSegment.of(minute);
+                for (int i = 0; i < 100; i++) {
+                    segment.append(writer + "-" + i, new byte[]{(byte) writer, (byte) i});
+                }
+                return null;
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get(30, TimeUnit.SECONDS);
+        }
+        appending.set(false);
+        sealer.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        SpokeSegment.sealAll();
+        SpokeSegment segment = SpokeSegment.of(minute);
+        assertEquals(400, Iterables.size(segment.names()));
+        for (int writer = 0; writer < 4; writer++) {
+            for (int i = 0; i < 100; i++) {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                assertTrue(segment.read(writer + "-" + i, output));
+                assertArrayEquals(new byte[]{(byte) writer, (byte) i}, output.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    void testFileModeSkipsSegments() throws Exception {
+        String path = "testFileModeSkipsSegments/2014/11/18/00/57/24/015/1";
+        assertTrue(spokeStore.insert(path, BYTES));
+        assertArrayEquals(BYTES, spokeStore.read(path));
+        assertEquals(1, spokeStore.getKeysInBucketArray("/testFileModeSkipsSegments/2014/11/18/00/57").size());
+        assertTrue(spokeStore.deleteFile(path));
+
+        assertFalse(SpokeSegment.find(new File(tempDir + "/testFileModeSkipsSegments/2014/11/18/00/57")).isPresent());
+    }
+
+    @Test
+    void testSegmentLatestAndNext() throws IOException {
+        spokeStore = new FileSpokeStore(tempDir, ttlMinutes, SpokeStorageMode.SEGMENT);
+        String name = "testSegmentLatestAndNext";
+        DateTime startTime = TimeUtil.now().minusMinutes(30);
+        DateTime time = startTime;
+        for (int i = 0; i < 10; i++) {
+            time = time.plusMinutes(1);
+            assertTrue(spokeStore.insert(name + "/" + new ContentKey(time, "A").toUrl(), BYTES));
+            assertTrue(spokeStore.insert(name + "/" + new ContentKey(time, "B").toUrl(), BYTES));
+        }
+        String latest = spokeStore.getLatest(name, ContentKey.lastKey(time.plusMinutes(1)).toUrl());
+        assertEquals(name + "/" + new ContentKey(time, "B").toUrl(), latest);
+
+        List<String> found = getNextTesting(name, new ContentKey(startTime, "A").toUrl(), 20);
+        assertEquals(20, found.size());
+    }
+
     private void enforceVerify(String channel, DateTime startTime) {
         DateTime time = startTime;
         String startQuery = TimeUtil.hours(time);
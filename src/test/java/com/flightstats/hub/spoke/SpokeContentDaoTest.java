@@ -1,68 +1,65 @@
 package com.flightstats.hub.spoke;
 
-import com.flightstats.hub.config.properties.SpokeProperties;
-import com.flightstats.hub.metrics.ActiveTraces;
 import com.flightstats.hub.model.ChannelContentKey;
 import com.flightstats.hub.model.ContentKey;
-import com.flightstats.hub.util.Commander;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.junit.jupiter.api.parallel.Execution;
-import org.junit.jupiter.api.parallel.ExecutionMode;
-import org.mockito.Mock;
-import org.mockito.junit.jupiter.MockitoExtension;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.File;
 import java.util.Optional;
 
-import static com.flightstats.hub.constant.ContentConstant.GET_ITEM_COUNT_COMMAND;
-import static com.flightstats.hub.constant.ContentConstant.GET_OLDEST_ITEM_COMMAND;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.Mockito.when;
 
-@Execution(ExecutionMode.SAME_THREAD)
-@ExtendWith(MockitoExtension.class)
 class SpokeContentDaoTest {
-    @Mock
-    private Commander commander;
-    @Mock
-    private SpokeProperties spokeProperties;
-    private SpokeStore spokeStore = SpokeStore.WRITE;;
-    private String getOldestItemCommand;
-    private String getItemCountCommand;
+
+    private static final byte[] BYTES = new byte[]{0, 2, 3, 4, 5, 6};
+
+    @TempDir
+    File writeDirectory;
+    @TempDir
+    File readDirectory;
+    private FileSpokeStore writeSpokeStore;
+    private FileSpokeStore readSpokeStore;
     private SpokeContentDao spokeContentDao;
 
     @BeforeEach
     void initialize() {
-        final String spokeStorePath = spokeProperties.getPath(spokeStore);
-        getOldestItemCommand = String.format(GET_OLDEST_ITEM_COMMAND, spokeStorePath);
-        getItemCountCommand = String.format(GET_ITEM_COUNT_COMMAND, spokeStorePath);
-        spokeContentDao = new SpokeContentDao(commander, spokeProperties);
+        writeSpokeStore = new FileSpokeStore(writeDirectory.getPath(), 60, SpokeStorageMode.FILE, new SpokeItemIndex(writeDirectory.getPath()));
+        readSpokeStore = new FileSpokeStore(readDirectory.getPath(), 60, SpokeStorageMode.FILE, new SpokeItemIndex(readDirectory.getPath()));
+        spokeContentDao = new SpokeContentDao(() -> readSpokeStore, () -> writeSpokeStore);
+        writeSpokeStore.getItemIndex().rebuild();
+        readSpokeStore.getItemIndex().rebuild();
     }
 
     @Test
     void getOldestItemDoesExist() {
-        when(commander.runInBash(getOldestItemCommand, 3)).thenReturn("1999-12-31+23:59:59.9999999999 /spoke/write/foo/1999/12/31/23/59/59999l33t");
-        Optional<ChannelContentKey> potentialKey = spokeContentDao.getOldestItem(spokeStore);
+        ContentKey oldest = new ContentKey(1999, 12, 31, 23, 59, 59, 999, "l33t");
+        assertTrue(writeSpokeStore.insert("foo/" + oldest.toUrl(), BYTES));
+        assertTrue(writeSpokeStore.insert("bar/" + new ContentKey(2000, 1, 1, 0, 0, 0, 0, "next").toUrl(), BYTES));
+        Optional<ChannelContentKey> potentialKey = spokeContentDao.getOldestItem(SpokeStore.WRITE);
         assertTrue(potentialKey.isPresent());
         ChannelContentKey key = potentialKey.get();
         assertEquals("foo", key.getChannel());
-        assertEquals(new ContentKey(1999, 12, 31, 23, 59, 59, 999, "l33t"), key.getContentKey());
+        assertEquals(oldest, key.getContentKey());
     }
 
     @Test
-    void getOldestItemDoesNotExist() {
-        when(commander.runInBash(getOldestItemCommand, 3)).thenReturn("");
-        Optional<ChannelContentKey> potentialKey = spokeContentDao.getOldestItem(spokeStore);
+    void getOldestItemDoesNotExist() throws Exception {
+        assertTrue(readSpokeStore.delete("hub-startup"));
+        Optional<ChannelContentKey> potentialKey = spokeContentDao.getOldestItem(SpokeStore.READ);
         assertFalse(potentialKey.isPresent());
     }
 
     @Test
     void getNumberOfItems() {
-        when(commander.runInBash(getItemCountCommand, 1)).thenReturn("12345");
-        assertEquals(12345, spokeContentDao.getNumberOfItems(spokeStore));
+        long startup = spokeContentDao.getNumberOfItems(SpokeStore.WRITE).get();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(writeSpokeStore.insert("foo/" + new ContentKey().toUrl(), BYTES));
+        }
+        assertEquals(Optional.of(startup + 5), spokeContentDao.getNumberOfItems(SpokeStore.WRITE));
     }
 
 }
@@ -0,0 +1,140 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.model.ContentKey;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpokeItemIndexTest {
+
+    private static final byte[] BYTES = new byte[]{0, 2, 3, 4, 5, 6};
+    private static final DateTime START = new DateTime(2019, 3, 1, 12, 30, DateTimeZone.UTC);
+
+    @TempDir
+    File spokeDirectory;
+    private FileSpokeStore fileSpokeStore;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fileSpokeStore = new FileSpokeStore(spokeDirectory.getPath(), 60, SpokeStorageMode.FILE, new SpokeItemIndex(spokeDirectory.getPath()));
+        fileSpokeStore.getItemIndex().rebuild();
+        fileSpokeStore.delete("hub-startup");
+    }
+
+    @Test
+    void testRebuildMatchesInserts() {
+        insert("first", START, 3);
+        insert("second", START.plusMinutes(1), 4);
+        FileSpokeStore segmentStore = new FileSpokeStore(spokeDirectory.getPath(), 60, SpokeStorageMode.SEGMENT);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(segmentStore.insert("segmented/" + new ContentKey(START.plusMinutes(2), "s" + i).toUrl(), BYTES));
+        }
+
+        SpokeItemIndex rebuilt = new SpokeItemIndex(spokeDirectory.getPath());
+        rebuilt.rebuild();
+
+        assertTrue(rebuilt.isRebuilt());
+        assertEquals(Optional.of(13L), rebuilt.getNumberOfItems());
+        assertEquals("first", rebuilt.getOldestItem().get().getChannel());
+    }
+
+    @Test
+    void testDeletes() throws Exception {
+        ContentKey first = insert("first", START, 3);
+        insert("second", START.minusDays(1), 2);
+        SpokeItemIndex itemIndex = fileSpokeStore.getItemIndex();
+        assertEquals(Optional.of(5L), itemIndex.getNumberOfItems());
+        assertEquals("second", itemIndex.getOldestItem().get().getChannel());
+
+        assertTrue(fileSpokeStore.delete("second"));
+        assertEquals(Optional.of(3L), itemIndex.getNumberOfItems());
+        assertEquals(first, itemIndex.getOldestItem().get().getContentKey());
+
+        assertTrue(fileSpokeStore.deleteFile("first/" + first.toUrl()));
+        assertEquals(Optional.of(2L), itemIndex.getNumberOfItems());
+    }
+
+    @Test
+    void testOverwritesAndEmptyMinutes() throws Exception {
+        ContentKey key = insert("overwritten", START, 1);
+        assertTrue(fileSpokeStore.insert("overwritten/" + key.toUrl(), BYTES));
+        SpokeItemIndex itemIndex = fileSpokeStore.getItemIndex();
+        assertEquals(Optional.of(1L), itemIndex.getNumberOfItems());
+
+        assertTrue(fileSpokeStore.deleteFile("overwritten/" + key.toUrl()));
+        assertEquals(Optional.of(0L), itemIndex.getNumberOfItems());
+        assertFalse(itemIndex.nextMinute("overwritten", 0).isPresent());
+    }
+
+    @Test
+    void testPrefixDeleteOnlyRemovesItsRange() throws Exception {
+        insert("hours", START, 2);
+        insert("hours", START.plusHours(1), 3);
+        SpokeItemIndex itemIndex = fileSpokeStore.getItemIndex();
+
+        assertTrue(fileSpokeStore.delete("hours/2019/03/01/12"));
+
+        assertEquals(Optional.of(3L), itemIndex.getNumberOfItems());
+        assertEquals(Optional.of(START.plusHours(1).getMillis()), itemIndex.nextMinute("hours", 0));
+    }
+
+    @Test
+    void testRebuildKeepsInsertsMadeWhileListing() {
+        insert("racing", START, 2);
+        ContentKey late = new ContentKey(START.plusSeconds(1), "late");
+        SpokeItemIndex racing = new SpokeItemIndex(spokeDirectory.getPath()) {
+            @Override
+            long countItems(File minuteDirectory) {
+                long count = super.countItems(minuteDirectory);
+                assertTrue(fileSpokeStore.insert("racing/" + late.toUrl(), BYTES));
+                added("racing/" + late.toUrl());
+                return count;
+            }
+        };
+
+        racing.rebuild();
+
+        assertEquals(Optional.of(3L), racing.getNumberOfItems());
+        assertEquals(Optional.of(START.getMillis()), racing.nextMinute("racing", 0));
+    }
+
+    @Test
+    void testCountUnknownUntilRebuilt() {
+        assertFalse(new SpokeItemIndex(spokeDirectory.getPath()).getNumberOfItems().isPresent());
+    }
+
+    @Test
+    void testTtlWalkerDeletes() {
+        insert("walked", START.minusMinutes(2), 3);
+        ContentKey remaining = insert("walked", START, 2);
+        SpokeItemIndex itemIndex = fileSpokeStore.getItemIndex();
+
+        new SpokeTtlWalker(1_000_000).deleteBefore(new File(spokeDirectory, "walked"), START, itemIndex);
+
+        assertEquals(Optional.of(2L), itemIndex.getNumberOfItems());
+        assertEquals(remaining.getTime(), itemIndex.getOldestItem().get().getContentKey().getTime());
+
+        new SpokeTtlWalker(1_000_000).delete(new File(spokeDirectory, "walked"), itemIndex);
+        assertEquals(Optional.of(0L), itemIndex.getNumberOfItems());
+        assertFalse(itemIndex.getOldestItem().isPresent());
+    }
+
+    private ContentKey insert(String channel, DateTime time, int count) {
+        ContentKey first = null;
+        for (int i = 0; i < count; i++) {
+            ContentKey key = new ContentKey(time, "hash" + i);
+            assertTrue(fileSpokeStore.insert(channel + "/" + key.toUrl(), BYTES));
+            first = first == null ? key : first;
+        }
+        return first;
+    }
+}
@@ -0,0 +1,58 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.dao.ContentKeyUtil;
+import com.flightstats.hub.model.ContentKey;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpokeKeyCodecTest {
+
+    @Test
+    void testBinaryRoundTrip() throws Exception {
+        DateTime start = new DateTime(2014, 11, 18, 0, 57, 24, 15, DateTimeZone.UTC);
+        List<ContentKey> expected = new ArrayList<>();
+        expected.add(new ContentKey(start, "NV2cl5"));
+        expected.add(new ContentKey(start.minusDays(3), "A"));
+        expected.add(new ContentKey(start.plusMillis(1), "B000001"));
+        expected.add(new ContentKey(start.plusYears(2), "~ZZZZ"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SpokeKeyCodec.KeyWriter writer = SpokeKeyCodec.binaryWriter(output);
+        for (ContentKey key : expected) {
+            writer.write("channel/" + key.toUrl());
+        }
+
+        List<ContentKey> keys = new ArrayList<>();
+        SpokeKeyCodec.readKeys(new ByteArrayInputStream(output.toByteArray()), keys);
+        assertEquals(expected, keys);
+        assertTrue(output.size() < 60);
+    }
+
+    @Test
+    void testEmpty() throws Exception {
+        List<ContentKey> keys = new ArrayList<>();
+        SpokeKeyCodec.readKeys(new ByteArrayInputStream(new byte[0]), keys);
+        assertTrue(keys.isEmpty());
+    }
+
+    @Test
+    void testText() throws Exception {
+        ContentKey key = new ContentKey(2014, 11, 18, 0, 57, 24, 15, "NV2cl5");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SpokeKeyCodec.textWriter(output).write("channel/" + key.toUrl());
+
+        List<ContentKey> keys = new ArrayList<>();
+        ContentKeyUtil.convertKeyStrings(output.toString(), keys);
+        assertEquals(1, keys.size());
+        assertEquals(key, keys.get(0));
+    }
+}
@@ -0,0 +1,54 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.MinutePath;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class SpokeMinuteDigestsTest {
+
+    private final DateTime minute = new DateTime(2019, 5, 1, 10, 30, DateTimeZone.UTC);
+    private final ContentKey first = new ContentKey(minute.plusSeconds(1), "first");
+    private final ContentKey second = new ContentKey(minute.plusSeconds(2), "second");
+    private final ContentKey later = new ContentKey(minute.plusMinutes(1), "later");
+
+    @Test
+    void testOrderIndependent() {
+        SpokeMinuteDigests forward = SpokeMinuteDigests.of(Arrays.asList(first, second, later));
+        SpokeMinuteDigests reverse = SpokeMinuteDigests.of(Arrays.asList(later, second, first));
+        assertEquals(forward.getDigests(), reverse.getDigests());
+        assertEquals(2, forward.getDigests().size());
+        assertEquals(2, forward.get(new MinutePath(minute)).get().getCount());
+    }
+
+    @Test
+    void testDifferentKeys() {
+        SpokeMinuteDigests digests = SpokeMinuteDigests.of(Arrays.asList(first, second));
+        SpokeMinuteDigests other = SpokeMinuteDigests.of(Arrays.asList(first, new ContentKey(minute.plusSeconds(2), "other")));
+        assertNotEquals(digests.get(new MinutePath(minute)), other.get(new MinutePath(minute)));
+        assertFalse(digests.get(new MinutePath(minute.plusMinutes(1))).isPresent());
+    }
+
+    @Test
+    void testRoundTrip() throws Exception {
+        SpokeMinuteDigests digests = new SpokeMinuteDigests();
+        digests.write("channel/" + first.toUrl());
+        digests.write("channel/" + second.toUrl());
+        digests.write("channel/" + later.toUrl());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        digests.writeTo(output);
+        SpokeMinuteDigests read = SpokeMinuteDigests.read(new ByteArrayInputStream(output.toByteArray()));
+
+        assertEquals(SpokeMinuteDigests.of(Arrays.asList(first, second, later)).getDigests(), read.getDigests());
+    }
+}
@@ -0,0 +1,123 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.model.ContentKey;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpokeTtlWalkerTest {
+
+    private static final byte[] BYTES = new byte[]{0, 2, 3, 4, 5, 6};
+    private static final String CHANNEL = "walked";
+
+    @TempDir
+    File spokeDirectory;
+    private FileSpokeStore fileSpokeStore;
+    private SpokeTtlWalker walker;
+
+    @BeforeEach
+    void setUp() {
+        fileSpokeStore = new FileSpokeStore(spokeDirectory.getPath(), 60);
+        walker = new SpokeTtlWalker(1_000_000);
+    }
+
+    @Test
+    void testDeleteBeforeAcrossBuckets() {
+        DateTime ttl = new DateTime(2019, 3, 1, 12, 30, DateTimeZone.UTC);
+        ContentKey lastYear = insert(ttl.minusYears(1));
+        ContentKey lastHour = insert(ttl.minusHours(1));
+        ContentKey expired = insert(ttl.minusMinutes(1).plusSeconds(59));
+        ContentKey current = insert(ttl.plusSeconds(1));
+        ContentKey later = insert(ttl.plusDays(1));
+
+        SpokeTtlWalker.Deleted deleted = walker.deleteBefore(new File(spokeDirectory, CHANNEL), ttl, SpokeTtlWalker.Listener.NONE);
+
+        assertEquals(3, deleted.getItems());
+        assertEquals(3 * BYTES.length, deleted.getBytes());
+        assertFalse(exists(lastYear));
+        assertFalse(exists(lastHour));
+        assertFalse(exists(expired));
+        assertTrue(exists(current));
+        assertTrue(exists(later));
+        assertFalse(new File(spokeDirectory, CHANNEL + "/2018").exists());
+        assertEquals(ttl.getMillis() - new DateTime(2019, 1, 1, 0, 0, DateTimeZone.UTC).getMillis(), deleted.getLagMillis());
+        assertEquals(0, walker.deleteBefore(new File(spokeDirectory, CHANNEL), ttl, SpokeTtlWalker.Listener.NONE).getItems());
+    }
+
+    @Test
+    void testDeleteBeforeSegments() {
+        FileSpokeStore segmentStore = new FileSpokeStore(spokeDirectory.getPath(), 60, SpokeStorageMode.SEGMENT);
+        DateTime ttl = new DateTime(2019, 3, 1, 12, 30, DateTimeZone.UTC);
+        for (int i = 0; i < 5; i++) {
+            segmentStore.insert(CHANNEL + "/" + new ContentKey(ttl.minusMinutes(2), "seg" + i).toUrl(), BYTES);
+        }
+        ContentKey current = insert(ttl);
+
+        SpokeTtlWalker.Deleted deleted = walker.deleteBefore(new File(spokeDirectory, CHANNEL), ttl, SpokeTtlWalker.Listener.NONE);
+
+        assertEquals(5, deleted.getItems());
+        assertTrue(exists(current));
+    }
+
+    @Test
+    void testDeleteOlderThan() {
+        DateTime now = new DateTime(DateTimeZone.UTC);
+        ContentKey old = insert(now.minusYears(2));
+        ContentKey recent = insert(now.minusYears(2).plusSeconds(1));
+        File oldFile = fileSpokeStore.spokeFilePathPart(CHANNEL + "/" + old.toUrl());
+        File minuteDirectory = oldFile.getParentFile();
+        assertTrue(oldFile.setLastModified(now.minusHours(2).getMillis()));
+
+        SpokeTtlWalker.Deleted deleted = walker.deleteOlderThan(new File(spokeDirectory, CHANNEL), now.minusHours(1), SpokeTtlWalker.Listener.NONE);
+
+        assertEquals(1, deleted.getItems());
+        assertEquals(Duration.standardHours(1).getMillis(), deleted.getLagMillis());
+        assertFalse(exists(old));
+        assertTrue(exists(recent));
+        assertTrue(minuteDirectory.exists());
+    }
+
+    @Test
+    void testRateIsChargedPerDirectory() {
+        SpokeTtlWalker slowWalker = new SpokeTtlWalker(1);
+        DateTime ttl = new DateTime(2019, 3, 1, 12, 30, DateTimeZone.UTC);
+        for (int i = 0; i < 20; i++) {
+            insert(ttl.minusMinutes(1).plusSeconds(i));
+        }
+
+        long start = System.currentTimeMillis();
+        SpokeTtlWalker.Deleted deleted = slowWalker.deleteBefore(new File(spokeDirectory, CHANNEL), ttl, SpokeTtlWalker.Listener.NONE);
+
+        assertEquals(20, deleted.getItems());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    void testDelete() {
+        insert(new DateTime(2019, 3, 1, 12, 30, DateTimeZone.UTC));
+        insert(new DateTime(2019, 3, 2, 12, 30, DateTimeZone.UTC));
+        File channelDirectory = new File(spokeDirectory, CHANNEL);
+
+        assertEquals(2, walker.delete(channelDirectory, SpokeTtlWalker.Listener.NONE).getItems());
+        assertFalse(channelDirectory.exists());
+    }
+
+    private ContentKey insert(DateTime time) {
+        ContentKey key = new ContentKey(time, "hash" + time.getMillis());
+        assertTrue(fileSpokeStore.insert(CHANNEL + "/" + key.toUrl(), BYTES));
+        return key;
+    }
+
+    private boolean exists(ContentKey key) {
+        return fileSpokeStore.spokeFilePathPart(CHANNEL + "/" + key.toUrl()).exists();
+    }
+}
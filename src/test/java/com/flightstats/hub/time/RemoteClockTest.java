@@ -0,0 +1,59 @@
+package com.flightstats.hub.time;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class RemoteClockTest {
+
+    @Test
+    void testNoSample() {
+        RemoteClock clock = new RemoteClock();
+        assertFalse(clock.now(1000, 60_000).isPresent());
+        assertEquals(-1, clock.getAge(1000));
+    }
+
+    @Test
+    void testOffsetFromRoundTrip() {
+        RemoteClock clock = new RemoteClock();
+        clock.update(1000, 5010, 1020);
+        assertEquals(4000, clock.getOffset(1020), 0.001);
+        assertEquals(10, clock.getUncertainty(), 0.001);
+        assertEquals(6020, clock.now(2020, 60_000).get().longValue());
+        assertEquals(1000, clock.getAge(2020));
+    }
+
+    @Test
+    void testStale() {
+        RemoteClock clock = new RemoteClock();
+        clock.update(1000, 5000, 1000);
+        assertEquals(64_000, clock.now(60_000, 60_000).get().longValue());
+        assertFalse(clock.now(61_001, 60_000).isPresent());
+    }
+
+    @Test
+    void testDriftCorrection() {
+        RemoteClock clock = new RemoteClock();
+        long local = 0;
+        double offset = 100;
+        for (int i = 0; i < 40; i++) {
+            clock.update(local, local + Math.round(offset), local);
+            local += 10_000;
+            offset += 1;
+        }
+        assertEquals(100e-6, clock.getDrift(), 1e-6);
+        long last = local - 10_000;
+        long expected = local + Math.round(offset);
+        assertEquals(expected, clock.now(local, 60_000).get().longValue(), 1);
+        assertEquals(140, clock.getOffset(last), 1);
+    }
+
+    @Test
+    void testDriftIsBounded() {
+        RemoteClock clock = new RemoteClock();
+        clock.update(0, 0, 0);
+        clock.update(1000, 1000 + 900, 1000);
+        assertEquals(500e-6, clock.getDrift(), 1e-9);
+    }
+}
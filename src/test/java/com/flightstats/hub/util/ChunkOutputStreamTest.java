@@ -1,51 +1,146 @@
 package com.flightstats.hub.util;
 
-
+import com.google.common.io.ByteStreams;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.function.Function;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ChunkOutputStreamTest {
 
-    private static final int MEGABYTES = 1024 * 1024;
-    private ChunkOutputStream chunkOutputStream;
+    private static final int CHUNK_SIZE = 100;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final ChunkBufferPool bufferPool = new ChunkBufferPool(3, CHUNK_SIZE);
+    private final Map<Integer, byte[]> chunks = new ConcurrentSkipListMap<>();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testBulkWritesAcrossChunks() throws IOException {
+        byte[] data = new byte[1050];
+        new Random(7).nextBytes(data);
+        ChunkOutputStream stream = new ChunkOutputStream(executor, bufferPool, 2, this::collect);
+        stream.write(data, 0, 30);
+        stream.write(data, 30, 500);
+        stream.write(data[530]);
+        stream.write(data, 531, data.length - 531);
+        stream.close();
+
+        assertEquals(11, chunks.size());
+        assertEquals(50, chunks.get(11).length);
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks.values()) {
+            joined.write(chunk);
+        }
+        assertArrayEquals(data, joined.toByteArray());
+        assertEquals(3, bufferPool.getAvailable());
+    }
+
+    @Test
+    void testBuffersAreBounded() throws Exception {
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        ChunkOutputStream stream = new ChunkOutputStream(executor, bufferPool, 10, chunk -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            sleep();
+            concurrent.decrementAndGet();
+            return collect(chunk);
+        });
+        stream.write(new byte[20 * CHUNK_SIZE]);
+        stream.close();
+
+        assertEquals(20, chunks.size());
+        assertTrue(maxConcurrent.get() <= 3, "at most one chunk per buffer uploads at a time");
+        assertEquals(3, bufferPool.getAvailable());
+    }
 
-    private Function testFunction = (chunk) -> "ok";
+    @Test
+    void testFailureStopsWrites() throws Exception {
+        CountDownLatch failed = new CountDownLatch(1);
+        ChunkOutputStream stream = new ChunkOutputStream(executor, bufferPool, 2, chunk -> {
+            failed.countDown();
+            throw new RuntimeException("part failed");
+        });
+        stream.write(new byte[CHUNK_SIZE]);
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        assertThrows(IOException.class, () -> {
+            for (int i = 0; i < 100; i++) {
+                stream.write(new byte[CHUNK_SIZE]);
+            }
+        });
+        stream.abort();
+        assertEquals(3, bufferPool.getAvailable());
+    }
 
     @Test
-    void testSize10() {
-        chunkOutputStream = new ChunkOutputStream(3, 10, testFunction);
-        assertEquals(5 * MEGABYTES, chunkOutputStream.getSize(1));
-        assertEquals(10 * MEGABYTES, chunkOutputStream.getSize(4));
-        assertEquals(10 * MEGABYTES, chunkOutputStream.getSize(7));
-        assertEquals(10 * MEGABYTES, chunkOutputStream.getSize(10));
-        assertEquals(10 * MEGABYTES, chunkOutputStream.getSize(13));
-        assertEquals(10 * MEGABYTES, chunkOutputStream.getSize(16));
+    void testAbortReleasesPartialChunk() throws IOException {
+        ChunkOutputStream stream = new ChunkOutputStream(executor, bufferPool, 2, this::collect);
+        stream.write(new byte[CHUNK_SIZE + 10]);
+        stream.abort();
+
+        assertEquals(1, chunks.size());
+        assertEquals(3, bufferPool.getAvailable());
+        assertThrows(IOException.class, () -> stream.write(1));
     }
 
     @Test
-    void testSize20() {
-        chunkOutputStream = new ChunkOutputStream(3, 20, testFunction);
-        assertEquals(5 * MEGABYTES, chunkOutputStream.getSize(1));
-        assertEquals(10 * MEGABYTES, chunkOutputStream.getSize(4));
-        assertEquals(15 * MEGABYTES, chunkOutputStream.getSize(7));
-        assertEquals(20 * MEGABYTES, chunkOutputStream.getSize(10));
-        assertEquals(20 * MEGABYTES, chunkOutputStream.getSize(13));
-        assertEquals(20 * MEGABYTES, chunkOutputStream.getSize(16));
+    void testPartsGrowThroughSizes() throws IOException {
+        ChunkBufferPool growingPool = new ChunkBufferPool(2, 2, 10, 20, 40);
+        ChunkOutputStream stream = new ChunkOutputStream(executor, growingPool, 2, this::collect);
+        stream.write(new byte[175]);
+        stream.close();
+
+        int[] lengths = chunks.values().stream().mapToInt(chunk -> chunk.length).toArray();
+        assertArrayEquals(new int[]{10, 10, 20, 20, 40, 40, 35}, lengths);
+        assertEquals(7, growingPool.getParts(175));
+        assertEquals(1, growingPool.getParts(1));
+        assertEquals(3, growingPool.getParts(21));
+        assertEquals(6, growingPool.getAvailable());
     }
 
     @Test
-    void testSize50() {
-        chunkOutputStream = new ChunkOutputStream(3, 50, testFunction);
-        assertEquals(5 * MEGABYTES, chunkOutputStream.getSize(1));
-        assertEquals(10 * MEGABYTES, chunkOutputStream.getSize(4));
-        assertEquals(15 * MEGABYTES, chunkOutputStream.getSize(7));
-        assertEquals(20 * MEGABYTES, chunkOutputStream.getSize(10));
-        assertEquals(25 * MEGABYTES, chunkOutputStream.getSize(13));
-        assertEquals(30 * MEGABYTES, chunkOutputStream.getSize(16));
-        assertEquals(50 * MEGABYTES, chunkOutputStream.getSize(30));
-    }
-
-}
\ No newline at end of file
+    void testFailsAfterMaxParts() throws IOException {
+        ChunkBufferPool tinyPool = new ChunkBufferPool(3, 1);
+        ChunkOutputStream stream = new ChunkOutputStream(executor, tinyPool, 2, chunk -> "ok");
+        stream.write(new byte[ChunkOutputStream.MAX_PARTS]);
+
+        assertThrows(IOException.class, () -> stream.write(1));
+        stream.abort();
+        assertEquals(3, tinyPool.getAvailable());
+    }
+
+    private String collect(Chunk chunk) {
+        try {
+            chunks.put(chunk.getCount(), ByteStreams.toByteArray(chunk.getInputStream()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return "ok";
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            throw new RuntimeInterruptedException(e);
+        }
+    }
+}
@@ -1,31 +1,46 @@
 package com.flightstats.hub.util;
 
+import com.google.common.io.ByteStreams;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ChunkTest {
 
     @Test
-    void testPartial() {
-        Chunk chunk = new Chunk(1, 4);
+    void testPartial() throws IOException {
+        Chunk chunk = new Chunk(1, new byte[4]);
         byte[] expected = {1, 2, 3};
         for (byte b : expected) {
             chunk.add(b);
         }
         assertFalse(chunk.isFull());
-        assertArrayEquals(expected, chunk.getBytes());
+        assertEquals(3, chunk.getLength());
+        assertArrayEquals(expected, ByteStreams.toByteArray(chunk.getInputStream()));
     }
 
     @Test
-    void testFull() {
-        Chunk chunk = new Chunk(1, 4);
+    void testFull() throws IOException {
+        Chunk chunk = new Chunk(1, new byte[4]);
         byte[] expected = {1, 2, 3, 4};
         for (byte b : expected) {
             chunk.add(b);
         }
         assertTrue(chunk.isFull());
         assertFalse(chunk.add(5));
-        assertArrayEquals(expected, chunk.getBytes());
+        assertArrayEquals(expected, ByteStreams.toByteArray(chunk.getInputStream()));
+    }
+
+    @Test
+    void testBulkAdd() throws IOException {
+        Chunk chunk = new Chunk(1, new byte[4]);
+        byte[] source = {1, 2, 3, 4, 5, 6};
+        assertEquals(2, chunk.add(source, 0, 2));
+        assertEquals(2, chunk.add(source, 2, 4));
+        assertTrue(chunk.isFull());
+        assertEquals(0, chunk.add(source, 4, 2));
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, ByteStreams.toByteArray(chunk.getInputStream()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,105 @@
+package com.flightstats.hub.webhook;
+
+import com.flightstats.hub.cluster.ClusterCacheDao;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.ContentPath;
+import com.flightstats.hub.util.TimeUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.flightstats.hub.constant.ZookeeperNodes.WEBHOOK_LAST_COMPLETED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookCheckpointTest {
+
+    private static final String NAME = "checkpointed";
+
+    @Mock
+    private WebhookContentInFlight keysInFlight;
+    @Mock
+    private ClusterCacheDao clusterCacheDao;
+    @Captor
+    private ArgumentCaptor<Collection<ContentPath>> inFlight;
+
+    private final AtomicReference<ContentPath> lastCompleted = new AtomicReference<>();
+    private final AtomicBoolean leadership = new AtomicBoolean(true);
+    private final ContentKey start = new ContentKey(TimeUtil.now().minusMinutes(1), "start");
+    private WebhookCheckpoint checkpoint;
+
+    @BeforeEach
+    void setUp() {
+        lastCompleted.set(start);
+        checkpoint = new WebhookCheckpoint(NAME, keysInFlight, clusterCacheDao, lastCompleted::get, leadership::get, 3);
+    }
+
+    @Test
+    void testRecoverCompactsInFlight() {
+        ContentKey before = new ContentKey(start.getTime().minusSeconds(1), "before");
+        ContentKey after = new ContentKey(start.getTime().plusSeconds(1), "after");
+        when(keysInFlight.getSet(NAME, start)).thenReturn(new HashSet<>(Arrays.asList(before, after)));
+
+        Set<ContentPath> toSend = checkpoint.recover(start);
+
+        assertEquals(1, toSend.size());
+        assertEquals(before, toSend.iterator().next());
+        verify(keysInFlight).setAll(NAME, toSend);
+        verify(keysInFlight).remove(NAME, before);
+        verify(keysInFlight).remove(NAME, after);
+    }
+
+    @Test
+    void testFlushesAfterMaxItems() {
+        ContentKey first = new ContentKey(start.getTime().plusSeconds(1), "first");
+        ContentKey second = new ContentKey(start.getTime().plusSeconds(2), "second");
+        ContentKey third = new ContentKey(start.getTime().plusSeconds(3), "third");
+        ContentKey fourth = new ContentKey(start.getTime().plusSeconds(4), "fourth");
+        checkpoint.recover(start);
+        for (ContentKey key : Arrays.asList(first, second, third, fourth)) {
+            checkpoint.started(key);
+        }
+        lastCompleted.set(second);
+        checkpoint.completed(second);
+        checkpoint.completed(third);
+        lastCompleted.set(third);
+        verify(clusterCacheDao, never()).setIfNewer(any(), any(), any());
+
+        checkpoint.completed(fourth);
+
+        verify(keysInFlight, times(2)).setAll(eq(NAME), inFlight.capture());
+        assertEquals(Arrays.asList(first), inFlight.getValue());
+        verify(clusterCacheDao).setIfNewer(third, NAME, WEBHOOK_LAST_COMPLETED);
+    }
+
+    @Test
+    void testNoFlushWithoutLeadership() {
+        checkpoint.recover(start);
+        checkpoint.started(new ContentKey(start.getTime().plusSeconds(1), "first"));
+        lastCompleted.set(new ContentKey(start.getTime().plusSeconds(2), "second"));
+        leadership.set(false);
+
+        checkpoint.stop();
+
+        verify(keysInFlight, times(1)).setAll(eq(NAME), anyCollection());
+        verify(clusterCacheDao, never()).setIfNewer(any(), any(), any());
+    }
+}